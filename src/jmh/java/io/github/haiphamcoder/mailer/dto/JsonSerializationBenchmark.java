@@ -0,0 +1,57 @@
+package io.github.haiphamcoder.mailer.dto;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Measures Jackson reading of {@link EmailRequest} bodies and writing of
+ * {@link ApiCommonResponse} envelopes with an {@link ObjectMapper} configured
+ * like the one Spring MVC uses.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private byte[] requestJson;
+    private ApiCommonResponse<String> response;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        EmailRequest request = new EmailRequest(List.of("john.doe@example.com", "jane.doe@example.com"),
+                "Your order #12345 has shipped", "<p>Your order has shipped.</p>".repeat(20), true,
+                List.of("carbon@example.com"), null, "sender@example.com", "reply@example.com");
+        requestJson = objectMapper.writeValueAsBytes(request);
+        response = ApiCommonResponse.success("3f1c2d4e-5b6a-7980-a1b2-c3d4e5f60718");
+    }
+
+    @Benchmark
+    public EmailRequest readEmailRequest() throws Exception {
+        return objectMapper.readValue(requestJson, EmailRequest.class);
+    }
+
+    @Benchmark
+    public byte[] writeApiCommonResponse() throws Exception {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+}
@@ -0,0 +1,68 @@
+package io.github.haiphamcoder.mailer.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares signature verification in {@link HmacSignatureService} with the
+ * original per-request implementation (new {@link Mac} and key per call,
+ * {@code String.format} hex encoding, string comparison).
+ * <p>
+ * Run with {@code -prof gc} to see bytes allocated per verification
+ * ({@code gc.alloc.rate.norm}).
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HmacSignatureBenchmark {
+
+    private static final String SECRET = "134999f18f0ec5f0d2ad0c1a6f1e2d3c4b5a69788796a5b4c3d2e1f0a9b8c7d6";
+
+    private HmacSignatureService service;
+    private long timestamp;
+    private String signature;
+
+    @Setup
+    public void setUp() {
+        service = new HmacSignatureService();
+        timestamp = System.currentTimeMillis();
+        signature = service.generateSignature(timestamp, SECRET);
+    }
+
+    @Benchmark
+    public boolean verifyCachedMac() {
+        return service.verifySignature(timestamp, SECRET, signature);
+    }
+
+    @Benchmark
+    public boolean verifyPerRequestMac() throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA512");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA512"));
+        byte[] tag = mac.doFinal(String.valueOf(timestamp).getBytes(StandardCharsets.UTF_8));
+        StringBuilder expected = new StringBuilder();
+        for (byte b : tag) {
+            expected.append(String.format("%02x", b));
+        }
+        return MessageDigest.isEqual(signature.getBytes(StandardCharsets.UTF_8),
+                expected.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,38 @@
+package io.github.haiphamcoder.mailer.security;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link ReplayCache#firstUse} for fresh signatures from several
+ * threads at once, as under concurrent signed requests. Timestamps follow the
+ * clock, so buckets expire and are replaced during the run.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ReplayCacheBenchmark {
+
+    private final ReplayCache cache = new ReplayCache(2_000, 1 << 22);
+
+    @Benchmark
+    public ReplayCache.Outcome firstUse() {
+        return cache.firstUse(System.currentTimeMillis(), ThreadLocalRandom.current().nextLong() | 1);
+    }
+
+}
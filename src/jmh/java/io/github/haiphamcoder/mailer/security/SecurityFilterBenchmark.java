@@ -0,0 +1,80 @@
+package io.github.haiphamcoder.mailer.security;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.haiphamcoder.mailer.limit.AccessKeyRateLimiter;
+import io.github.haiphamcoder.mailer.limit.RateLimitProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import jakarta.servlet.FilterChain;
+
+/**
+ * Measures {@link SecurityFilter#doFilterInternal} for a correctly signed
+ * request to a protected endpoint, i.e. the per-request authentication cost
+ * excluding the servlet container. The same request is sent repeatedly, so
+ * replay protection and the rate limit are off here;
+ * {@link ReplayCacheBenchmark} covers the former.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SecurityFilterBenchmark {
+
+    private static final String SECRET = "134999f18f0ec5f0d2ad0c1a6f1e2d3c4b5a69788796a5b4c3d2e1f0a9b8c7d6";
+    private static final FilterChain NO_OP_CHAIN = (request, response) -> {
+    };
+
+    private SecurityFilter filter;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SecurityProperties properties = new SecurityProperties();
+        properties.setSecretKey(SECRET);
+        properties.getReplayProtection().setEnabled(false);
+        RateLimitProperties rateLimit = new RateLimitProperties();
+        rateLimit.setEnabled(false);
+        HmacSignatureService hmacService = new HmacSignatureService();
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        AccessKeyRegistry accessKeys = new AccessKeyRegistry(properties, objectMapper);
+        filter = new SecurityFilter(hmacService, properties, objectMapper, new ReplayCache(properties), accessKeys,
+                new AccessKeyRateLimiter(rateLimit, new SimpleMeterRegistry(), accessKeys));
+
+        long timestamp = System.currentTimeMillis();
+        request = new MockHttpServletRequest("POST", "/api/v1/emails");
+        request.addHeader("X-Access-Key", "benchmark-access-key");
+        request.addHeader("X-Timestamp", String.valueOf(timestamp));
+        request.addHeader("X-Access-Sign", hmacService.generateSignature(timestamp, SECRET));
+        request.setRemoteAddr("10.0.0.1");
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public int doFilterSignedRequest() throws Exception {
+        filter.doFilterInternal(request, response, NO_OP_CHAIN);
+        return response.getStatus();
+    }
+
+}
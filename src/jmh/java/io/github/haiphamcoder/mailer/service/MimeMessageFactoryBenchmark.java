@@ -0,0 +1,93 @@
+package io.github.haiphamcoder.mailer.service;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.haiphamcoder.mailer.config.MailProperties;
+import io.github.haiphamcoder.mailer.dto.EmailRequest;
+import jakarta.mail.internet.MimeMessage;
+
+/**
+ * Measures building a {@link MimeMessage} from an {@link EmailRequest}, alone
+ * and followed by the MIME encoding that happens when the message is written
+ * to the SMTP connection. The {@code fanOut} benchmarks compare the cost per
+ * recipient of fan-out: building and encoding a message for each recipient
+ * versus copying a {@link FanOutMessage} encoded once.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MimeMessageFactoryBenchmark {
+
+    private MimeMessageFactory factory;
+    private EmailRequest request;
+    private EmailRequest singleRecipient;
+    private FanOutMessage fanOut;
+    private MessageIdGenerator messageIds;
+
+    @Setup
+    public void setUp() {
+        MailProperties properties = new MailProperties();
+        properties.setDefaultFrom("noreply@example.com");
+        properties.setDefaultReplyTo("support@example.com");
+        messageIds = new MessageIdGenerator(properties);
+        factory = new MimeMessageFactory(properties, null, null, null, messageIds);
+
+        String body = "<html><body><h1>Hello</h1>" + "<p>Your order has shipped and is on its way.</p>".repeat(40)
+                + "</body></html>";
+        request = new EmailRequest(List.of("john.doe@example.com", "jane.doe@example.com"),
+                "Your order #12345 has shipped", body, true, List.of("carbon@example.com"), null, null, null);
+        singleRecipient = new EmailRequest(List.of("john.doe@example.com"), request.subject(), body, true, null,
+                null, null, null);
+        try {
+            fanOut = factory.createFanOut(singleRecipient);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Benchmark
+    public MimeMessage build() throws Exception {
+        return factory.create(messageIds.next(), request);
+    }
+
+    @Benchmark
+    public MimeMessage buildAndEncode() throws Exception {
+        MimeMessage message = factory.create(messageIds.next(), request);
+        message.saveChanges();
+        message.writeTo(OutputStream.nullOutputStream());
+        return message;
+    }
+
+    @Benchmark
+    public MimeMessage fanOutRebuild() throws Exception {
+        MimeMessage message = factory.create(messageIds.next(), singleRecipient);
+        message.saveChanges();
+        message.writeTo(OutputStream.nullOutputStream());
+        return message;
+    }
+
+    @Benchmark
+    public MimeMessage fanOutCopy() throws Exception {
+        MimeMessage message = fanOut.copyFor("john.doe@example.com", messageIds.next());
+        message.saveChanges();
+        message.writeTo(OutputStream.nullOutputStream());
+        return message;
+    }
+
+}
@@ -0,0 +1,39 @@
+package io.github.haiphamcoder.mailer.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link MaskingUtil#maskEmail}, which runs for every logged send.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MaskingUtilBenchmark {
+
+    private String email = "john.doe@example.com";
+    private String recipients = "john.doe@example.com,jane.doe@example.com,carbon@example.com";
+
+    @Benchmark
+    public String maskSingleEmail() {
+        return MaskingUtil.maskEmail(email);
+    }
+
+    @Benchmark
+    public String maskRecipientList() {
+        return MaskingUtil.maskEmail(recipients);
+    }
+
+}
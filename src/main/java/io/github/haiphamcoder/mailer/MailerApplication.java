@@ -2,10 +2,10 @@ package io.github.haiphamcoder.mailer;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.retry.annotation.EnableRetry;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
-@EnableRetry
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class MailerApplication {
 
 	public static void main(String[] args) {
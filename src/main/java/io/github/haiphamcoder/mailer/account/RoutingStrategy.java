@@ -0,0 +1,21 @@
+package io.github.haiphamcoder.mailer.account;
+
+/**
+ * How {@link SenderAccountRouter} picks the sender account for a message.
+ */
+public enum RoutingStrategy {
+
+    /**
+     * Account with the fewest in-flight sends relative to its weight. Spreads
+     * load evenly; a given From address may be sent through any account.
+     */
+    LEAST_LOAD,
+
+    /**
+     * Consistent hash of the From address over a weighted ring. A sender keeps
+     * using the same account while it is healthy, and only the senders of a
+     * failed account move elsewhere.
+     */
+    FROM_HASH
+
+}
@@ -0,0 +1,101 @@
+package io.github.haiphamcoder.mailer.account;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.mail.MailException;
+import org.springframework.mail.javamail.JavaMailSender;
+
+import io.github.haiphamcoder.mailer.dto.Priority;
+import io.github.haiphamcoder.mailer.smtp.PooledJavaMailSender;
+import jakarta.mail.internet.MimeMessage;
+
+/**
+ * One Gmail account messages can be sent from, with its own pooled sender.
+ * <p>
+ * Tracks in-flight sends for least-load routing and a cooldown during which
+ * the account is skipped after it was throttled or its credentials were
+ * rejected.
+ */
+public final class SenderAccount {
+
+    private final String username;
+    private final int weight;
+    private final JavaMailSender sender;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile long unavailableUntil;
+
+    public SenderAccount(String username, int weight, JavaMailSender sender) {
+        this.username = username;
+        this.weight = weight;
+        this.sender = sender;
+    }
+
+    public String username() {
+        return username;
+    }
+
+    public int weight() {
+        return weight;
+    }
+
+    public JavaMailSender sender() {
+        return sender;
+    }
+
+    /**
+     * Sends messages from this account in the connection lane of a priority.
+     * Senders without a connection pool have no lanes.
+     *
+     * @param priority the priority of the messages
+     * @param messages the messages to send
+     * @throws MailException if the connection or any message fails
+     */
+    public void send(Priority priority, MimeMessage... messages) throws MailException {
+        if (sender instanceof PooledJavaMailSender pooled) {
+            pooled.send(priority, messages);
+        } else {
+            sender.send(messages);
+        }
+    }
+
+    /**
+     * Returns the number of sends currently using this account.
+     *
+     * @return in-flight send count
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Returns whether the account may be used at the given time.
+     *
+     * @param now current time in milliseconds
+     * @return false while the account is cooling down
+     */
+    public boolean isAvailable(long now) {
+        return now >= unavailableUntil;
+    }
+
+    /**
+     * Returns when the account's cooldown ends.
+     *
+     * @return epoch milliseconds, or 0 if it was never taken out of rotation
+     */
+    public long unavailableUntil() {
+        return unavailableUntil;
+    }
+
+    void markUnavailable(long until) {
+        unavailableUntil = Math.max(unavailableUntil, until);
+    }
+
+    void sendStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    void sendFinished() {
+        inFlight.decrementAndGet();
+    }
+
+}
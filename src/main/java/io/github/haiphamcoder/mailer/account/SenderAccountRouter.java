@@ -0,0 +1,210 @@
+package io.github.haiphamcoder.mailer.account;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.DisposableBean;
+
+import io.github.haiphamcoder.mailer.config.MailProperties;
+import io.github.haiphamcoder.mailer.dto.EmailRequest;
+import io.github.haiphamcoder.mailer.exception.MailFailure;
+import io.github.haiphamcoder.mailer.exception.MailSendExceptionMapper;
+import io.github.haiphamcoder.mailer.exception.QuotaExhaustedException;
+import io.github.haiphamcoder.mailer.quota.QuotaManager;
+import io.github.haiphamcoder.mailer.util.MaskingUtil;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Chooses the sender account for each message and handles failover between
+ * accounts.
+ * <p>
+ * Candidates are ordered by the configured {@link RoutingStrategy}; the first
+ * candidate that is not cooling down and gets a {@link QuotaManager} permit is
+ * used. Every {@link #acquire(EmailRequest)} must be paired with a
+ * {@link #release(SenderAccount, Exception)} reporting the outcome, or with
+ * {@link #cancel(SenderAccount, EmailRequest)} if nothing was sent. A failure
+ * classified as {@code SMTP_THROTTLED} or {@code SMTP_AUTH_FAILED} takes the
+ * account out of rotation for the corresponding cooldown, so the next
+ * acquisition fails over to another account.
+ */
+@Slf4j
+public class SenderAccountRouter implements DisposableBean {
+
+    /** Virtual nodes per unit of weight on the from-hash ring. */
+    private static final int RING_REPLICAS = 64;
+
+    private final List<SenderAccount> accounts;
+    private final MailProperties.Routing routing;
+    private final QuotaManager quotaManager;
+    private final MailSendExceptionMapper exceptionMapper;
+    private final LongSupplier clock;
+    private final TreeMap<Long, SenderAccount> ring = new TreeMap<>();
+    private final AtomicInteger rotation = new AtomicInteger();
+
+    public SenderAccountRouter(List<SenderAccount> accounts, MailProperties.Routing routing,
+            QuotaManager quotaManager, MailSendExceptionMapper exceptionMapper) {
+        this(accounts, routing, quotaManager, exceptionMapper, System::currentTimeMillis);
+    }
+
+    SenderAccountRouter(List<SenderAccount> accounts, MailProperties.Routing routing, QuotaManager quotaManager,
+            MailSendExceptionMapper exceptionMapper, LongSupplier clock) {
+        if (accounts.isEmpty()) {
+            throw new IllegalArgumentException("At least one sender account is required");
+        }
+        this.accounts = List.copyOf(accounts);
+        this.routing = routing;
+        this.quotaManager = quotaManager;
+        this.exceptionMapper = exceptionMapper;
+        this.clock = clock;
+        for (SenderAccount account : this.accounts) {
+            for (int i = 0; i < account.weight() * RING_REPLICAS; i++) {
+                ring.put(hash(account.username() + "#" + i), account);
+            }
+        }
+    }
+
+    /**
+     * Returns all configured accounts.
+     *
+     * @return the accounts, in configuration order
+     */
+    public List<SenderAccount> accounts() {
+        return accounts;
+    }
+
+    /**
+     * Picks an account for the request and takes a quota permit on it.
+     *
+     * @param request the email about to be sent
+     * @return the account to send from
+     * @throws QuotaExhaustedException if no account can send right now
+     */
+    public SenderAccount acquire(EmailRequest request) {
+        long now = clock.getAsLong();
+        int recipients = QuotaManager.recipientCount(request);
+        long retryAfter = Long.MAX_VALUE;
+        for (SenderAccount account : candidates(request)) {
+            if (!account.isAvailable(now)) {
+                retryAfter = Math.min(retryAfter, account.unavailableUntil() - now);
+                continue;
+            }
+            long wait = quotaManager.tryAcquire(account.username(), recipients);
+            if (wait == 0) {
+                account.sendStarted();
+                return account;
+            }
+            retryAfter = Math.min(retryAfter, wait);
+        }
+        throw new QuotaExhaustedException(retryAfter);
+    }
+
+    /**
+     * Reports the outcome of a send made through {@link #acquire(EmailRequest)}.
+     *
+     * @param account the account that was used
+     * @param failure the failure, or null on success
+     * @return true if the failure took the account out of rotation and another
+     *         account is available, so the message may succeed right away
+     *         through it
+     */
+    public boolean release(SenderAccount account, Exception failure) {
+        account.sendFinished();
+        if (failure == null) {
+            return false;
+        }
+        MailFailure classification = exceptionMapper.classify(failure);
+        long cooldown = switch (classification.code()) {
+            case "SMTP_THROTTLED" -> routing.getThrottleCooldown().toMillis();
+            case "SMTP_AUTH_FAILED" -> routing.getAuthFailureCooldown().toMillis();
+            default -> 0;
+        };
+        if (cooldown == 0) {
+            return false;
+        }
+        long now = clock.getAsLong();
+        account.markUnavailable(now + cooldown);
+        log.warn("Taking sender account {} out of rotation for {}s after {}", MaskingUtil.maskEmail(
+                account.username()), cooldown / 1000, classification.code());
+        for (SenderAccount other : accounts) {
+            if (other != account && other.isAvailable(now)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gives back an account taken by {@link #acquire(EmailRequest)} for a
+     * message that was never sent, refunding its quota permit.
+     *
+     * @param account the account that was acquired
+     * @param request the request it was acquired for
+     */
+    public void cancel(SenderAccount account, EmailRequest request) {
+        account.sendFinished();
+        quotaManager.refund(account.username(), QuotaManager.recipientCount(request));
+    }
+
+    /** Returns the accounts in the order they should be tried for the request. */
+    private List<SenderAccount> candidates(EmailRequest request) {
+        if (accounts.size() == 1) {
+            return accounts;
+        }
+        if (routing.getStrategy() == RoutingStrategy.FROM_HASH) {
+            return ringOrder(request.from() == null ? "" : request.from().toLowerCase());
+        }
+        // Rotate the starting point so equally loaded accounts take turns
+        int start = Math.floorMod(rotation.getAndIncrement(), accounts.size());
+        List<SenderAccount> ordered = new ArrayList<>(accounts.size());
+        for (int i = 0; i < accounts.size(); i++) {
+            ordered.add(accounts.get((start + i) % accounts.size()));
+        }
+        ordered.sort(Comparator.comparingDouble(account -> (double) account.inFlight() / account.weight()));
+        return ordered;
+    }
+
+    /** Walks the ring clockwise from the key's position, collecting distinct accounts. */
+    private List<SenderAccount> ringOrder(String key) {
+        Set<SenderAccount> ordered = new LinkedHashSet<>();
+        long position = hash(key);
+        for (Map<Long, SenderAccount> part : List.of(ring.tailMap(position), ring.headMap(position))) {
+            for (SenderAccount account : part.values()) {
+                if (ordered.add(account) && ordered.size() == accounts.size()) {
+                    return new ArrayList<>(ordered);
+                }
+            }
+        }
+        return new ArrayList<>(ordered);
+    }
+
+    /** 64-bit FNV-1a with a final avalanche step. */
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        for (SenderAccount account : accounts) {
+            if (account.sender() instanceof DisposableBean disposable) {
+                disposable.destroy();
+            }
+        }
+    }
+
+}
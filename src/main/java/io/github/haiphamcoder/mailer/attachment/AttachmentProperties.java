@@ -0,0 +1,81 @@
+package io.github.haiphamcoder.mailer.attachment;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
+import org.springframework.util.unit.DataSize;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration properties for email attachments.
+ * <p>
+ * The size of uploads is limited by {@code spring.servlet.multipart.*}.
+ * <p>
+ * Example configuration:
+ * <pre>
+ * mailer.attachment.spool-directory=data/spool
+ * mailer.attachment.max-count=10
+ * mailer.attachment.store.directory=data/attachments
+ * mailer.attachment.store.ttl=7d
+ * mailer.attachment.store.encoded-cache-size=256MB
+ * </pre>
+ */
+@Getter
+@Setter
+@Validated
+@ConfigurationProperties(prefix = "mailer.attachment")
+public class AttachmentProperties {
+
+    /**
+     * Directory the uploaded attachments are spooled to until their email is
+     * sent. Emails waiting in the outbox refer to these files, so they must
+     * survive a restart. When blank, a new temporary directory is used.
+     */
+    private String spoolDirectory = "data/spool";
+
+    /** Maximum number of attachments per email. */
+    @Min(1)
+    private int maxCount = 10;
+
+    /** Content-addressed attachment store under {@code mailer.attachment.store.*}. */
+    @Valid
+    @NestedConfigurationProperty
+    private final Store store = new Store();
+
+    @Getter
+    @Setter
+    public static class Store {
+
+        /**
+         * Directory holding the stored attachments and their base64 encodings,
+         * named by SHA-256. When blank, a new temporary directory is used.
+         */
+        private String directory = "data/attachments";
+
+        /**
+         * How long an attachment no pending email refers to is kept after it
+         * was last uploaded or referenced.
+         */
+        @NotNull
+        private Duration ttl = Duration.ofDays(7);
+
+        /** How often expired attachments are looked for; zero disables eviction. */
+        @NotNull
+        private Duration evictionInterval = Duration.ofMinutes(10);
+
+        /**
+         * Maximum total size of the memory-mapped base64 encodings kept cached.
+         * The least recently used are dropped first; their mappings are
+         * released once garbage collected.
+         */
+        @NotNull
+        private DataSize encodedCacheSize = DataSize.ofMegabytes(256);
+    }
+}
@@ -0,0 +1,330 @@
+package io.github.haiphamcoder.mailer.attachment;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import io.github.haiphamcoder.mailer.dto.Attachment;
+import io.github.haiphamcoder.mailer.dto.EmailRequest;
+import io.github.haiphamcoder.mailer.exception.ApiException;
+import io.github.haiphamcoder.mailer.exception.AttachmentNotFoundException;
+import jakarta.activation.DataSource;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Disk spool for uploaded attachments, and owner of the attachments of
+ * pending emails.
+ * <p>
+ * {@link #spool(List, int)} streams each uploaded part into its own file in
+ * {@code mailer.attachment.spool-directory} through a fixed buffer, computing
+ * its size and SHA-256 on the way, so the heap footprint does not depend on
+ * the attachment size. Messages read the files back through
+ * {@link #dataSource(Attachment)} while they are written to the SMTP
+ * connection.
+ * <p>
+ * Emails may also refer to attachments in the {@link AttachmentStore} by
+ * SHA-256; {@link #acquire(EmailRequest, int)} resolves those references and
+ * keeps the stored content from being evicted.
+ * <p>
+ * Spooled files and store references belong to the email that refers to them
+ * and are given up with {@link #release(EmailRequest)} once that email is sent
+ * or given up on. On startup, {@link #recover(Collection)} removes spooled
+ * files that no recovered outbox email refers to, such as the uploads of
+ * requests interrupted by a crash, and references the stored attachments of
+ * the recovered emails again.
+ */
+@Component
+@Slf4j
+public class AttachmentSpool {
+
+    /** Pattern of spool ids, which are also used as file names. */
+    public static final String ID_PATTERN = "[0-9a-f]{32}";
+
+    private static final Pattern ID = Pattern.compile(ID_PATTERN);
+    private static final String DEFAULT_CONTENT_TYPE = MediaType.APPLICATION_OCTET_STREAM_VALUE;
+
+    private final AttachmentProperties properties;
+    private final AttachmentStore store;
+    private final Path directory;
+
+    public AttachmentSpool(AttachmentProperties properties, AttachmentStore store) throws IOException {
+        this.properties = properties;
+        this.store = store;
+        String configured = properties.getSpoolDirectory();
+        if (configured == null || configured.isBlank()) {
+            this.directory = Files.createTempDirectory("mailer-spool-");
+        } else {
+            this.directory = Path.of(configured);
+            Files.createDirectories(directory);
+        }
+    }
+
+    /**
+     * Writes uploaded files to the spool.
+     *
+     * @param files      the uploaded files, may be null
+     * @param referenced the number of stored attachments the email already
+     *                   refers to, which count towards the limit
+     * @return the spooled attachments, in upload order
+     * @throws ApiException         if there are more than
+     *                              {@code mailer.attachment.max-count}
+     *                              attachments
+     * @throws UncheckedIOException if a file cannot be spooled; files spooled
+     *                              so far are deleted
+     */
+    public List<Attachment> spool(List<MultipartFile> files, int referenced) {
+        if (files == null || files.isEmpty()) {
+            return List.of();
+        }
+        checkCount(files.size() + referenced);
+        List<Attachment> spooled = new ArrayList<>(files.size());
+        try {
+            for (MultipartFile file : files) {
+                spooled.add(spool(file, referenced + spooled.size()));
+            }
+        } catch (IOException e) {
+            release(spooled, 1);
+            throw new UncheckedIOException("Cannot spool attachment", e);
+        }
+        return spooled;
+    }
+
+    private Attachment spool(MultipartFile file, int index) throws IOException {
+        String id = UUID.randomUUID().toString().replace("-", "");
+        DigestedFile content = DigestedFile.write(file.getInputStream(), directory.resolve(id),
+                StandardOpenOption.CREATE_NEW);
+        return new Attachment(filename(file.getOriginalFilename(), index), contentType(file.getContentType()),
+                content.size(), content.sha256(), id);
+    }
+
+    /**
+     * Resolves the stored attachments an email refers to and takes one
+     * reference to each of them per email that will be sent, e.g. one per
+     * fan-out copy. Either all references are taken or none.
+     *
+     * @param request the email, whose attachments refer to the store by
+     *                {@code sha256}
+     * @param count   the number of emails sent with these attachments
+     * @return the email with normalized attachment names, content types and
+     *         sizes
+     * @throws ApiException                with code {@code ATTACHMENT_INVALID}
+     *                                     if an attachment sets
+     *                                     {@code spoolId} or lacks
+     *                                     {@code sha256}, or
+     *                                     {@code TOO_MANY_ATTACHMENTS}
+     * @throws AttachmentNotFoundException if an attachment is not stored
+     */
+    public EmailRequest acquire(EmailRequest request, int count) {
+        if (!request.hasAttachments()) {
+            return request;
+        }
+        checkCount(request.attachments().size());
+        List<Attachment> resolved = new ArrayList<>(request.attachments().size());
+        try {
+            for (Attachment attachment : request.attachments()) {
+                if (attachment.spoolId() != null) {
+                    throw new ApiException("ATTACHMENT_INVALID",
+                            "Attachments are referenced by sha256; spoolId is assigned by the service");
+                }
+                if (attachment.sha256() == null) {
+                    throw new ApiException("ATTACHMENT_INVALID", "Attachment '" + attachment.filename()
+                            + "' needs the sha256 of an uploaded attachment");
+                }
+                long size = store.acquire(attachment.sha256(), count);
+                resolved.add(new Attachment(filename(attachment.filename(), resolved.size()),
+                        contentType(attachment.contentType()), size, attachment.sha256(), null));
+            }
+        } catch (RuntimeException e) {
+            release(resolved, count);
+            throw e;
+        }
+        return request.withAttachments(resolved);
+    }
+
+    private void checkCount(int count) {
+        if (count > properties.getMaxCount()) {
+            throw new ApiException("TOO_MANY_ATTACHMENTS",
+                    "Email has " + count + " attachments, maximum is " + properties.getMaxCount());
+        }
+    }
+
+    /**
+     * Returns a data source that streams a spooled attachment from disk.
+     *
+     * @param attachment the spooled attachment
+     * @return the data source, typed with the attachment's content type
+     * @throws ApiException with code {@code ATTACHMENT_MISSING} if the spooled
+     *                      file no longer exists
+     */
+    public DataSource dataSource(Attachment attachment) {
+        if (attachment.spoolId() == null) {
+            throw new IllegalArgumentException("Attachment '" + attachment.filename() + "' is not spooled");
+        }
+        Path file = file(attachment.spoolId());
+        if (!Files.isRegularFile(file)) {
+            throw new ApiException("ATTACHMENT_MISSING",
+                    "Attachment '" + attachment.filename() + "' is no longer in the spool");
+        }
+        return new SpooledDataSource(file, attachment.contentType(), attachment.filename());
+    }
+
+    /**
+     * Creates an empty scratch file in the spool, e.g. for a message encoding
+     * that is too large to hold in memory. The caller deletes it with
+     * {@link #deleteScratch(Path)}.
+     *
+     * @return the new file
+     * @throws IOException if the file cannot be created
+     */
+    public Path createScratch() throws IOException {
+        return Files.createTempFile(directory, "encoded-", ".eml");
+    }
+
+    /**
+     * Deletes a scratch file created by {@link #createScratch()}.
+     *
+     * @param file the scratch file
+     */
+    public void deleteScratch(Path file) {
+        deleteQuietly(file);
+    }
+
+    /**
+     * Gives up the attachments of an email: deletes its spooled files and
+     * releases its references to stored attachments. Does nothing for emails
+     * without attachments.
+     *
+     * @param request the email
+     */
+    public void release(EmailRequest request) {
+        if (request.hasAttachments()) {
+            release(request.attachments(), 1);
+        }
+    }
+
+    private void release(List<Attachment> attachments, int count) {
+        for (Attachment attachment : attachments) {
+            if (attachment.spoolId() != null) {
+                deleteQuietly(file(attachment.spoolId()));
+            } else if (attachment.sha256() != null) {
+                store.release(attachment.sha256(), count);
+            }
+        }
+    }
+
+    /**
+     * Restores the attachments of the emails recovered from the outbox:
+     * deletes every spooled file they do not refer to and references their
+     * stored attachments again. A stored attachment that is gone is logged;
+     * sending its email fails.
+     *
+     * @param pending emails whose attachments are kept
+     */
+    public void recover(Collection<EmailRequest> pending) {
+        for (EmailRequest request : pending) {
+            if (!request.hasAttachments()) {
+                continue;
+            }
+            for (Attachment attachment : request.attachments()) {
+                if (attachment.spoolId() == null && attachment.sha256() != null) {
+                    try {
+                        store.acquire(attachment.sha256(), 1);
+                    } catch (AttachmentNotFoundException e) {
+                        log.warn("Stored attachment {} of a recovered email is gone", attachment.sha256());
+                    }
+                }
+            }
+        }
+        Set<String> referenced = pending.stream().filter(EmailRequest::hasAttachments)
+                .flatMap(request -> request.attachments().stream()).map(Attachment::spoolId)
+                .collect(Collectors.toSet());
+        int deleted = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (Files.isRegularFile(file) && !referenced.contains(file.getFileName().toString())) {
+                    deleteQuietly(file);
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list attachment spool " + directory, e);
+        }
+        if (deleted > 0) {
+            log.info("Deleted {} orphaned file(s) from the attachment spool {}", deleted,
+                    directory.toAbsolutePath());
+        }
+    }
+
+    /**
+     * Returns the spool directory.
+     *
+     * @return the directory holding the spooled files
+     */
+    public Path directory() {
+        return directory;
+    }
+
+    private Path file(String id) {
+        if (id == null || !ID.matcher(id).matches()) {
+            throw new IllegalArgumentException("Invalid spool id: " + id);
+        }
+        return directory.resolve(id);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Cannot delete spooled file {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the last path segment of the uploaded name, or a generated name.
+     */
+    private static String filename(String original, int index) {
+        String name = original == null ? "" : original.substring(
+                Math.max(original.lastIndexOf('/'), original.lastIndexOf('\\')) + 1).strip();
+        if (name.isEmpty()) {
+            return "attachment-" + (index + 1);
+        }
+        return name.length() > 255 ? name.substring(0, 255) : name;
+    }
+
+    /**
+     * Returns the uploaded content type, or {@code application/octet-stream}
+     * if it is missing, invalid or would make the MIME encoder parse the file
+     * as a nested message.
+     */
+    private static String contentType(String declared) {
+        if (declared == null || declared.isBlank()) {
+            return DEFAULT_CONTENT_TYPE;
+        }
+        try {
+            MediaType type = MediaType.parseMediaType(declared);
+            if (type.isWildcardType() || type.isWildcardSubtype() || "multipart".equals(type.getType())
+                    || "message".equals(type.getType())) {
+                return DEFAULT_CONTENT_TYPE;
+            }
+            return type.toString();
+        } catch (InvalidMediaTypeException e) {
+            return DEFAULT_CONTENT_TYPE;
+        }
+    }
+
+}
@@ -0,0 +1,406 @@
+package io.github.haiphamcoder.mailer.attachment;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import io.github.haiphamcoder.mailer.dto.AttachmentInfo;
+import io.github.haiphamcoder.mailer.exception.AttachmentNotFoundException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.activation.DataSource;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Content-addressed attachment store.
+ * <p>
+ * {@link #store(MultipartFile)} streams an upload to disk, names it by its
+ * SHA-256 and keeps a single copy of identical content, however often it is
+ * uploaded. Emails refer to stored attachments by digest; every pending email
+ * holds a reference taken with {@link #acquire(String, int)} and dropped with
+ * {@link #release(String, int)}. An attachment without references is evicted
+ * once it has not been uploaded or referenced for
+ * {@code mailer.attachment.store.ttl}.
+ * <p>
+ * The first time a stored attachment is put into a message, its MIME base64
+ * encoding is written next to it and memory-mapped. Later messages reuse the
+ * mapping through {@link #encodedDataSource(String, String, String)}, so a
+ * popular attachment is encoded once rather than per message. Mappings are
+ * kept in an LRU bounded by {@code mailer.attachment.store.encoded-cache-size};
+ * lookups are counted by {@code mailer.attachment.encoded.cache} tagged with
+ * {@code result=hit|miss}, and uploads by {@code mailer.attachment.uploads}
+ * tagged with {@code result=stored|deduplicated}.
+ */
+@Component
+@Slf4j
+public class AttachmentStore implements DisposableBean {
+
+    /** Pattern of the digests that name stored attachments. */
+    public static final String SHA256_PATTERN = "[0-9a-f]{64}";
+
+    private static final Pattern SHA256 = Pattern.compile(SHA256_PATTERN);
+    private static final String ENCODED_SUFFIX = ".b64";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final long ttlMillis;
+    private final long encodedCacheBytes;
+    private final Map<String, Blob> blobs = new ConcurrentHashMap<>();
+    private final ReentrantLock encodedLock = new ReentrantLock();
+    /** Mapped encodings in access order; guarded by {@code encodedLock}. */
+    private final LinkedHashMap<String, MappedByteBuffer> encoded = new LinkedHashMap<>(16, 0.75f, true);
+    /** Total capacity of the {@code encoded} buffers; guarded by {@code encodedLock}. */
+    private long encodedBytes;
+    private final Counter stored;
+    private final Counter deduplicated;
+    private final Counter encodedHits;
+    private final Counter encodedMisses;
+    private final ScheduledExecutorService evictor;
+
+    /**
+     * A stored attachment.
+     *
+     * @param size     content size in bytes
+     * @param refs     number of pending emails referring to it
+     * @param lastUsed epoch millis of the last upload, reference or release
+     */
+    private record Blob(long size, int refs, long lastUsed) {
+    }
+
+    public AttachmentStore(AttachmentProperties properties, MeterRegistry meterRegistry) throws IOException {
+        AttachmentProperties.Store config = properties.getStore();
+        String configured = config.getDirectory();
+        if (configured == null || configured.isBlank()) {
+            this.directory = Files.createTempDirectory("mailer-attachments-");
+        } else {
+            this.directory = Path.of(configured);
+            Files.createDirectories(directory);
+        }
+        this.ttlMillis = config.getTtl().toMillis();
+        this.encodedCacheBytes = config.getEncodedCacheSize().toBytes();
+        load();
+        this.stored = Counter.builder("mailer.attachment.uploads").description("Uploaded attachments")
+                .tag("result", "stored").register(meterRegistry);
+        this.deduplicated = Counter.builder("mailer.attachment.uploads").description("Uploaded attachments")
+                .tag("result", "deduplicated").register(meterRegistry);
+        this.encodedHits = Counter.builder("mailer.attachment.encoded.cache")
+                .description("Memory-mapped attachment encoding lookups").tag("result", "hit").register(meterRegistry);
+        this.encodedMisses = Counter.builder("mailer.attachment.encoded.cache")
+                .description("Memory-mapped attachment encoding lookups").tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("mailer.attachment.stored", blobs, Map::size)
+                .description("Attachments in the content-addressed store")
+                .register(meterRegistry);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("attachment-evictor-");
+        threadFactory.setDaemon(true);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long interval = config.getEvictionInterval().toMillis();
+        if (interval > 0) {
+            evictor.scheduleWithFixedDelay(this::evictExpired, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Indexes the attachments already on disk. Their TTL starts over, as the
+     * time they were last used is not persisted; recovered outbox emails take
+     * their references again through {@link AttachmentSpool#recover}.
+     */
+    private void load() throws IOException {
+        long now = System.currentTimeMillis();
+        List<Path> encodings = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (SHA256.matcher(name).matches()) {
+                    blobs.put(name, new Blob(Files.size(file), 0, now));
+                } else if (name.endsWith(ENCODED_SUFFIX)) {
+                    encodings.add(file);
+                } else if (name.endsWith(TEMP_SUFFIX)) {
+                    deleteQuietly(file);
+                }
+            }
+        }
+        for (Path encoding : encodings) {
+            String name = encoding.getFileName().toString();
+            if (!blobs.containsKey(name.substring(0, name.length() - ENCODED_SUFFIX.length()))) {
+                deleteQuietly(encoding);
+            }
+        }
+        log.info("Attachment store {} holds {} attachment(s)", directory.toAbsolutePath(), blobs.size());
+    }
+
+    /**
+     * Stores an uploaded file. Content that is already stored is not written
+     * again; its TTL starts over instead.
+     *
+     * @param file the upload
+     * @return the digest and size of the stored content
+     * @throws UncheckedIOException if the upload cannot be stored
+     */
+    public AttachmentInfo store(MultipartFile file) {
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, "upload-", TEMP_SUFFIX);
+            DigestedFile content = DigestedFile.write(file.getInputStream(), temp,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            Path upload = temp;
+            boolean[] duplicate = new boolean[1];
+            long now = System.currentTimeMillis();
+            blobs.compute(content.sha256(), (sha256, blob) -> {
+                if (blob != null) {
+                    duplicate[0] = true;
+                    return new Blob(blob.size(), blob.refs(), now);
+                }
+                try {
+                    Files.move(upload, blobFile(sha256), StandardCopyOption.ATOMIC_MOVE,
+                            StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return new Blob(content.size(), 0, now);
+            });
+            (duplicate[0] ? deduplicated : stored).increment();
+            return new AttachmentInfo(content.sha256(), content.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot store attachment", e);
+        } finally {
+            if (temp != null) {
+                deleteQuietly(temp);
+            }
+        }
+    }
+
+    /**
+     * Looks up a stored attachment and starts its TTL over.
+     *
+     * @param sha256 the digest
+     * @return the digest and size
+     * @throws AttachmentNotFoundException if the attachment is not stored
+     */
+    public AttachmentInfo info(String sha256) {
+        long now = System.currentTimeMillis();
+        Blob blob = sha256 == null ? null
+                : blobs.computeIfPresent(sha256, (key, b) -> new Blob(b.size(), b.refs(), now));
+        if (blob == null) {
+            throw new AttachmentNotFoundException(sha256);
+        }
+        return new AttachmentInfo(sha256, blob.size());
+    }
+
+    /**
+     * Takes references to a stored attachment, which keep it from being
+     * evicted until they are released.
+     *
+     * @param sha256 the digest
+     * @param count  the number of references, one per email
+     * @return the size of the attachment
+     * @throws AttachmentNotFoundException if the attachment is not stored
+     */
+    public long acquire(String sha256, int count) {
+        long now = System.currentTimeMillis();
+        Blob blob = sha256 == null ? null
+                : blobs.computeIfPresent(sha256, (key, b) -> new Blob(b.size(), b.refs() + count, now));
+        if (blob == null) {
+            throw new AttachmentNotFoundException(sha256);
+        }
+        return blob.size();
+    }
+
+    /**
+     * Releases references taken with {@link #acquire(String, int)}. The TTL of
+     * the attachment starts over.
+     *
+     * @param sha256 the digest
+     * @param count  the number of references
+     */
+    public void release(String sha256, int count) {
+        long now = System.currentTimeMillis();
+        blobs.computeIfPresent(sha256, (key, b) -> new Blob(b.size(), Math.max(0, b.refs() - count), now));
+    }
+
+    /**
+     * Returns a data source over the MIME base64 encoding of a stored
+     * attachment, for a body part whose content is already encoded. The
+     * encoding is written and mapped on first use and shared afterwards.
+     *
+     * @param sha256      the digest of a referenced attachment
+     * @param contentType the content type reported by the data source
+     * @param name        the name reported by the data source
+     * @return the data source
+     * @throws AttachmentNotFoundException if the attachment is not stored
+     * @throws UncheckedIOException        if the encoding cannot be written or
+     *                                     mapped
+     */
+    public DataSource encodedDataSource(String sha256, String contentType, String name) {
+        return new BufferDataSource(encoded(sha256), contentType, name);
+    }
+
+    private ByteBuffer encoded(String sha256) {
+        encodedLock.lock();
+        try {
+            MappedByteBuffer cached = encoded.get(sha256);
+            if (cached != null) {
+                encodedHits.increment();
+                return cached.duplicate();
+            }
+        } finally {
+            encodedLock.unlock();
+        }
+        encodedMisses.increment();
+        MappedByteBuffer mapped;
+        try {
+            Path file = encodedFile(sha256);
+            if (!Files.exists(file)) {
+                encode(sha256, file);
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        } catch (NoSuchFileException e) {
+            throw new AttachmentNotFoundException(sha256);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot encode attachment " + sha256, e);
+        }
+        encodedLock.lock();
+        try {
+            if (encoded.putIfAbsent(sha256, mapped) == null) {
+                encodedBytes += mapped.capacity();
+                trimEncoded();
+            }
+        } finally {
+            encodedLock.unlock();
+        }
+        return mapped.duplicate();
+    }
+
+    /**
+     * Drops least recently used encodings from the cache until it fits; keeps
+     * at least one. A dropped buffer is not unmapped here: messages being
+     * written may still read duplicates of it, so the mapping is released when
+     * the buffer is garbage collected.
+     */
+    private void trimEncoded() {
+        Iterator<MappedByteBuffer> eldest = encoded.values().iterator();
+        while (encodedBytes > encodedCacheBytes && encoded.size() > 1) {
+            encodedBytes -= eldest.next().capacity();
+            eldest.remove();
+        }
+    }
+
+    private void encode(String sha256, Path target) throws IOException {
+        Path temp = Files.createTempFile(directory, "encode-", TEMP_SUFFIX);
+        try {
+            try (InputStream in = Files.newInputStream(blobFile(sha256));
+                    OutputStream out = Base64.getMimeEncoder()
+                            .wrap(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                in.transferTo(out);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * Deletes the attachments that have no references and whose TTL has
+     * elapsed. Runs every {@code mailer.attachment.store.eviction-interval}.
+     *
+     * @return the number of attachments deleted
+     */
+    public int evictExpired() {
+        long now = System.currentTimeMillis();
+        int evicted = 0;
+        for (String sha256 : blobs.keySet()) {
+            boolean[] removed = new boolean[1];
+            blobs.computeIfPresent(sha256, (key, blob) -> {
+                if (blob.refs() > 0 || now - blob.lastUsed() < ttlMillis) {
+                    return blob;
+                }
+                removed[0] = true;
+                evict(key);
+                return null;
+            });
+            if (removed[0]) {
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            log.info("Evicted {} expired attachment(s) from {}", evicted, directory.toAbsolutePath());
+        }
+        return evicted;
+    }
+
+    private void evict(String sha256) {
+        encodedLock.lock();
+        try {
+            MappedByteBuffer mapped = encoded.remove(sha256);
+            if (mapped != null) {
+                encodedBytes -= mapped.capacity();
+            }
+        } finally {
+            encodedLock.unlock();
+        }
+        deleteQuietly(encodedFile(sha256));
+        deleteQuietly(blobFile(sha256));
+    }
+
+    /**
+     * Returns the store directory.
+     *
+     * @return the directory holding the stored attachments
+     */
+    public Path directory() {
+        return directory;
+    }
+
+    @Override
+    public void destroy() {
+        evictor.shutdownNow();
+    }
+
+    private Path blobFile(String sha256) {
+        return directory.resolve(sha256);
+    }
+
+    private Path encodedFile(String sha256) {
+        return directory.resolve(sha256 + ENCODED_SUFFIX);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Cannot delete stored file {}: {}", file, e.getMessage());
+        }
+    }
+
+}
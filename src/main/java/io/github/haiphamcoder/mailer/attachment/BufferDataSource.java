@@ -0,0 +1,73 @@
+package io.github.haiphamcoder.mailer.attachment;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import jakarta.activation.DataSource;
+
+/**
+ * Read-only {@link DataSource} over a byte buffer, typically a memory-mapped
+ * file.
+ * <p>
+ * Each {@link #getInputStream()} reads an independent view of the buffer, so
+ * the same buffer can be written into several messages at once.
+ */
+final class BufferDataSource implements DataSource {
+
+    private final ByteBuffer buffer;
+    private final String contentType;
+    private final String name;
+
+    BufferDataSource(ByteBuffer buffer, String contentType, String name) {
+        this.buffer = buffer;
+        this.contentType = contentType;
+        this.name = name;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        ByteBuffer view = buffer.duplicate();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return view.hasRemaining() ? view.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (len == 0) {
+                    return 0;
+                }
+                if (!view.hasRemaining()) {
+                    return -1;
+                }
+                int n = Math.min(len, view.remaining());
+                view.get(b, off, n);
+                return n;
+            }
+
+            @Override
+            public int available() {
+                return view.remaining();
+            }
+        };
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        throw new IOException("Stored attachments are read-only");
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+}
@@ -0,0 +1,53 @@
+package io.github.haiphamcoder.mailer.attachment;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Size and SHA-256 of a file written by {@link #write}.
+ *
+ * @param size   the number of bytes written
+ * @param sha256 the hex SHA-256 digest of the bytes
+ */
+record DigestedFile(long size, String sha256) {
+
+    /**
+     * Streams the input into a file through a fixed buffer, digesting it on
+     * the way. The file is deleted if the copy fails.
+     *
+     * @param in      the content
+     * @param target  the file to write
+     * @param options how the file is opened
+     * @return the size and digest of the content
+     * @throws IOException if the content cannot be read or written
+     */
+    static DigestedFile write(InputStream in, Path target, OpenOption... options) throws IOException {
+        MessageDigest digest = newDigest();
+        long size;
+        try (InputStream source = in;
+                OutputStream out = new DigestOutputStream(Files.newOutputStream(target, options), digest)) {
+            size = source.transferTo(out);
+        } catch (IOException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
+        return new DigestedFile(size, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+}
@@ -0,0 +1,50 @@
+package io.github.haiphamcoder.mailer.attachment;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import jakarta.activation.DataSource;
+
+/**
+ * Read-only {@link DataSource} over a spooled attachment file.
+ * <p>
+ * Every {@link #getInputStream()} opens the file again, so the content is
+ * streamed from disk each time the message is written and a message can be
+ * written more than once, e.g. for a retry.
+ */
+final class SpooledDataSource implements DataSource {
+
+    private final Path file;
+    private final String contentType;
+    private final String name;
+
+    SpooledDataSource(Path file, String contentType, String name) {
+        this.file = file;
+        this.contentType = contentType;
+        this.name = name;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Files.newInputStream(file);
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        throw new IOException("Spooled attachments are read-only");
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+}
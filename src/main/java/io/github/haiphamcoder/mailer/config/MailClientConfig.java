@@ -1,19 +1,41 @@
 package io.github.haiphamcoder.mailer.config;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.JavaMailSenderImpl;
 
+import io.github.haiphamcoder.mailer.account.SenderAccount;
+import io.github.haiphamcoder.mailer.account.SenderAccountRouter;
+import io.github.haiphamcoder.mailer.exception.MailSendExceptionMapper;
+import io.github.haiphamcoder.mailer.quota.QuotaManager;
+import io.github.haiphamcoder.mailer.smtp.PooledJavaMailSender;
+import io.github.haiphamcoder.mailer.smtp.SmtpMetrics;
+import io.github.haiphamcoder.mailer.util.ThreadFactories;
+import jakarta.mail.NoSuchProviderException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
 import lombok.RequiredArgsConstructor;
 
 /**
- * Mail client configuration wiring a {@link JavaMailSender} backed by
- * {@link MailProperties}. This maps hierarchical properties (host, port,
- * credentials, STARTTLS and SSL options) into the underlying JavaMail session.
+ * Mail client configuration wiring one {@link JavaMailSender} per sender
+ * account backed by {@link MailProperties}. This maps hierarchical properties
+ * (host, port, credentials, STARTTLS and SSL options) into the underlying
+ * JavaMail session.
+ * <p>
+ * When {@code gmail.mail.pool.enabled} is true (the default) each sender keeps
+ * its own pool of authenticated connections open between messages instead of
+ * connecting per send. In virtual-thread mode
+ * ({@code spring.threads.virtual.enabled}) pooled senders isolate JavaMail
+ * transport I/O on platform threads, see {@link PooledJavaMailSender}.
+ * Every sender times its SMTP phases into {@link SmtpMetrics}, tagged with
+ * the pool name.
  */
 @Configuration
 @EnableConfigurationProperties(MailProperties.class)
@@ -21,29 +43,66 @@ import lombok.RequiredArgsConstructor;
 public class MailClientConfig {
 
     private final MailProperties mailProperties;
+    private final Environment environment;
+    private final SmtpMetrics smtpMetrics;
 
     /**
-     * Builds a {@link JavaMailSender} initialized from {@link MailProperties}.
+     * Builds the {@link SenderAccountRouter} over one sender per entry of
+     * {@link MailProperties#effectiveAccounts()}.
+     *
+     * @param quotaManager    per-account quota tracking
+     * @param exceptionMapper classifies failures for failover
+     * @return the router
+     */
+    @Bean
+    SenderAccountRouter senderAccountRouter(QuotaManager quotaManager, MailSendExceptionMapper exceptionMapper) {
+        List<MailProperties.Account> configured = mailProperties.effectiveAccounts();
+        List<SenderAccount> accounts = new ArrayList<>(configured.size());
+        for (int i = 0; i < configured.size(); i++) {
+            MailProperties.Account account = configured.get(i);
+            String poolName = configured.size() == 1 ? "smtp-pool" : "smtp-pool-" + i;
+            accounts.add(new SenderAccount(account.getUsername(), account.getWeight(),
+                    mailSender(poolName, account)));
+        }
+        return new SenderAccountRouter(accounts, mailProperties.getRouting(), quotaManager, exceptionMapper);
+    }
+
+    /**
+     * Builds a {@link JavaMailSender} for one account, initialized from
+     * {@link MailProperties}.
      *
      * Mapped properties:
      * - gmail.mail.host -> JavaMailSenderImpl#setHost
      * - gmail.mail.port -> JavaMailSenderImpl#setPort
-     * - gmail.mail.username -> JavaMailSenderImpl#setUsername
-     * - gmail.mail.password -> JavaMailSenderImpl#setPassword
+     * - account username -> JavaMailSenderImpl#setUsername
+     * - account password -> JavaMailSenderImpl#setPassword
      * - gmail.mail.properties.mail.smtp.auth -> mail.smtp.auth
      * - gmail.mail.properties.mail.smtp.starttls.enable ->
      * mail.smtp.starttls.enable
      * - gmail.mail.properties.mail.smtp.starttls.required ->
      * mail.smtp.starttls.required
      * - gmail.mail.properties.mail.smtp.ssl.trust -> mail.smtp.ssl.trust
+     * - gmail.mail.pool.* -> {@link PooledJavaMailSender} connection pool
      */
-    @Bean
-    JavaMailSender mailSender() {
-        JavaMailSenderImpl sender = new JavaMailSenderImpl();
+    private JavaMailSender mailSender(String poolName, MailProperties.Account account) {
+        JavaMailSenderImpl sender;
+        if (mailProperties.getPool().isEnabled()) {
+            PooledJavaMailSender pooled = new PooledJavaMailSender(poolName, mailProperties.getPool(),
+                    ThreadFactories.virtualThreadsEnabled(environment));
+            pooled.setMetrics(smtpMetrics);
+            sender = pooled;
+        } else {
+            sender = new JavaMailSenderImpl() {
+                @Override
+                protected Transport getTransport(Session session) throws NoSuchProviderException {
+                    return smtpMetrics.transport(session, getProtocol(), poolName);
+                }
+            };
+        }
         sender.setHost(mailProperties.getHost());
         sender.setPort(mailProperties.getPort());
-        sender.setUsername(mailProperties.getUsername());
-        sender.setPassword(mailProperties.getPassword());
+        sender.setUsername(account.getUsername());
+        sender.setPassword(account.getPassword());
         Properties props = new Properties();
 
         if (mailProperties.getProperties() != null
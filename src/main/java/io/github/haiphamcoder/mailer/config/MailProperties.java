@@ -1,6 +1,12 @@
 package io.github.haiphamcoder.mailer.config;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.haiphamcoder.mailer.account.RoutingStrategy;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
@@ -26,7 +32,13 @@ import org.springframework.validation.annotation.Validated;
  * <li>{@code gmail.mail.properties.mail.smtp.starttls.enable}</li>
  * <li>{@code gmail.mail.properties.mail.smtp.starttls.required}</li>
  * <li>{@code gmail.mail.properties.mail.smtp.ssl.trust}</li>
+ * <li>{@code gmail.mail.pool.*}</li>
+ * <li>{@code gmail.mail.accounts[n].*}</li>
+ * <li>{@code gmail.mail.routing.*}</li>
  * </ul>
+ * Either {@code username}/{@code password} or at least one entry in
+ * {@code accounts} must be set; accounts share the host, port, JavaMail and
+ * pool settings.
  * Values are validated at startup; the application will fail fast if required
  * fields are missing or invalid.
  */
@@ -46,14 +58,28 @@ public class MailProperties {
     @Max(65535)
     private Integer port;
 
-    /** Username for SMTP authentication. Maps to {@code gmail.mail.username}. */
-    @NotBlank
+    /**
+     * Username for SMTP authentication when a single account is used. Maps to
+     * {@code gmail.mail.username}.
+     */
     private String username;
 
     /** Password or app-specific password. Maps to {@code gmail.mail.password}. */
-    @NotBlank
     private String password;
 
+    /**
+     * Sender accounts to shard sends across. When empty, the single
+     * {@code username}/{@code password} account is used. Maps to
+     * {@code gmail.mail.accounts[n].*}.
+     */
+    @Valid
+    private List<Account> accounts = new ArrayList<>();
+
+    /** Account selection and failover settings under {@code gmail.mail.routing.*}. */
+    @Valid
+    @NestedConfigurationProperty
+    private final Routing routing = new Routing();
+
     @Valid
     @NestedConfigurationProperty
     private final Properties properties = new Properties();
@@ -66,6 +92,34 @@ public class MailProperties {
      */
     private String defaultReplyTo;
 
+    /**
+     * Domain of the generated {@code Message-ID} headers. Defaults to the
+     * domain of {@code defaultFrom}. Maps to
+     * {@code gmail.mail.message-id-domain}.
+     */
+    private String messageIdDomain;
+
+    /**
+     * Most envelope recipients (To, Cc and Bcc) per SMTP transaction. Emails
+     * with more recipients are split into several transactions. Maps to
+     * {@code gmail.mail.max-recipients-per-transaction}.
+     */
+    @Min(1)
+    private int maxRecipientsPerTransaction = 100;
+
+    /**
+     * Maximum number of transactions of split emails sent at the same time,
+     * each over its own connection. Maps to
+     * {@code gmail.mail.transaction-parallelism}.
+     */
+    @Min(1)
+    private int transactionParallelism = 4;
+
+    /** Connection pool settings under {@code gmail.mail.pool.*}. */
+    @Valid
+    @NestedConfigurationProperty
+    private final Pool pool = new Pool();
+
     @Getter
     @Setter
     @Validated
@@ -136,4 +190,148 @@ public class MailProperties {
         }
 
     }
+
+    /**
+     * Returns the accounts to send from: {@code accounts} if configured,
+     * otherwise the single {@code username}/{@code password} account.
+     *
+     * @return the sender accounts, never empty once validated
+     */
+    public List<Account> effectiveAccounts() {
+        if (!accounts.isEmpty()) {
+            return accounts;
+        }
+        Account single = new Account();
+        single.setUsername(username);
+        single.setPassword(password);
+        return List.of(single);
+    }
+
+    @AssertTrue(message = "Either gmail.mail.username/password or gmail.mail.accounts must be configured")
+    public boolean isCredentialsConfigured() {
+        return !accounts.isEmpty()
+                || (username != null && !username.isBlank() && password != null && !password.isBlank());
+    }
+
+    @Getter
+    @Setter
+    @Validated
+    /** One sender account under {@code gmail.mail.accounts[n].*}. */
+    public static class Account {
+
+        /** Username for SMTP authentication. */
+        @NotBlank
+        private String username;
+
+        /** Password or app-specific password. */
+        @NotBlank
+        private String password;
+
+        /**
+         * Relative share of traffic for least-load routing and of the hash ring
+         * for from-hash routing.
+         */
+        @Min(1)
+        private int weight = 1;
+    }
+
+    @Getter
+    @Setter
+    @Validated
+    /**
+     * Account selection under {@code gmail.mail.routing.*}.
+     * <p>
+     * An account that is throttled by the server or whose credentials are
+     * rejected is taken out of rotation for the corresponding cooldown and its
+     * traffic fails over to the remaining accounts.
+     */
+    public static class Routing {
+
+        /** How an account is chosen for each message. Maps to {@code gmail.mail.routing.strategy}. */
+        @NotNull
+        private RoutingStrategy strategy = RoutingStrategy.LEAST_LOAD;
+
+        /**
+         * How long a throttled account is skipped. Maps to
+         * {@code gmail.mail.routing.throttle-cooldown}.
+         */
+        @NotNull
+        private Duration throttleCooldown = Duration.ofMinutes(15);
+
+        /**
+         * How long an account whose credentials were rejected is skipped. Maps to
+         * {@code gmail.mail.routing.auth-failure-cooldown}.
+         */
+        @NotNull
+        private Duration authFailureCooldown = Duration.ofMinutes(30);
+    }
+
+    @Getter
+    @Setter
+    @Validated
+    /**
+     * SMTP connection pool settings under {@code gmail.mail.pool.*}.
+     * <p>
+     * Pooled connections stay connected and authenticated between messages so
+     * the TCP handshake, STARTTLS negotiation and AUTH exchange are only paid
+     * when a connection is opened.
+     */
+    public static class Pool {
+
+        /** Enable connection pooling. Maps to {@code gmail.mail.pool.enabled}. */
+        private boolean enabled = true;
+
+        /** Maximum number of open connections. Maps to {@code gmail.mail.pool.max-size}. */
+        @Min(1)
+        private int maxSize = 4;
+
+        /**
+         * Check a pooled connection with an SMTP NOOP before handing it out.
+         * Maps to {@code gmail.mail.pool.validate-on-borrow}.
+         */
+        private boolean validateOnBorrow = true;
+
+        /**
+         * Idle connections older than this are closed. Should stay below the
+         * server's own idle timeout. Maps to {@code gmail.mail.pool.idle-timeout}.
+         */
+        @NotNull
+        private Duration idleTimeout = Duration.ofSeconds(60);
+
+        /** How often idle connections are evicted. Maps to {@code gmail.mail.pool.eviction-interval}. */
+        @NotNull
+        private Duration evictionInterval = Duration.ofSeconds(30);
+
+        /**
+         * Close and reopen a connection after this many messages. Maps to
+         * {@code gmail.mail.pool.max-messages-per-connection}.
+         */
+        @Min(1)
+        private int maxMessagesPerConnection = 100;
+
+        /**
+         * Maximum time to wait for a free connection when the pool is exhausted.
+         * Maps to {@code gmail.mail.pool.borrow-timeout}.
+         */
+        @NotNull
+        private Duration borrowTimeout = Duration.ofSeconds(30);
+
+        /**
+         * Connections that bulk emails leave free for transactional ones.
+         * Maps to {@code gmail.mail.pool.transactional-reserved}.
+         */
+        @Min(0)
+        private int transactionalReserved = 1;
+
+        /**
+         * Let bulk emails use reserved connections while no transactional
+         * email is waiting for one. Maps to {@code gmail.mail.pool.bulk-borrowing}.
+         */
+        private boolean bulkBorrowing = true;
+
+        @AssertTrue(message = "gmail.mail.pool.transactional-reserved must be below max-size without bulk-borrowing")
+        public boolean isBulkCapacityAvailable() {
+            return bulkBorrowing || transactionalReserved < maxSize;
+        }
+    }
 }
@@ -0,0 +1,50 @@
+package io.github.haiphamcoder.mailer.config;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import io.github.haiphamcoder.mailer.dto.Priority;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration properties for the transactional and bulk delivery lanes.
+ * <p>
+ * Example configuration:
+ * <pre>
+ * mailer.priority.slo.transactional=10s
+ * mailer.priority.slo.bulk=30m
+ * </pre>
+ */
+@Getter
+@Setter
+@Validated
+@ConfigurationProperties(prefix = "mailer.priority")
+public class PriorityProperties {
+
+    /**
+     * Delivery latency objective per priority, from acceptance to delivery.
+     * Published as a bucket of the {@code mailer.delivery} histogram, and
+     * deliveries that take longer are counted in
+     * {@code mailer.delivery.slo.missed}.
+     */
+    @NotNull
+    private Map<Priority, Duration> slo = new EnumMap<>(Map.of(
+            Priority.TRANSACTIONAL, Duration.ofSeconds(10),
+            Priority.BULK, Duration.ofMinutes(30)));
+
+    /**
+     * Returns the delivery latency objective of a priority.
+     *
+     * @param priority the priority
+     * @return the configured objective, or null if none is set
+     */
+    public Duration slo(Priority priority) {
+        return slo.get(priority);
+    }
+}
@@ -0,0 +1,88 @@
+package io.github.haiphamcoder.mailer.controller;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestPart;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+
+import io.github.haiphamcoder.mailer.attachment.AttachmentStore;
+import io.github.haiphamcoder.mailer.dto.ApiCommonResponse;
+import io.github.haiphamcoder.mailer.dto.AttachmentInfo;
+import io.github.haiphamcoder.mailer.exception.AttachmentNotFoundException;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * REST controller for stored attachments.
+ * <p>
+ * Attachments are uploaded once and referenced by SHA-256 from any number of
+ * {@code EmailRequest}s, so a file sent to many recipients or in many emails
+ * is transferred, stored and encoded once. Like the email endpoints, these
+ * require HMAC signature authentication, which is checked by
+ * {@code SecurityFilter}.
+ */
+@RestController
+@RequestMapping("/api/v1/attachments")
+@RequiredArgsConstructor
+@Tag(name = "Attachment", description = "Content-addressed attachment storage")
+@SecurityRequirement(name = "HMAC-SHA512")
+public class AttachmentController {
+
+    private final AttachmentStore attachmentStore;
+
+    /**
+     * Stores a file. Uploading content that is already stored returns the
+     * same digest without storing it again.
+     *
+     * @param file the file
+     * @return the digest to reference the attachment by, and its size
+     */
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(
+        summary = "Upload attachment",
+        description = "Stores the 'file' part by its SHA-256, which emails use to reference it. Attachments no " +
+                     "pending email refers to expire after mailer.attachment.store.ttl. Requires HMAC signature " +
+                     "authentication."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Attachment stored"),
+        @ApiResponse(responseCode = "401", description = "Authentication failed"),
+        @ApiResponse(responseCode = "413", description = "File exceeds the upload size limit")
+    })
+    public ResponseEntity<ApiCommonResponse<AttachmentInfo>> upload(
+            @Parameter(description = "File to store") @RequestPart("file") MultipartFile file) {
+        return ResponseEntity.ok(ApiCommonResponse.success(attachmentStore.store(file)));
+    }
+
+    /**
+     * Describes a stored attachment and starts its expiry over.
+     *
+     * @param sha256 the digest
+     * @return the digest and size
+     */
+    @GetMapping("/{sha256}")
+    @Operation(summary = "Describe attachment", description = "Returns the size of a stored attachment.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Attachment found"),
+        @ApiResponse(responseCode = "401", description = "Authentication failed"),
+        @ApiResponse(responseCode = "404", description = "Attachment not stored")
+    })
+    public ResponseEntity<ApiCommonResponse<AttachmentInfo>> get(
+            @Parameter(description = "Hex SHA-256 digest") @PathVariable String sha256) {
+        if (!sha256.matches(AttachmentStore.SHA256_PATTERN)) {
+            throw new AttachmentNotFoundException(sha256);
+        }
+        return ResponseEntity.ok(ApiCommonResponse.success(attachmentStore.info(sha256)));
+    }
+
+}
@@ -1,11 +1,25 @@
 package io.github.haiphamcoder.mailer.controller;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import io.github.haiphamcoder.mailer.attachment.AttachmentSpool;
 import io.github.haiphamcoder.mailer.dto.ApiCommonResponse;
+import io.github.haiphamcoder.mailer.dto.Attachment;
+import io.github.haiphamcoder.mailer.dto.EmailBatchItemResult;
 import io.github.haiphamcoder.mailer.dto.EmailRequest;
-import io.github.haiphamcoder.mailer.service.EmailService;
+import io.github.haiphamcoder.mailer.exception.ApiException;
+import io.github.haiphamcoder.mailer.idempotency.IdempotencyCache;
+import io.github.haiphamcoder.mailer.idempotency.IdempotencyProperties;
+import io.github.haiphamcoder.mailer.security.AccessKey;
+import io.github.haiphamcoder.mailer.service.BatchEmailService;
+import io.github.haiphamcoder.mailer.service.EmailSubmissionService;
+import io.github.haiphamcoder.mailer.service.SubmissionResult;
+import io.github.haiphamcoder.mailer.template.TemplateRegistry;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -15,10 +29,15 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RequestPart;
+import org.springframework.web.multipart.MultipartFile;
 
 /**
  * REST controller for email operations.
@@ -38,7 +57,16 @@ import org.springframework.web.bind.annotation.RequestHeader;
 @SecurityRequirement(name = "HMAC-SHA512")
 public class EmailController {
 
-    private final EmailService emailService;
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
+    private final EmailSubmissionService submissionService;
+    private final BatchEmailService batchEmailService;
+    private final IdempotencyCache idempotencyCache;
+    private final IdempotencyProperties idempotencyProperties;
+    private final TemplateRegistry templateRegistry;
+    private final AttachmentSpool attachmentSpool;
 
     /**
      * Sends an email with the provided request data.
@@ -46,6 +74,28 @@ public class EmailController {
      * This endpoint requires HMAC signature authentication via security headers.
      * The request body is validated according to EmailRequest constraints.
      * <p>
+     * With {@code async=true} the request is placed in the outbox and 202 ACCEPTED
+     * is returned immediately with the assigned message ID; delivery happens in
+     * the background. Otherwise the call makes one delivery attempt; if it fails
+     * transiently a retry is scheduled and 202 ACCEPTED is returned as well.
+     * Emails with many recipients are sent in several SMTP transactions; if
+     * only some recipients failed transiently, a retry is scheduled for them
+     * alone and 202 ACCEPTED is returned, otherwise 502 BAD_GATEWAY is returned
+     * with the {@code PARTIAL_DELIVERY} code and the failed recipients.
+     * <p>
+     * Instead of a {@code body}, the request may name a registered template
+     * with {@code templateId} and supply its {@code variables}; the template
+     * and variables are checked before the email is accepted. Attachments
+     * uploaded to {@code POST /api/v1/attachments} are referenced by their
+     * {@code sha256}; files can also be sent with the multipart variant of
+     * this endpoint.
+     * <p>
+     * With an {@code Idempotency-Key} header, repeats of the same request with
+     * the same key (per access key) are not sent again: they get the original
+     * message ID and status, marked with {@code Idempotent-Replayed: true}.
+     * Concurrent repeats wait for the first request instead of sending in
+     * parallel.
+     * <p>
      * Security requirements:
      * - Valid HMAC signature in X-Access-Sign header
      * - Timestamp within tolerance window (X-Timestamp header)
@@ -53,20 +103,30 @@ public class EmailController {
      * @param accessKey the access key (logged for audit purposes)
      * @param timestamp the request timestamp
      * @param signature the HMAC signature
+     * @param async whether to queue the email and return without waiting for delivery
+     * @param idempotencyKey optional client-chosen key that makes retries safe
      * @param request the email request with recipient, subject, body, etc.
-     * @return response containing the message ID if successful
+     * @return response containing the message ID if successful (200) or accepted (202)
      */
     @PostMapping
     @Operation(
         summary = "Send email",
         description = "Sends an email with the provided recipient, subject, and body. " +
+                     "With async=true the email is queued and 202 is returned immediately. " +
                      "Requires HMAC signature authentication."
     )
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Email sent successfully"),
+        @ApiResponse(responseCode = "202", description = "Email queued for asynchronous delivery or retry"),
         @ApiResponse(responseCode = "400", description = "Invalid request or validation error"),
         @ApiResponse(responseCode = "401", description = "Authentication failed"),
-        @ApiResponse(responseCode = "500", description = "Internal server error")
+        @ApiResponse(responseCode = "404", description = "Template or attachment not found"),
+        @ApiResponse(responseCode = "422", description = "Idempotency-Key reused with a different request"),
+        @ApiResponse(responseCode = "429", description = "Too many sends in flight, retry after Retry-After seconds"),
+        @ApiResponse(responseCode = "500", description = "Internal server error"),
+        @ApiResponse(responseCode = "502", description = "SMTP server permanently rejected the email or some of "
+                + "its recipients; failed recipients are listed in data"),
+        @ApiResponse(responseCode = "503", description = "Outbox is full, retry later")
     })
     public ResponseEntity<ApiCommonResponse<String>> sendEmail(
             @Parameter(description = "Access key for API authentication", required = true)
@@ -77,11 +137,251 @@ public class EmailController {
             
             @Parameter(description = "HMAC-SHA512 signature", required = true)
             @RequestHeader("X-Access-Sign") String signature,
+
+            @Parameter(hidden = true)
+            @RequestAttribute(name = AccessKey.ATTRIBUTE, required = false) AccessKey key,
+
+            @Parameter(description = "Queue the email and return 202 without waiting for delivery")
+            @RequestParam(name = "async", defaultValue = "false") boolean async,
+
+            @Parameter(description = "Client-chosen key; repeats with the same key return the original result")
+            @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
             
             @Valid @RequestBody EmailRequest request) {
         
-        String messageId = emailService.sendEmail(request);
-        return ResponseEntity.ok(ApiCommonResponse.success(messageId));
+        templateRegistry.validate(request);
+        EmailRequest email = attachmentSpool.acquire(request, 1);
+        return respond(submitOwned(accessKey, tenant(key), async, idempotencyKey, email, request));
+    }
+
+    /**
+     * Sends an email with attachments, uploaded as {@code multipart/form-data}.
+     * <p>
+     * The {@code request} part holds the {@link EmailRequest} as JSON and each
+     * {@code attachments} part one file; the {@code request} part may also
+     * reference uploaded attachments by {@code sha256}, which are attached
+     * before the files. Files are streamed to the
+     * {@link AttachmentSpool} on disk and base64-encoded while the message is
+     * written to the SMTP connection, so they are never held in memory. The
+     * spooled files are deleted once the email is sent or given up on. Upload
+     * sizes are limited by {@code spring.servlet.multipart.*} and the number of
+     * files by {@code mailer.attachment.max-count}.
+     * <p>
+     * Otherwise behaves like {@link #sendEmail}, including {@code async} and
+     * {@code Idempotency-Key}; repeats are recognized by the attachments' names,
+     * types and content digests.
+     *
+     * @param accessKey the access key (logged for audit purposes)
+     * @param timestamp the request timestamp
+     * @param signature the HMAC signature
+     * @param async whether to queue the email and return without waiting for delivery
+     * @param idempotencyKey optional client-chosen key that makes retries safe
+     * @param request the email request with recipient, subject, body, etc.
+     * @param attachments the files to attach
+     * @return response containing the message ID if successful (200) or accepted (202)
+     */
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(
+        summary = "Send email with attachments",
+        description = "Sends an email given as the JSON 'request' part with the files of the 'attachments' parts " +
+                     "attached. Files are spooled to disk and streamed to SMTP. With async=true the email is " +
+                     "queued and 202 is returned immediately. Requires HMAC signature authentication."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Email sent successfully"),
+        @ApiResponse(responseCode = "202", description = "Email queued for asynchronous delivery or retry"),
+        @ApiResponse(responseCode = "400", description = "Invalid request, validation error or too many attachments"),
+        @ApiResponse(responseCode = "401", description = "Authentication failed"),
+        @ApiResponse(responseCode = "404", description = "Template or attachment not found"),
+        @ApiResponse(responseCode = "413", description = "Attachments exceed the upload size limit"),
+        @ApiResponse(responseCode = "422", description = "Idempotency-Key reused with a different request"),
+        @ApiResponse(responseCode = "429", description = "Too many sends in flight, retry after Retry-After seconds"),
+        @ApiResponse(responseCode = "500", description = "Internal server error"),
+        @ApiResponse(responseCode = "502", description = "SMTP server permanently rejected the email or some of "
+                + "its recipients; failed recipients are listed in data"),
+        @ApiResponse(responseCode = "503", description = "Outbox is full, retry later")
+    })
+    public ResponseEntity<ApiCommonResponse<String>> sendEmailWithAttachments(
+            @Parameter(description = "Access key for API authentication", required = true)
+            @RequestHeader("X-Access-Key") String accessKey,
+
+            @Parameter(description = "Request timestamp in milliseconds", required = true)
+            @RequestHeader("X-Timestamp") String timestamp,
+
+            @Parameter(description = "HMAC-SHA512 signature", required = true)
+            @RequestHeader("X-Access-Sign") String signature,
+
+            @Parameter(hidden = true)
+            @RequestAttribute(name = AccessKey.ATTRIBUTE, required = false) AccessKey key,
+
+            @Parameter(description = "Queue the email and return 202 without waiting for delivery")
+            @RequestParam(name = "async", defaultValue = "false") boolean async,
+
+            @Parameter(description = "Client-chosen key; repeats with the same key return the original result")
+            @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+
+            @Valid @RequestPart("request") EmailRequest request,
+
+            @Parameter(description = "Files to attach")
+            @RequestPart(name = "attachments", required = false) List<MultipartFile> attachments) {
+
+        templateRegistry.validate(request);
+        EmailRequest referenced = attachmentSpool.acquire(request, 1);
+        List<Attachment> all = new ArrayList<>(referenced.hasAttachments() ? referenced.attachments() : List.of());
+        try {
+            all.addAll(attachmentSpool.spool(attachments, all.size()));
+        } catch (RuntimeException e) {
+            attachmentSpool.release(referenced);
+            throw e;
+        }
+        return respond(submitOwned(accessKey, tenant(key), async, idempotencyKey, request.withAttachments(all),
+                request.withAttachments(all.stream().map(Attachment::withoutSpoolId).toList())));
+    }
+
+    /**
+     * Submits an email holding attachments. The outbox takes them over if the
+     * email is queued; otherwise they are released here.
+     */
+    private IdempotencyCache.Outcome<SubmissionResult> submitOwned(String accessKey, String tenant, boolean async,
+            String idempotencyKey, EmailRequest email, Object fingerprint) {
+        IdempotencyCache.Outcome<SubmissionResult> outcome;
+        try {
+            outcome = submit(accessKey, tenant, async, idempotencyKey, email, fingerprint);
+        } catch (RuntimeException e) {
+            attachmentSpool.release(email);
+            throw e;
+        }
+        if (outcome.replayed() || !outcome.value().queued()) {
+            // Sent, or replayed from a request that holds its own attachments
+            attachmentSpool.release(email);
+        }
+        return outcome;
+    }
+
+    private IdempotencyCache.Outcome<SubmissionResult> submit(String accessKey, String tenant, boolean async,
+            String idempotencyKey, EmailRequest request, Object fingerprint) {
+        Supplier<SubmissionResult> submit = () -> async ? submissionService.enqueue(tenant, request)
+                : submissionService.send(tenant, request);
+        if (idempotencyKey == null || !idempotencyProperties.isEnabled()) {
+            return new IdempotencyCache.Outcome<>(submit.get(), false);
+        }
+        validateIdempotencyKey(idempotencyKey);
+        return idempotencyCache.execute(accessKey + ':' + idempotencyKey, fingerprint, submit);
+    }
+
+    /** Returns the tenant the outbox schedules a request under: its authenticated access key. */
+    private static String tenant(AccessKey key) {
+        return key != null ? key.id() : null;
+    }
+
+    private static ResponseEntity<ApiCommonResponse<String>> respond(
+            IdempotencyCache.Outcome<SubmissionResult> outcome) {
+        SubmissionResult result = outcome.value();
+        ResponseEntity.BodyBuilder response = result.queued() ? ResponseEntity.accepted() : ResponseEntity.ok();
+        if (outcome.replayed()) {
+            response.header(REPLAYED_HEADER, "true");
+        }
+        return response.body(ApiCommonResponse.success(result.messageId()));
+    }
+
+    private static void validateIdempotencyKey(String key) {
+        if (key.isBlank() || key.length() > MAX_IDEMPOTENCY_KEY_LENGTH
+                || !key.chars().allMatch(c -> c > 0x20 && c < 0x7f)) {
+            throw new ApiException("INVALID_IDEMPOTENCY_KEY",
+                    "Idempotency-Key must be 1-" + MAX_IDEMPOTENCY_KEY_LENGTH + " visible ASCII characters");
+        }
+    }
+
+    /**
+     * Sends a batch of emails in one request.
+     * <p>
+     * The HMAC signature is verified once for the whole batch. Each email is
+     * validated on its own; valid emails are sent with bounded parallelism over
+     * shared SMTP connections. The response always contains one result per
+     * email, in request order, with either the message ID or an error code.
+     *
+     * @param accessKey the access key (logged for audit purposes)
+     * @param timestamp the request timestamp
+     * @param signature the HMAC signature
+     * @param requests the emails to send
+     * @return per-item results
+     */
+    @PostMapping("/batch")
+    @Operation(
+        summary = "Send email batch",
+        description = "Sends up to mailer.batch.max-size emails in one request and returns a result per email. " +
+                     "Requires HMAC signature authentication."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Batch processed; see per-item results"),
+        @ApiResponse(responseCode = "400", description = "Empty or oversized batch"),
+        @ApiResponse(responseCode = "401", description = "Authentication failed"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<ApiCommonResponse<List<EmailBatchItemResult>>> sendBatch(
+            @Parameter(description = "Access key for API authentication", required = true)
+            @RequestHeader("X-Access-Key") String accessKey,
+
+            @Parameter(description = "Request timestamp in milliseconds", required = true)
+            @RequestHeader("X-Timestamp") String timestamp,
+
+            @Parameter(description = "HMAC-SHA512 signature", required = true)
+            @RequestHeader("X-Access-Sign") String signature,
+
+            @Parameter(hidden = true)
+            @RequestAttribute(name = AccessKey.ATTRIBUTE, required = false) AccessKey key,
+
+            @RequestBody List<EmailRequest> requests) {
+
+        return ResponseEntity.ok(ApiCommonResponse.success(batchEmailService.sendAll(tenant(key), requests)));
+    }
+
+    /**
+     * Sends a private copy of one email to each of its {@code to} recipients.
+     * <p>
+     * Each copy is addressed to its recipient only and gets its own message
+     * ID, so recipients do not see each other. The email is MIME-encoded once
+     * and shared by all copies, which are sent like batch items. cc and bcc
+     * are rejected, as are more {@code to} recipients than
+     * {@code mailer.batch.max-size}. The response contains one result per
+     * {@code to} recipient, in request order, with either the message ID or
+     * an error code.
+     *
+     * @param accessKey the access key (logged for audit purposes)
+     * @param timestamp the request timestamp
+     * @param signature the HMAC signature
+     * @param request the email to send to each recipient
+     * @return per-recipient results
+     */
+    @PostMapping("/fan-out")
+    @Operation(
+        summary = "Send email to each recipient privately",
+        description = "Sends a separate copy of the email to every address in 'to', each addressed to that " +
+                     "recipient only, and returns a result per recipient. The email is MIME-encoded once for " +
+                     "all copies. cc and bcc are not allowed. Requires HMAC signature authentication."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Fan-out processed; see per-recipient results"),
+        @ApiResponse(responseCode = "400", description = "Invalid request, cc/bcc given or too many recipients"),
+        @ApiResponse(responseCode = "401", description = "Authentication failed"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<ApiCommonResponse<List<EmailBatchItemResult>>> sendFanOut(
+            @Parameter(description = "Access key for API authentication", required = true)
+            @RequestHeader("X-Access-Key") String accessKey,
+
+            @Parameter(description = "Request timestamp in milliseconds", required = true)
+            @RequestHeader("X-Timestamp") String timestamp,
+
+            @Parameter(description = "HMAC-SHA512 signature", required = true)
+            @RequestHeader("X-Access-Sign") String signature,
+
+            @Parameter(hidden = true)
+            @RequestAttribute(name = AccessKey.ATTRIBUTE, required = false) AccessKey key,
+
+            @Valid @RequestBody EmailRequest request) {
+
+        return ResponseEntity.ok(ApiCommonResponse.success(batchEmailService.fanOut(tenant(key), request)));
     }
 
 }
@@ -81,13 +81,35 @@ public class PublicController {
             "version", "1.0.0",
             "status", "RUNNING",
             "timestamp", Instant.now(),
-            "features", Map.of(
-                "email_sending", true,
-                "hmac_authentication", true,
-                "public_apis", true
+            "features", Map.ofEntries(
+                Map.entry("email_sending", true),
+                Map.entry("async_sending", true),
+                Map.entry("fan_out", true),
+                Map.entry("templates", true),
+                Map.entry("attachments", true),
+                Map.entry("attachment_store", true),
+                Map.entry("envelope_splitting", true),
+                Map.entry("durable_outbox", true),
+                Map.entry("quota_pacing", true),
+                Map.entry("multi_account", true),
+                Map.entry("idempotency_key", true),
+                Map.entry("load_shedding", true),
+                Map.entry("rate_limiting", true),
+                Map.entry("smtp_metrics", true),
+                Map.entry("virtual_threads", true),
+                Map.entry("hmac_authentication", true),
+                Map.entry("replay_protection", true),
+                Map.entry("access_keys", true),
+                Map.entry("fair_queuing", true),
+                Map.entry("priority_lanes", true),
+                Map.entry("public_apis", true)
             ),
             "endpoints", Map.of(
                 "email_send", "/api/v1/emails",
+                "email_batch", "/api/v1/emails/batch",
+                "email_fan_out", "/api/v1/emails/fan-out",
+                "templates", "/api/v1/templates/{id}",
+                "attachments", "/api/v1/attachments",
                 "health_check", "/api/v1/public/health",
                 "service_status", "/api/v1/public/status"
             )
@@ -142,6 +164,18 @@ public class PublicController {
                     "auth_required", true,
                     "description", "Send an email with HMAC authentication"
                 ),
+                "send_email_batch", Map.of(
+                    "method", "POST",
+                    "path", "/api/v1/emails/batch",
+                    "auth_required", true,
+                    "description", "Send a batch of emails with per-item results"
+                ),
+                "send_email_fan_out", Map.of(
+                    "method", "POST",
+                    "path", "/api/v1/emails/fan-out",
+                    "auth_required", true,
+                    "description", "Send a private copy of an email to each recipient"
+                ),
                 "health_check", Map.of(
                     "method", "GET",
                     "path", "/api/v1/public/health",
@@ -0,0 +1,104 @@
+package io.github.haiphamcoder.mailer.controller;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.github.haiphamcoder.mailer.dto.ApiCommonResponse;
+import io.github.haiphamcoder.mailer.dto.TemplateInfo;
+import io.github.haiphamcoder.mailer.dto.TemplateRequest;
+import io.github.haiphamcoder.mailer.template.TemplateRegistry;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * REST controller for email templates.
+ * <p>
+ * Registered templates are referenced by id from {@code EmailRequest}s, so
+ * that callers send only the variables instead of the full body. Like the
+ * email endpoints, these require HMAC signature authentication, which is
+ * checked by {@code SecurityFilter}.
+ */
+@RestController
+@RequestMapping("/api/v1/templates")
+@RequiredArgsConstructor
+@Tag(name = "Template", description = "Email template registration")
+@SecurityRequirement(name = "HMAC-SHA512")
+public class TemplateController {
+
+    private final TemplateRegistry templateRegistry;
+
+    /**
+     * Registers a template under an id, replacing any template with that id.
+     * The template is compiled right away so that syntax errors are reported.
+     *
+     * @param id       the template id
+     * @param template the template source
+     * @return the template id, type and variables
+     */
+    @PutMapping("/{id}")
+    @Operation(
+        summary = "Register template",
+        description = "Registers or replaces a template. Placeholders are {{name}}, HTML-escaped in HTML " +
+                     "templates, and {{{name}}}, inserted as is. Requires HMAC signature authentication."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Template registered"),
+        @ApiResponse(responseCode = "400", description = "Invalid id or template, template too large or limit reached"),
+        @ApiResponse(responseCode = "401", description = "Authentication failed")
+    })
+    public ResponseEntity<ApiCommonResponse<TemplateInfo>> register(
+            @Parameter(description = "Template id") @PathVariable String id,
+            @Valid @RequestBody TemplateRequest template) {
+        return ResponseEntity.ok(ApiCommonResponse.success(templateRegistry.register(id, template)));
+    }
+
+    /**
+     * Describes a registered template.
+     *
+     * @param id the template id
+     * @return the template id, type and variables
+     */
+    @GetMapping("/{id}")
+    @Operation(summary = "Describe template", description = "Returns the variables a template requires.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Template found"),
+        @ApiResponse(responseCode = "401", description = "Authentication failed"),
+        @ApiResponse(responseCode = "404", description = "Template not registered")
+    })
+    public ResponseEntity<ApiCommonResponse<TemplateInfo>> get(
+            @Parameter(description = "Template id") @PathVariable String id) {
+        return ResponseEntity.ok(ApiCommonResponse.success(templateRegistry.info(id)));
+    }
+
+    /**
+     * Removes a template. Queued emails that refer to it fail when sent.
+     *
+     * @param id the template id
+     * @return an empty success response
+     */
+    @DeleteMapping("/{id}")
+    @Operation(summary = "Remove template", description = "Removes a template.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Template removed"),
+        @ApiResponse(responseCode = "401", description = "Authentication failed"),
+        @ApiResponse(responseCode = "404", description = "Template not registered")
+    })
+    public ResponseEntity<ApiCommonResponse<Void>> remove(
+            @Parameter(description = "Template id") @PathVariable String id) {
+        templateRegistry.remove(id);
+        return ResponseEntity.ok(ApiCommonResponse.success(null));
+    }
+
+}
@@ -24,4 +24,8 @@ public record ApiCommonResponse<T>(
         return new ApiCommonResponse<>(false, code, message, null, Instant.now());
     }
 
+    public static <T> ApiCommonResponse<T> error(String code, String message, T data) {
+        return new ApiCommonResponse<>(false, code, message, data, Instant.now());
+    }
+
 }
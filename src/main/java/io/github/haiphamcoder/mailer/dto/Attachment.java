@@ -0,0 +1,43 @@
+package io.github.haiphamcoder.mailer.dto;
+
+import io.github.haiphamcoder.mailer.attachment.AttachmentSpool;
+import io.github.haiphamcoder.mailer.attachment.AttachmentStore;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
+
+/**
+ * A file attached to an email.
+ * <p>
+ * Attachments are either uploaded once to the {@link AttachmentStore} and
+ * referenced by {@code sha256}, or uploaded with the multipart variant of the
+ * send endpoint and written to the {@link AttachmentSpool}; {@code spoolId}
+ * names the spooled file and is assigned by the service, never by clients.
+ * The {@code size} of referenced attachments is filled in by the service.
+ *
+ * - filename: file name shown to recipients
+ * - contentType: MIME type of the file
+ * - size: file size in bytes
+ * - sha256: hex SHA-256 digest of the file
+ * - spoolId: spooled file holding the content
+ */
+@Schema(name = "Attachment", description = "File attached to an email")
+public record Attachment(
+        @Schema(description = "File name", example = "invoice.pdf") @NotBlank @Size(max = 255) String filename,
+        @Schema(description = "MIME type", example = "application/pdf") @NotBlank String contentType,
+        @Schema(description = "Size in bytes", example = "48213") @PositiveOrZero long size,
+        @Schema(description = "Hex SHA-256 digest of the content; references an uploaded attachment") @Pattern(regexp = AttachmentStore.SHA256_PATTERN) String sha256,
+        @Schema(hidden = true) @Pattern(regexp = AttachmentSpool.ID_PATTERN) String spoolId) {
+
+    /**
+     * Returns this attachment without its spooled file, which identifies the
+     * content regardless of the upload it came from.
+     *
+     * @return the attachment without {@code spoolId}
+     */
+    public Attachment withoutSpoolId() {
+        return new Attachment(filename, contentType, size, sha256, null);
+    }
+}
@@ -0,0 +1,14 @@
+package io.github.haiphamcoder.mailer.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * A stored attachment, referenced from an {@link EmailRequest} by its
+ * {@code sha256}.
+ */
+@Schema(name = "AttachmentInfo", description = "Stored attachment")
+public record AttachmentInfo(
+        @Schema(description = "Hex SHA-256 digest of the content, used to reference the attachment")
+        String sha256,
+        @Schema(description = "Size in bytes", example = "48213") long size) {
+}
@@ -0,0 +1,37 @@
+package io.github.haiphamcoder.mailer.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Outcome of one email within a batch send.
+ * On success {@code messageId} is set; on failure {@code code} and
+ * {@code message} describe the error. Emails that failed transiently and were
+ * queued for a retry are reported as successful with the
+ * {@code RETRY_SCHEDULED} code; emails held back by the sending quota are
+ * queued for later delivery and reported with the {@code QUEUED} code.
+ */
+@Schema(name = "EmailBatchItemResult", description = "Per-item result of a batch send")
+public record EmailBatchItemResult(
+        @Schema(description = "Zero-based position of the email in the batch", example = "0") int index,
+        @Schema(description = "Whether the email was sent", example = "true") boolean success,
+        @Schema(description = "Message ID when sent") String messageId,
+        @Schema(description = "Error code when not sent", example = "SMTP_SEND_FAILED") String code,
+        @Schema(description = "Error message when not sent") String message) {
+
+    public static EmailBatchItemResult sent(int index, String messageId) {
+        return new EmailBatchItemResult(index, true, messageId, "OK", null);
+    }
+
+    public static EmailBatchItemResult retryScheduled(int index, String messageId) {
+        return new EmailBatchItemResult(index, true, messageId, "RETRY_SCHEDULED", null);
+    }
+
+    public static EmailBatchItemResult queued(int index, String messageId) {
+        return new EmailBatchItemResult(index, true, messageId, "QUEUED", null);
+    }
+
+    public static EmailBatchItemResult failed(int index, String code, String message) {
+        return new EmailBatchItemResult(index, false, null, code, message);
+    }
+
+}
@@ -0,0 +1,60 @@
+package io.github.haiphamcoder.mailer.dto;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+import jakarta.validation.Payload;
+
+/**
+ * Checks that an {@link EmailRequest} has exactly one source of content: an
+ * inline {@code body}, or a {@code templateId} with optional
+ * {@code variables}. Violations are reported on the {@code body} or
+ * {@code variables} field.
+ */
+@Documented
+@Constraint(validatedBy = EmailContent.Validator.class)
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface EmailContent {
+
+    String message() default "must not be blank";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+
+    /** Validator of {@link EmailContent}. */
+    class Validator implements ConstraintValidator<EmailContent, EmailRequest> {
+
+        @Override
+        public boolean isValid(EmailRequest request, ConstraintValidatorContext context) {
+            if (request == null) {
+                return true;
+            }
+            if (request.templateId() == null) {
+                if (request.body() == null || request.body().isBlank()) {
+                    return violation(context, "body", "must not be blank");
+                }
+                if (request.variables() != null && !request.variables().isEmpty()) {
+                    return violation(context, "variables", "require a templateId");
+                }
+            } else if (request.body() != null) {
+                return violation(context, "body", "must be absent when templateId is set");
+            }
+            return true;
+        }
+
+        private static boolean violation(ConstraintValidatorContext context, String field, String message) {
+            context.disableDefaultConstraintViolation();
+            context.buildConstraintViolationWithTemplate(message).addPropertyNode(field).addConstraintViolation();
+            return false;
+        }
+    }
+
+}
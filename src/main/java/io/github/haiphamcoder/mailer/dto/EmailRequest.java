@@ -1,35 +1,121 @@
 package io.github.haiphamcoder.mailer.dto;
 
 import java.util.List;
+import java.util.Map;
 
+import io.github.haiphamcoder.mailer.template.TemplateRegistry;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
 
 /**
  * Request payload for sending an email.
  *
  * - to: required list of recipient emails
  * - subject: required
- * - body: required
- * - html: whether the body is HTML (defaults to false if null)
+ * - body: required unless templateId is set, in which case it must be absent
+ * - html: whether the body is HTML (defaults to false if null); ignored for
+ * templates, which declare it themselves
  * - cc/bcc: optional recipient emails
  * - from/replyTo: optional; if provided must be valid emails
+ * - templateId/variables: optional registered template rendered as the body
+ * with the given variables
+ * - attachments: uploaded attachments referenced by {@code sha256}, or
+ * files uploaded with the multipart variant of the send endpoint
+ * - priority: optional {@link Priority} lane; defaults to transactional
  */
+@EmailContent
 public record EmailRequest(
         @NotEmpty List<@NotBlank @Email String> to,
         @NotBlank String subject,
-        @NotBlank String body,
+        String body,
         @NotNull Boolean html,
         List<@NotBlank @Email String> cc,
         List<@NotBlank @Email String> bcc,
         @Email String from,
-        @Email String replyTo) {
+        @Email String replyTo,
+        @Pattern(regexp = TemplateRegistry.ID_PATTERN) String templateId,
+        Map<String, String> variables,
+        List<@Valid Attachment> attachments,
+        Priority priority) {
     public EmailRequest {
         // Default html to false when null
         if (html == null) {
             html = Boolean.FALSE;
         }
     }
+
+    /**
+     * Creates a request with an inline body.
+     */
+    public EmailRequest(List<String> to, String subject, String body, Boolean html, List<String> cc,
+            List<String> bcc, String from, String replyTo) {
+        this(to, subject, body, html, cc, bcc, from, replyTo, null, null, null, null);
+    }
+
+    /**
+     * Creates a request without a priority.
+     */
+    public EmailRequest(List<String> to, String subject, String body, Boolean html, List<String> cc,
+            List<String> bcc, String from, String replyTo, String templateId, Map<String, String> variables,
+            List<Attachment> attachments) {
+        this(to, subject, body, html, cc, bcc, from, replyTo, templateId, variables, attachments, null);
+    }
+
+    /**
+     * Returns whether the request has attachments.
+     *
+     * @return true if {@code attachments} is not empty
+     */
+    public boolean hasAttachments() {
+        return attachments != null && !attachments.isEmpty();
+    }
+
+    /**
+     * Returns a copy of this request sent to other {@code to} recipients and
+     * without cc and bcc.
+     *
+     * @param recipients the {@code to} recipients of the copy
+     * @return the copy
+     */
+    public EmailRequest withRecipients(List<String> recipients) {
+        return new EmailRequest(recipients, subject, body, html, null, null, from, replyTo, templateId, variables,
+                attachments, priority);
+    }
+
+    /**
+     * Returns a copy of this request with other attachments.
+     *
+     * @param files the attachments of the copy
+     * @return the copy
+     */
+    public EmailRequest withAttachments(List<Attachment> files) {
+        return new EmailRequest(to, subject, body, html, cc, bcc, from, replyTo, templateId, variables, files,
+                priority);
+    }
+
+    /**
+     * Returns this request with the given priority if it has none.
+     *
+     * @param fallback the priority of the endpoint the request was sent to
+     * @return this request, or a copy with {@code fallback} as its priority
+     */
+    public EmailRequest withDefaultPriority(Priority fallback) {
+        return priority != null ? this
+                : new EmailRequest(to, subject, body, html, cc, bcc, from, replyTo, templateId, variables,
+                        attachments, fallback);
+    }
+
+    /**
+     * Returns the lane the email is sent in. Requests without a priority are
+     * transactional.
+     *
+     * @return {@code priority}, or transactional if it is not set
+     */
+    public Priority effectivePriority() {
+        return priority != null ? priority : Priority.TRANSACTIONAL;
+    }
 }
@@ -0,0 +1,35 @@
+package io.github.haiphamcoder.mailer.dto;
+
+import java.util.Locale;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Delivery lane of an email, set with the {@code priority} field of an
+ * {@link EmailRequest}.
+ * <p>
+ * Transactional emails are taken from the outbox before bulk ones and have
+ * SMTP connections reserved for them ({@code gmail.mail.pool.transactional-reserved}).
+ */
+public enum Priority {
+
+    /** Mail a user is waiting for, such as password resets and receipts. */
+    @JsonProperty("transactional")
+    TRANSACTIONAL,
+
+    /** Mail that may wait, such as newsletters and digests. */
+    @JsonProperty("bulk")
+    BULK;
+
+    private final String tag = name().toLowerCase(Locale.ROOT);
+
+    /**
+     * Returns the name of this priority as used in JSON, properties and
+     * metric tags.
+     *
+     * @return the lower-case name
+     */
+    public String tag() {
+        return tag;
+    }
+}
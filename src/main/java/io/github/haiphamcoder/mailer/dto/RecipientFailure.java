@@ -0,0 +1,17 @@
+package io.github.haiphamcoder.mailer.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * A recipient an email was not delivered to.
+ * {@code rejected} is set when the server refused the address itself;
+ * otherwise the address was accepted but not sent because its SMTP
+ * transaction failed.
+ */
+@Schema(name = "RecipientFailure", description = "Recipient an email was not delivered to")
+public record RecipientFailure(
+        @Schema(description = "Recipient address", example = "user@example.com") String address,
+        @Schema(description = "Whether the server rejected the address", example = "true") boolean rejected,
+        @Schema(description = "Error code", example = "SMTP_SEND_FAILED") String code,
+        @Schema(description = "Error message") String message) {
+}
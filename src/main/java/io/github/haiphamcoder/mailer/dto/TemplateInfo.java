@@ -0,0 +1,15 @@
+package io.github.haiphamcoder.mailer.dto;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * A registered template and the variables an email must provide for it.
+ */
+@Schema(name = "TemplateInfo", description = "Registered email template")
+public record TemplateInfo(
+        @Schema(description = "Template id", example = "order-shipped") String id,
+        @Schema(description = "Whether the rendered body is HTML", example = "true") boolean html,
+        @Schema(description = "Variables used by the template, sorted") List<String> variables) {
+}
@@ -0,0 +1,26 @@
+package io.github.haiphamcoder.mailer.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * Request payload for registering an email template, also the form in which
+ * templates are stored.
+ *
+ * - body: required template text with {{name}} (HTML-escaped in HTML
+ * templates) and {{{name}}} (inserted as is) placeholders
+ * - html: whether the rendered body is HTML (defaults to false if null)
+ */
+@Schema(name = "TemplateRequest", description = "Email template")
+public record TemplateRequest(
+        @Schema(description = "Template text with {{name}} and {{{name}}} placeholders",
+                example = "<p>Hello {{name}}, your order {{order}} has shipped.</p>") @NotBlank String body,
+        @Schema(description = "Whether the rendered body is HTML", example = "true") @NotNull Boolean html) {
+    public TemplateRequest {
+        // Default html to false when null
+        if (html == null) {
+            html = Boolean.FALSE;
+        }
+    }
+}
@@ -32,6 +32,19 @@ public class ApiException extends RuntimeException {
         this.code = code;
     }
 
+    /**
+     * Creates a new API exception with the specified error code, message and
+     * cause.
+     *
+     * @param code    the error code (should be UPPER_SNAKE_CASE for consistency)
+     * @param message the human-readable error message
+     * @param cause   the underlying exception
+     */
+    public ApiException(String code, String message, Throwable cause) {
+        super(message, cause);
+        this.code = code;
+    }
+
     /**
      * Returns the error code associated with this exception.
      *
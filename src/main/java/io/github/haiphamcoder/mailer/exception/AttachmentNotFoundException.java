@@ -0,0 +1,20 @@
+package io.github.haiphamcoder.mailer.exception;
+
+/**
+ * Thrown when an email or attachment request refers to a SHA-256 that is not
+ * in the attachment store, e.g. because it was never uploaded or has expired.
+ * <p>
+ * Mapped to 404 NOT_FOUND by {@link GlobalExceptionHandler}.
+ */
+public class AttachmentNotFoundException extends ApiException {
+
+    /**
+     * Creates a new exception.
+     *
+     * @param sha256 the unknown digest
+     */
+    public AttachmentNotFoundException(String sha256) {
+        super("ATTACHMENT_NOT_FOUND", "Attachment " + sha256 + " is not stored; upload it first");
+    }
+
+}
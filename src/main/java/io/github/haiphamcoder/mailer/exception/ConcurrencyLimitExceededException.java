@@ -0,0 +1,35 @@
+package io.github.haiphamcoder.mailer.exception;
+
+/**
+ * Thrown when a synchronous send is rejected because the service is already
+ * running as many sends as it can sustain.
+ * <p>
+ * Mapped to 429 TOO_MANY_REQUESTS with a {@code Retry-After} header by
+ * {@link GlobalExceptionHandler}.
+ */
+public class ConcurrencyLimitExceededException extends ApiException {
+
+    private final long retryAfterSeconds;
+
+    /**
+     * Creates a new exception.
+     *
+     * @param limit             the concurrency limit in force
+     * @param retryAfterSeconds suggested delay before the client retries
+     */
+    public ConcurrencyLimitExceededException(int limit, long retryAfterSeconds) {
+        super("CONCURRENCY_LIMIT_EXCEEDED",
+                "Too many emails in flight (limit " + limit + "), retry in " + retryAfterSeconds + "s");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Returns the suggested delay before the client retries.
+     *
+     * @return delay in seconds
+     */
+    public long retryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+}
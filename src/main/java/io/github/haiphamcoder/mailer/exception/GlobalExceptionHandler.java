@@ -1,13 +1,19 @@
 package io.github.haiphamcoder.mailer.exception;
 
+import java.util.List;
+
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 
 import io.github.haiphamcoder.mailer.dto.ApiCommonResponse;
+import io.github.haiphamcoder.mailer.dto.RecipientFailure;
 
 /**
  * Global exception handler that provides centralized error handling for all
@@ -25,6 +31,19 @@ import io.github.haiphamcoder.mailer.dto.ApiCommonResponse;
  * <li><strong>API exceptions</strong>: Returns 400 BAD_REQUEST with custom
  * error codes
  * and messages in {@link ApiCommonResponse} format</li>
+ * <li><strong>Mail delivery failures</strong>: Returns 502 BAD_GATEWAY with the
+ * {@link MailSendExceptionMapper} error code in {@link ApiCommonResponse}
+ * format; when only some recipients failed, the failed recipients are
+ * returned as data</li>
+ * <li><strong>Unknown template</strong>: Returns 404 NOT_FOUND with the
+ * {@code TEMPLATE_NOT_FOUND} code in {@link ApiCommonResponse} format</li>
+ * <li><strong>Upload too large</strong>: Returns 413 PAYLOAD_TOO_LARGE with
+ * the {@code ATTACHMENTS_TOO_LARGE} code in {@link ApiCommonResponse}
+ * format</li>
+ * <li><strong>Outbox full</strong>: Returns 503 SERVICE_UNAVAILABLE with the
+ * {@code OUTBOX_FULL} code in {@link ApiCommonResponse} format</li>
+ * <li><strong>Concurrency limit reached</strong>: Returns 429
+ * TOO_MANY_REQUESTS with a {@code Retry-After} header</li>
  * <li><strong>Unknown exceptions</strong>: Returns 500 INTERNAL_SERVER_ERROR
  * with
  * {@link ProblemDetail} format for detailed error information</li>
@@ -74,6 +93,110 @@ public class GlobalExceptionHandler {
         return ApiCommonResponse.error(ex.code(), ex.getMessage());
     }
 
+    /**
+     * Handles emails the SMTP server rejected or that could not be delivered
+     * and were not eligible for a retry.
+     *
+     * @param ex the delivery exception carrying the mapped error code
+     * @return 502 BAD_GATEWAY with the delivery error code and message
+     */
+    @ExceptionHandler(MailDeliveryException.class)
+    @ResponseStatus(HttpStatus.BAD_GATEWAY)
+    public ApiCommonResponse<Void> handleMailDelivery(MailDeliveryException ex) {
+        return ApiCommonResponse.error(ex.code(), ex.getMessage());
+    }
+
+    /**
+     * Handles emails that were not delivered to some or all of their
+     * recipients.
+     *
+     * @param ex the exception carrying the failed recipients
+     * @return 502 BAD_GATEWAY with the delivery error code and the failed
+     *         recipients
+     */
+    @ExceptionHandler(RecipientsFailedException.class)
+    @ResponseStatus(HttpStatus.BAD_GATEWAY)
+    public ApiCommonResponse<List<RecipientFailure>> handleRecipientsFailed(RecipientsFailedException ex) {
+        return ApiCommonResponse.error(ex.code(), ex.getMessage(), ex.recipients());
+    }
+
+    /**
+     * Handles references to templates that are not registered.
+     *
+     * @param ex the template not found exception
+     * @return 404 NOT_FOUND with the {@code TEMPLATE_NOT_FOUND} error code
+     */
+    @ExceptionHandler(TemplateNotFoundException.class)
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public ApiCommonResponse<Void> handleTemplateNotFound(TemplateNotFoundException ex) {
+        return ApiCommonResponse.error(ex.code(), ex.getMessage());
+    }
+
+    /**
+     * Handles references to attachments that are not stored.
+     *
+     * @param ex the attachment not found exception
+     * @return 404 NOT_FOUND with the {@code ATTACHMENT_NOT_FOUND} error code
+     */
+    @ExceptionHandler(AttachmentNotFoundException.class)
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public ApiCommonResponse<Void> handleAttachmentNotFound(AttachmentNotFoundException ex) {
+        return ApiCommonResponse.error(ex.code(), ex.getMessage());
+    }
+
+    /**
+     * Handles multipart uploads over {@code spring.servlet.multipart.max-file-size}
+     * or {@code max-request-size}.
+     *
+     * @param ex the upload size exception
+     * @return 413 PAYLOAD_TOO_LARGE with the {@code ATTACHMENTS_TOO_LARGE} error
+     *         code
+     */
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+    public ApiCommonResponse<Void> handleMaxUploadSize(MaxUploadSizeExceededException ex) {
+        return ApiCommonResponse.error("ATTACHMENTS_TOO_LARGE", "Attachments exceed the upload size limit");
+    }
+
+    /**
+     * Handles rejected asynchronous submissions when the outbox is at capacity.
+     *
+     * @param ex the outbox full exception
+     * @return 503 SERVICE_UNAVAILABLE with the {@code OUTBOX_FULL} error code
+     */
+    @ExceptionHandler(OutboxFullException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ApiCommonResponse<Void> handleOutboxFull(OutboxFullException ex) {
+        return ApiCommonResponse.error(ex.code(), ex.getMessage());
+    }
+
+    /**
+     * Handles synchronous sends shed by the adaptive concurrency limit.
+     *
+     * @param ex the limit exception carrying the suggested retry delay
+     * @return 429 TOO_MANY_REQUESTS with a {@code Retry-After} header and the
+     *         {@code CONCURRENCY_LIMIT_EXCEEDED} error code
+     */
+    @ExceptionHandler(ConcurrencyLimitExceededException.class)
+    public ResponseEntity<ApiCommonResponse<Void>> handleConcurrencyLimit(ConcurrencyLimitExceededException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.retryAfterSeconds()))
+                .body(ApiCommonResponse.error(ex.code(), ex.getMessage()));
+    }
+
+    /**
+     * Handles an {@code Idempotency-Key} reused with a different request body.
+     *
+     * @param ex the mismatch exception
+     * @return 422 UNPROCESSABLE_ENTITY with the {@code IDEMPOTENCY_KEY_REUSED}
+     *         error code
+     */
+    @ExceptionHandler(IdempotencyKeyMismatchException.class)
+    @ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+    public ApiCommonResponse<Void> handleIdempotencyKeyMismatch(IdempotencyKeyMismatchException ex) {
+        return ApiCommonResponse.error(ex.code(), ex.getMessage());
+    }
+
     /**
      * Handles security-related exceptions (authentication failures, invalid signatures, etc.).
      * <p>
@@ -0,0 +1,21 @@
+package io.github.haiphamcoder.mailer.exception;
+
+/**
+ * Thrown when an {@code Idempotency-Key} is reused with a different request
+ * body than the one it was first used with.
+ * <p>
+ * Mapped to 422 UNPROCESSABLE_ENTITY by {@link GlobalExceptionHandler}; the
+ * client must use a new key for a different email.
+ */
+public class IdempotencyKeyMismatchException extends ApiException {
+
+    /**
+     * Creates a new exception for the given key.
+     *
+     * @param key the reused idempotency key
+     */
+    public IdempotencyKeyMismatchException(String key) {
+        super("IDEMPOTENCY_KEY_REUSED", "Idempotency-Key '" + key + "' was already used with a different request");
+    }
+
+}
@@ -0,0 +1,45 @@
+package io.github.haiphamcoder.mailer.exception;
+
+/**
+ * Thrown when an email could not be delivered to the SMTP server.
+ * <p>
+ * Carries the {@link MailFailure} classification so callers can decide whether
+ * to schedule a retry. Mapped to 502 BAD_GATEWAY by
+ * {@link GlobalExceptionHandler}.
+ */
+public class MailDeliveryException extends ApiException {
+
+    private final transient MailFailure failure;
+
+    /**
+     * Creates a new delivery exception.
+     *
+     * @param failure the failure classification
+     * @param cause   the underlying mail exception
+     */
+    public MailDeliveryException(MailFailure failure, Throwable cause) {
+        this(failure, cause.getMessage(), cause);
+    }
+
+    /**
+     * Creates a new delivery exception with its own message.
+     *
+     * @param failure the failure classification
+     * @param message the error message
+     * @param cause   the underlying mail exception
+     */
+    public MailDeliveryException(MailFailure failure, String message, Throwable cause) {
+        super(failure.code(), message, cause);
+        this.failure = failure;
+    }
+
+    /**
+     * Returns the failure classification.
+     *
+     * @return the failure
+     */
+    public MailFailure failure() {
+        return failure;
+    }
+
+}
@@ -0,0 +1,13 @@
+package io.github.haiphamcoder.mailer.exception;
+
+/**
+ * Classification of a failed send produced by {@link MailSendExceptionMapper}.
+ *
+ * @param code           the standardized error code
+ * @param retryable      whether the same message may succeed if sent again
+ *                       later (transient 4xx replies, connection problems)
+ * @param smtpReturnCode the SMTP reply code that caused the failure, or 0 when
+ *                       no reply was received
+ */
+public record MailFailure(String code, boolean retryable, int smtpReturnCode) {
+}
@@ -1,32 +1,62 @@
 package io.github.haiphamcoder.mailer.exception;
 
+import java.util.regex.Pattern;
+
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailSendException;
 import org.springframework.stereotype.Component;
 
+import jakarta.mail.AuthenticationFailedException;
 import jakarta.mail.SendFailedException;
 
 /**
  * Maps JavaMail exceptions to standardized error codes for consistent API
- * responses.
+ * responses, and classifies them as retryable or permanent.
  * <p>
  * This component provides a centralized way to convert various mail-related
  * exceptions into meaningful error codes that can be returned to API clients.
  * <p>
  * The mapping strategy:
  * <ul>
- * <li>{@link SendFailedException}: Maps to "SMTP_SEND_FAILED" - indicates
- * the SMTP server rejected the message (e.g., invalid recipient, quota
- * exceeded)</li>
- * <li>Other exceptions: Maps to "SMTP_SEND_ERROR" - indicates general
- * mail sending problems (e.g., network issues, authentication failures)</li>
+ * <li>Authentication failures: Maps to "SMTP_AUTH_FAILED" - the account
+ * credentials were rejected; not retried</li>
+ * <li>Sending limits (421 or 454 replies, or replies with the Gmail
+ * {@code 5.4.5} quota enhanced status code): Maps to "SMTP_THROTTLED" - the account is sending too much; retried,
+ * preferably through another account</li>
+ * <li>Transient SMTP replies (4xx): Maps to "SMTP_SEND_DEFERRED" - the server
+ * asked us to try again later (e.g., greylisting, rate limiting); retried</li>
+ * <li>{@link SendFailedException} with a permanent (5xx) or no reply code: Maps
+ * to "SMTP_SEND_FAILED" - the server rejected the message (e.g., invalid
+ * recipient, quota exceeded); not retried</li>
+ * <li>{@link ApiException}s other than {@link MailDeliveryException}: keep
+ * their own code - the request itself cannot be sent (e.g., its template was
+ * removed); not retried</li>
+ * <li>Other exceptions: Maps to "SMTP_SEND_ERROR" - indicates general mail
+ * sending problems (e.g., network issues, timeouts); retried</li>
  * </ul>
  * <p>
+ * Wrapped exceptions are unwrapped first: the cause chain is followed and, for
+ * Spring's {@link MailSendException}, the per-message failures are inspected.
+ * SMTP reply codes are read from the Angus Mail {@link SMTPSendFailedException}
+ * and {@link SMTPAddressFailedException} found in the chain; when a chain holds
+ * both 4xx and 5xx replies, including throttling replies, the failure is
+ * treated as permanent, since a retry would be rejected again.
+ * <p>
  * This separation allows clients to handle different error types appropriately:
- * - SMTP_SEND_FAILED: Retry may not help, check recipient addresses
- * - SMTP_SEND_ERROR: Retry might succeed, check network/credentials
+ * - SMTP_SEND_FAILED / SMTP_AUTH_FAILED: Retry will not help, check recipient
+ * addresses or credentials
+ * - SMTP_THROTTLED / SMTP_SEND_DEFERRED / SMTP_SEND_ERROR: Retry might succeed
  */
 @Component
 public class MailSendExceptionMapper {
 
+    private static final int MAX_DEPTH = 16;
+
+    /** A reply whose enhanced status code is the Gmail sending limit, e.g. {@code 550 5.4.5 Daily ...}. */
+    private static final Pattern SENDING_LIMIT = Pattern.compile("^\\d{3}[ -]5\\.4\\.5(?:\\s|$)");
+
     /**
      * Maps a throwable to a standardized error code.
      *
@@ -34,10 +64,121 @@ public class MailSendExceptionMapper {
      * @return the corresponding error code
      */
     public String map(Throwable throwable) {
-        if (throwable instanceof SendFailedException) {
-            return "SMTP_SEND_FAILED";
+        return classify(throwable).code();
+    }
+
+    /**
+     * Classifies a throwable into an error code and retry eligibility.
+     *
+     * @param throwable the exception to classify
+     * @return the failure classification
+     */
+    public MailFailure classify(Throwable throwable) {
+        if (throwable instanceof MailDeliveryException deliveryException) {
+            return deliveryException.failure();
+        }
+        if (throwable instanceof ApiException apiException) {
+            return new MailFailure(apiException.code(), false, 0);
+        }
+        if (throwable instanceof MailAuthenticationException
+                || find(throwable, AuthenticationFailedException.class, 0) != null) {
+            return new MailFailure("SMTP_AUTH_FAILED", false, 0);
+        }
+
+        ReplyCodes replies = new ReplyCodes();
+        collectReplyCodes(throwable, replies, 0);
+        if (replies.permanent != 0) {
+            return new MailFailure("SMTP_SEND_FAILED", false, replies.permanent);
+        }
+        if (replies.throttled != 0) {
+            return new MailFailure("SMTP_THROTTLED", true, replies.throttled);
+        }
+        if (replies.transientCode != 0) {
+            return new MailFailure("SMTP_SEND_DEFERRED", true, replies.transientCode);
+        }
+        if (find(throwable, SendFailedException.class, 0) != null) {
+            return new MailFailure("SMTP_SEND_FAILED", false, 0);
+        }
+        return new MailFailure("SMTP_SEND_ERROR", true, 0);
+    }
+
+    /**
+     * Returns whether the failure is worth retrying later.
+     *
+     * @param throwable the exception to check
+     * @return true for transient failures
+     */
+    public boolean isRetryable(Throwable throwable) {
+        return classify(throwable).retryable();
+    }
+
+    /**
+     * Finds the {@link SendFailedException} in the cause chain, which reports
+     * the addresses that were sent, valid but unsent, and invalid.
+     *
+     * @param throwable the exception to search
+     * @return the exception, or null if there is none
+     */
+    public SendFailedException findSendFailure(Throwable throwable) {
+        return find(throwable, SendFailedException.class, 0);
+    }
+
+    /**
+     * Finds the first exception of the given type in the cause chain, including
+     * the per-message failures carried by {@link MailSendException}.
+     */
+    private static <T extends Throwable> T find(Throwable throwable, Class<T> type, int depth) {
+        Throwable current = throwable;
+        while (current != null && depth++ < MAX_DEPTH) {
+            if (type.isInstance(current)) {
+                return type.cast(current);
+            }
+            if (current instanceof MailSendException mailSendException) {
+                for (Exception failure : mailSendException.getFailedMessages().values()) {
+                    T found = find(failure, type, depth);
+                    if (found != null) {
+                        return found;
+                    }
+                }
+            }
+            current = current.getCause();
+        }
+        return null;
+    }
+
+    private static void collectReplyCodes(Throwable throwable, ReplyCodes replies, int depth) {
+        Throwable current = throwable;
+        while (current != null && depth++ < MAX_DEPTH) {
+            if (current instanceof SMTPSendFailedException sendFailed) {
+                replies.add(sendFailed.getReturnCode(), sendFailed.getMessage());
+            } else if (current instanceof SMTPAddressFailedException addressFailed) {
+                replies.add(addressFailed.getReturnCode(), addressFailed.getMessage());
+            } else if (current instanceof MailSendException mailSendException) {
+                for (Exception failure : mailSendException.getFailedMessages().values()) {
+                    collectReplyCodes(failure, replies, depth);
+                }
+            }
+            current = current.getCause();
+        }
+    }
+
+    /** First throttling, transient and permanent SMTP reply codes seen in a cause chain. */
+    private static final class ReplyCodes {
+        private int throttled;
+        private int transientCode;
+        private int permanent;
+
+        void add(int code, String message) {
+            if (code == 421 || code == 454 || (message != null && SENDING_LIMIT.matcher(message).find())) {
+                if (throttled == 0) {
+                    throttled = code;
+                }
+            } else if (code >= 400 && code < 500 && transientCode == 0) {
+                transientCode = code;
+            } else if (code >= 500 && code < 600 && permanent == 0) {
+                permanent = code;
+            }
         }
-        return "SMTP_SEND_ERROR";
     }
 
 }
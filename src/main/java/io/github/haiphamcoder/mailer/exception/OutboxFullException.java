@@ -0,0 +1,21 @@
+package io.github.haiphamcoder.mailer.exception;
+
+/**
+ * Thrown when an asynchronous send cannot be accepted because the outbox is at
+ * capacity.
+ * <p>
+ * Mapped to 503 SERVICE_UNAVAILABLE by {@link GlobalExceptionHandler}; clients
+ * should back off and retry later.
+ */
+public class OutboxFullException extends ApiException {
+
+    /**
+     * Creates a new exception for an outbox of the given capacity.
+     *
+     * @param capacity the configured outbox capacity
+     */
+    public OutboxFullException(int capacity) {
+        super("OUTBOX_FULL", "Outbox is full (capacity " + capacity + "), try again later");
+    }
+
+}
@@ -0,0 +1,35 @@
+package io.github.haiphamcoder.mailer.exception;
+
+/**
+ * Thrown when no sender account can take another message right now, because
+ * every account is out of quota, being paced or cooling down after a failure.
+ * <p>
+ * This is a signal to queue the message rather than an error for the client:
+ * callers put the email into the outbox, whose workers try again after
+ * {@link #retryAfterMillis()}.
+ */
+public class QuotaExhaustedException extends ApiException {
+
+    private final long retryAfterMillis;
+
+    /**
+     * Creates a new exception.
+     *
+     * @param retryAfterMillis how long until an account is expected to have
+     *                         capacity again
+     */
+    public QuotaExhaustedException(long retryAfterMillis) {
+        super("QUOTA_EXHAUSTED", "No sender account has quota available, retry in " + retryAfterMillis + "ms");
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * Returns how long until an account is expected to have capacity again.
+     *
+     * @return delay in milliseconds
+     */
+    public long retryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+}
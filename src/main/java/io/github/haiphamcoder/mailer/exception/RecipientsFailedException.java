@@ -0,0 +1,59 @@
+package io.github.haiphamcoder.mailer.exception;
+
+import java.util.List;
+
+import io.github.haiphamcoder.mailer.dto.RecipientFailure;
+
+/**
+ * Thrown when an email was not delivered to some or all of its recipients.
+ * <p>
+ * When nothing was delivered the classification is that of the underlying
+ * failure, so the email may be retried as a whole. Once any recipient got the
+ * email the code is {@code PARTIAL_DELIVERY}; it is retryable only if every
+ * failure was, and a retry must then go to the failed {@link #recipients()}
+ * alone, since the others would get the email twice. Mapped to 502
+ * BAD_GATEWAY with the failed recipients by {@link GlobalExceptionHandler}.
+ */
+public class RecipientsFailedException extends MailDeliveryException {
+
+    /** Code of an email delivered to some but not all of its recipients. */
+    public static final String PARTIAL_DELIVERY = "PARTIAL_DELIVERY";
+
+    private final transient List<RecipientFailure> recipients;
+    private final int delivered;
+
+    /**
+     * Creates a new exception.
+     *
+     * @param failure    the failure classification
+     * @param message    the error message
+     * @param cause      the first transaction failure
+     * @param recipients the recipients the email was not delivered to
+     * @param delivered  the number of recipients it was delivered to
+     */
+    public RecipientsFailedException(MailFailure failure, String message, Throwable cause,
+            List<RecipientFailure> recipients, int delivered) {
+        super(failure, message, cause);
+        this.recipients = List.copyOf(recipients);
+        this.delivered = delivered;
+    }
+
+    /**
+     * Returns the recipients the email was not delivered to.
+     *
+     * @return the failed recipients
+     */
+    public List<RecipientFailure> recipients() {
+        return recipients;
+    }
+
+    /**
+     * Returns the number of recipients the email was delivered to.
+     *
+     * @return delivered recipients
+     */
+    public int delivered() {
+        return delivered;
+    }
+
+}
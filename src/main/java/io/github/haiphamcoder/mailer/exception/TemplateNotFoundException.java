@@ -0,0 +1,20 @@
+package io.github.haiphamcoder.mailer.exception;
+
+/**
+ * Thrown when an email or template request refers to a template id that is not
+ * registered.
+ * <p>
+ * Mapped to 404 NOT_FOUND by {@link GlobalExceptionHandler}.
+ */
+public class TemplateNotFoundException extends ApiException {
+
+    /**
+     * Creates a new exception.
+     *
+     * @param id the unknown template id
+     */
+    public TemplateNotFoundException(String id) {
+        super("TEMPLATE_NOT_FOUND", "Template '" + id + "' is not registered");
+    }
+
+}
@@ -0,0 +1,159 @@
+package io.github.haiphamcoder.mailer.idempotency;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.github.haiphamcoder.mailer.exception.IdempotencyKeyMismatchException;
+
+/**
+ * Bounded, time-expiring cache of request outcomes keyed by
+ * {@code Idempotency-Key}.
+ * <p>
+ * The first request with a key claims it with a single
+ * {@link ConcurrentHashMap#putIfAbsent} and runs the action; concurrent and
+ * later requests with the same key wait on the first one's future and get its
+ * outcome back instead of running the action again. No lock is held while the
+ * action runs, and requests with different keys never wait for each other.
+ * <p>
+ * Only successful outcomes are remembered: if the action throws, the key is
+ * released so a later retry runs again, while requests that were already
+ * waiting receive the same exception. A key reused with a different request
+ * fingerprint is rejected with {@link IdempotencyKeyMismatchException}.
+ * <p>
+ * Entries expire {@code mailer.idempotency.ttl} after completion. When more than
+ * {@code mailer.idempotency.max-entries} keys are held, the oldest completed
+ * entries are dropped first. Entries are held in memory only.
+ */
+@Component
+public class IdempotencyCache {
+
+    /**
+     * Result of {@link #execute}.
+     *
+     * @param value    the action's result
+     * @param replayed true if the result was produced by an earlier request with
+     *                 the same key
+     */
+    public record Outcome<T>(T value, boolean replayed) {
+    }
+
+    private final IdempotencyProperties properties;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Node> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    @Autowired
+    public IdempotencyCache(IdempotencyProperties properties) {
+        this(properties, System::currentTimeMillis);
+    }
+
+    IdempotencyCache(IdempotencyProperties properties, LongSupplier clock) {
+        this.properties = properties;
+        this.clock = clock;
+    }
+
+    /**
+     * Runs the action once per key and fingerprint.
+     *
+     * @param key         the idempotency key, already scoped to the client
+     * @param fingerprint value identifying the request; compared with
+     *                    {@link Object#equals}
+     * @param action      produces the outcome of the request
+     * @return the outcome, possibly replayed from an earlier request
+     * @throws IdempotencyKeyMismatchException if the key was used with a
+     *                                         different fingerprint
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Outcome<T> execute(String key, Object fingerprint, Supplier<T> action) {
+        long now = clock.getAsLong();
+        Entry claim = new Entry(fingerprint);
+        Entry existing;
+        while ((existing = entries.putIfAbsent(key, claim)) != null) {
+            if (existing.isExpired(now)) {
+                entries.remove(key, existing);
+                continue;
+            }
+            if (!existing.fingerprint.equals(fingerprint)) {
+                throw new IdempotencyKeyMismatchException(key);
+            }
+            return new Outcome<>((T) await(existing.result), true);
+        }
+
+        insertionOrder.add(new Node(key, claim));
+        evict(now);
+        try {
+            T value = action.get();
+            claim.expiresAt = clock.getAsLong() + properties.getTtl().toMillis();
+            claim.result.complete(value);
+            return new Outcome<>(value, false);
+        } catch (RuntimeException | Error e) {
+            claim.expiresAt = 0;
+            entries.remove(key, claim);
+            claim.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of keys currently held.
+     *
+     * @return cached key count
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /** Drops expired or stale entries from the head, then the oldest while over capacity. */
+    private void evict(long now) {
+        Node head;
+        while ((head = insertionOrder.peek()) != null) {
+            boolean stale = entries.get(head.key) != head.entry || head.entry.isExpired(now);
+            boolean overCapacity = entries.size() > properties.getMaxEntries() && head.entry.result.isDone();
+            if (!stale && !overCapacity) {
+                return;
+            }
+            Node removed = insertionOrder.poll();
+            if (removed != null) {
+                entries.remove(removed.key, removed.entry);
+            }
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    /** A claimed key: the request fingerprint and its (future) outcome. */
+    private static final class Entry {
+        private final Object fingerprint;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private volatile long expiresAt = Long.MAX_VALUE;
+
+        Entry(Object fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+    private record Node(String key, Entry entry) {
+    }
+
+}
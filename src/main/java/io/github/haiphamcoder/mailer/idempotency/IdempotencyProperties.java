@@ -0,0 +1,43 @@
+package io.github.haiphamcoder.mailer.idempotency;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration properties for {@code Idempotency-Key} handling on
+ * {@code POST /api/v1/emails}.
+ * <p>
+ * Example configuration:
+ * <pre>
+ * mailer.idempotency.enabled=true
+ * mailer.idempotency.ttl=24h
+ * mailer.idempotency.max-entries=100000
+ * </pre>
+ */
+@Getter
+@Setter
+@Validated
+@ConfigurationProperties(prefix = "mailer.idempotency")
+public class IdempotencyProperties {
+
+    /** Whether the {@code Idempotency-Key} header is honoured. */
+    private boolean enabled = true;
+
+    /** How long the outcome of a request is remembered for its key. */
+    @NotNull
+    private Duration ttl = Duration.ofHours(24);
+
+    /**
+     * Maximum number of remembered keys. The oldest completed entries are
+     * dropped first when the limit is reached.
+     */
+    @Min(1)
+    private int maxEntries = 100_000;
+}
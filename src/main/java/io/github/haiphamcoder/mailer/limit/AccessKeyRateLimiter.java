@@ -0,0 +1,145 @@
+package io.github.haiphamcoder.mailer.limit;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.github.haiphamcoder.mailer.security.AccessKey;
+import io.github.haiphamcoder.mailer.security.AccessKeyRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Token-bucket rate limit on the requests of each access key, applied by
+ * {@code SecurityFilter} once the key is authenticated and before the
+ * request body is read.
+ * <p>
+ * Each bucket uses the generic cell rate algorithm: its whole state is one
+ * theoretical arrival time in an {@link AtomicLong}. A request pushes it
+ * forward by one emission interval ({@code 1s / requests-per-second}) and is
+ * allowed while it stays no more than {@code burst} intervals ahead of now.
+ * Taking a token is a single CAS on the key's own bucket, so requests of
+ * different keys never contend and no lock is taken. Buckets live in a
+ * {@link ConcurrentHashMap} keyed by access key id and are replaced when the
+ * key's limit changes; there is one per configured access key, and the
+ * buckets of keys removed from the {@link AccessKeyRegistry} are dropped when
+ * it reloads.
+ * <p>
+ * Rejections are counted by {@code mailer.rate-limit.rejected}, tagged with
+ * the access key.
+ */
+@Component
+public class AccessKeyRateLimiter {
+
+    private static final long SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final RateLimitProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final LongSupplier nanoClock;
+    private final AccessKey.RateLimit defaultLimit;
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AccessKeyRateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry,
+            AccessKeyRegistry accessKeys) {
+        this(properties, meterRegistry, System::nanoTime);
+        accessKeys.addReloadListener(this::retain);
+    }
+
+    AccessKeyRateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.nanoClock = nanoClock;
+        this.defaultLimit = new AccessKey.RateLimit(properties.getRequestsPerSecond(), properties.getBurst());
+    }
+
+    /**
+     * Takes a token for one request of an access key.
+     *
+     * @param key the authenticated access key
+     * @return 0 if the request is allowed, otherwise nanoseconds until it would be
+     */
+    public long tryAcquire(AccessKey key) {
+        if (!properties.isEnabled()) {
+            return 0;
+        }
+        AccessKey.RateLimit limit = key.rateLimit() != null ? key.rateLimit() : defaultLimit;
+        Bucket bucket = buckets.get(key.id());
+        if (bucket == null || !bucket.limit.equals(limit)) {
+            bucket = buckets.compute(key.id(), (id, current) -> current != null && current.limit.equals(limit)
+                    ? current
+                    : new Bucket(limit, Counter.builder("mailer.rate-limit.rejected")
+                            .description("Requests rejected by the per-access-key rate limit")
+                            .tag("access_key", id)
+                            .register(meterRegistry)));
+        }
+        long wait = bucket.tryAcquire(nanoClock.getAsLong());
+        if (wait > 0) {
+            bucket.rejected.increment();
+        }
+        return wait;
+    }
+
+    /**
+     * Drops the buckets, and their rejection counters, of access keys that are
+     * no longer configured. A request authenticated just before the reload
+     * may recreate its bucket; it is dropped on the next reload.
+     *
+     * @param ids the ids of the configured access keys
+     */
+    void retain(Set<String> ids) {
+        for (Map.Entry<String, Bucket> entry : buckets.entrySet()) {
+            if (!ids.contains(entry.getKey()) && buckets.remove(entry.getKey(), entry.getValue())) {
+                meterRegistry.remove(entry.getValue().rejected);
+            }
+        }
+    }
+
+    /**
+     * Converts a wait returned by {@link #tryAcquire} to a {@code Retry-After}
+     * value.
+     *
+     * @param waitNanos nanoseconds until the request would be allowed
+     * @return whole seconds, at least 1
+     */
+    public static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + SECOND_NANOS - 1) / SECOND_NANOS);
+    }
+
+    private static final class Bucket {
+
+        private final AccessKey.RateLimit limit;
+        private final Counter rejected;
+        private final long emissionInterval;
+        private final long burstTolerance;
+        private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+
+        Bucket(AccessKey.RateLimit limit, Counter rejected) {
+            this.limit = limit;
+            this.rejected = rejected;
+            this.emissionInterval = Math.max(1, SECOND_NANOS / limit.requestsPerSecond());
+            this.burstTolerance = emissionInterval * (limit.burst() - 1);
+        }
+
+        long tryAcquire(long now) {
+            while (true) {
+                long current = theoreticalArrival.get();
+                long arrival = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+                long wait = arrival - burstTolerance - now;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (theoreticalArrival.compareAndSet(current, arrival + emissionInterval)) {
+                    return 0;
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,204 @@
+package io.github.haiphamcoder.mailer.limit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.github.haiphamcoder.mailer.exception.ConcurrencyLimitExceededException;
+import io.github.haiphamcoder.mailer.exception.MailSendExceptionMapper;
+import io.github.haiphamcoder.mailer.exception.QuotaExhaustedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Limits the number of synchronous sends in flight to what SMTP can currently
+ * sustain, learning the limit from observed latency.
+ * <p>
+ * Each completed send contributes a latency sample to a short-term and a
+ * long-term moving average. While the short-term latency stays within
+ * {@code tolerance} times the long-term one the limit is nudged towards
+ * {@code limit + sqrt(limit)}; when it rises above, the limit is nudged down
+ * in proportion to the slowdown (at most halving it). Transient failures such as
+ * timeouts or throttling replies multiply the limit by {@code backoff-ratio}.
+ * Samples taken while less than half the limit was in use do not grow the
+ * limit, so an idle service does not inflate it.
+ * <p>
+ * A send over the limit is rejected immediately with
+ * {@link ConcurrencyLimitExceededException} instead of queueing on a request
+ * thread. The limit and in-flight count are published as the gauges
+ * {@code mailer.limiter.limit} and {@code mailer.limiter.in-flight}, and
+ * rejections are counted by {@code mailer.limiter.rejected}.
+ */
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double SHORT_ALPHA = 2.0 / (10 + 1);
+    private static final double LONG_ALPHA = 2.0 / (600 + 1);
+    private static final double SMOOTHING = 0.2;
+
+    private final LimiterProperties properties;
+    private final MailSendExceptionMapper exceptionMapper;
+    private final LongSupplier nanoClock;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rejected;
+
+    // Guarded by lock; limit is also read without it
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile double limit;
+    private double shortLatency;
+    private double longLatency;
+
+    @Autowired
+    public AdaptiveConcurrencyLimiter(LimiterProperties properties, MailSendExceptionMapper exceptionMapper,
+            MeterRegistry meterRegistry) {
+        this(properties, exceptionMapper, meterRegistry, System::nanoTime);
+    }
+
+    AdaptiveConcurrencyLimiter(LimiterProperties properties, MailSendExceptionMapper exceptionMapper,
+            MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.properties = properties;
+        this.exceptionMapper = exceptionMapper;
+        this.nanoClock = nanoClock;
+        this.limit = Math.max(properties.getMinLimit(), Math.min(properties.getInitialLimit(),
+                properties.getMaxLimit()));
+        Gauge.builder("mailer.limiter.limit", this, AdaptiveConcurrencyLimiter::limit)
+                .description("Concurrent synchronous sends currently allowed")
+                .register(meterRegistry);
+        Gauge.builder("mailer.limiter.in-flight", inFlight, AtomicInteger::get)
+                .description("Synchronous sends in progress")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("mailer.limiter.rejected")
+                .description("Synchronous sends rejected by the concurrency limit")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes a slot for one send. The returned permit must be released exactly
+     * once, with the send's outcome.
+     *
+     * @return the permit
+     * @throws ConcurrencyLimitExceededException if the limit is reached
+     */
+    public Permit acquire() {
+        if (!properties.isEnabled()) {
+            return new Permit(nanoClock.getAsLong(), 0, false);
+        }
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit()) {
+                rejected.increment();
+                throw new ConcurrencyLimitExceededException(limit(), retryAfterSeconds());
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return new Permit(nanoClock.getAsLong(), current + 1, true);
+    }
+
+    /**
+     * Returns the current limit.
+     *
+     * @return concurrent sends allowed
+     */
+    public int limit() {
+        return (int) limit;
+    }
+
+    /**
+     * Returns the number of sends in flight.
+     *
+     * @return sends holding a permit
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    private void onSample(long latency, int inFlightAtStart, boolean dropped) {
+        lock.lock();
+        try {
+            update(latency, inFlightAtStart, dropped);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void update(long latency, int inFlightAtStart, boolean dropped) {
+        if (longLatency == 0) {
+            shortLatency = latency;
+            longLatency = latency;
+        } else {
+            shortLatency += (latency - shortLatency) * SHORT_ALPHA;
+            longLatency += (latency - longLatency) * LONG_ALPHA;
+        }
+        // Let the baseline recover quickly after a slow period has passed
+        if (longLatency > 2 * shortLatency) {
+            longLatency *= 0.95;
+        }
+
+        double next;
+        if (dropped) {
+            next = limit * properties.getBackoffRatio();
+        } else if (inFlightAtStart < limit / 2) {
+            return;
+        } else {
+            double gradient = Math.max(0.5, Math.min(1.0, properties.getTolerance() * longLatency / shortLatency));
+            next = limit * (1 - SMOOTHING) + (limit * gradient + Math.sqrt(limit)) * SMOOTHING;
+        }
+        limit = Math.max(properties.getMinLimit(), Math.min(properties.getMaxLimit(), next));
+    }
+
+    /** A slot is usually freed within one send, so suggest retrying after the typical latency. */
+    private long retryAfterSeconds() {
+        double latency;
+        lock.lock();
+        try {
+            latency = longLatency;
+        } finally {
+            lock.unlock();
+        }
+        return Math.max(1, (long) Math.ceil(latency / TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    /**
+     * A slot taken by {@link AdaptiveConcurrencyLimiter#acquire()}.
+     */
+    public final class Permit {
+
+        private final long startNanos;
+        private final int inFlightAtStart;
+        private final AtomicBoolean held;
+
+        private Permit(long startNanos, int inFlightAtStart, boolean held) {
+            this.startNanos = startNanos;
+            this.inFlightAtStart = inFlightAtStart;
+            this.held = new AtomicBoolean(held);
+        }
+
+        /**
+         * Frees the slot and feeds the send's outcome into the limit.
+         * Permanent failures and missing quota say nothing about SMTP load and
+         * are not sampled.
+         *
+         * @param failure the send's failure, or null on success
+         */
+        public void release(Exception failure) {
+            if (!held.compareAndSet(true, false)) {
+                return;
+            }
+            inFlight.decrementAndGet();
+            if (failure instanceof QuotaExhaustedException) {
+                return;
+            }
+            boolean dropped = failure != null && exceptionMapper.classify(failure).retryable();
+            if (failure == null || dropped) {
+                onSample(nanoClock.getAsLong() - startNanos, inFlightAtStart, dropped);
+            }
+        }
+    }
+
+}
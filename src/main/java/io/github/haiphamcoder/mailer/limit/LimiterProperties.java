@@ -0,0 +1,58 @@
+package io.github.haiphamcoder.mailer.limit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration properties for the adaptive concurrency limit on synchronous
+ * sends.
+ * <p>
+ * Example configuration:
+ * <pre>
+ * mailer.limiter.enabled=true
+ * mailer.limiter.initial-limit=20
+ * mailer.limiter.min-limit=4
+ * mailer.limiter.max-limit=200
+ * mailer.limiter.tolerance=2.0
+ * mailer.limiter.backoff-ratio=0.9
+ * </pre>
+ */
+@Getter
+@Setter
+@Validated
+@ConfigurationProperties(prefix = "mailer.limiter")
+public class LimiterProperties {
+
+    /** Whether synchronous sends over the limit are rejected with 429. */
+    private boolean enabled = true;
+
+    /** Concurrent sends allowed before any latency has been observed. */
+    @Min(1)
+    private int initialLimit = 20;
+
+    /** Lower bound for the learned limit. */
+    @Min(1)
+    private int minLimit = 4;
+
+    /** Upper bound for the learned limit. */
+    @Min(1)
+    private int maxLimit = 200;
+
+    /**
+     * How much recent latency may exceed the long-term average before the
+     * limit shrinks (2.0 = twice as slow).
+     */
+    @DecimalMin("1.0")
+    private double tolerance = 2.0;
+
+    /** Factor applied to the limit when a send fails transiently (timeouts, throttling). */
+    @DecimalMin("0.1")
+    @DecimalMax("1.0")
+    private double backoffRatio = 0.9;
+}
@@ -0,0 +1,40 @@
+package io.github.haiphamcoder.mailer.limit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.Min;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration properties for the per-access-key request rate limit.
+ * <p>
+ * These are the defaults; an access key can carry its own
+ * {@code rate-limit} in the access-key file
+ * ({@code api.security.access-keys.file}).
+ * <p>
+ * Example configuration:
+ * <pre>
+ * mailer.rate-limit.enabled=true
+ * mailer.rate-limit.requests-per-second=50
+ * mailer.rate-limit.burst=100
+ * </pre>
+ */
+@Getter
+@Setter
+@Validated
+@ConfigurationProperties(prefix = "mailer.rate-limit")
+public class RateLimitProperties {
+
+    /** Whether requests over an access key's rate are rejected with 429. */
+    private boolean enabled = true;
+
+    /** Steady rate at which an access key's requests are accepted. */
+    @Min(1)
+    private int requestsPerSecond = 50;
+
+    /** Requests an access key may send back-to-back before the rate applies. */
+    @Min(1)
+    private int burst = 100;
+}
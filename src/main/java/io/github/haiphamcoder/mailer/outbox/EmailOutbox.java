@@ -0,0 +1,220 @@
+package io.github.haiphamcoder.mailer.outbox;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.haiphamcoder.mailer.attachment.AttachmentSpool;
+import io.github.haiphamcoder.mailer.dto.EmailRequest;
+import io.github.haiphamcoder.mailer.dto.Priority;
+import io.github.haiphamcoder.mailer.exception.OutboxFullException;
+import io.github.haiphamcoder.mailer.service.MessageIdGenerator;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded queue of accepted emails waiting to be sent, backed by an on-disk
+ * write-ahead journal.
+ * <p>
+ * Submissions never block: when the outbox is full the caller gets an
+ * {@link OutboxFullException} immediately, so HTTP threads are never parked
+ * behind SMTP latency. Messages are drained by {@link OutboxDispatcher} in the
+ * order of a {@link FairQueue}, which takes turns between the tenants that
+ * submitted them according to {@code mailer.outbox.fairness.*}, so a burst
+ * from one tenant does not hold back the others, and sends transactional
+ * emails ahead of bulk ones.
+ * <p>
+ * With {@code mailer.outbox.journal.enabled} each accepted email is recorded in
+ * an {@link OutboxJournal} before it is acknowledged, with the
+ * {@link FsyncPolicy} configured for its {@link RequestClass}, and is marked
+ * done by {@link #complete(OutboundEmail)} once delivered or given up on.
+ * Emails still pending when the JVM stops are queued again on the next start.
+ * Without the journal the outbox is held in memory only.
+ * <p>
+ * Attachments belong to the outbox while their email is queued: they are
+ * released to the {@link AttachmentSpool} when the email is completed, and on
+ * startup the spool keeps only what the recovered emails refer to.
+ * <p>
+ * Occupancy is published as the gauges {@code mailer.outbox.size} (per
+ * priority), {@code mailer.outbox.capacity} and {@code mailer.outbox.tenants}.
+ */
+@Component
+@Slf4j
+public class EmailOutbox implements DisposableBean {
+
+    private final FairQueue queue;
+    private final int capacity;
+    private final OutboxProperties.Journal journalProperties;
+    private final OutboxJournal journal;
+    private final AttachmentSpool attachmentSpool;
+    private final MessageIdGenerator messageIds;
+
+    public EmailOutbox(OutboxProperties properties, ObjectMapper objectMapper, AttachmentSpool attachmentSpool,
+            MessageIdGenerator messageIds, MeterRegistry meterRegistry) throws IOException {
+        this.attachmentSpool = attachmentSpool;
+        this.messageIds = messageIds;
+        this.capacity = properties.getCapacity();
+        this.journalProperties = properties.getJournal();
+        List<OutboundEmail> recovered = List.of();
+        if (journalProperties.isEnabled()) {
+            Path directory = Path.of(journalProperties.getDirectory());
+            journal = new OutboxJournal(directory, journalProperties.getSegmentSize().toBytes(),
+                    journalProperties.getFsyncInterval(), objectMapper);
+            recovered = journal.recovered();
+            if (!recovered.isEmpty()) {
+                log.info("Recovered {} unsent email(s) from the outbox journal in {}", recovered.size(),
+                        directory.toAbsolutePath());
+            }
+        } else {
+            journal = null;
+        }
+        attachmentSpool.recover(recovered.stream().map(OutboundEmail::request).toList());
+        this.queue = new FairQueue(capacity, properties.getFairness()::weight);
+        // Recovered emails were already accepted, so they are queued even beyond capacity
+        queue.addAll(recovered);
+        for (Priority priority : Priority.values()) {
+            Gauge.builder("mailer.outbox.size", queue, q -> q.size(priority))
+                    .description("Emails waiting in the outbox")
+                    .tag("priority", priority.tag())
+                    .register(meterRegistry);
+        }
+        Gauge.builder("mailer.outbox.tenants", queue, FairQueue::tenants)
+                .description("Tenants with emails waiting in the outbox")
+                .register(meterRegistry);
+        Gauge.builder("mailer.outbox.capacity", this, EmailOutbox::capacity)
+                .description("Emails the outbox accepts before rejecting submissions")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Accepts a request for asynchronous delivery.
+     *
+     * @param tenant       the access key the request was submitted with, or null
+     * @param request      the validated email request
+     * @param requestClass why the request is queued, selecting the fsync policy
+     * @return the message id assigned to the request
+     * @throws OutboxFullException if the outbox is at capacity
+     */
+    public String submit(String tenant, EmailRequest request, RequestClass requestClass) {
+        OutboundEmail email = OutboundEmail.accepted(messageIds.next(), tenant, request);
+        if (!accept(email, requestClass)) {
+            throw new OutboxFullException(capacity);
+        }
+        return email.messageId();
+    }
+
+    /**
+     * Journals an email that has not been through the outbox yet and queues it.
+     *
+     * @param email        the email to queue
+     * @param requestClass why the email is queued, selecting the fsync policy
+     * @return false if the outbox is currently full
+     */
+    public boolean accept(OutboundEmail email, RequestClass requestClass) {
+        if (queue.remainingCapacity() == 0) {
+            return false;
+        }
+        persist(email, requestClass);
+        if (!queue.offer(email)) {
+            complete(email);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Journals an email without queueing it, e.g. while it waits for a retry.
+     * Does nothing if the email is already journaled or the journal is
+     * disabled.
+     *
+     * @param email        the email to record
+     * @param requestClass why the email is kept, selecting the fsync policy
+     */
+    public void persist(OutboundEmail email, RequestClass requestClass) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.append(email, journalProperties.fsyncPolicy(requestClass));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write email " + email.messageId() + " to the outbox journal",
+                    e);
+        }
+    }
+
+    /**
+     * Puts an already accepted email back into the outbox, e.g. for a retry.
+     *
+     * @param email the email to requeue
+     * @return false if the outbox is currently full
+     */
+    public boolean requeue(OutboundEmail email) {
+        return queue.offer(email);
+    }
+
+    /**
+     * Marks an email as delivered or given up on, so it is not replayed after a
+     * restart, and releases its attachments. The journal is left alone
+     * if the email was never journaled.
+     *
+     * @param email the finished email
+     */
+    public void complete(OutboundEmail email) {
+        attachmentSpool.release(email.request());
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.complete(email.messageId());
+        } catch (IOException e) {
+            log.error("Failed to mark email {} done in the outbox journal; it may be sent again after a restart: {}",
+                    email.messageId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Waits up to the given time for the next email.
+     *
+     * @param timeout how long to wait
+     * @param unit    unit of {@code timeout}
+     * @return the next email, or null if none arrived in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    OutboundEmail poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
+    /**
+     * Returns the number of emails waiting to be sent.
+     *
+     * @return queued email count
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the maximum number of emails the outbox can hold.
+     *
+     * @return outbox capacity
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+}
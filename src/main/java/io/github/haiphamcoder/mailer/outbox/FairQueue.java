@@ -0,0 +1,232 @@
+package io.github.haiphamcoder.mailer.outbox;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+import io.github.haiphamcoder.mailer.dto.Priority;
+
+/**
+ * Bounded queue of outbound emails that takes turns between tenants.
+ * <p>
+ * Each tenant (the access key an email was submitted with) has its own FIFO
+ * sub-queue, and tenants with queued emails wait in a round-robin ring.
+ * Scheduling is deficit round robin with a cost of one per email: when a
+ * tenant reaches the head of the ring it is credited its weight, may dequeue
+ * that many emails in a row and then moves to the back. A tenant whose
+ * sub-queue runs empty leaves the ring and forfeits its remaining credit.
+ * Every dequeue touches only the head of the ring, so its cost does not
+ * depend on the number of tenants. Between two turns a tenant waits for at
+ * most the weights of the other tenants, however many emails they have
+ * queued.
+ * <p>
+ * Each {@link Priority} is a lane with its own sub-queues and ring, and a
+ * lane is only served while the lanes before it are empty, so transactional
+ * emails never wait behind queued bulk emails, not even those of their own
+ * tenant.
+ * <p>
+ * Like {@link java.util.concurrent.ArrayBlockingQueue} the queue is guarded
+ * by one {@link ReentrantLock}, so virtual threads waiting on it park instead
+ * of pinning their carrier.
+ */
+final class FairQueue {
+
+    /** Tenant of emails submitted without an access key. */
+    static final String NO_TENANT = "";
+
+    private final int capacity;
+    private final ToIntFunction<String> weights;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Lane[] lanes = new Lane[Priority.values().length];
+    private int size;
+
+    /** The tenants with queued emails of one priority; guarded by {@code lock}. */
+    private static final class Lane {
+        final Map<String, Tenant> tenants = new HashMap<>();
+        final ArrayDeque<Tenant> ring = new ArrayDeque<>();
+        int size;
+    }
+
+    /** A tenant with queued emails; guarded by {@code lock}. */
+    private static final class Tenant {
+        final String id;
+        final int weight;
+        final ArrayDeque<OutboundEmail> emails = new ArrayDeque<>();
+        int deficit;
+
+        Tenant(String id, int weight) {
+            this.id = id;
+            this.weight = Math.max(1, weight);
+        }
+    }
+
+    /**
+     * Creates an empty queue.
+     *
+     * @param capacity emails accepted by {@link #offer} before it refuses more
+     * @param weights  emails a tenant may dequeue per turn, by tenant id
+     */
+    FairQueue(int capacity, ToIntFunction<String> weights) {
+        this.capacity = capacity;
+        this.weights = weights;
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane();
+        }
+    }
+
+    /**
+     * Adds an email if the queue is below capacity.
+     *
+     * @param email the email to queue
+     * @return false if the queue is full
+     */
+    boolean offer(OutboundEmail email) {
+        lock.lock();
+        try {
+            if (size >= capacity) {
+                return false;
+            }
+            enqueue(email);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds emails regardless of capacity, e.g. those recovered on startup.
+     *
+     * @param emails the emails to queue
+     */
+    void addAll(Collection<OutboundEmail> emails) {
+        lock.lock();
+        try {
+            emails.forEach(this::enqueue);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the next email in fair order, waiting up to the given time for
+     * one to arrive.
+     *
+     * @param timeout how long to wait
+     * @param unit    unit of {@code timeout}
+     * @return the next email, or null if none arrived in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    OutboundEmail poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of queued emails of one priority.
+     *
+     * @param priority the lane
+     * @return emails queued in the lane
+     */
+    int size(Priority priority) {
+        lock.lock();
+        try {
+            return lanes[priority.ordinal()].size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int remainingCapacity() {
+        lock.lock();
+        try {
+            return Math.max(0, capacity - size);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of tenant sub-queues holding emails; a tenant with
+     * emails of both priorities has one in each lane.
+     *
+     * @return tenants in the round-robin rings
+     */
+    int tenants() {
+        lock.lock();
+        try {
+            int tenants = 0;
+            for (Lane lane : lanes) {
+                tenants += lane.ring.size();
+            }
+            return tenants;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(OutboundEmail email) {
+        Lane lane = lanes[email.request().effectivePriority().ordinal()];
+        String id = email.tenant() != null ? email.tenant() : NO_TENANT;
+        Tenant tenant = lane.tenants.get(id);
+        if (tenant == null) {
+            tenant = new Tenant(id, weights.applyAsInt(id));
+            lane.tenants.put(id, tenant);
+            lane.ring.addLast(tenant);
+        }
+        tenant.emails.addLast(email);
+        lane.size++;
+        size++;
+        notEmpty.signal();
+    }
+
+    private OutboundEmail dequeue() {
+        // Some lane holds emails; the first such lane is served
+        Lane lane = lanes[0];
+        for (int i = 1; lane.size == 0; i++) {
+            lane = lanes[i];
+        }
+        ArrayDeque<Tenant> ring = lane.ring;
+        Tenant tenant = ring.peekFirst();
+        if (tenant.deficit == 0) {
+            // Start of the tenant's turn
+            tenant.deficit = tenant.weight;
+        }
+        OutboundEmail email = tenant.emails.pollFirst();
+        lane.size--;
+        size--;
+        if (tenant.emails.isEmpty()) {
+            ring.pollFirst();
+            lane.tenants.remove(tenant.id);
+        } else if (--tenant.deficit == 0) {
+            ring.addLast(ring.pollFirst());
+        }
+        return email;
+    }
+
+}
@@ -0,0 +1,26 @@
+package io.github.haiphamcoder.mailer.outbox;
+
+/**
+ * When an outbox journal record is forced to disk.
+ */
+public enum FsyncPolicy {
+
+    /**
+     * The caller is acknowledged only after the record has been fsynced.
+     * Concurrent callers share one fsync (group commit).
+     */
+    ALWAYS,
+
+    /**
+     * The record is written to the OS immediately and fsynced by the
+     * background flusher within {@code mailer.outbox.journal.fsync-interval}.
+     * It survives a JVM crash but may be lost on power failure.
+     */
+    INTERVAL,
+
+    /**
+     * The record is written to the OS and never explicitly fsynced, except
+     * when a segment is closed.
+     */
+    NEVER
+}
@@ -0,0 +1,61 @@
+package io.github.haiphamcoder.mailer.outbox;
+
+import java.time.Instant;
+import java.util.List;
+
+import io.github.haiphamcoder.mailer.dto.EmailRequest;
+
+/**
+ * An accepted email waiting in the outbox.
+ *
+ * @param messageId  the id returned to the caller when the email was accepted
+ * @param tenant     the access key the email was submitted with, or null
+ *                   without one; the outbox takes turns between tenants
+ * @param request    the validated request
+ * @param acceptedAt when the email was accepted
+ * @param attempt    the 1-based number of the next delivery attempt
+ * @param envelope   the recipients still to deliver to, or null for all
+ *                   recipients of the request
+ */
+public record OutboundEmail(String messageId, String tenant, EmailRequest request, Instant acceptedAt,
+        int attempt, List<String> envelope) {
+
+    /**
+     * Creates an email for all recipients of its request.
+     */
+    public OutboundEmail(String messageId, String tenant, EmailRequest request, Instant acceptedAt, int attempt) {
+        this(messageId, tenant, request, acceptedAt, attempt, null);
+    }
+
+    /**
+     * Creates an email for its first delivery attempt.
+     *
+     * @param messageId the assigned message id
+     * @param tenant    the access key the email was submitted with, or null
+     * @param request   the validated request
+     * @return the outbound email
+     */
+    public static OutboundEmail accepted(String messageId, String tenant, EmailRequest request) {
+        return new OutboundEmail(messageId, tenant, request, Instant.now(), 1);
+    }
+
+    /**
+     * Returns a copy of this email for the following delivery attempt.
+     *
+     * @return the email with its attempt counter incremented
+     */
+    public OutboundEmail nextAttempt() {
+        return new OutboundEmail(messageId, tenant, request, acceptedAt, attempt + 1, envelope);
+    }
+
+    /**
+     * Returns a copy of this email delivered to only some of its recipients,
+     * e.g. those an attempt did not reach.
+     *
+     * @param recipients the recipients still to deliver to
+     * @return the email with the given envelope
+     */
+    public OutboundEmail withEnvelope(List<String> recipients) {
+        return new OutboundEmail(messageId, tenant, request, acceptedAt, attempt, List.copyOf(recipients));
+    }
+}
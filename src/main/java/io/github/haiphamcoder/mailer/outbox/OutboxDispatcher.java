@@ -0,0 +1,116 @@
+package io.github.haiphamcoder.mailer.outbox;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import io.github.haiphamcoder.mailer.exception.MailSendExceptionMapper;
+import io.github.haiphamcoder.mailer.exception.QuotaExhaustedException;
+import io.github.haiphamcoder.mailer.service.EmailService;
+import io.github.haiphamcoder.mailer.smtp.SmtpMetrics;
+import io.github.haiphamcoder.mailer.util.ThreadFactories;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Drains the {@link EmailOutbox} with a dedicated pool of sender workers.
+ * <p>
+ * Each worker takes the next queued email and hands it to {@link EmailService}.
+ * Transient failures are handed to the {@link RetryScheduler}, which puts the
+ * email back into the outbox after a backoff delay without holding a worker.
+ * When no sender account has quota available ({@link QuotaExhaustedException})
+ * the email is deferred through the {@link RetryScheduler} until the earliest
+ * account has quota again, without using up an attempt; this paces queued
+ * emails to the accounts' sending limits while the worker moves on. Once an
+ * email is delivered or given up on, it is marked done in the outbox journal,
+ * and its latency since it was accepted is recorded per priority in
+ * {@link SmtpMetrics}.
+ * Workers are started and stopped with the application context; on shutdown
+ * they keep draining queued emails for up to
+ * {@code mailer.outbox.shutdown-timeout}. With
+ * {@code spring.threads.virtual.enabled} the workers are virtual threads.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class OutboxDispatcher implements SmartLifecycle {
+
+    private static final long POLL_INTERVAL_MILLIS = 200;
+
+    private final EmailOutbox outbox;
+    private final EmailService emailService;
+    private final OutboxProperties properties;
+    private final RetryScheduler retryScheduler;
+    private final MailSendExceptionMapper exceptionMapper;
+    private final Environment environment;
+    private final SmtpMetrics metrics;
+
+    private volatile boolean running;
+    private ExecutorService workers;
+
+    @Override
+    public void start() {
+        running = true;
+        workers = Executors.newFixedThreadPool(properties.getWorkers(), ThreadFactories.blockingIo(environment,
+                "outbox-sender-"));
+        for (int i = 0; i < properties.getWorkers(); i++) {
+            workers.execute(this::drain);
+        }
+        log.info("Started {} outbox sender worker(s), outbox capacity {}", properties.getWorkers(),
+                outbox.capacity());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(properties.getShutdownTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                workers.shutdownNow();
+                log.warn("Outbox workers stopped with {} email(s) still queued", outbox.size());
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void drain() {
+        try {
+            while (running || outbox.size() > 0) {
+                OutboundEmail email = outbox.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (email != null) {
+                    deliver(email);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void deliver(OutboundEmail email) {
+        try {
+            emailService.sendEmail(email.messageId(), email.request(), email.envelope());
+            metrics.recordDelivery(email.request().effectivePriority(), email.acceptedAt());
+            outbox.complete(email);
+        } catch (QuotaExhaustedException e) {
+            retryScheduler.defer(email, e.retryAfterMillis());
+        } catch (Exception e) {
+            if (!retryScheduler.schedule(email, e)) {
+                log.error("Giving up on queued email {} after {} attempt(s) ({}): {}", email.messageId(),
+                        email.attempt(), exceptionMapper.map(e), e.getMessage());
+                outbox.complete(email);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,457 @@
+package io.github.haiphamcoder.mailer.outbox;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.haiphamcoder.mailer.dto.EmailRequest;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only, segmented write-ahead log of the outbox.
+ * <p>
+ * Every accepted email is appended as an {@code ACCEPTED} record before the
+ * caller is acknowledged ({@code TENANT_ACCEPTED} when it carries a tenant,
+ * whose id follows the timestamp), and a {@code DONE} record is appended once it has
+ * been delivered or given up on. When the journal is opened, its segments are
+ * replayed and every email without a {@code DONE} record is returned by
+ * {@link #recovered()}. Delivery is therefore at-least-once: an email sent
+ * just before a crash may be sent again after the restart.
+ * <p>
+ * A record is {@code int length, int crc32, byte type, payload}. Replay of a
+ * segment stops at the first torn or corrupt record; new records always go to
+ * a fresh segment.
+ * <p>
+ * Records are written through a {@link FileChannel} under a short lock. Fsyncs
+ * are group-committed: a caller that needs its record on disk forces the
+ * channel once for everything written so far, so callers arriving while an
+ * fsync is in progress share the next one. Segments roll at the configured
+ * size and are deleted oldest first once every email in them is done; a
+ * segment held back by a few long-pending emails is reclaimed by re-appending
+ * those emails to the current segment. Locks are {@link ReentrantLock}s so
+ * that virtual threads waiting for a write or an fsync do not pin their
+ * carrier.
+ */
+@Slf4j
+final class OutboxJournal implements Closeable {
+
+    private static final byte ACCEPTED = 1;
+    private static final byte DONE = 2;
+    private static final byte TENANT_ACCEPTED = 3;
+    private static final int HEADER_BYTES = 9;
+    private static final String SEGMENT_SUFFIX = ".wal";
+
+    /** Oldest segments with at most this many pending emails are reclaimed by copying them forward. */
+    private static final int RELOCATE_THRESHOLD = 128;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final ObjectMapper objectMapper;
+    private final FileChannel lockChannel;
+    private final FileLock directoryLock;
+    private final ScheduledExecutorService flusher;
+    private final List<OutboundEmail> recovered;
+
+    // Guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Pending> pending = new HashMap<>();
+    private final TreeMap<Long, Integer> liveCounts = new TreeMap<>();
+    private long segment;
+    private FileChannel channel;
+    private long segmentBytes;
+    private long written;
+    private long flushTarget;
+    private boolean reclaiming;
+
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final AtomicLong durable = new AtomicLong();
+
+    /**
+     * Opens the journal in the given directory, replaying existing segments.
+     *
+     * @param directory     the journal directory, created if missing
+     * @param segmentSize   size at which segments roll
+     * @param fsyncInterval how often the background flusher fsyncs
+     * @param objectMapper  serializes the email requests
+     * @throws IOException if the directory cannot be read or locked
+     */
+    OutboxJournal(Path directory, long segmentSize, Duration fsyncInterval, ObjectMapper objectMapper)
+            throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.objectMapper = objectMapper;
+        Files.createDirectories(directory);
+        this.lockChannel = FileChannel.open(directory.resolve("journal.lock"), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        this.directoryLock = tryLock(lockChannel, directory);
+
+        Map<String, Pending> replayed = new LinkedHashMap<>();
+        List<Long> segments = listSegments();
+        for (long number : segments) {
+            replay(number, replayed);
+            liveCounts.put(number, 0);
+        }
+        replayed.values().forEach(entry -> liveCounts.merge(entry.segment(), 1, Integer::sum));
+        pending.putAll(replayed);
+        recovered = replayed.values().stream().map(Pending::email).toList();
+
+        segment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1) + 1;
+        lock.lock();
+        try {
+            openSegment();
+            reclaim();
+        } finally {
+            lock.unlock();
+        }
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("outbox-journal-");
+        threadFactory.setDaemon(true);
+        flusher = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long interval = Math.max(1, fsyncInterval.toMillis());
+        flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the emails that were pending when the journal was opened, in
+     * acceptance order.
+     *
+     * @return the unsent emails
+     */
+    List<OutboundEmail> recovered() {
+        return recovered;
+    }
+
+    /**
+     * Records an accepted email. Does nothing if the email is already pending.
+     *
+     * @param email  the accepted email
+     * @param policy whether to wait for the record to reach the disk
+     * @throws IOException if the record cannot be written or synced
+     */
+    void append(OutboundEmail email, FsyncPolicy policy) throws IOException {
+        byte[] payload = encode(email);
+        long position;
+        lock.lock();
+        try {
+            if (pending.containsKey(email.messageId())) {
+                return;
+            }
+            position = write(acceptedType(email), payload);
+            pending.put(email.messageId(), new Pending(segment, email));
+            liveCounts.merge(segment, 1, Integer::sum);
+            if (policy == FsyncPolicy.INTERVAL) {
+                flushTarget = position;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (policy == FsyncPolicy.ALWAYS) {
+            sync(position);
+        }
+    }
+
+    /**
+     * Records that an email has been delivered or given up on. Does nothing if
+     * the email is not pending. The record is synced by the background flusher.
+     *
+     * @param messageId the email's message id
+     * @throws IOException if the record cannot be written
+     */
+    void complete(String messageId) throws IOException {
+        lock.lock();
+        try {
+            Pending entry = pending.remove(messageId);
+            if (entry == null) {
+                return;
+            }
+            flushTarget = write(DONE, encodeId(messageId));
+            liveCounts.merge(entry.segment(), -1, Integer::sum);
+            reclaim();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of pending emails.
+     *
+     * @return emails accepted but not yet done
+     */
+    int pendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of segment files currently on disk.
+     *
+     * @return segment count
+     */
+    int segmentCount() {
+        lock.lock();
+        try {
+            return liveCounts.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flusher.shutdownNow();
+        lock.lock();
+        try {
+            channel.force(false);
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+        directoryLock.release();
+        lockChannel.close();
+    }
+
+    /** Waits until everything up to {@code position} is on disk, sharing the fsync with concurrent callers. */
+    private void sync(long position) throws IOException {
+        if (durable.get() >= position) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (durable.get() >= position) {
+                return;
+            }
+            FileChannel current;
+            long target;
+            lock.lock();
+            try {
+                current = channel;
+                target = written;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                current.force(false);
+            } catch (ClosedChannelException e) {
+                // Rolled or closed since: both force the segment before closing it
+            }
+            durable.accumulateAndGet(target, Math::max);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void flush() {
+        try {
+            long target;
+            lock.lock();
+            try {
+                target = flushTarget;
+            } finally {
+                lock.unlock();
+            }
+            sync(target);
+        } catch (IOException e) {
+            log.error("Failed to sync outbox journal: {}", e.getMessage());
+        }
+    }
+
+    private long write(byte type, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(type).put(payload).flip();
+        if (segmentBytes > 0 && segmentBytes + record.remaining() > segmentSize) {
+            roll();
+        }
+        int length = record.remaining();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        segmentBytes += length;
+        written += length;
+        return written;
+    }
+
+    private void roll() throws IOException {
+        channel.force(false);
+        channel.close();
+        durable.accumulateAndGet(written, Math::max);
+        segment++;
+        openSegment();
+        reclaim();
+    }
+
+    private void openSegment() throws IOException {
+        channel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segmentBytes = 0;
+        liveCounts.put(segment, 0);
+    }
+
+    /** Deletes done segments oldest first, copying forward the few emails still pending in them. */
+    private void reclaim() throws IOException {
+        if (reclaiming) {
+            return;
+        }
+        reclaiming = true;
+        try {
+            Map.Entry<Long, Integer> oldest;
+            while ((oldest = liveCounts.firstEntry()) != null && oldest.getKey() < segment) {
+                if (oldest.getValue() > RELOCATE_THRESHOLD) {
+                    return;
+                }
+                if (oldest.getValue() > 0) {
+                    relocate(oldest.getKey());
+                }
+                liveCounts.remove(oldest.getKey());
+                Files.deleteIfExists(segmentPath(oldest.getKey()));
+            }
+        } finally {
+            reclaiming = false;
+        }
+    }
+
+    private void relocate(long from) throws IOException {
+        List<Pending> moved = new ArrayList<>();
+        for (Pending entry : pending.values()) {
+            if (entry.segment() == from) {
+                write(acceptedType(entry.email()), encode(entry.email()));
+                moved.add(new Pending(segment, entry.email()));
+            }
+        }
+        for (Pending entry : moved) {
+            pending.put(entry.email().messageId(), entry);
+            liveCounts.merge(entry.segment(), 1, Integer::sum);
+        }
+        channel.force(false);
+        durable.accumulateAndGet(written, Math::max);
+    }
+
+    private void replay(long number, Map<String, Pending> replayed) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segmentPath(number)));
+        while (buffer.remaining() >= HEADER_BYTES) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            byte type = buffer.get();
+            if (length < 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(type);
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                buffer.position(start);
+                break;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            String messageId = in.readUTF();
+            if (type == ACCEPTED || type == TENANT_ACCEPTED) {
+                Instant acceptedAt = Instant.ofEpochMilli(in.readLong());
+                String tenant = type == TENANT_ACCEPTED ? in.readUTF() : null;
+                int offset = length - in.available();
+                EmailRequest request = objectMapper.readValue(payload, offset, length - offset, EmailRequest.class);
+                replayed.put(messageId,
+                        new Pending(number, new OutboundEmail(messageId, tenant, request, acceptedAt, 1)));
+            } else if (type == DONE) {
+                replayed.remove(messageId);
+            }
+        }
+        if (buffer.hasRemaining()) {
+            log.warn("Ignoring {} torn or corrupt trailing byte(s) in outbox journal segment {}", buffer.remaining(),
+                    segmentPath(number).getFileName());
+        }
+    }
+
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("%020d%s", number, SEGMENT_SUFFIX));
+    }
+
+    private byte[] encode(OutboundEmail email) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(email.messageId());
+        out.writeLong(email.acceptedAt().toEpochMilli());
+        if (email.tenant() != null) {
+            out.writeUTF(email.tenant());
+        }
+        out.write(objectMapper.writeValueAsBytes(email.request()));
+        return bytes.toByteArray();
+    }
+
+    private static byte acceptedType(OutboundEmail email) {
+        return email.tenant() != null ? TENANT_ACCEPTED : ACCEPTED;
+    }
+
+    private static byte[] encodeId(String messageId) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        new DataOutputStream(bytes).writeUTF(messageId);
+        return bytes.toByteArray();
+    }
+
+    private static FileLock tryLock(FileChannel channel, Path directory) throws IOException {
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IllegalStateException("Outbox journal directory " + directory + " is in use by another process");
+        }
+        return lock;
+    }
+
+    /** A pending email and the segment holding its latest {@code ACCEPTED} record. */
+    private record Pending(long segment, OutboundEmail email) {
+    }
+
+}
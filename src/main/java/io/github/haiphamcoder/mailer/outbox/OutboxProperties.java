@@ -0,0 +1,142 @@
+package io.github.haiphamcoder.mailer.outbox;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
+import org.springframework.util.unit.DataSize;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration properties for the outbox used by asynchronous sends and its
+ * on-disk journal.
+ * <p>
+ * Example configuration:
+ * <pre>
+ * mailer.outbox.capacity=10000
+ * mailer.outbox.workers=4
+ * mailer.outbox.shutdown-timeout=30s
+ * mailer.outbox.journal.enabled=true
+ * mailer.outbox.journal.directory=data/outbox
+ * mailer.outbox.journal.fsync.async=always
+ * mailer.outbox.journal.fsync.retry=interval
+ * mailer.outbox.fairness.default-weight=1
+ * mailer.outbox.fairness.weights.crm=4
+ * </pre>
+ */
+@Getter
+@Setter
+@Validated
+@ConfigurationProperties(prefix = "mailer.outbox")
+public class OutboxProperties {
+
+    /**
+     * Maximum number of accepted-but-unsent messages held in memory.
+     * Submissions beyond this are rejected with {@code OUTBOX_FULL}.
+     */
+    @Min(1)
+    private int capacity = 10_000;
+
+    /**
+     * Number of sender workers draining the outbox. There is little benefit in
+     * going above {@code gmail.mail.pool.max-size}.
+     */
+    @Min(1)
+    private int workers = 4;
+
+    /**
+     * How long to keep draining queued messages on shutdown before giving up.
+     */
+    @NotNull
+    private Duration shutdownTimeout = Duration.ofSeconds(30);
+
+    /** Write-ahead journal settings under {@code mailer.outbox.journal.*}. */
+    @Valid
+    @NestedConfigurationProperty
+    private final Journal journal = new Journal();
+
+    /** Scheduling between tenants under {@code mailer.outbox.fairness.*}. */
+    @Valid
+    @NestedConfigurationProperty
+    private final Fairness fairness = new Fairness();
+
+    @Getter
+    @Setter
+    public static class Journal {
+
+        /**
+         * Whether accepted emails are journaled to disk and replayed on startup.
+         * When disabled, unsent emails are lost if the JVM stops.
+         */
+        private boolean enabled = true;
+
+        /** Directory holding the journal segments. */
+        @NotNull
+        private String directory = "data/outbox";
+
+        /** Size at which the current segment is closed and a new one started. */
+        @NotNull
+        private DataSize segmentSize = DataSize.ofMegabytes(16);
+
+        /** How often the background flusher fsyncs {@code INTERVAL} records. */
+        @NotNull
+        private Duration fsyncInterval = Duration.ofMillis(100);
+
+        /**
+         * Fsync policy per request class. Classes not listed use
+         * {@code ALWAYS}.
+         */
+        @NotNull
+        private Map<RequestClass, FsyncPolicy> fsync = new EnumMap<>(Map.of(
+                RequestClass.ASYNC, FsyncPolicy.ALWAYS,
+                RequestClass.DEFERRED, FsyncPolicy.ALWAYS,
+                RequestClass.BATCH, FsyncPolicy.ALWAYS,
+                RequestClass.RETRY, FsyncPolicy.INTERVAL));
+
+        /**
+         * Returns the fsync policy for a request class.
+         *
+         * @param requestClass the request class
+         * @return the configured policy, or {@code ALWAYS} if none is set
+         */
+        public FsyncPolicy fsyncPolicy(RequestClass requestClass) {
+            return fsync.getOrDefault(requestClass, FsyncPolicy.ALWAYS);
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class Fairness {
+
+        /** Emails a tenant may send per turn when it has no weight of its own. */
+        @Min(1)
+        private int defaultWeight = 1;
+
+        /**
+         * Emails each tenant, by access key, may send per turn. A tenant with
+         * weight 4 gets four times the share of one with weight 1 while both
+         * have emails queued.
+         */
+        @NotNull
+        private Map<String, @Min(1) Integer> weights = new HashMap<>();
+
+        /**
+         * Returns the weight of a tenant.
+         *
+         * @param tenant the tenant's access key
+         * @return the configured weight, or {@code default-weight}
+         */
+        public int weight(String tenant) {
+            return weights.getOrDefault(tenant, defaultWeight);
+        }
+    }
+}
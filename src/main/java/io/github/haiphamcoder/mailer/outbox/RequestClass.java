@@ -0,0 +1,20 @@
+package io.github.haiphamcoder.mailer.outbox;
+
+/**
+ * Why an email entered the outbox. Each class has its own journal
+ * {@link FsyncPolicy}, configured with {@code mailer.outbox.journal.fsync}.
+ */
+public enum RequestClass {
+
+    /** Submitted with {@code async=true}. */
+    ASYNC,
+
+    /** A synchronous send deferred because no sender account had quota. */
+    DEFERRED,
+
+    /** A batch item queued instead of sent in the batch call. */
+    BATCH,
+
+    /** A transient failure waiting for its next attempt. */
+    RETRY
+}
@@ -0,0 +1,57 @@
+package io.github.haiphamcoder.mailer.outbox;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration properties for retrying transient send failures.
+ * <p>
+ * The delay before attempt {@code n + 1} is
+ * {@code min(max-delay, initial-delay * multiplier^(n - 1))}, randomly spread by
+ * {@code +/- jitter} so that messages failing together do not retry together.
+ * <p>
+ * Example configuration:
+ * <pre>
+ * mailer.retry.max-attempts=3
+ * mailer.retry.initial-delay=1500ms
+ * mailer.retry.multiplier=2.0
+ * mailer.retry.max-delay=60s
+ * mailer.retry.jitter=0.5
+ * </pre>
+ */
+@Getter
+@Setter
+@Validated
+@ConfigurationProperties(prefix = "mailer.retry")
+public class RetryProperties {
+
+    /** Total number of send attempts, including the first one. */
+    @Min(1)
+    private int maxAttempts = 3;
+
+    /** Delay before the first retry. */
+    @NotNull
+    private Duration initialDelay = Duration.ofMillis(1500);
+
+    /** Factor applied to the delay after each failed attempt. */
+    @DecimalMin("1.0")
+    private double multiplier = 2.0;
+
+    /** Upper bound for the delay between attempts. */
+    @NotNull
+    private Duration maxDelay = Duration.ofSeconds(60);
+
+    /** Relative random spread applied to each delay (0 = none, 0.5 = +/-50%). */
+    @DecimalMin("0.0")
+    @DecimalMax("1.0")
+    private double jitter = 0.5;
+}
@@ -0,0 +1,132 @@
+package io.github.haiphamcoder.mailer.outbox;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import io.github.haiphamcoder.mailer.dto.RecipientFailure;
+import io.github.haiphamcoder.mailer.exception.MailFailure;
+import io.github.haiphamcoder.mailer.exception.MailSendExceptionMapper;
+import io.github.haiphamcoder.mailer.exception.RecipientsFailedException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Timer-driven retry of transient send failures.
+ * <p>
+ * Instead of sleeping on the sending thread, a failed email is handed to a
+ * single timer thread that puts it back into the {@link EmailOutbox} once its
+ * backoff delay has elapsed; the outbox workers then make the next attempt.
+ * Only failures that {@link MailSendExceptionMapper} classifies as retryable
+ * are scheduled, and only until {@code mailer.retry.max-attempts} is reached.
+ * An email that reached some of its recipients is retried for the others
+ * only. Emails that found no sender account with quota are put back the same
+ * way through {@link #defer(OutboundEmail, long)}, without using up an
+ * attempt.
+ * <p>
+ * Pending retries are held in memory; the email itself is recorded in the
+ * outbox journal first, so a retry dropped when the JVM stops is replayed on
+ * the next start, to all of its recipients. Their number is published as the gauge
+ * {@code mailer.retry.pending}.
+ */
+@Component
+@Slf4j
+public class RetryScheduler implements DisposableBean {
+
+    private final EmailOutbox outbox;
+    private final RetryProperties properties;
+    private final MailSendExceptionMapper exceptionMapper;
+    private final ScheduledExecutorService timer;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    public RetryScheduler(EmailOutbox outbox, RetryProperties properties, MailSendExceptionMapper exceptionMapper,
+            MeterRegistry meterRegistry) {
+        this.outbox = outbox;
+        this.properties = properties;
+        this.exceptionMapper = exceptionMapper;
+        Gauge.builder("mailer.retry.pending", pending, AtomicInteger::get)
+                .description("Emails waiting for their retry delay to elapse")
+                .register(meterRegistry);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("mail-retry-");
+        threadFactory.setDaemon(true);
+        this.timer = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    /**
+     * Schedules the next attempt for an email whose current attempt failed.
+     *
+     * @param email   the email whose attempt failed
+     * @param failure the failure
+     * @return true if a retry was scheduled; false if the failure is permanent
+     *         or the email has used all of its attempts
+     */
+    public boolean schedule(OutboundEmail email, Throwable failure) {
+        MailFailure classification = exceptionMapper.classify(failure);
+        if (!classification.retryable() || email.attempt() >= properties.getMaxAttempts()) {
+            return false;
+        }
+        outbox.persist(email, RequestClass.RETRY);
+        long delay = backoffMillis(email.attempt());
+        log.info("Scheduling attempt {} of email {} in {}ms after {}", email.attempt() + 1, email.messageId(),
+                delay, classification.code());
+        OutboundEmail next = email.nextAttempt();
+        if (failure instanceof RecipientsFailedException partial && partial.delivered() > 0) {
+            next = next.withEnvelope(partial.recipients().stream().map(RecipientFailure::address).toList());
+        }
+        requeueLater(next, delay);
+        return true;
+    }
+
+    /**
+     * Puts an email back into the outbox after a delay without counting an
+     * attempt, e.g. while no sender account has quota for it.
+     *
+     * @param email       the email, already recorded in the outbox journal
+     * @param delayMillis how long to wait before requeueing it
+     */
+    public void defer(OutboundEmail email, long delayMillis) {
+        requeueLater(email, Math.max(1, delayMillis));
+    }
+
+    /**
+     * Computes the jittered delay to wait after the given failed attempt.
+     *
+     * @param failedAttempt the 1-based attempt that failed
+     * @return the delay in milliseconds
+     */
+    long backoffMillis(int failedAttempt) {
+        double base = properties.getInitialDelay().toMillis()
+                * Math.pow(properties.getMultiplier(), failedAttempt - 1);
+        base = Math.min(base, properties.getMaxDelay().toMillis());
+        double spread = properties.getJitter() * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return Math.max(0, Math.round(base * (1 + spread)));
+    }
+
+    private void requeueLater(OutboundEmail email, long delayMillis) {
+        pending.incrementAndGet();
+        timer.schedule(() -> {
+            pending.decrementAndGet();
+            if (!outbox.requeue(email)) {
+                // Outbox is full: the email was already accepted, so keep it and try again
+                requeueLater(email, properties.getInitialDelay().toMillis());
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        List<Runnable> dropped = timer.shutdownNow();
+        if (!dropped.isEmpty()) {
+            log.warn("Dropped {} pending email retr(ies) on shutdown", dropped.size());
+        }
+    }
+
+}
@@ -0,0 +1,105 @@
+package io.github.haiphamcoder.mailer.quota;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Quota state of one sending account.
+ * <p>
+ * Daily message and recipient counts are kept in {@link SlidingWindowCounter}s
+ * (96 buckets of 15 minutes). Pacing uses the generic cell rate algorithm:
+ * every permit pushes a theoretical arrival time forward by one emission
+ * interval ({@code 1 minute / messages-per-minute}), and a send is allowed
+ * while that time is no more than {@code burst} intervals ahead of now. This
+ * spreads sends evenly instead of letting a burst run into the server's
+ * throttling.
+ * <p>
+ * State is guarded by a {@link ReentrantLock} rather than a monitor, so
+ * virtual threads contending for it park instead of blocking their carrier.
+ */
+final class AccountQuota {
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final int DAY_BUCKETS = 96;
+
+    private final SlidingWindowCounter dailyMessages;
+    private final SlidingWindowCounter dailyRecipients;
+    private final long emissionIntervalMillis;
+    private final long burstToleranceMillis;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long theoreticalArrival;
+
+    AccountQuota(QuotaProperties properties) {
+        this.dailyMessages = new SlidingWindowCounter(properties.getDailyMessages(), DAY_MILLIS, DAY_BUCKETS);
+        this.dailyRecipients = new SlidingWindowCounter(properties.getDailyRecipients(), DAY_MILLIS, DAY_BUCKETS);
+        this.emissionIntervalMillis = Math.max(1, TimeUnit.MINUTES.toMillis(1) / properties.getMessagesPerMinute());
+        this.burstToleranceMillis = emissionIntervalMillis * (properties.getBurst() - 1);
+    }
+
+    /**
+     * Takes a permit for one message if the quota allows it now.
+     *
+     * @param recipients number of recipients of the message
+     * @param now        current time in milliseconds
+     * @return 0 if the permit was taken, otherwise milliseconds until it may be
+     */
+    long tryAcquire(int recipients, long now) {
+        lock.lock();
+        try {
+            long arrival = Math.max(theoreticalArrival, now);
+            long wait = Math.max(0, arrival - burstToleranceMillis - now);
+            wait = Math.max(wait, dailyMessages.waitMillis(1, now));
+            wait = Math.max(wait, dailyRecipients.waitMillis(recipients, now));
+            if (wait > 0) {
+                return wait;
+            }
+            theoreticalArrival = arrival + emissionIntervalMillis;
+            dailyMessages.add(1, now);
+            dailyRecipients.add(recipients, now);
+            return 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives back a permit taken by {@link #tryAcquire(int, long)} for a message
+     * that was not sent, moving the pacing schedule back by one interval.
+     *
+     * @param recipients number of recipients the permit was taken for
+     * @param now        current time in milliseconds
+     */
+    void refund(int recipients, long now) {
+        lock.lock();
+        try {
+            theoreticalArrival -= emissionIntervalMillis;
+            dailyMessages.remove(1, now);
+            dailyRecipients.remove(recipients, now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long remainingMessages(long now) {
+        lock.lock();
+        try {
+            return dailyMessages.remaining(now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long remainingRecipients(long now) {
+        lock.lock();
+        try {
+            return dailyRecipients.remaining(now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long recipientLimit() {
+        return dailyRecipients.limit();
+    }
+
+}
@@ -0,0 +1,136 @@
+package io.github.haiphamcoder.mailer.quota;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.github.haiphamcoder.mailer.dto.EmailRequest;
+import io.github.haiphamcoder.mailer.util.MaskingUtil;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Tracks and paces sends against each account's Gmail sending limits.
+ * <p>
+ * {@code SenderAccountRouter} asks for a permit before every SMTP attempt. A
+ * permit is granted only if the account has daily message and recipient quota
+ * left and the pacing schedule allows a send now; otherwise the caller is told
+ * how long to wait and is expected to try another account or queue the
+ * message rather than send it into a throttling error. See {@link AccountQuota} for the algorithms.
+ * <p>
+ * Remaining daily quota is published as the gauge
+ * {@code mailer.quota.remaining}, tagged with the (masked) {@code account}
+ * and {@code type} ({@code messages} or {@code recipients}).
+ * <p>
+ * Counts are held in memory and start from zero when the application starts.
+ */
+@Component
+public class QuotaManager {
+
+    private final QuotaProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final LongSupplier clock;
+    private final Map<String, AccountQuota> accounts = new ConcurrentHashMap<>();
+
+    @Autowired
+    public QuotaManager(QuotaProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, System::currentTimeMillis);
+    }
+
+    QuotaManager(QuotaProperties properties, MeterRegistry meterRegistry, LongSupplier clock) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+    }
+
+    /**
+     * Takes a permit for one message with the given number of recipients. A
+     * message with more recipients than the daily limit is admitted once the
+     * window is empty.
+     *
+     * @param account    the sending account
+     * @param recipients number of recipients of the message
+     * @return 0 if the message may be sent now, otherwise milliseconds to wait
+     */
+    public long tryAcquire(String account, int recipients) {
+        if (!properties.isEnabled()) {
+            return 0;
+        }
+        AccountQuota quota = quota(account);
+        return quota.tryAcquire((int) Math.min(recipients, quota.recipientLimit()), clock.getAsLong());
+    }
+
+    /**
+     * Gives back a permit taken by {@link #tryAcquire(String, int)} for a
+     * message that was never sent, e.g. one part of a split email when the
+     * other parts could not get a permit.
+     *
+     * @param account    the sending account
+     * @param recipients number of recipients the permit was taken for
+     */
+    public void refund(String account, int recipients) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        AccountQuota quota = quota(account);
+        quota.refund((int) Math.min(recipients, quota.recipientLimit()), clock.getAsLong());
+    }
+
+    /**
+     * Returns the messages the account may still send in the current window.
+     *
+     * @param account the sending account
+     * @return remaining daily messages
+     */
+    public long remainingMessages(String account) {
+        return quota(account).remainingMessages(clock.getAsLong());
+    }
+
+    /**
+     * Returns the recipients the account may still address in the current
+     * window.
+     *
+     * @param account the sending account
+     * @return remaining daily recipients
+     */
+    public long remainingRecipients(String account) {
+        return quota(account).remainingRecipients(clock.getAsLong());
+    }
+
+    private AccountQuota quota(String account) {
+        return accounts.computeIfAbsent(account, this::register);
+    }
+
+    private AccountQuota register(String account) {
+        AccountQuota quota = new AccountQuota(properties);
+        String tag = MaskingUtil.maskEmail(account);
+        Gauge.builder("mailer.quota.remaining", quota, q -> q.remainingMessages(clock.getAsLong()))
+                .description("Messages the account may still send in the rolling day")
+                .tags("account", tag, "type", "messages")
+                .register(meterRegistry);
+        Gauge.builder("mailer.quota.remaining", quota, q -> q.remainingRecipients(clock.getAsLong()))
+                .description("Recipients the account may still address in the rolling day")
+                .tags("account", tag, "type", "recipients")
+                .register(meterRegistry);
+        return quota;
+    }
+
+    /**
+     * Counts the To, Cc and Bcc recipients of a request.
+     *
+     * @param request the email request
+     * @return the number of recipients
+     */
+    public static int recipientCount(EmailRequest request) {
+        return size(request.to()) + size(request.cc()) + size(request.bcc());
+    }
+
+    private static int size(List<String> addresses) {
+        return addresses == null ? 0 : addresses.size();
+    }
+
+}
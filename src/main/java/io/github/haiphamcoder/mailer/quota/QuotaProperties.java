@@ -0,0 +1,57 @@
+package io.github.haiphamcoder.mailer.quota;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.Min;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration properties for per-account sending quotas.
+ * <p>
+ * The defaults follow Google Workspace limits for SMTP submission (2,000
+ * messages and 10,000 recipients per rolling day). Personal Gmail accounts
+ * have lower limits (around 500 messages per day) and should be configured
+ * accordingly.
+ * <p>
+ * Example configuration:
+ * <pre>
+ * mailer.quota.enabled=true
+ * mailer.quota.daily-messages=2000
+ * mailer.quota.daily-recipients=10000
+ * mailer.quota.messages-per-minute=60
+ * mailer.quota.burst=20
+ * </pre>
+ */
+@Getter
+@Setter
+@Validated
+@ConfigurationProperties(prefix = "mailer.quota")
+public class QuotaProperties {
+
+    /** Whether quotas are tracked and enforced. */
+    private boolean enabled = true;
+
+    /** Messages an account may send in any rolling 24-hour window. */
+    @Min(1)
+    private int dailyMessages = 2_000;
+
+    /**
+     * Recipients (To, Cc and Bcc combined) an account may address in any
+     * rolling 24-hour window.
+     */
+    @Min(1)
+    private int dailyRecipients = 10_000;
+
+    /**
+     * Steady pacing rate. Sends are spaced evenly at this rate once the burst
+     * allowance is used up.
+     */
+    @Min(1)
+    private int messagesPerMinute = 60;
+
+    /** Number of messages that may be sent back-to-back before pacing applies. */
+    @Min(1)
+    private int burst = 20;
+}
@@ -0,0 +1,141 @@
+package io.github.haiphamcoder.mailer.quota;
+
+import java.util.Arrays;
+
+/**
+ * Counts events over a rolling time window split into fixed buckets.
+ * <p>
+ * The window slides one bucket at a time, so an event stops counting between
+ * {@code window - bucket} and {@code window} after it happened. Memory and
+ * work per call are bounded by the bucket count regardless of traffic.
+ * <p>
+ * Not thread-safe; callers synchronize.
+ */
+final class SlidingWindowCounter {
+
+    private final long limit;
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final long[] counts;
+    private final long[] slots;
+    private long total;
+    private long expiredThrough = Long.MIN_VALUE;
+
+    /**
+     * Creates a counter.
+     *
+     * @param limit        maximum count within the window
+     * @param windowMillis window length in milliseconds
+     * @param bucketCount  number of buckets the window is split into
+     */
+    SlidingWindowCounter(long limit, long windowMillis, int bucketCount) {
+        this.limit = limit;
+        this.bucketCount = bucketCount;
+        this.bucketMillis = Math.max(1, windowMillis / bucketCount);
+        this.counts = new long[bucketCount];
+        this.slots = new long[bucketCount];
+        Arrays.fill(slots, Long.MIN_VALUE);
+    }
+
+    /**
+     * Returns how long to wait until {@code amount} more events fit in the
+     * window.
+     *
+     * @param amount the events to add
+     * @param now    current time in milliseconds
+     * @return 0 if they fit now, otherwise the wait in milliseconds
+     */
+    long waitMillis(long amount, long now) {
+        long current = expire(now);
+        if (total + amount <= limit) {
+            return 0;
+        }
+        long freed = 0;
+        for (long slot = current - bucketCount + 1; slot <= current; slot++) {
+            int index = index(slot);
+            if (slots[index] == slot) {
+                freed += counts[index];
+                if (total - freed + amount <= limit) {
+                    return (slot + bucketCount) * bucketMillis - now;
+                }
+            }
+        }
+        // More than the whole window allows: wait for it to empty
+        return bucketCount * bucketMillis;
+    }
+
+    /**
+     * Records events.
+     *
+     * @param amount the number of events
+     * @param now    current time in milliseconds
+     */
+    void add(long amount, long now) {
+        long current = expire(now);
+        int index = index(current);
+        if (slots[index] != current) {
+            total -= counts[index];
+            counts[index] = 0;
+            slots[index] = current;
+        }
+        counts[index] += amount;
+        total += amount;
+    }
+
+    /**
+     * Takes back the most recently recorded events, e.g. for a permit that was
+     * not used. Events that already slid out of the window are not counted.
+     *
+     * @param amount the number of events
+     * @param now    current time in milliseconds
+     */
+    void remove(long amount, long now) {
+        long current = expire(now);
+        for (long slot = current; slot > current - bucketCount && amount > 0; slot--) {
+            int index = index(slot);
+            if (slots[index] == slot) {
+                long taken = Math.min(amount, counts[index]);
+                counts[index] -= taken;
+                total -= taken;
+                amount -= taken;
+            }
+        }
+    }
+
+    /**
+     * Returns how many more events fit in the window right now.
+     *
+     * @param now current time in milliseconds
+     * @return remaining allowance, never negative
+     */
+    long remaining(long now) {
+        expire(now);
+        return Math.max(0, limit - total);
+    }
+
+    long limit() {
+        return limit;
+    }
+
+    /** Drops buckets that slid out of the window; returns the current slot. */
+    private long expire(long now) {
+        long current = Math.floorDiv(now, bucketMillis);
+        if (current != expiredThrough) {
+            long oldest = current - bucketCount + 1;
+            for (int i = 0; i < bucketCount; i++) {
+                if (slots[i] != Long.MIN_VALUE && slots[i] < oldest) {
+                    total -= counts[i];
+                    counts[i] = 0;
+                    slots[i] = Long.MIN_VALUE;
+                }
+            }
+            expiredThrough = current;
+        }
+        return current;
+    }
+
+    private int index(long slot) {
+        return (int) Math.floorMod(slot, (long) bucketCount);
+    }
+
+}
@@ -0,0 +1,54 @@
+package io.github.haiphamcoder.mailer.security;
+
+import java.util.Set;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * An authenticated client: its access key, the pre-initialised key material
+ * of its secret, the scopes it was granted and its request rate limit.
+ * <p>
+ * {@link SecurityFilter} stores the access key of an authenticated request in
+ * the request attribute {@link #ATTRIBUTE}.
+ *
+ * @param id        the {@code X-Access-Key} value
+ * @param hmacKey   key material of the secret the client signs with
+ * @param scopes    the endpoints the client may call
+ * @param rateLimit the client's request rate limit, or null for the
+ *                  {@code mailer.rate-limit.*} defaults
+ */
+public record AccessKey(String id, HmacKey hmacKey, Set<Scope> scopes, RateLimit rateLimit) {
+
+    /** Request attribute holding the {@link AccessKey} of an authenticated request. */
+    public static final String ATTRIBUTE = "io.github.haiphamcoder.mailer.security.AccessKey";
+
+    public AccessKey {
+        scopes = Set.copyOf(scopes);
+    }
+
+    /**
+     * Whether the client was granted a scope.
+     *
+     * @param scope the required scope
+     * @return true if granted
+     */
+    public boolean allows(Scope scope) {
+        return scopes.contains(scope);
+    }
+
+    /**
+     * Request rate limit of one access key, as a token bucket.
+     *
+     * @param requestsPerSecond steady rate at which requests are accepted
+     * @param burst             requests that may arrive back-to-back
+     */
+    public record RateLimit(@JsonProperty("requests-per-second") int requestsPerSecond, int burst) {
+
+        public RateLimit {
+            if (requestsPerSecond < 1 || burst < 1) {
+                throw new IllegalArgumentException("Rate limit needs a positive requests-per-second and burst");
+            }
+        }
+    }
+
+}
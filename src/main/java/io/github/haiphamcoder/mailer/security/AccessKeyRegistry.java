@@ -0,0 +1,228 @@
+package io.github.haiphamcoder.mailer.security;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The access keys allowed to call the API, with their secrets and scopes.
+ * <p>
+ * Without {@code api.security.access-keys.file} every client signs with the
+ * shared {@code api.security.secret-key} and is granted every scope; since
+ * any client can then claim any {@code X-Access-Key}, they are all treated as
+ * the single access key {@value #SHARED_ID}.
+ * <p>
+ * With the file, only the access keys listed in it are accepted:
+ * <pre>
+ * {
+ *   "shop-frontend": { "secret": "...", "scopes": ["send"],
+ *                      "rate-limit": { "requests-per-second": 5, "burst": 20 } },
+ *   "crm":           { "secret": "..." }
+ * }
+ * </pre>
+ * Omitting {@code scopes} grants every {@link Scope}; omitting
+ * {@code rate-limit} applies the {@code mailer.rate-limit.*} defaults. The file is parsed into
+ * an immutable map of {@link AccessKey}s, each with its {@link HmacKey}
+ * already initialised, so a lookup is a single hash probe. With
+ * {@code api.security.access-keys.watch} the file's directory is watched and
+ * the map is rebuilt and swapped in atomically when the file changes; the
+ * key material of secrets that did not change is carried over. A file that
+ * fails to parse is logged and ignored, leaving the previous keys in place.
+ * Components that keep state per access key register with
+ * {@link #addReloadListener} to drop the state of keys that were removed.
+ */
+@Component
+@Slf4j
+public class AccessKeyRegistry implements DisposableBean {
+
+    /** Id of the access key shared by all clients when no access-key file is configured. */
+    public static final String SHARED_ID = "shared";
+
+    private static final TypeReference<Map<String, Entry>> ENTRIES = new TypeReference<>() {
+    };
+
+    private final ObjectMapper objectMapper;
+    private final Path file;
+    private final AccessKey shared;
+    private final WatchService watchService;
+    private final ExecutorService watcher;
+    private final List<Consumer<Set<String>>> reloadListeners = new CopyOnWriteArrayList<>();
+    private volatile Map<String, AccessKey> keys = Map.of();
+    /** Contents of the file last loaded; guarded by {@code this}. */
+    private byte[] loaded;
+
+    /** One access key as written in the file. */
+    record Entry(String secret, Set<String> scopes, @JsonProperty("rate-limit") AccessKey.RateLimit rateLimit) {
+    }
+
+    public AccessKeyRegistry(SecurityProperties properties, ObjectMapper objectMapper) throws IOException {
+        this.objectMapper = objectMapper;
+        SecurityProperties.AccessKeys config = properties.getAccessKeys();
+        String configured = config.getFile();
+        if (configured == null || configured.isBlank()) {
+            this.file = null;
+            this.shared = new AccessKey(SHARED_ID, new HmacKey(properties.getSecretKey()),
+                    EnumSet.allOf(Scope.class), null);
+            this.watchService = null;
+            this.watcher = null;
+            return;
+        }
+        this.file = Path.of(configured).toAbsolutePath();
+        this.shared = null;
+        reload();
+        log.info("Loaded {} access key(s) from {}", keys.size(), file);
+        if (!config.isWatch()) {
+            this.watchService = null;
+            this.watcher = null;
+            return;
+        }
+        this.watchService = FileSystems.getDefault().newWatchService();
+        file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("access-key-watcher-");
+        threadFactory.setDaemon(true);
+        this.watcher = Executors.newSingleThreadExecutor(threadFactory);
+        watcher.execute(this::watch);
+    }
+
+    /**
+     * Looks up an access key.
+     *
+     * @param id the {@code X-Access-Key} value
+     * @return the access key, or null if it is unknown
+     */
+    public AccessKey lookup(String id) {
+        return shared != null ? shared : keys.get(id);
+    }
+
+    /**
+     * Returns the number of access keys currently accepted, 1 for the shared
+     * key.
+     *
+     * @return access key count
+     */
+    public int size() {
+        return shared != null ? 1 : keys.size();
+    }
+
+    /**
+     * Registers a callback that is passed the ids of the accepted access keys
+     * each time new keys are swapped in. It runs on the thread that reloaded
+     * the file and must not block.
+     *
+     * @param listener the callback
+     */
+    public void addReloadListener(Consumer<Set<String>> listener) {
+        reloadListeners.add(listener);
+    }
+
+    /**
+     * Reads the access-key file and swaps in its keys if it changed since it
+     * was last loaded, then notifies the reload listeners.
+     *
+     * @return true if new keys were swapped in
+     * @throws IOException              if the file cannot be read
+     * @throws IllegalArgumentException if the file is invalid
+     */
+    synchronized boolean reload() throws IOException {
+        byte[] content = Files.readAllBytes(file);
+        if (Arrays.equals(content, loaded)) {
+            return false;
+        }
+        Map<String, Entry> entries = objectMapper.readValue(content, ENTRIES);
+        if (entries == null) {
+            throw new IllegalArgumentException("Access-key file " + file + " is empty");
+        }
+        Map<String, AccessKey> previous = keys;
+        Map<String, AccessKey> parsed = new HashMap<>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            String id = entry.getKey();
+            Entry value = entry.getValue();
+            if (id.isBlank() || value == null || value.secret() == null || value.secret().isBlank()) {
+                throw new IllegalArgumentException("Access key '" + id + "' has no secret");
+            }
+            AccessKey old = previous.get(id);
+            HmacKey hmacKey = old != null && old.hmacKey().matches(value.secret())
+                    ? old.hmacKey()
+                    : new HmacKey(value.secret());
+            parsed.put(id, new AccessKey(id, hmacKey, scopes(id, value.scopes()), value.rateLimit()));
+        }
+        keys = Map.copyOf(parsed);
+        loaded = content;
+        for (Consumer<Set<String>> listener : reloadListeners) {
+            listener.accept(keys.keySet());
+        }
+        return true;
+    }
+
+    private static Set<Scope> scopes(String id, Set<String> names) {
+        if (names == null) {
+            return EnumSet.allOf(Scope.class);
+        }
+        Set<Scope> scopes = EnumSet.noneOf(Scope.class);
+        for (String name : names) {
+            try {
+                scopes.add(Scope.parse(name));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Access key '" + id + "' has unknown scope '" + name + "'", e);
+            }
+        }
+        return scopes;
+    }
+
+    private void watch() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            // Any event in the directory may replace the file, e.g. by a rename
+            // or a symlink swap, so compare contents rather than event names
+            key.pollEvents();
+            key.reset();
+            try {
+                if (reload()) {
+                    log.info("Reloaded {} access key(s) from {}", keys.size(), file);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("Cannot reload access keys from {}, keeping the previous ones: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (watcher != null) {
+            watcher.shutdownNow();
+            watchService.close();
+        }
+    }
+
+}
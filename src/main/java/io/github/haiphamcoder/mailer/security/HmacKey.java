@@ -0,0 +1,84 @@
+package io.github.haiphamcoder.mailer.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Pre-initialised HMAC-SHA512 key material for one secret.
+ * <p>
+ * The secret is encoded and wrapped in a {@link SecretKeySpec} once, and
+ * {@link Mac} instances initialised with that key are reused through a
+ * {@link ScratchPool}, so signing never calls {@link Mac#getInstance} or
+ * {@link Mac#init} on the request path, on platform or virtual threads alike.
+ * {@link Mac#doFinal} resets an instance, leaving it ready for the next use.
+ */
+public final class HmacKey {
+
+    static final String HMAC_SHA512 = "HmacSHA512";
+
+    /** Length in bytes of an HMAC-SHA512 tag. */
+    static final int MAC_LENGTH = 64;
+
+    private final SecretKeySpec keySpec;
+    private final ScratchPool<Mac> macs = new ScratchPool<>(this::newMac);
+
+    /**
+     * Creates key material for the given secret.
+     *
+     * @param secretKey the shared secret
+     * @throws IllegalArgumentException if the secret is null or blank
+     */
+    public HmacKey(String secretKey) {
+        if (secretKey == null || secretKey.isBlank()) {
+            throw new IllegalArgumentException("Secret key cannot be null or empty");
+        }
+        this.keySpec = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), HMAC_SHA512);
+        // Fail fast on an unusable key rather than on the first request
+        macs.release(newMac());
+    }
+
+    /**
+     * Takes an initialised {@link Mac} for exclusive use until it is passed to
+     * {@link #release(Mac)}.
+     *
+     * @return a ready-to-use Mac
+     */
+    Mac acquire() {
+        return macs.acquire();
+    }
+
+    /**
+     * Returns a {@link Mac} obtained from {@link #acquire()}. It must have been
+     * reset, e.g. by {@link Mac#doFinal}.
+     *
+     * @param mac the Mac to reuse
+     */
+    void release(Mac mac) {
+        macs.release(mac);
+    }
+
+    /**
+     * Whether this key material was created for the given secret.
+     *
+     * @param secretKey the secret to compare with
+     * @return true if the secrets are equal
+     */
+    boolean matches(String secretKey) {
+        return MessageDigest.isEqual(keySpec.getEncoded(), secretKey.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_SHA512);
+            mac.init(keySpec);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to initialise " + HMAC_SHA512, e);
+        }
+    }
+
+}
@@ -1,13 +1,11 @@
 package io.github.haiphamcoder.mailer.security;
 
-import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
+import javax.crypto.ShortBufferException;
 
 import org.springframework.stereotype.Service;
 
@@ -32,13 +30,25 @@ import lombok.extern.slf4j.Slf4j;
  * - Timestamp validation prevents replay attacks (default: 5 minutes tolerance)
  * - HMAC-SHA512 provides strong cryptographic authentication
  * - Secret key should be stored securely (environment variables, secret managers)
+ * <p>
+ * Performance: key material is prepared once per secret ({@link HmacKey}) and
+ * initialised {@link Mac}s and scratch buffers are reused through small
+ * lock-free pools rather than thread locals, which would be rebuilt for every
+ * request on virtual threads. Verification decodes the provided hex signature
+ * into a pooled buffer and compares raw tag bytes in constant time, so the hot
+ * path allocates nothing beyond the header strings the servlet container
+ * already created.
  */
 @Service
 @Slf4j
 public class HmacSignatureService {
 
-    private static final String HMAC_SHA512 = "HmacSHA512";
     private static final long DEFAULT_TIMESTAMP_TOLERANCE_SECONDS = 300; // 5 minutes
+    private static final int MAX_CACHED_KEYS = 64;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final ConcurrentHashMap<String, HmacKey> keys = new ConcurrentHashMap<>();
+    private final ScratchPool<Buffers> buffers = new ScratchPool<>(Buffers::new);
 
     /**
      * Generates an HMAC-SHA512 signature for the given timestamp.
@@ -49,21 +59,24 @@ public class HmacSignatureService {
      * @throws IllegalArgumentException if secret key is null or empty
      */
     public String generateSignature(long timestamp, String secretKey) {
-        if (secretKey == null || secretKey.isBlank()) {
-            throw new IllegalArgumentException("Secret key cannot be null or empty");
-        }
+        return generateSignature(timestamp, keyFor(secretKey));
+    }
 
+    /**
+     * Generates an HMAC-SHA512 signature for the given timestamp with
+     * pre-initialised key material.
+     *
+     * @param timestamp the current timestamp in milliseconds
+     * @param key       the key material
+     * @return the generated signature as a hexadecimal string
+     */
+    public String generateSignature(long timestamp, HmacKey key) {
+        Buffers scratch = buffers.acquire();
         try {
-            String data = String.valueOf(timestamp);
-            Mac mac = Mac.getInstance(HMAC_SHA512);
-            SecretKeySpec secretKeySpec = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), HMAC_SHA512);
-            mac.init(secretKeySpec);
-            
-            byte[] signatureBytes = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
-            return bytesToHex(signatureBytes);
-        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
-            log.error("Failed to generate HMAC signature", e);
-            throw new RuntimeException("Failed to generate signature", e);
+            sign(timestamp, key, scratch);
+            return toHex(scratch.expected);
+        } finally {
+            buffers.release(scratch);
         }
     }
 
@@ -82,11 +95,7 @@ public class HmacSignatureService {
         }
 
         try {
-            String expectedSignature = generateSignature(timestamp, secretKey);
-            return MessageDigest.isEqual(
-                providedSignature.getBytes(StandardCharsets.UTF_8),
-                expectedSignature.getBytes(StandardCharsets.UTF_8)
-            );
+            return verifySignature(timestamp, keyFor(secretKey), providedSignature);
         } catch (IllegalArgumentException e) {
             log.warn("Invalid parameters for HMAC signature verification", e);
             return false;
@@ -96,6 +105,34 @@ public class HmacSignatureService {
         }
     }
 
+    /**
+     * Verifies an HMAC signature with pre-initialised key material.
+     * <p>
+     * The hex signature is decoded and the raw tag bytes are compared in
+     * constant time. Signatures of the wrong length or containing non-hex
+     * characters are rejected without computing the MAC.
+     *
+     * @param timestamp         the timestamp from the request
+     * @param key               the key material
+     * @param providedSignature the hex signature provided in the request
+     * @return true if the signature is valid, false otherwise
+     */
+    public boolean verifySignature(long timestamp, HmacKey key, String providedSignature) {
+        if (providedSignature == null || providedSignature.length() != HmacKey.MAC_LENGTH * 2) {
+            return false;
+        }
+        Buffers scratch = buffers.acquire();
+        try {
+            if (!decodeHex(providedSignature, scratch.provided)) {
+                return false;
+            }
+            sign(timestamp, key, scratch);
+            return MessageDigest.isEqual(scratch.expected, scratch.provided);
+        } finally {
+            buffers.release(scratch);
+        }
+    }
+
     /**
      * Validates that the timestamp is within the acceptable tolerance window.
      * This prevents replay attacks by ensuring requests are not too old.
@@ -130,16 +167,110 @@ public class HmacSignatureService {
     }
 
     /**
-     * Converts a byte array to a hexadecimal string.
+     * Returns cached key material for a secret, creating it on first use. The
+     * cache only ever holds a handful of configured secrets; it is cleared if it
+     * grows past {@value #MAX_CACHED_KEYS} entries.
+     */
+    private HmacKey keyFor(String secretKey) {
+        if (secretKey == null || secretKey.isBlank()) {
+            throw new IllegalArgumentException("Secret key cannot be null or empty");
+        }
+        HmacKey key = keys.get(secretKey);
+        if (key == null) {
+            if (keys.size() >= MAX_CACHED_KEYS) {
+                keys.clear();
+            }
+            key = keys.computeIfAbsent(secretKey, HmacKey::new);
+        }
+        return key;
+    }
+
+    /**
+     * Computes the tag over the decimal ASCII form of the timestamp into
+     * {@code scratch.expected}.
+     */
+    private static void sign(long timestamp, HmacKey key, Buffers scratch) {
+        int start = writeDecimal(timestamp, scratch.digits);
+        Mac mac = key.acquire();
+        try {
+            mac.update(scratch.digits, start, scratch.digits.length - start);
+            mac.doFinal(scratch.expected, 0);
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException("HMAC output buffer too small", e);
+        } finally {
+            // doFinal already reset it on success; a failed call may leave input behind
+            mac.reset();
+            key.release(mac);
+        }
+    }
+
+    /**
+     * Writes the decimal representation of {@code value} right-aligned into
+     * {@code buffer} and returns the index of its first character.
+     */
+    private static int writeDecimal(long value, byte[] buffer) {
+        int pos = buffer.length;
+        long remaining = value;
+        do {
+            buffer[--pos] = (byte) ('0' + Math.abs(remaining % 10));
+            remaining /= 10;
+        } while (remaining != 0);
+        if (value < 0) {
+            buffer[--pos] = '-';
+        }
+        return pos;
+    }
+
+    /**
+     * Converts a byte array to a lowercase hexadecimal string.
      *
      * @param bytes the byte array to convert
      * @return the hexadecimal representation
      */
-    private String bytesToHex(byte[] bytes) {
-        StringBuilder result = new StringBuilder();
-        for (byte b : bytes) {
-            result.append(String.format("%02x", b));
+    private static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0x0f];
+            hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0x0f];
         }
-        return result.toString();
+        return new String(hex);
+    }
+
+    /**
+     * Decodes a hexadecimal string of exactly {@code 2 * out.length} characters
+     * into {@code out}.
+     *
+     * @return false if the string contains a non-hex character
+     */
+    private static boolean decodeHex(String hex, byte[] out) {
+        for (int i = 0; i < out.length; i++) {
+            int high = hexValue(hex.charAt(i * 2));
+            int low = hexValue(hex.charAt(i * 2 + 1));
+            if (high < 0 || low < 0) {
+                return false;
+            }
+            out[i] = (byte) ((high << 4) | low);
+        }
+        return true;
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    /** Pooled scratch space reused across signature computations. */
+    private static final class Buffers {
+        private final byte[] digits = new byte[20];
+        private final byte[] expected = new byte[HmacKey.MAC_LENGTH];
+        private final byte[] provided = new byte[HmacKey.MAC_LENGTH];
     }
 }
@@ -0,0 +1,153 @@
+package io.github.haiphamcoder.mailer.security;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers the signatures seen within the timestamp tolerance window, so
+ * that each signed request is accepted once.
+ * <p>
+ * A signature is only valid while its {@code X-Timestamp} is within
+ * {@code api.security.timestamp-tolerance} of the current time, so it has to
+ * be remembered until then and no longer. Signatures are filed by their
+ * timestamp into a ring of buckets, each covering a fixed slice of the
+ * window. When a timestamp maps to a slot still holding an older slice, that
+ * bucket has expired and is replaced as a whole with a single CAS; nothing is
+ * ever removed entry by entry.
+ * <p>
+ * Each bucket is an open-addressing hash set of 64-bit fingerprints in an
+ * {@link AtomicLongArray}. Inserts claim an empty slot with a CAS and probe
+ * a bounded number of slots, so concurrent requests never take a lock and
+ * contend only when they hash to the same slot. Buckets are allocated on
+ * first use with room for their share of
+ * {@code api.security.replay-protection.capacity} at a load factor of one
+ * half, which bounds memory at a little over 16 bytes per remembered
+ * signature. When a bucket is full, requests falling into it are rejected
+ * rather than let through unchecked.
+ */
+@Component
+public class ReplayCache {
+
+    /** Outcome of {@link #firstUse}. */
+    public enum Outcome {
+        /** The signature was not seen before and is now remembered. */
+        FIRST_USE,
+        /** The signature was already used. */
+        REPLAYED,
+        /** The signature cannot be remembered, because its bucket is full. */
+        FULL
+    }
+
+    static final int BUCKETS = 32;
+    private static final int MAX_PROBES = 32;
+
+    private final long bucketMillis;
+    private final int tableSize;
+    private final AtomicReferenceArray<Bucket> ring = new AtomicReferenceArray<>(BUCKETS);
+
+    /** One slice of the window: the fingerprints of the timestamps in it. */
+    private static final class Bucket {
+        final long epoch;
+        final AtomicLongArray slots;
+
+        Bucket(long epoch, int size) {
+            this.epoch = epoch;
+            this.slots = new AtomicLongArray(size);
+        }
+    }
+
+    @Autowired
+    public ReplayCache(SecurityProperties properties) {
+        this(properties.getTimestampTolerance() * 1000, properties.getReplayProtection().getCapacity());
+    }
+
+    ReplayCache(long toleranceMillis, int capacity) {
+        // Accepted timestamps span 2 * tolerance; two spare buckets keep the
+        // oldest live slice from being overwritten by the newest
+        this.bucketMillis = Math.max(1, (2 * toleranceMillis + BUCKETS - 3) / (BUCKETS - 2));
+        int perBucket = Math.max(1, capacity / (BUCKETS - 2));
+        this.tableSize = Integer.highestOneBit(Math.max(2, perBucket * 2 - 1)) << 1;
+    }
+
+    /**
+     * Records the use of a verified signature.
+     *
+     * @param timestamp the signed {@code X-Timestamp}, within the tolerance
+     * @param signature the verified hex signature
+     * @return whether this is the first use of the signature
+     */
+    public Outcome firstUse(long timestamp, String signature) {
+        return firstUse(timestamp, fingerprint(timestamp, signature));
+    }
+
+    Outcome firstUse(long timestamp, long fingerprint) {
+        Bucket bucket = bucket(Math.floorDiv(timestamp, bucketMillis));
+        if (bucket == null) {
+            // Older than every live slice: cannot have been checked, so cannot be accepted
+            return Outcome.REPLAYED;
+        }
+        AtomicLongArray slots = bucket.slots;
+        int mask = slots.length() - 1;
+        int index = (int) fingerprint & mask;
+        int probes = Math.min(MAX_PROBES, slots.length());
+        for (int probe = 0; probe < probes; probe++, index = (index + 1) & mask) {
+            long current = slots.get(index);
+            if (current == 0) {
+                if (slots.compareAndSet(index, 0, fingerprint)) {
+                    return Outcome.FIRST_USE;
+                }
+                current = slots.get(index);
+            }
+            if (current == fingerprint) {
+                return Outcome.REPLAYED;
+            }
+        }
+        return Outcome.FULL;
+    }
+
+    /** Returns the bucket of an epoch, replacing the expired bucket in its slot. */
+    private Bucket bucket(long epoch) {
+        int slot = (int) Math.floorMod(epoch, (long) BUCKETS);
+        while (true) {
+            Bucket current = ring.get(slot);
+            if (current != null && current.epoch == epoch) {
+                return current;
+            }
+            if (current != null && current.epoch > epoch) {
+                return null;
+            }
+            Bucket fresh = new Bucket(epoch, tableSize);
+            if (ring.compareAndSet(slot, current, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    /**
+     * Derives a non-zero fingerprint from the leading 64 bits of the signature,
+     * which is uniformly distributed as the output of HMAC, and the timestamp.
+     */
+    private static long fingerprint(long timestamp, String signature) {
+        long bits = 0;
+        int length = Math.min(16, signature.length());
+        for (int i = 0; i < length; i++) {
+            bits = (bits << 4) | (Character.digit(signature.charAt(i), 16) & 0xf);
+        }
+        long mixed = mix(bits ^ mix(timestamp));
+        return mixed == 0 ? 1 : mixed;
+    }
+
+    /** MurmurHash3 finalizer. */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb3fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
@@ -0,0 +1,57 @@
+package io.github.haiphamcoder.mailer.security;
+
+import java.util.Locale;
+
+/**
+ * Permissions an access key can be granted, each covering the endpoints under
+ * one path.
+ * <p>
+ * In the access-key file scopes are written in lower case, e.g.
+ * {@code "scopes": ["send", "templates"]}.
+ */
+public enum Scope {
+
+    /** Sending email: {@code /api/v1/emails/**}. */
+    SEND("/api/v1/emails"),
+    /** Registering and reading templates: {@code /api/v1/templates/**}. */
+    TEMPLATES("/api/v1/templates"),
+    /** Uploading and reading stored attachments: {@code /api/v1/attachments/**}. */
+    ATTACHMENTS("/api/v1/attachments");
+
+    private static final Scope[] VALUES = values();
+
+    private final String pathPrefix;
+
+    Scope(String pathPrefix) {
+        this.pathPrefix = pathPrefix;
+    }
+
+    /**
+     * Returns the scope required for a request path.
+     *
+     * @param path the decoded request path within the application, without
+     *             path parameters
+     * @return the required scope, or null if no scope covers the path
+     */
+    public static Scope of(String path) {
+        for (Scope scope : VALUES) {
+            if (path.startsWith(scope.pathPrefix)
+                    && (path.length() == scope.pathPrefix.length() || path.charAt(scope.pathPrefix.length()) == '/')) {
+                return scope;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses the lower-case form used in the access-key file.
+     *
+     * @param name the scope name, e.g. {@code "send"}
+     * @return the scope
+     * @throws IllegalArgumentException if there is no such scope
+     */
+    public static Scope parse(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+}
@@ -0,0 +1,74 @@
+package io.github.haiphamcoder.mailer.security;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Small lock-free pool of reusable, non-thread-safe objects.
+ * <p>
+ * Replaces per-thread caches: with virtual threads every request runs on a new
+ * thread, so a {@link ThreadLocal} cache would be rebuilt for each request
+ * instead of reused. Idle objects sit in a fixed array of slots; acquiring
+ * claims an occupied slot with a CAS, starting from a random index to spread
+ * contention, and falls back to creating a new object when every slot is
+ * empty. Releasing puts the object into a free slot, or drops it if all slots
+ * are taken. Neither path allocates once the pool is warm.
+ *
+ * @param <T> type of the pooled objects
+ */
+final class ScratchPool<T> {
+
+    private final AtomicReferenceArray<T> slots;
+    private final Supplier<T> factory;
+
+    /**
+     * Creates a pool sized to twice the number of available processors.
+     *
+     * @param factory creates objects when the pool is empty
+     */
+    ScratchPool(Supplier<T> factory) {
+        this(2 * Runtime.getRuntime().availableProcessors(), factory);
+    }
+
+    ScratchPool(int size, Supplier<T> factory) {
+        this.slots = new AtomicReferenceArray<>(size);
+        this.factory = factory;
+    }
+
+    /**
+     * Takes an idle object or creates one. The caller owns it until
+     * {@link #release(Object)}.
+     *
+     * @return an object for exclusive use
+     */
+    T acquire() {
+        int size = slots.length();
+        int start = ThreadLocalRandom.current().nextInt(size);
+        for (int i = 0; i < size; i++) {
+            int index = (start + i) % size;
+            T value = slots.get(index);
+            if (value != null && slots.compareAndSet(index, value, null)) {
+                return value;
+            }
+        }
+        return factory.get();
+    }
+
+    /**
+     * Returns an object for reuse. It must be in a reusable state.
+     *
+     * @param value the object obtained from {@link #acquire()}
+     */
+    void release(T value) {
+        int size = slots.length();
+        int start = ThreadLocalRandom.current().nextInt(size);
+        for (int i = 0; i < size; i++) {
+            int index = (start + i) % size;
+            if (slots.get(index) == null && slots.compareAndSet(index, null, value)) {
+                return;
+            }
+        }
+    }
+
+}
@@ -2,15 +2,18 @@ package io.github.haiphamcoder.mailer.security;
 
 import java.io.IOException;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.util.AntPathMatcher;
 import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import io.github.haiphamcoder.mailer.dto.ApiCommonResponse;
+import io.github.haiphamcoder.mailer.limit.AccessKeyRateLimiter;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -24,16 +27,32 @@ import lombok.extern.slf4j.Slf4j;
  * This filter intercepts all requests to protected endpoints and validates:
  * <ul>
  *   <li>Presence of required security headers (X-Access-Key, X-Timestamp, X-Access-Sign)</li>
- *   <li>HMAC signature verification using the provided timestamp and project token</li>
+ *   <li>That the access key is known to the {@link AccessKeyRegistry}</li>
+ *   <li>HMAC signature verification using the provided timestamp and the
+ *   secret of the access key</li>
  *   <li>Timestamp validity to prevent replay attacks</li>
+ *   <li>That the signature was not already used within the timestamp
+ *   tolerance, via the {@link ReplayCache}</li>
+ *   <li>That the access key was granted the {@link Scope} of the endpoint;
+ *   API paths outside every scope are denied</li>
+ *   <li>That the access key is within its rate limit
+ *   ({@link AccessKeyRateLimiter}); this runs before the request body is
+ *   read, so throttled requests cost no parsing</li>
  * </ul>
  * <p>
+ * The {@link AccessKey} of an authenticated request is stored in the request
+ * attribute {@link AccessKey#ATTRIBUTE}.
+ * <p>
  * The filter only applies to API endpoints (paths starting with /api/) and can be
- * disabled via configuration for development/testing purposes.
+ * disabled via configuration for development/testing purposes. Paths are
+ * matched after URL decoding and removal of {@code ;} path parameters, as
+ * Spring MVC maps them, so {@code /api/v1/%65mails;x} needs the same scope as
+ * {@code /api/v1/emails}.
  * <p>
  * Security headers expected:
- * - X-Access-Key: The access key (currently not used for validation, but logged)
- * - X-Timestamp: Unix timestamp in milliseconds
+ * - X-Access-Key: The access key, selecting the secret and scopes
+ * - X-Timestamp: Unix timestamp in milliseconds, distinct per request when
+ *   replay protection is enabled
  * - X-Access-Sign: HMAC-SHA512 signature of (timestamp)
  */
 @Component
@@ -49,14 +68,19 @@ public class SecurityFilter extends OncePerRequestFilter {
     private final HmacSignatureService hmacService;
     private final SecurityProperties securityProperties;
     private final ObjectMapper objectMapper;
+    private final ReplayCache replayCache;
+    private final AccessKeyRegistry accessKeys;
+    private final AccessKeyRateLimiter rateLimiter;
     private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final UrlPathHelper pathHelper = new UrlPathHelper();
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, 
                                   FilterChain filterChain) throws ServletException, IOException {
         
         // Skip security check if disabled, not an API request, or is a public path
-        if (!securityProperties.isEnabled() || !isApiRequest(request) || isPublicPath(request)) {
+        String path = pathHelper.getPathWithinApplication(request);
+        if (!securityProperties.isEnabled() || !isApiRequest(path) || isPublicPath(path)) {
             filterChain.doFilter(request, response);
             return;
         }
@@ -99,12 +123,17 @@ public class SecurityFilter extends OncePerRequestFilter {
                 return;
             }
 
+            AccessKey key = accessKeys.lookup(accessKey);
+            if (key == null) {
+                if (securityProperties.isLogSecurityEvents()) {
+                    log.warn("Unknown access key: {}, IP: {}", accessKey, getClientIpAddress(request));
+                }
+                handleSecurityError(response, "UNKNOWN_ACCESS_KEY", "Unknown access key");
+                return;
+            }
+
             // Verify HMAC signature
-            boolean isValidSignature = hmacService.verifySignature(
-                timestamp, 
-                securityProperties.getSecretKey(), 
-                signature
-            );
+            boolean isValidSignature = hmacService.verifySignature(timestamp, key.hmacKey(), signature);
 
             if (!isValidSignature) {
                 if (securityProperties.isLogSecurityEvents()) {
@@ -115,7 +144,47 @@ public class SecurityFilter extends OncePerRequestFilter {
                 return;
             }
 
+            // Reject signatures that were already used within the tolerance window
+            if (securityProperties.getReplayProtection().isEnabled()) {
+                ReplayCache.Outcome use = replayCache.firstUse(timestamp, signature);
+                if (use == ReplayCache.Outcome.REPLAYED) {
+                    if (securityProperties.isLogSecurityEvents()) {
+                        log.warn("Replayed signature for access key: {}, IP: {}",
+                            accessKey, getClientIpAddress(request));
+                    }
+                    handleSecurityError(response, "REPLAYED_REQUEST", "Request signature was already used");
+                    return;
+                }
+                if (use == ReplayCache.Outcome.FULL) {
+                    response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                    handleSecurityError(response, HttpStatus.TOO_MANY_REQUESTS, "REPLAY_CACHE_FULL",
+                        "Too many requests signed in the same interval");
+                    return;
+                }
+            }
+
+            Scope scope = Scope.of(path);
+            if (scope == null || !key.allows(scope)) {
+                if (securityProperties.isLogSecurityEvents()) {
+                    log.warn("Access key {} lacks scope {} for {}, IP: {}", accessKey, scope, path,
+                        getClientIpAddress(request));
+                }
+                handleSecurityError(response, HttpStatus.FORBIDDEN, "ACCESS_DENIED",
+                    "Access key is not allowed to call this endpoint");
+                return;
+            }
+
+            long waitNanos = rateLimiter.tryAcquire(key);
+            if (waitNanos > 0) {
+                response.setHeader(HttpHeaders.RETRY_AFTER,
+                    Long.toString(AccessKeyRateLimiter.retryAfterSeconds(waitNanos)));
+                handleSecurityError(response, HttpStatus.TOO_MANY_REQUESTS, "RATE_LIMITED",
+                    "Request rate limit of the access key exceeded");
+                return;
+            }
+
             // Security validation passed, continue with request
+            request.setAttribute(AccessKey.ATTRIBUTE, key);
             if (securityProperties.isLogSecurityEvents()) {
                 log.debug("Valid HMAC signature for access key: {}, IP: {}", 
                     accessKey, getClientIpAddress(request));
@@ -132,8 +201,7 @@ public class SecurityFilter extends OncePerRequestFilter {
     /**
      * Checks if the request is for an API endpoint that requires security validation.
      */
-    private boolean isApiRequest(HttpServletRequest request) {
-        String path = request.getRequestURI();
+    private boolean isApiRequest(String path) {
         return path.startsWith(API_PATH_PREFIX);
     }
 
@@ -141,11 +209,10 @@ public class SecurityFilter extends OncePerRequestFilter {
      * Checks if the request path matches any of the configured public paths.
      * Public paths are excluded from HMAC authentication.
      *
-     * @param request the HTTP request
+     * @param requestPath the decoded request path
      * @return true if the path is public and should skip authentication
      */
-    private boolean isPublicPath(HttpServletRequest request) {
-        String requestPath = request.getRequestURI();
+    private boolean isPublicPath(String requestPath) {
         String[] publicPaths = securityProperties.getPublicPaths();
         
         if (publicPaths == null || publicPaths.length == 0) {
@@ -170,18 +237,24 @@ public class SecurityFilter extends OncePerRequestFilter {
      */
     private void handleSecurityError(HttpServletResponse response, String errorCode, String errorMessage) 
             throws IOException {
+        handleSecurityError(response, HttpStatus.UNAUTHORIZED, errorCode, errorMessage);
+    }
+
+    private void handleSecurityError(HttpServletResponse response, HttpStatus status, String errorCode,
+            String errorMessage) throws IOException {
         
         if (securityProperties.isLogSecurityEvents()) {
             log.warn("Security validation failed: {} - {}", errorCode, errorMessage);
         }
 
-        response.setStatus(HttpStatus.UNAUTHORIZED.value());
+        response.setStatus(status.value());
         response.setContentType(MediaType.APPLICATION_JSON_VALUE);
         response.setCharacterEncoding("UTF-8");
 
         String responseBody = objectMapper.writeValueAsString(
             ApiCommonResponse.error(errorCode, 
-                securityProperties.isDetailedErrorMessages() ? errorMessage : "Authentication failed")
+                status != HttpStatus.UNAUTHORIZED || securityProperties.isDetailedErrorMessages() ? errorMessage
+                    : "Authentication failed")
         );
 
         response.getWriter().write(responseBody);
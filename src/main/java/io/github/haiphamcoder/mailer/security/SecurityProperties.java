@@ -1,8 +1,11 @@
 package io.github.haiphamcoder.mailer.security;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
 import org.springframework.validation.annotation.Validated;
 
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
@@ -19,6 +22,10 @@ import lombok.Setter;
  * api.security.enabled=true
  * api.security.secret-key=${API_SECRET_KEY:your-secret-key}
  * api.security.timestamp-tolerance=300
+ * api.security.replay-protection.enabled=true
+ * api.security.replay-protection.capacity=262144
+ * api.security.access-keys.file=config/access-keys.json
+ * api.security.access-keys.watch=true
  * </pre>
  * <p>
  * Security considerations:
@@ -56,6 +63,16 @@ public class SecurityProperties {
     @Positive(message = "Timestamp tolerance must be positive")
     private Long timestampTolerance = 300L;
 
+    /** Rejection of reused signatures under {@code api.security.replay-protection.*}. */
+    @Valid
+    @NestedConfigurationProperty
+    private final ReplayProtection replayProtection = new ReplayProtection();
+
+    /** Per-client access keys under {@code api.security.access-keys.*}. */
+    @Valid
+    @NestedConfigurationProperty
+    private final AccessKeys accessKeys = new AccessKeys();
+
     /**
      * Whether to log security events (failed authentications, etc.).
      * Useful for monitoring and debugging.
@@ -86,4 +103,36 @@ public class SecurityProperties {
         "/api/v1/health",
         "/api/v1/status"
     };
+
+    @Getter
+    @Setter
+    public static class ReplayProtection {
+
+        /**
+         * Whether a signature is accepted only once within the timestamp
+         * tolerance. Clients must then use a distinct X-Timestamp per request.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Number of signatures that can be remembered per timestamp tolerance
+         * window. Requests beyond it are rejected with 429.
+         */
+        @Min(1)
+        private int capacity = 262_144;
+    }
+
+    @Getter
+    @Setter
+    public static class AccessKeys {
+
+        /**
+         * JSON file mapping each access key to its secret and scopes. When
+         * blank, every client signs with {@code secret-key}.
+         */
+        private String file = "";
+
+        /** Whether changes to the file are picked up without a restart. */
+        private boolean watch = true;
+    }
 }
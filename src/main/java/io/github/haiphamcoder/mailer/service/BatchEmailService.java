@@ -0,0 +1,378 @@
+package io.github.haiphamcoder.mailer.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.env.Environment;
+import org.springframework.mail.MailSendException;
+import org.springframework.stereotype.Service;
+
+import io.github.haiphamcoder.mailer.account.SenderAccount;
+import io.github.haiphamcoder.mailer.account.SenderAccountRouter;
+import io.github.haiphamcoder.mailer.attachment.AttachmentSpool;
+import io.github.haiphamcoder.mailer.attachment.AttachmentStore;
+import io.github.haiphamcoder.mailer.config.MailProperties;
+import io.github.haiphamcoder.mailer.dto.EmailBatchItemResult;
+import io.github.haiphamcoder.mailer.dto.EmailRequest;
+import io.github.haiphamcoder.mailer.dto.Priority;
+import io.github.haiphamcoder.mailer.exception.ApiException;
+import io.github.haiphamcoder.mailer.exception.MailDeliveryException;
+import io.github.haiphamcoder.mailer.exception.MailSendExceptionMapper;
+import io.github.haiphamcoder.mailer.exception.OutboxFullException;
+import io.github.haiphamcoder.mailer.exception.QuotaExhaustedException;
+import io.github.haiphamcoder.mailer.outbox.EmailOutbox;
+import io.github.haiphamcoder.mailer.outbox.OutboundEmail;
+import io.github.haiphamcoder.mailer.outbox.RequestClass;
+import io.github.haiphamcoder.mailer.outbox.RetryScheduler;
+import io.github.haiphamcoder.mailer.quota.QuotaManager;
+import io.github.haiphamcoder.mailer.smtp.SmtpMetrics;
+import io.github.haiphamcoder.mailer.template.TemplateRegistry;
+import io.github.haiphamcoder.mailer.util.ThreadFactories;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sends a batch of emails with bounded parallelism over shared SMTP
+ * connections.
+ * <p>
+ * Each request is validated individually, so an invalid item fails on its own
+ * with {@code VALIDATION_ERROR} instead of rejecting the whole batch. Items
+ * are sent as a single SMTP transaction, so an item with more recipients than
+ * {@code gmail.mail.max-recipients-per-transaction} fails with
+ * {@code TOO_MANY_RECIPIENTS}; such emails are split by
+ * {@link SmtpEmailService} when sent on their own. Items that refer to an
+ * unknown template or miss one of its variables fail with the
+ * {@link TemplateRegistry} error code. Items may reference attachments in
+ * the {@link AttachmentStore}; items referring to one that is not stored
+ * fail with {@code ATTACHMENT_NOT_FOUND}, and the attachments of items that
+ * are neither sent nor queued are released. Valid
+ * items are split into at most {@code mailer.batch.parallelism} slices. Within
+ * a slice each item is assigned a sender account by the
+ * {@link SenderAccountRouter}, and the items of each account and
+ * {@link Priority} are handed to {@link SenderAccount#send} in a single call,
+ * which sends them over one connection of that priority's lane.
+ * <p>
+ * Items that fail transiently are handed to the {@link RetryScheduler} and
+ * reported with the {@code RETRY_SCHEDULED} code and their message ID. Items
+ * for which no account has quota, or whose account was taken out of rotation
+ * by the failure, are put into the {@link EmailOutbox} and reported with the
+ * {@code QUEUED} code.
+ * <p>
+ * {@link #fanOut(String, EmailRequest)} sends one email privately to each of its
+ * {@code to} recipients through the same path. The email is MIME-encoded once
+ * into a {@link FanOutMessage}, and each item is a copy that only differs in
+ * its {@code To} and {@code Message-ID} headers and SMTP envelope.
+ * <p>
+ * Items without a {@link Priority} are transactional, as with single sends;
+ * clients mark newsletters and other mail that may wait as bulk. Each item's
+ * outcome is recorded
+ * in {@link SmtpMetrics} with the duration of the send call that carried it,
+ * and its delivery with the time since the batch was received.
+ * <p>
+ * Slices run on virtual threads when {@code spring.threads.virtual.enabled}
+ * is set.
+ */
+@Service
+@Slf4j
+public class BatchEmailService implements DisposableBean {
+
+    private final SenderAccountRouter router;
+    private final MimeMessageFactory messageFactory;
+    private final MailSendExceptionMapper exceptionMapper;
+    private final RetryScheduler retryScheduler;
+    private final EmailOutbox outbox;
+    private final Validator validator;
+    private final TemplateRegistry templates;
+    private final AttachmentSpool attachments;
+    private final BatchProperties properties;
+    private final SmtpMetrics metrics;
+    private final MessageIdGenerator messageIds;
+    private final int maxRecipients;
+    private final ExecutorService executor;
+
+    public BatchEmailService(SenderAccountRouter router, MimeMessageFactory messageFactory,
+            MailSendExceptionMapper exceptionMapper, RetryScheduler retryScheduler, EmailOutbox outbox,
+            Validator validator, TemplateRegistry templates, AttachmentSpool attachments, BatchProperties properties,
+            SmtpMetrics metrics, MessageIdGenerator messageIds, MailProperties mailProperties,
+            Environment environment) {
+        this.router = router;
+        this.messageFactory = messageFactory;
+        this.exceptionMapper = exceptionMapper;
+        this.retryScheduler = retryScheduler;
+        this.outbox = outbox;
+        this.validator = validator;
+        this.templates = templates;
+        this.attachments = attachments;
+        this.properties = properties;
+        this.metrics = metrics;
+        this.messageIds = messageIds;
+        this.maxRecipients = mailProperties.getMaxRecipientsPerTransaction();
+        this.executor = Executors.newFixedThreadPool(properties.getParallelism(),
+                ThreadFactories.blockingIo(environment, "batch-sender-"));
+    }
+
+    /**
+     * Sends all emails of a batch and waits for every item to complete.
+     *
+     * @param tenant   the access key the batch was submitted with, or null
+     * @param requests the emails to send
+     * @return one result per request, in request order
+     * @throws ApiException if the batch is empty or exceeds
+     *                      {@code mailer.batch.max-size}
+     */
+    public List<EmailBatchItemResult> sendAll(String tenant, List<EmailRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new ApiException("BATCH_EMPTY", "Batch must contain at least one email");
+        }
+        if (requests.size() > properties.getMaxSize()) {
+            throw new ApiException("BATCH_TOO_LARGE",
+                    "Batch contains " + requests.size() + " emails, maximum is " + properties.getMaxSize());
+        }
+
+        Instant acceptedAt = Instant.now();
+        EmailBatchItemResult[] results = new EmailBatchItemResult[requests.size()];
+        List<Integer> valid = new ArrayList<>(requests.size());
+        List<EmailRequest> emails = new ArrayList<>(requests);
+        for (int i = 0; i < requests.size(); i++) {
+            String violation = validate(requests.get(i));
+            if (violation != null) {
+                results[i] = EmailBatchItemResult.failed(i, "VALIDATION_ERROR", violation);
+            } else if (QuotaManager.recipientCount(requests.get(i)) > maxRecipients) {
+                results[i] = EmailBatchItemResult.failed(i, "TOO_MANY_RECIPIENTS", "Email has "
+                        + QuotaManager.recipientCount(requests.get(i)) + " recipients, maximum in a batch is "
+                        + maxRecipients);
+            } else {
+                try {
+                    templates.validate(requests.get(i));
+                    emails.set(i, attachments.acquire(requests.get(i), 1));
+                    valid.add(i);
+                } catch (ApiException e) {
+                    results[i] = EmailBatchItemResult.failed(i, e.code(), e.getMessage());
+                }
+            }
+        }
+
+        dispatch(tenant, acceptedAt, emails, valid, results,
+                (request, messageId) -> messageFactory.create(messageId, request));
+        releaseUnsent(emails, valid, results);
+
+        long accepted = Arrays.stream(results).filter(EmailBatchItemResult::success).count();
+        log.info("Batch of {} email(s) processed: {} accepted, {} failed", results.length, accepted,
+                results.length - accepted);
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Sends a private copy of the email to each {@code to} recipient and waits
+     * for every copy to complete.
+     *
+     * @param tenant  the access key the email was submitted with, or null
+     * @param request the validated email; must not have cc or bcc recipients
+     * @return one result per {@code to} recipient, in order
+     * @throws ApiException          if the email has cc or bcc recipients,
+     *                               more {@code to} recipients than
+     *                               {@code mailer.batch.max-size}, or refers
+     *                               to attachments that are not stored
+     * @throws MailDeliveryException if the email cannot be encoded
+     */
+    public List<EmailBatchItemResult> fanOut(String tenant, EmailRequest request) {
+        if ((request.cc() != null && !request.cc().isEmpty())
+                || (request.bcc() != null && !request.bcc().isEmpty())) {
+            throw new ApiException("FAN_OUT_INVALID", "cc and bcc cannot be combined with fan-out");
+        }
+        if (request.to().size() > properties.getMaxSize()) {
+            throw new ApiException("FAN_OUT_TOO_LARGE", "Fan-out has " + request.to().size()
+                    + " recipients, maximum is " + properties.getMaxSize());
+        }
+
+        // One reference per copy, released as each copy completes
+        Instant acceptedAt = Instant.now();
+        EmailRequest email = attachments.acquire(request, request.to().size());
+        List<EmailRequest> copies = new ArrayList<>(email.to().size());
+        List<Integer> indices = new ArrayList<>(email.to().size());
+        for (String recipient : email.to()) {
+            indices.add(copies.size());
+            copies.add(email.withRecipients(List.of(recipient)));
+        }
+        EmailBatchItemResult[] results = new EmailBatchItemResult[copies.size()];
+        FanOutMessage message;
+        try {
+            message = messageFactory.createFanOut(email);
+        } catch (MessagingException e) {
+            copies.forEach(attachments::release);
+            throw new MailDeliveryException(exceptionMapper.classify(e), e);
+        } catch (RuntimeException e) {
+            copies.forEach(attachments::release);
+            throw e;
+        }
+        try {
+            dispatch(tenant, acceptedAt, copies, indices, results,
+                    (copy, messageId) -> message.copyFor(copy.to().get(0), messageId));
+        } finally {
+            messageFactory.discard(message);
+        }
+        releaseUnsent(copies, indices, results);
+
+        long accepted = Arrays.stream(results).filter(EmailBatchItemResult::success).count();
+        log.info("Fan-out of {} copies ({} shared bytes) processed: {} accepted, {} failed", results.length,
+                message.sharedSize(), accepted, results.length - accepted);
+        return Arrays.asList(results);
+    }
+
+    private void dispatch(String tenant, Instant acceptedAt, List<EmailRequest> requests, List<Integer> valid,
+            EmailBatchItemResult[] results, MessageBuilder builder) {
+        if (valid.isEmpty()) {
+            return;
+        }
+        int slices = Math.min(properties.getParallelism(), valid.size());
+        int sliceSize = (valid.size() + slices - 1) / slices;
+        List<CompletableFuture<Void>> futures = new ArrayList<>(slices);
+        for (int from = 0; from < valid.size(); from += sliceSize) {
+            List<Integer> slice = valid.subList(from, Math.min(from + sliceSize, valid.size()));
+            futures.add(CompletableFuture.runAsync(
+                    () -> sendSlice(tenant, acceptedAt, requests, slice, results, builder), executor));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+    }
+
+    /**
+     * Releases the attachments of the dispatched items that were not handed
+     * to the outbox or the retry scheduler, which release them once done.
+     */
+    private void releaseUnsent(List<EmailRequest> requests, List<Integer> dispatched,
+            EmailBatchItemResult[] results) {
+        for (int index : dispatched) {
+            String code = results[index].code();
+            if (!"QUEUED".equals(code) && !"RETRY_SCHEDULED".equals(code)) {
+                attachments.release(requests.get(index));
+            }
+        }
+    }
+
+    private String validate(EmailRequest request) {
+        if (request == null) {
+            return "Email must not be null";
+        }
+        Set<ConstraintViolation<EmailRequest>> violations = validator.validate(request);
+        return violations.stream()
+                .findFirst()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .orElse(null);
+    }
+
+    private void sendSlice(String tenant, Instant acceptedAt, List<EmailRequest> requests, List<Integer> slice,
+            EmailBatchItemResult[] results, MessageBuilder builder) {
+        Map<Lane, Map<MimeMessage, Pending>> byLane = new LinkedHashMap<>();
+        for (int index : slice) {
+            EmailRequest request = requests.get(index);
+            SenderAccount account;
+            try {
+                account = router.acquire(request);
+            } catch (QuotaExhaustedException e) {
+                results[index] = enqueue(index, new OutboundEmail(messageIds.next(), tenant, request, acceptedAt, 1));
+                continue;
+            }
+            try {
+                String messageId = messageIds.next();
+                MimeMessage message = builder.build(request, messageId);
+                byLane.computeIfAbsent(new Lane(account, request.effectivePriority()),
+                        lane -> new IdentityHashMap<>())
+                        .put(message, new Pending(index, messageId, tenant, request, acceptedAt));
+            } catch (MessagingException | ApiException e) {
+                router.release(account, null);
+                results[index] = EmailBatchItemResult.failed(index, exceptionMapper.map(e), e.getMessage());
+            }
+        }
+        byLane.forEach((lane, pending) -> send(lane, pending, results));
+    }
+
+    private void send(Lane lane, Map<MimeMessage, Pending> pending, EmailBatchItemResult[] results) {
+        SenderAccount account = lane.account();
+        Map<Integer, Exception> failures = new HashMap<>();
+        long start = System.nanoTime();
+        try {
+            account.send(lane.priority(), pending.keySet().toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            e.getFailedMessages().forEach((message, failure) -> {
+                Pending item = pending.get(message);
+                if (item != null) {
+                    failures.put(item.index(), failure);
+                }
+            });
+        } catch (RuntimeException e) {
+            // Not only MailException: every item must get a result and release its account
+            log.error("Batch slice of {} email(s) failed: {}", pending.size(), e.getMessage(), e);
+            for (Pending item : pending.values()) {
+                failures.put(item.index(), e);
+            }
+        }
+
+        for (Pending item : pending.values()) {
+            Exception failure = failures.get(item.index());
+            metrics.recordSend(item.request().effectivePriority(), start, failure);
+            boolean failover = router.release(account, failure);
+            if (failure == null) {
+                metrics.recordDelivery(item.request().effectivePriority(), item.acceptedAt());
+                results[item.index()] = EmailBatchItemResult.sent(item.index(), item.messageId());
+            } else if (failover) {
+                results[item.index()] = enqueue(item.index(), item.accepted());
+            } else {
+                results[item.index()] = failed(item, failure);
+            }
+        }
+    }
+
+    private EmailBatchItemResult enqueue(int index, OutboundEmail email) {
+        if (outbox.accept(email, RequestClass.BATCH)) {
+            return EmailBatchItemResult.queued(index, email.messageId());
+        }
+        OutboxFullException full = new OutboxFullException(outbox.capacity());
+        return EmailBatchItemResult.failed(index, full.code(), full.getMessage());
+    }
+
+    private EmailBatchItemResult failed(Pending item, Exception failure) {
+        if (retryScheduler.schedule(item.accepted(), failure)) {
+            return EmailBatchItemResult.retryScheduled(item.index(), item.messageId());
+        }
+        return EmailBatchItemResult.failed(item.index(), exceptionMapper.map(failure), failure.getMessage());
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    /** Builds the message for one item. */
+    @FunctionalInterface
+    private interface MessageBuilder {
+        MimeMessage build(EmailRequest request, String messageId) throws MessagingException;
+    }
+
+    /** The sender account and priority a group of items is sent with. */
+    private record Lane(SenderAccount account, Priority priority) {
+    }
+
+    /** A built message awaiting the outcome of its slice. */
+    private record Pending(int index, String messageId, String tenant, EmailRequest request, Instant acceptedAt) {
+
+        /** The item for its first outbox or retry attempt, keeping the batch's acceptance time. */
+        OutboundEmail accepted() {
+            return new OutboundEmail(messageId, tenant, request, acceptedAt, 1);
+        }
+    }
+
+}
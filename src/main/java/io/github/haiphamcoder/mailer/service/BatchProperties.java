@@ -0,0 +1,36 @@
+package io.github.haiphamcoder.mailer.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.Min;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration properties for the batch send endpoint.
+ * <p>
+ * Example configuration:
+ * <pre>
+ * mailer.batch.max-size=500
+ * mailer.batch.parallelism=4
+ * </pre>
+ */
+@Getter
+@Setter
+@Validated
+@ConfigurationProperties(prefix = "mailer.batch")
+public class BatchProperties {
+
+    /** Maximum number of emails accepted in one batch request. */
+    @Min(1)
+    private int maxSize = 500;
+
+    /**
+     * Number of batch slices sent concurrently across all batch requests. Each
+     * slice sends its emails over a single pooled SMTP connection, so this
+     * should not exceed {@code gmail.mail.pool.max-size}.
+     */
+    @Min(1)
+    private int parallelism = 4;
+}
@@ -1,5 +1,7 @@
 package io.github.haiphamcoder.mailer.service;
 
+import java.util.List;
+
 import io.github.haiphamcoder.mailer.dto.EmailRequest;
 
 /**
@@ -14,4 +16,26 @@ public interface EmailService {
      * @return the message ID of the sent email
      */
     String sendEmail(EmailRequest request);
+
+    /**
+     * Sends an email under a message ID that was already assigned, e.g. when the
+     * request was accepted into the outbox.
+     *
+     * @param messageId the message ID assigned to the request
+     * @param request   the email request
+     * @return the message ID of the sent email
+     */
+    String sendEmail(String messageId, EmailRequest request);
+
+    /**
+     * Sends an email under an assigned message ID to only some of its
+     * recipients, e.g. those an earlier attempt did not reach. The headers
+     * still name every recipient of the request.
+     *
+     * @param messageId the message ID assigned to the request
+     * @param request   the email request
+     * @param envelope  the recipients to deliver to, or null for all of them
+     * @return the message ID of the sent email
+     */
+    String sendEmail(String messageId, EmailRequest request, List<String> envelope);
 }
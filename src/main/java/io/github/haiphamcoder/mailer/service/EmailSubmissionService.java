@@ -0,0 +1,104 @@
+package io.github.haiphamcoder.mailer.service;
+
+import org.springframework.stereotype.Service;
+
+import io.github.haiphamcoder.mailer.dto.EmailRequest;
+import io.github.haiphamcoder.mailer.dto.Priority;
+import io.github.haiphamcoder.mailer.exception.ConcurrencyLimitExceededException;
+import io.github.haiphamcoder.mailer.exception.MailDeliveryException;
+import io.github.haiphamcoder.mailer.exception.OutboxFullException;
+import io.github.haiphamcoder.mailer.exception.QuotaExhaustedException;
+import io.github.haiphamcoder.mailer.limit.AdaptiveConcurrencyLimiter;
+import io.github.haiphamcoder.mailer.outbox.EmailOutbox;
+import io.github.haiphamcoder.mailer.outbox.OutboundEmail;
+import io.github.haiphamcoder.mailer.outbox.RequestClass;
+import io.github.haiphamcoder.mailer.outbox.RetryScheduler;
+import io.github.haiphamcoder.mailer.smtp.SmtpMetrics;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Entry point for the single-email API: sends immediately or queues in the
+ * outbox.
+ * <p>
+ * A synchronous send makes exactly one delivery attempt on the calling thread.
+ * If that attempt fails transiently the email is handed to the
+ * {@link RetryScheduler} and reported as queued, so the request thread is
+ * released instead of sleeping through the backoff. Permanent failures are
+ * rethrown as {@link MailDeliveryException}.
+ * <p>
+ * When no sender account has quota available ({@link QuotaExhaustedException})
+ * the email is queued in the outbox instead, and its workers deliver it once
+ * the quota allows.
+ * <p>
+ * Synchronous sends hold a slot of the {@link AdaptiveConcurrencyLimiter}; when
+ * no slot is free the request is rejected before any work is done.
+ * <p>
+ * Requests without a {@link Priority} are transactional.
+ */
+@Service
+@RequiredArgsConstructor
+public class EmailSubmissionService {
+
+    private final EmailService emailService;
+    private final EmailOutbox outbox;
+    private final RetryScheduler retryScheduler;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final MessageIdGenerator messageIds;
+    private final SmtpMetrics metrics;
+
+    /**
+     * Attempts delivery now, falling back to a scheduled retry on transient
+     * failures, or to the outbox when the sending quota is exhausted.
+     *
+     * @param tenant  the access key the request was submitted with, or null
+     * @param request the validated request
+     * @return the assigned message id and whether delivery was deferred
+     * @throws MailDeliveryException             if the failure is permanent
+     * @throws OutboxFullException               if the quota is exhausted and
+     *                                           the outbox is full
+     * @throws ConcurrencyLimitExceededException if too many sends are in flight
+     */
+    public SubmissionResult send(String tenant, EmailRequest request) {
+        OutboundEmail email = OutboundEmail.accepted(messageIds.next(), tenant,
+                request.withDefaultPriority(Priority.TRANSACTIONAL));
+        try {
+            return SubmissionResult.sent(sendLimited(email));
+        } catch (QuotaExhaustedException e) {
+            if (!outbox.accept(email, RequestClass.DEFERRED)) {
+                throw new OutboxFullException(outbox.capacity());
+            }
+            return SubmissionResult.queued(email.messageId());
+        } catch (MailDeliveryException e) {
+            if (retryScheduler.schedule(email, e)) {
+                return SubmissionResult.queued(email.messageId());
+            }
+            throw e;
+        }
+    }
+
+    private String sendLimited(OutboundEmail email) {
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire();
+        try {
+            String messageId = emailService.sendEmail(email.messageId(), email.request());
+            permit.release(null);
+            metrics.recordDelivery(email.request().effectivePriority(), email.acceptedAt());
+            return messageId;
+        } catch (RuntimeException e) {
+            permit.release(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Queues the email for asynchronous delivery.
+     *
+     * @param tenant  the access key the request was submitted with, or null
+     * @param request the validated request
+     * @return the assigned message id
+     */
+    public SubmissionResult enqueue(String tenant, EmailRequest request) {
+        return SubmissionResult.queued(outbox.submit(tenant, request.withDefaultPriority(Priority.TRANSACTIONAL),
+                RequestClass.ASYNC));
+    }
+
+}
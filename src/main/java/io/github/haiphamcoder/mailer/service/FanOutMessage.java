@@ -0,0 +1,101 @@
+package io.github.haiphamcoder.mailer.service;
+
+import java.nio.file.Path;
+
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+
+/**
+ * One email rendered to MIME bytes once, from which a private copy is made per
+ * recipient.
+ * <p>
+ * The shared rendering holds every header except {@code To} and
+ * {@code Message-ID}, followed by the encoded body. A copy only carries its
+ * own recipient and Message-ID and writes them in front of the shared bytes,
+ * so sending N copies encodes the body once instead of N times. Copies are
+ * ordinary {@link MimeMessage}s and can be handed to any
+ * {@code JavaMailSender}; {@link MimeMessage#saveChanges()} is a no-op on them.
+ * <p>
+ * The shared rendering of an email with attachments is held in a scratch
+ * file, which {@link MimeMessageFactory#discard(FanOutMessage)} deletes once
+ * every copy was sent.
+ */
+public final class FanOutMessage {
+
+    /** Headers written per copy rather than taken from the shared rendering. */
+    static final String[] PER_COPY_HEADERS = { "To", "Cc", "Bcc", "Message-ID" };
+
+    private final Session session;
+    private final byte[] shared;
+    private final Path file;
+    private final long sharedSize;
+    private final String from;
+    private final String date;
+    private final MessageIdGenerator messageIds;
+
+    FanOutMessage(Session session, byte[] shared, String from, String date, MessageIdGenerator messageIds) {
+        this(session, shared, null, shared.length, from, date, messageIds);
+    }
+
+    FanOutMessage(Session session, Path file, long size, String from, String date,
+            MessageIdGenerator messageIds) {
+        this(session, null, file, size, from, date, messageIds);
+    }
+
+    private FanOutMessage(Session session, byte[] shared, Path file, long sharedSize, String from, String date,
+            MessageIdGenerator messageIds) {
+        this.session = session;
+        this.shared = shared;
+        this.file = file;
+        this.sharedSize = sharedSize;
+        this.from = from;
+        this.date = date;
+        this.messageIds = messageIds;
+    }
+
+    /**
+     * Returns the size of the shared rendering.
+     *
+     * @return bytes shared by every copy
+     */
+    public long sharedSize() {
+        return sharedSize;
+    }
+
+    /**
+     * Returns the file holding the shared rendering.
+     *
+     * @return the file, or null if the rendering is held in memory
+     */
+    Path file() {
+        return file;
+    }
+
+    /**
+     * Makes the copy for one recipient.
+     *
+     * @param recipient the single {@code To} address
+     * @param messageId id of the copy from {@link MessageIdGenerator}, the
+     *                  local part of its {@code Message-ID}
+     * @return a message ready to be sent
+     * @throws MessagingException if the address is invalid
+     */
+    public MimeMessage copyFor(String recipient, String messageId) throws MessagingException {
+        MimeMessage copy = file != null ? new PreEncodedMimeMessage(session, file, null, "To", "Message-ID")
+                : new PreEncodedMimeMessage(session, shared, null, "To", "Message-ID");
+        // Kept as headers so that senders and transports can read them
+        if (from != null) {
+            copy.setHeader("From", from);
+        }
+        if (date != null) {
+            copy.setHeader("Date", date);
+        }
+        copy.setRecipient(Message.RecipientType.TO, new InternetAddress(recipient));
+        copy.setHeader("Message-ID", messageIds.header(messageId));
+        return copy;
+    }
+
+}
@@ -0,0 +1,98 @@
+package io.github.haiphamcoder.mailer.service;
+
+import java.security.SecureRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.github.haiphamcoder.mailer.config.MailProperties;
+
+/**
+ * Generates the ids of accepted emails, which are also the local part of
+ * their RFC 5322 {@code Message-ID} header.
+ * <p>
+ * Ids are 26-character ULID-style strings in Crockford base32 encoding 128
+ * bits: a 48-bit millisecond timestamp, a 16-bit node id chosen at startup and
+ * 64 random bits. They sort by creation time and stay unique across nodes
+ * without coordination. Randomness comes from {@link ThreadLocalRandom}, so
+ * threads never contend on a shared {@link SecureRandom} as with
+ * {@code UUID.randomUUID()}, and each id costs one small char array.
+ * <p>
+ * The header is {@code <id@domain>}, where the domain is
+ * {@code gmail.mail.message-id-domain}, else that of
+ * {@code gmail.mail.default-from}, else {@code localhost}. The id returned by
+ * the API therefore matches the delivered email, its bounces and the logs.
+ */
+@Component
+public class MessageIdGenerator {
+
+    /** Length of the generated ids. */
+    public static final int LENGTH = 26;
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    private final long node;
+    private final String domain;
+
+    @Autowired
+    public MessageIdGenerator(MailProperties mailProperties) {
+        this(domain(mailProperties), new SecureRandom().nextInt(1 << 16));
+    }
+
+    MessageIdGenerator(String domain, int node) {
+        this.domain = domain;
+        this.node = node & 0xffffL;
+    }
+
+    /**
+     * Returns a new id.
+     *
+     * @return 26 characters from the Crockford base32 alphabet
+     */
+    public String next() {
+        long high = (System.currentTimeMillis() << 16) | node;
+        long low = ThreadLocalRandom.current().nextLong();
+        char[] id = new char[LENGTH];
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            id[i] = ALPHABET[(int) (low & 31)];
+            low = (low >>> 5) | (high << 59);
+            high >>>= 5;
+        }
+        return new String(id);
+    }
+
+    /**
+     * Formats the {@code Message-ID} header value of an id.
+     *
+     * @param id an id returned by {@link #next()}
+     * @return {@code <id@domain>}
+     */
+    public String header(String id) {
+        return "<" + id + "@" + domain + ">";
+    }
+
+    /**
+     * Returns the domain of the {@code Message-ID} headers.
+     *
+     * @return the right-hand side of the headers
+     */
+    public String domain() {
+        return domain;
+    }
+
+    private static String domain(MailProperties mailProperties) {
+        String configured = mailProperties.getMessageIdDomain();
+        if (configured != null && !configured.isBlank()) {
+            return configured.strip();
+        }
+        String from = mailProperties.getDefaultFrom();
+        int at = from == null ? -1 : from.lastIndexOf('@');
+        if (at < 0) {
+            return "localhost";
+        }
+        String domain = from.substring(at + 1).replace(">", "").strip();
+        return domain.isEmpty() ? "localhost" : domain;
+    }
+
+}
@@ -0,0 +1,348 @@
+package io.github.haiphamcoder.mailer.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Component;
+
+import io.github.haiphamcoder.mailer.attachment.AttachmentSpool;
+import io.github.haiphamcoder.mailer.attachment.AttachmentStore;
+import io.github.haiphamcoder.mailer.config.MailProperties;
+import io.github.haiphamcoder.mailer.dto.Attachment;
+import io.github.haiphamcoder.mailer.dto.EmailRequest;
+import io.github.haiphamcoder.mailer.exception.ApiException;
+import io.github.haiphamcoder.mailer.exception.AttachmentNotFoundException;
+import io.github.haiphamcoder.mailer.exception.TemplateNotFoundException;
+import io.github.haiphamcoder.mailer.template.CompiledTemplate;
+import io.github.haiphamcoder.mailer.template.TemplateRegistry;
+import jakarta.activation.DataHandler;
+import jakarta.mail.Address;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Part;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+import jakarta.mail.internet.MimePart;
+import jakarta.mail.internet.PreencodedMimeBodyPart;
+
+/**
+ * Builds {@link MimeMessage}s from {@link EmailRequest}s.
+ * <p>
+ * Applies the configured default From and Reply-To addresses when the request
+ * does not provide them, and the {@code Message-ID} formatted by
+ * {@link MessageIdGenerator} from the id the email was accepted under; the
+ * header is kept when the message is saved instead of being replaced by a
+ * generated one. Messages are built on a shared transport-less
+ * {@link Session}, so the same message can be sent through any sender
+ * account.
+ * <p>
+ * Requests with a {@code templateId} get a body that renders the
+ * {@link CompiledTemplate} from {@link TemplateRegistry} while the message is
+ * written, straight into the quoted-printable encoder, so the rendered body
+ * is never held as a String.
+ * <p>
+ * Requests with attachments become {@code multipart/mixed} messages. Spooled
+ * attachment parts read the {@link AttachmentSpool} files through a
+ * file-backed data source; they are base64-encoded on the fly while the
+ * message is written to the SMTP connection, so attachments are never held
+ * in memory. Parts of attachments referenced from the {@link AttachmentStore}
+ * are already encoded: they copy the store's memory-mapped base64 encoding,
+ * which is shared by every message carrying the same content.
+ * <p>
+ * For fan-out, {@link #createFanOut(EmailRequest)} encodes a message once and
+ * returns a {@link FanOutMessage} from which a copy per recipient is made
+ * without encoding the body again; with attachments, the shared encoding is
+ * written to a scratch file in the spool.
+ * <p>
+ * {@link #splitEnvelope(MimeMessage, int)} splits a message with many
+ * recipients into messages for several SMTP transactions that share one
+ * encoding; with attachments, the shared encoding is written to a scratch file
+ * in the spool instead of memory.
+ */
+@Component
+public class MimeMessageFactory {
+
+    private final MailProperties mailProperties;
+    private final TemplateRegistry templates;
+    private final AttachmentSpool spool;
+    private final AttachmentStore store;
+    private final MessageIdGenerator messageIds;
+    private final Session session = Session.getInstance(new Properties());
+
+    public MimeMessageFactory(MailProperties mailProperties, TemplateRegistry templates, AttachmentSpool spool,
+            AttachmentStore store, MessageIdGenerator messageIds) {
+        this.mailProperties = mailProperties;
+        this.templates = templates;
+        this.spool = spool;
+        this.store = store;
+        this.messageIds = messageIds;
+    }
+
+    /**
+     * Builds a message ready to be handed to {@link JavaMailSender#send}.
+     *
+     * @param messageId the id the email was accepted under, used for its
+     *                  {@code Message-ID} header
+     * @param request   the email request
+     * @return the populated message
+     * @throws MessagingException        if an address or header cannot be
+     *                                   encoded
+     * @throws TemplateNotFoundException if the request refers to an unknown
+     *                                   template
+     * @throws ApiException              if a template variable is missing or
+     *                                   a spooled attachment is missing
+     * @throws AttachmentNotFoundException if a stored attachment is missing
+     */
+    public MimeMessage create(String messageId, EmailRequest request) throws MessagingException {
+        MimeMessage message = messageId != null ? new IdentifiedMimeMessage(session, messageIds.header(messageId))
+                : new MimeMessage(session);
+
+        String from = (request.from() != null && !request.from().isBlank()) ? request.from()
+                : mailProperties.getDefaultFrom();
+        if (from != null && !from.isBlank()) {
+            message.setFrom(new InternetAddress(from));
+        }
+
+        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(String.join(",", request.to())));
+        if (request.cc() != null && !request.cc().isEmpty()) {
+            message.setRecipients(Message.RecipientType.CC, InternetAddress.parse(String.join(",", request.cc())));
+        }
+        if (request.bcc() != null && !request.bcc().isEmpty()) {
+            message.setRecipients(Message.RecipientType.BCC,
+                    InternetAddress.parse(String.join(",", request.bcc())));
+        }
+        if (request.replyTo() != null && !request.replyTo().isBlank()) {
+            message.setReplyTo(InternetAddress.parse(request.replyTo()));
+        } else if (mailProperties.getDefaultReplyTo() != null && !mailProperties.getDefaultReplyTo().isBlank()) {
+            message.setReplyTo(InternetAddress.parse(mailProperties.getDefaultReplyTo()));
+        }
+
+        message.setSubject(request.subject(), "UTF-8");
+        if (!request.hasAttachments()) {
+            setBody(message, request);
+            return message;
+        }
+        MimeMultipart mixed = new MimeMultipart("mixed");
+        MimeBodyPart text = new MimeBodyPart();
+        setBody(text, request);
+        mixed.addBodyPart(text);
+        for (Attachment attachment : request.attachments()) {
+            MimeBodyPart part;
+            if (attachment.spoolId() != null) {
+                part = new MimeBodyPart();
+                part.setDataHandler(new DataHandler(spool.dataSource(attachment)));
+            } else {
+                part = new PreencodedMimeBodyPart("base64");
+                part.setDataHandler(new DataHandler(store.encodedDataSource(attachment.sha256(),
+                        attachment.contentType(), attachment.filename())));
+            }
+            part.setHeader("Content-Type", attachment.contentType());
+            part.setFileName(attachment.filename());
+            part.setDisposition(Part.ATTACHMENT);
+            // Set up front: otherwise the whole file is read once more to choose an encoding
+            part.setHeader("Content-Transfer-Encoding", "base64");
+            mixed.addBodyPart(part);
+        }
+        message.setContent(mixed);
+        return message;
+    }
+
+    private void setBody(MimePart part, EmailRequest request) throws MessagingException {
+        if (request.templateId() != null) {
+            CompiledTemplate template = templates.get(request.templateId());
+            template.checkVariables(request.variables());
+            part.setDataHandler(template.dataHandler(request.variables()));
+            part.setHeader("Content-Type", template.contentType());
+            // Set up front: otherwise the body is rendered once more to choose an encoding
+            part.setHeader("Content-Transfer-Encoding", "quoted-printable");
+            return;
+        }
+        boolean isHtml = Boolean.TRUE.equals(request.html());
+        part.setContent(request.body(), isHtml ? "text/html; charset=UTF-8" : "text/plain; charset=UTF-8");
+    }
+
+    /**
+     * Renders the request once for sending a private copy to each of its
+     * {@code to} recipients. Cc and Bcc are not carried over to the copies.
+     * The rendering of an email with attachments is written to a scratch file,
+     * which {@link #discard(FanOutMessage)} deletes.
+     *
+     * @param request the email request
+     * @return the shared rendering
+     * @throws MessagingException if an address or header cannot be encoded
+     */
+    public FanOutMessage createFanOut(EmailRequest request) throws MessagingException {
+        MimeMessage template = create(null, request);
+        template.setSentDate(new Date());
+        template.saveChanges();
+        if (request.hasAttachments()) {
+            Path file = encodeToScratch(template, FanOutMessage.PER_COPY_HEADERS);
+            try {
+                return new FanOutMessage(session, file, Files.size(file), template.getHeader("From", ","),
+                        template.getHeader("Date", null), messageIds);
+            } catch (IOException e) {
+                spool.deleteScratch(file);
+                throw new MessagingException("Failed to encode message", e);
+            }
+        }
+        int bodySize = request.body() != null ? request.body().length()
+                : templates.get(request.templateId()).literalSize();
+        ByteArrayOutputStream shared = new ByteArrayOutputStream(bodySize + 1024);
+        try {
+            template.writeTo(shared, FanOutMessage.PER_COPY_HEADERS);
+        } catch (IOException e) {
+            throw new MessagingException("Failed to encode message", e);
+        }
+        return new FanOutMessage(session, shared.toByteArray(), template.getHeader("From", ","),
+                template.getHeader("Date", null), messageIds);
+    }
+
+    /**
+     * Splits the SMTP envelope of a message into transactions of at most
+     * {@code maxRecipients} recipients. The message is encoded once, without
+     * its {@code Bcc} header, and every part carries the same headers,
+     * including {@code Message-ID}, so recipients see one email. A
+     * {@code multipart} message is encoded to a scratch file in the
+     * {@link AttachmentSpool}, which {@link #discard(List)} deletes once every
+     * part was sent.
+     *
+     * @param message       the message to split
+     * @param maxRecipients most recipients per transaction
+     * @return the message itself if it has at most {@code maxRecipients}
+     *         recipients, otherwise one message per transaction
+     * @throws MessagingException if the message cannot be encoded
+     */
+    public List<MimeMessage> splitEnvelope(MimeMessage message, int maxRecipients) throws MessagingException {
+        return splitEnvelope(message, null, maxRecipients);
+    }
+
+    /**
+     * Like {@link #splitEnvelope(MimeMessage, int)}, but sends the message to
+     * the given recipients only, e.g. those an earlier attempt did not reach.
+     * The headers still name every recipient of the message.
+     *
+     * @param message       the message to split
+     * @param envelope      the recipients to send to, or null for all
+     *                      recipients of the message
+     * @param maxRecipients most recipients per transaction
+     * @return the message itself if it goes to all of its recipients and has
+     *         at most {@code maxRecipients}, otherwise one message per
+     *         transaction
+     * @throws MessagingException if the message cannot be encoded
+     */
+    public List<MimeMessage> splitEnvelope(MimeMessage message, Address[] envelope, int maxRecipients)
+            throws MessagingException {
+        Address[] recipients = envelope != null ? envelope : message.getAllRecipients();
+        if (recipients == null || envelope == null && recipients.length <= maxRecipients) {
+            return List.of(message);
+        }
+        if (message.getSentDate() == null) {
+            message.setSentDate(new Date());
+        }
+        message.saveChanges();
+        byte[] shared = null;
+        Path sharedFile = null;
+        if (message.isMimeType("multipart/*")) {
+            sharedFile = encodeToScratch(message, new String[] { "Bcc" });
+        } else {
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream(8192);
+            try {
+                message.writeTo(encoded, new String[] { "Bcc" });
+            } catch (IOException e) {
+                throw new MessagingException("Failed to encode message", e);
+            }
+            shared = encoded.toByteArray();
+        }
+
+        List<MimeMessage> parts = new ArrayList<>((recipients.length + maxRecipients - 1) / maxRecipients);
+        for (int from = 0; from < recipients.length; from += maxRecipients) {
+            Address[] batch = Arrays.copyOfRange(recipients, from, Math.min(from + maxRecipients,
+                    recipients.length));
+            MimeMessage part = sharedFile != null ? new PreEncodedMimeMessage(session, sharedFile, batch)
+                    : new PreEncodedMimeMessage(session, shared, batch);
+            // Kept as headers so that senders and transports can read them
+            for (String name : new String[] { "From", "Date", "Message-ID" }) {
+                String value = message.getHeader(name, ",");
+                if (value != null) {
+                    part.setHeader(name, value);
+                }
+            }
+            parts.add(part);
+        }
+        return parts;
+    }
+
+    /** Writes a message to a new scratch file in the spool, which is deleted if writing fails. */
+    private Path encodeToScratch(MimeMessage message, String[] ignoreHeaders) throws MessagingException {
+        Path file;
+        try {
+            file = spool.createScratch();
+        } catch (IOException e) {
+            throw new MessagingException("Failed to encode message", e);
+        }
+        try (OutputStream out = Files.newOutputStream(file)) {
+            message.writeTo(out, ignoreHeaders);
+            return file;
+        } catch (IOException e) {
+            spool.deleteScratch(file);
+            throw new MessagingException("Failed to encode message", e);
+        } catch (MessagingException | RuntimeException e) {
+            spool.deleteScratch(file);
+            throw e;
+        }
+    }
+
+    /**
+     * Releases the shared encoding of the parts returned by
+     * {@link #splitEnvelope(MimeMessage, Address[], int)} once they are no
+     * longer sent.
+     *
+     * @param parts the parts of one message
+     */
+    public void discard(List<MimeMessage> parts) {
+        if (!parts.isEmpty() && parts.get(0) instanceof PreEncodedMimeMessage part && part.file() != null) {
+            spool.deleteScratch(part.file());
+        }
+    }
+
+    /**
+     * Releases the shared rendering of a fan-out once every copy was sent.
+     *
+     * @param message the fan-out rendering
+     */
+    public void discard(FanOutMessage message) {
+        if (message.file() != null) {
+            spool.deleteScratch(message.file());
+        }
+    }
+
+    /** A message whose {@code Message-ID} is assigned up front and kept by {@link #saveChanges()}. */
+    private static final class IdentifiedMimeMessage extends MimeMessage {
+
+        private final String messageId;
+
+        IdentifiedMimeMessage(Session session, String messageId) throws MessagingException {
+            super(session);
+            this.messageId = messageId;
+            setHeader("Message-ID", messageId);
+        }
+
+        @Override
+        protected void updateMessageID() throws MessagingException {
+            setHeader("Message-ID", messageId);
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+package io.github.haiphamcoder.mailer.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeUtility;
+
+/**
+ * A {@link MimeMessage} whose headers and body were encoded ahead of time.
+ * <p>
+ * {@link #writeTo(OutputStream, String[])} writes the {@code prefixHeaders}
+ * held by this message, then the shared encoded bytes, and
+ * {@link #saveChanges()} does nothing. Headers that senders and transports
+ * read ({@code From}, {@code Date}, {@code Message-ID}, recipients) are kept
+ * on the message as usual. With an explicit envelope,
+ * {@link #getAllRecipients()} returns it instead of the header recipients,
+ * so one encoding can be sent to different recipients in several SMTP
+ * transactions. Large encodings, such as messages with attachments, can be
+ * held in a file, which is then streamed on every write.
+ */
+final class PreEncodedMimeMessage extends MimeMessage {
+
+    private final byte[] encoded;
+    private final Path file;
+    private final Address[] envelope;
+    private final String[] prefixHeaders;
+
+    /**
+     * @param session       the session of the message
+     * @param encoded       the encoded headers and body written after the prefix
+     * @param envelope      the SMTP recipients, or null to use the headers
+     * @param prefixHeaders headers of this message written before
+     *                      {@code encoded}
+     */
+    PreEncodedMimeMessage(Session session, byte[] encoded, Address[] envelope, String... prefixHeaders) {
+        super(session);
+        this.encoded = encoded;
+        this.file = null;
+        this.envelope = envelope;
+        this.prefixHeaders = prefixHeaders;
+    }
+
+    /**
+     * @param session       the session of the message
+     * @param file          file holding the encoded headers and body written
+     *                      after the prefix
+     * @param envelope      the SMTP recipients, or null to use the headers
+     * @param prefixHeaders headers of this message written before the file
+     */
+    PreEncodedMimeMessage(Session session, Path file, Address[] envelope, String... prefixHeaders) {
+        super(session);
+        this.encoded = null;
+        this.file = file;
+        this.envelope = envelope;
+        this.prefixHeaders = prefixHeaders;
+    }
+
+    /**
+     * Returns the file holding the encoding.
+     *
+     * @return the file, or null if the encoding is held in memory
+     */
+    Path file() {
+        return file;
+    }
+
+    @Override
+    public Address[] getAllRecipients() throws MessagingException {
+        return envelope != null ? envelope.clone() : super.getAllRecipients();
+    }
+
+    @Override
+    public void saveChanges() {
+        // Already encoded
+    }
+
+    @Override
+    public void writeTo(OutputStream out, String[] ignoreList) throws IOException, MessagingException {
+        for (String name : prefixHeaders) {
+            String value = getHeader(name, ",");
+            if (value != null) {
+                String line = name + ": " + MimeUtility.fold(name.length() + 2, value) + "\r\n";
+                out.write(line.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        if (file != null) {
+            Files.copy(file, out);
+        } else {
+            out.write(encoded);
+        }
+        out.flush();
+    }
+
+}
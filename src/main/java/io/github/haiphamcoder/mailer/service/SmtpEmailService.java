@@ -1,73 +1,329 @@
 package io.github.haiphamcoder.mailer.service;
 
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 
+import io.github.haiphamcoder.mailer.account.SenderAccount;
+import io.github.haiphamcoder.mailer.account.SenderAccountRouter;
 import io.github.haiphamcoder.mailer.config.MailProperties;
 import io.github.haiphamcoder.mailer.dto.EmailRequest;
+import io.github.haiphamcoder.mailer.dto.RecipientFailure;
+import io.github.haiphamcoder.mailer.exception.ApiException;
+import io.github.haiphamcoder.mailer.exception.MailDeliveryException;
+import io.github.haiphamcoder.mailer.exception.MailFailure;
+import io.github.haiphamcoder.mailer.exception.MailSendExceptionMapper;
+import io.github.haiphamcoder.mailer.exception.QuotaExhaustedException;
+import io.github.haiphamcoder.mailer.exception.RecipientsFailedException;
+import io.github.haiphamcoder.mailer.smtp.SmtpMetrics;
 import io.github.haiphamcoder.mailer.util.MaskingUtil;
-import jakarta.mail.Message;
+import io.github.haiphamcoder.mailer.util.ThreadFactories;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
 import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeMessage;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * {@link EmailService} that makes a single SMTP delivery attempt per call.
+ * <p>
+ * Failures are raised as {@link MailDeliveryException} carrying the
+ * {@link MailSendExceptionMapper} classification; retrying transient failures
+ * is left to the caller (see {@code RetryScheduler}) so that no thread sleeps
+ * between attempts.
+ * <p>
+ * The sender account is chosen by {@link SenderAccountRouter}. If the chosen
+ * account is throttled or its credentials are rejected, the message fails over
+ * to the next available account within the same call.
+ * <p>
+ * An email with more recipients than
+ * {@code gmail.mail.max-recipients-per-transaction} is encoded once and sent
+ * in several SMTP transactions, up to {@code gmail.mail.transaction-parallelism}
+ * at a time over separate connections. Quota for every transaction is taken
+ * before any is sent, so an email that does not fit is queued whole and the
+ * permits already taken for it are refunded. The
+ * shared encoding of an email with attachments is a scratch file, deleted once
+ * every transaction has finished. When
+ * recipients fail, a {@link RecipientsFailedException} lists them, built from
+ * the sent, unsent and invalid addresses of the {@link SendFailedException};
+ * once any recipient got the email, the failure is {@code PARTIAL_DELIVERY}.
+ * It is retryable only if every failed transaction was, e.g. it ran out of
+ * quota or got a transient reply; the retry then goes to the failed
+ * recipients alone through {@link #sendEmail(String, EmailRequest, List)}.
+ * <p>
+ * The outcome and end-to-end latency of each email are recorded in
+ * {@link SmtpMetrics}; emails left for the outbox because no account has
+ * quota are not counted.
+ */
 @Service
 @Slf4j
-@RequiredArgsConstructor
-public class SmtpEmailService implements EmailService {
+public class SmtpEmailService implements EmailService, DisposableBean {
 
-    private final JavaMailSender mailSender;
-    private final MailProperties mailProperties;
+    private final SenderAccountRouter router;
+    private final MimeMessageFactory messageFactory;
+    private final MailSendExceptionMapper exceptionMapper;
+    private final SmtpMetrics metrics;
+    private final MessageIdGenerator messageIds;
+    private final int maxRecipients;
+    private final ExecutorService executor;
+
+    public SmtpEmailService(SenderAccountRouter router, MimeMessageFactory messageFactory,
+            MailSendExceptionMapper exceptionMapper, SmtpMetrics metrics, MessageIdGenerator messageIds,
+            MailProperties mailProperties, Environment environment) {
+        this.router = router;
+        this.messageFactory = messageFactory;
+        this.exceptionMapper = exceptionMapper;
+        this.metrics = metrics;
+        this.messageIds = messageIds;
+        this.maxRecipients = mailProperties.getMaxRecipientsPerTransaction();
+        this.executor = Executors.newFixedThreadPool(mailProperties.getTransactionParallelism(),
+                ThreadFactories.blockingIo(environment, "smtp-transaction-"));
+    }
 
     @Override
-    @Retryable(maxAttempts = 3, backoff = @Backoff(delay = 1500, multiplier = 2.0))
     public String sendEmail(EmailRequest request) {
-        String messageId = UUID.randomUUID().toString();
-
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-
-            String from = (request.from() != null && !request.from().isBlank()) ? request.from()
-                    : mailProperties.getDefaultFrom();
-            if (from != null && !from.isBlank()) {
-                message.setFrom(new InternetAddress(from));
-            }
-
-            message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(String.join(",", request.to())));
-            if (request.cc() != null && !request.cc().isEmpty()) {
-                message.setRecipients(Message.RecipientType.CC, InternetAddress.parse(String.join(",", request.cc())));
-            }
-            if (request.bcc() != null && !request.bcc().isEmpty()) {
-                message.setRecipients(Message.RecipientType.BCC,
-                        InternetAddress.parse(String.join(",", request.bcc())));
-            }
-            if (request.replyTo() != null && !request.replyTo().isBlank()) {
-                message.setReplyTo(InternetAddress.parse(request.replyTo()));
-            } else if (mailProperties.getDefaultReplyTo() != null && !mailProperties.getDefaultReplyTo().isBlank()) {
-                message.setReplyTo(InternetAddress.parse(mailProperties.getDefaultReplyTo()));
-            }
+        return sendEmail(messageIds.next(), request);
+    }
 
-            message.setSubject(request.subject(), "UTF-8");
-            boolean isHtml = Boolean.TRUE.equals(request.html());
-            message.setContent(request.body(), isHtml ? "text/html; charset=UTF-8" : "text/plain; charset=UTF-8");
+    /**
+     * {@inheritDoc}
+     *
+     * @throws QuotaExhaustedException    if no sender account can take the
+     *                                    message now; the caller should queue
+     *                                    it
+     * @throws RecipientsFailedException if the email was not delivered to
+     *                                    some or all of its recipients
+     */
+    @Override
+    public String sendEmail(String messageId, EmailRequest request) {
+        return sendEmail(messageId, request, null);
+    }
 
-            mailSender.send(message);
+    /**
+     * {@inheritDoc}
+     *
+     * @throws QuotaExhaustedException    if no sender account can take the
+     *                                    message now; the caller should queue
+     *                                    it
+     * @throws RecipientsFailedException if the email was not delivered to
+     *                                    some or all of its recipients
+     */
+    @Override
+    public String sendEmail(String messageId, EmailRequest request, List<String> envelope) {
+        long start = System.nanoTime();
+        try {
+            deliver(messageId, request, envelope);
+            metrics.recordSend(request.effectivePriority(), start, null);
             log.info("Email sent successfully to {} with subject '{}'",
                     MaskingUtil.maskEmail(String.join(",", request.to())),
                     request.subject());
 
             return messageId;
+        } catch (QuotaExhaustedException e) {
+            throw e;
         } catch (Exception e) {
+            MailDeliveryException failure = e instanceof MailDeliveryException delivery ? delivery
+                    : new MailDeliveryException(exceptionMapper.classify(e), e);
+            metrics.recordSend(request.effectivePriority(), start, failure);
             log.error("Failed to send email to {} with subject '{}': {}",
                     MaskingUtil.maskEmail(String.join(",", request.to())),
                     request.subject(), e.getMessage(), e);
-            throw new RuntimeException(e);
+            throw failure;
         }
     }
 
+    private void deliver(String messageId, EmailRequest request, List<String> envelope) throws MessagingException {
+        MimeMessage message = messageFactory.create(messageId, request);
+        Address[] recipients = envelope == null ? null : InternetAddress.parse(String.join(",", envelope));
+        List<MimeMessage> parts = messageFactory.splitEnvelope(message, recipients, maxRecipients);
+        try {
+            deliver(messageId, request, message, parts);
+        } finally {
+            messageFactory.discard(parts);
+        }
+    }
+
+    private void deliver(String messageId, EmailRequest request, MimeMessage message, List<MimeMessage> parts)
+            throws MessagingException {
+        List<Transaction> transactions = new ArrayList<>(parts.size());
+        if (parts.size() == 1) {
+            EmailRequest route = parts.get(0) == message ? request : route(request, parts.get(0));
+            transactions.add(new Transaction(parts.get(0), route, router.acquire(route)));
+        } else {
+            try {
+                for (MimeMessage part : parts) {
+                    EmailRequest route = route(request, part);
+                    transactions.add(new Transaction(part, route, router.acquire(route)));
+                }
+            } catch (QuotaExhaustedException e) {
+                transactions.forEach(transaction -> router.cancel(transaction.account(), transaction.route()));
+                throw e;
+            }
+            log.info("Sending email {} in {} transactions of at most {} recipients", messageId, parts.size(),
+                    maxRecipients);
+        }
+
+        Exception[] failures = new Exception[transactions.size()];
+        if (transactions.size() == 1) {
+            failures[0] = send(messageId, transactions.get(0));
+        } else {
+            CompletableFuture<?>[] futures = new CompletableFuture<?>[transactions.size()];
+            for (int i = 0; i < futures.length; i++) {
+                int index = i;
+                futures[i] = CompletableFuture.runAsync(
+                        () -> failures[index] = send(messageId, transactions.get(index)), executor);
+            }
+            CompletableFuture.allOf(futures).join();
+        }
+        aggregate(transactions, failures);
+    }
+
+    /**
+     * Sends one transaction, failing over to other accounts.
+     *
+     * @return the final failure, or null if the transaction was sent
+     */
+    private Exception send(String messageId, Transaction transaction) {
+        SenderAccount account = transaction.account();
+        for (int tried = 1;; tried++) {
+            try {
+                account.send(transaction.route().effectivePriority(), transaction.message());
+                router.release(account, null);
+                return null;
+            } catch (Exception e) {
+                if (!router.release(account, e) || tried >= router.accounts().size()) {
+                    return e;
+                }
+                log.info("Failing over email {} from account {}: {}", messageId,
+                        MaskingUtil.maskEmail(account.username()), e.getMessage());
+            }
+            try {
+                account = router.acquire(transaction.route());
+            } catch (QuotaExhaustedException e) {
+                return e;
+            }
+        }
+    }
+
+    /**
+     * Turns the transaction failures into one outcome for the email.
+     */
+    private void aggregate(List<Transaction> transactions, Exception[] failures) throws MessagingException {
+        Exception first = null;
+        QuotaExhaustedException quotaExhausted = null;
+        boolean retryable = true;
+        int delivered = 0;
+        int total = 0;
+        List<RecipientFailure> failed = new ArrayList<>();
+        for (int i = 0; i < failures.length; i++) {
+            Address[] recipients = transactions.get(i).message().getAllRecipients();
+            total += recipients.length;
+            if (failures[i] == null) {
+                delivered += recipients.length;
+                continue;
+            }
+            if (first == null) {
+                first = failures[i];
+            }
+            if (failures[i] instanceof QuotaExhaustedException e) {
+                quotaExhausted = e;
+            } else if (!exceptionMapper.isRetryable(failures[i])) {
+                retryable = false;
+            }
+            delivered += collectFailures(recipients, failures[i], failed);
+        }
+        if (first == null) {
+            return;
+        }
+        if (delivered == 0) {
+            if (quotaExhausted != null) {
+                throw quotaExhausted;
+            }
+            throw new RecipientsFailedException(exceptionMapper.classify(first), first.getMessage(), first, failed,
+                    0);
+        }
+        // Retrying is safe only because the retry goes to the failed recipients alone
+        throw new RecipientsFailedException(
+                new MailFailure(RecipientsFailedException.PARTIAL_DELIVERY, retryable, 0),
+                "Delivered to " + delivered + " of " + total + " recipients", first, failed, delivered);
+    }
+
+    /**
+     * Adds the recipients of a failed transaction that did not get the email.
+     *
+     * @return the number of recipients that got it anyway
+     */
+    private int collectFailures(Address[] recipients, Exception failure, List<RecipientFailure> failed) {
+        Set<Address> sent = new HashSet<>();
+        Map<Address, Exception> rejected = new HashMap<>();
+        SendFailedException sendFailure = exceptionMapper.findSendFailure(failure);
+        if (sendFailure != null) {
+            if (sendFailure.getValidSentAddresses() != null) {
+                sent.addAll(Arrays.asList(sendFailure.getValidSentAddresses()));
+            }
+            for (Exception next = sendFailure.getNextException(); next != null;
+                    next = next instanceof MessagingException e ? e.getNextException() : null) {
+                if (next instanceof SMTPAddressFailedException addressFailed) {
+                    rejected.put(addressFailed.getAddress(), addressFailed);
+                }
+            }
+            if (sendFailure.getInvalidAddresses() != null) {
+                for (Address invalid : sendFailure.getInvalidAddresses()) {
+                    rejected.putIfAbsent(invalid, sendFailure);
+                }
+            }
+        }
+
+        int delivered = 0;
+        for (Address recipient : recipients) {
+            if (sent.contains(recipient)) {
+                delivered++;
+                continue;
+            }
+            Exception cause = rejected.get(recipient);
+            boolean addressRejected = cause != null;
+            if (cause == null) {
+                cause = failure;
+            }
+            String code = cause instanceof ApiException api ? api.code() : exceptionMapper.map(cause);
+            failed.add(new RecipientFailure(address(recipient), addressRejected, code, cause.getMessage()));
+        }
+        return delivered;
+    }
+
+    /**
+     * Returns the request used to route and count quota for one transaction of
+     * a split email.
+     */
+    private static EmailRequest route(EmailRequest request, MimeMessage part) throws MessagingException {
+        return request.withRecipients(
+                Arrays.stream(part.getAllRecipients()).map(SmtpEmailService::address).toList());
+    }
+
+    private static String address(Address address) {
+        return address instanceof InternetAddress internet ? internet.getAddress() : address.toString();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    /** One SMTP transaction of an email and the account it was acquired on. */
+    private record Transaction(MimeMessage message, EmailRequest route, SenderAccount account) {
+    }
+
 }
@@ -0,0 +1,20 @@
+package io.github.haiphamcoder.mailer.service;
+
+/**
+ * Outcome of submitting an email through {@link EmailSubmissionService}.
+ *
+ * @param messageId the message id assigned to the email
+ * @param queued    true if the email was queued for later delivery rather than
+ *                  sent during the call
+ */
+public record SubmissionResult(String messageId, boolean queued) {
+
+    public static SubmissionResult sent(String messageId) {
+        return new SubmissionResult(messageId, false);
+    }
+
+    public static SubmissionResult queued(String messageId) {
+        return new SubmissionResult(messageId, true);
+    }
+
+}
@@ -0,0 +1,211 @@
+package io.github.haiphamcoder.mailer.smtp;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.eclipse.angus.mail.smtp.SMTPTransport;
+
+import io.github.haiphamcoder.mailer.smtp.SmtpMetrics.Phase;
+import jakarta.mail.Address;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.URLName;
+
+/**
+ * {@link SMTPTransport} that times each SMTP protocol phase into
+ * {@link SmtpMetrics}.
+ * <p>
+ * Angus Mail runs EHLO, STARTTLS and AUTH inside {@link #protocolConnect}, and
+ * only EHLO and STARTTLS can be overridden. The connect phase is therefore the
+ * time up to the first EHLO (TCP connect and server greeting), and the auth
+ * phase the time from the last EHLO to the end of {@code protocolConnect}.
+ * DATA is timed from the DATA command to the reply to the final dot, which
+ * includes writing the message. A transport is used by one thread at a time
+ * and its public methods are synchronized, so the timing state needs no
+ * further guarding.
+ */
+final class InstrumentedSmtpTransport extends SMTPTransport {
+
+    @FunctionalInterface
+    private interface SmtpCall<T> {
+        T call() throws MessagingException;
+    }
+
+    private final SmtpMetrics.Phases phases;
+
+    private boolean connected;
+    private long greetedAt;
+    private long lastEhloEnd;
+    private long dataStart;
+
+    InstrumentedSmtpTransport(Session session, URLName url, String protocol, SmtpMetrics.Phases phases) {
+        super(session, url, protocol, protocol.equals("smtps"));
+        this.phases = phases;
+    }
+
+    @Override
+    protected synchronized boolean protocolConnect(String host, int port, String user, String password)
+            throws MessagingException {
+        long start = System.nanoTime();
+        greetedAt = 0;
+        lastEhloEnd = 0;
+        boolean success = false;
+        try {
+            success = super.protocolConnect(host, port, user, password);
+            connected = success;
+            return success;
+        } finally {
+            long end = System.nanoTime();
+            if (greetedAt == 0) {
+                phases.record(Phase.CONNECT, end - start, false);
+            } else {
+                phases.record(Phase.CONNECT, greetedAt - start, true);
+                if (lastEhloEnd != 0 && user != null && password != null
+                        && (supportsExtension("AUTH") || supportsExtension("AUTH=LOGIN"))) {
+                    phases.record(Phase.AUTH, end - lastEhloEnd, success);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected boolean ehlo(String domain) throws MessagingException {
+        greeted();
+        boolean accepted = timed(Phase.EHLO, () -> super.ehlo(domain));
+        lastEhloEnd = System.nanoTime();
+        return accepted;
+    }
+
+    @Override
+    protected void helo(String domain) throws MessagingException {
+        greeted();
+        timed(Phase.EHLO, () -> {
+            super.helo(domain);
+            return null;
+        });
+        lastEhloEnd = System.nanoTime();
+    }
+
+    @Override
+    protected void startTLS() throws MessagingException {
+        // Credentials are sent after the EHLO that follows STARTTLS
+        lastEhloEnd = 0;
+        timed(Phase.STARTTLS, () -> {
+            super.startTLS();
+            return null;
+        });
+    }
+
+    @Override
+    public synchronized boolean isConnected() {
+        if (!connected) {
+            return super.isConnected();
+        }
+        long start = System.nanoTime();
+        boolean alive = super.isConnected();
+        phases.record(Phase.NOOP, System.nanoTime() - start, alive);
+        connected = alive;
+        return alive;
+    }
+
+    @Override
+    public synchronized void sendMessage(Message message, Address[] addresses) throws MessagingException {
+        phases.recipients(addresses != null ? addresses.length : 0);
+        try {
+            super.sendMessage(message, addresses);
+        } finally {
+            // Only records if the message failed between DATA and the final reply
+            dataEnded(false);
+        }
+    }
+
+    @Override
+    protected void mailFrom() throws MessagingException {
+        timed(Phase.MAIL, () -> {
+            super.mailFrom();
+            return null;
+        });
+    }
+
+    @Override
+    protected void rcptTo() throws MessagingException {
+        timed(Phase.RCPT, () -> {
+            super.rcptTo();
+            return null;
+        });
+    }
+
+    @Override
+    protected OutputStream data() throws MessagingException {
+        dataStart = System.nanoTime();
+        return super.data();
+    }
+
+    @Override
+    protected void finishData() throws IOException, MessagingException {
+        boolean success = false;
+        try {
+            super.finishData();
+            success = true;
+        } finally {
+            dataEnded(success);
+        }
+    }
+
+    @Override
+    protected OutputStream bdat() throws MessagingException {
+        dataStart = System.nanoTime();
+        return super.bdat();
+    }
+
+    @Override
+    protected void finishBdat() throws IOException, MessagingException {
+        boolean success = false;
+        try {
+            super.finishBdat();
+            success = true;
+        } finally {
+            dataEnded(success);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws MessagingException {
+        if (!connected) {
+            super.close();
+            return;
+        }
+        connected = false;
+        timed(Phase.QUIT, () -> {
+            super.close();
+            return null;
+        });
+    }
+
+    private void greeted() {
+        if (greetedAt == 0) {
+            greetedAt = System.nanoTime();
+        }
+    }
+
+    private void dataEnded(boolean success) {
+        if (dataStart != 0) {
+            phases.record(Phase.DATA, System.nanoTime() - dataStart, success);
+            dataStart = 0;
+        }
+    }
+
+    private <T> T timed(Phase phase, SmtpCall<T> call) throws MessagingException {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = call.call();
+            success = true;
+            return result;
+        } finally {
+            phases.record(phase, System.nanoTime() - start, success);
+        }
+    }
+
+}
@@ -0,0 +1,242 @@
+package io.github.haiphamcoder.mailer.smtp;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.lang.Nullable;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import io.github.haiphamcoder.mailer.config.MailProperties;
+import io.github.haiphamcoder.mailer.dto.Priority;
+import jakarta.mail.Address;
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.NoSuchProviderException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+
+/**
+ * {@link JavaMailSenderImpl} that sends over long-lived pooled connections
+ * instead of opening, authenticating and closing a connection per call.
+ * <p>
+ * Message preparation follows {@link JavaMailSenderImpl}: the sent date is
+ * filled in and an explicitly set {@code Message-ID} is preserved. A
+ * connection that fails with anything other than a rejection the server
+ * replied with ({@link SendFailedException}) is discarded, and the remaining
+ * messages of the call continue on a fresh connection.
+ * <p>
+ * Angus Mail's {@code SMTPTransport} does its socket I/O inside
+ * {@code synchronized} methods ({@code connect}, {@code sendMessage},
+ * {@code isConnected}, {@code close}), which pins a virtual thread to its
+ * carrier for the whole SMTP exchange. With transport isolation enabled (in
+ * virtual-thread mode) each send is therefore run on a dedicated pool of
+ * platform threads, one per pooled connection, while the calling virtual
+ * thread parks unpinned until it completes.
+ * <p>
+ * Messages sent with {@link #send(Priority, MimeMessage...)} as bulk borrow
+ * their connection in the pool's bulk lane, all others in the transactional
+ * lane, so bulk mail cannot occupy the connections reserved for transactional
+ * mail.
+ * <p>
+ * With {@link #setMetrics(SmtpMetrics)} new connections time each SMTP phase
+ * and the pool publishes occupancy gauges, tagged with the pool name.
+ */
+public class PooledJavaMailSender extends JavaMailSenderImpl implements DisposableBean {
+
+    private static final String HEADER_MESSAGE_ID = "Message-ID";
+
+    private final String name;
+    private final SmtpTransportPool pool;
+    private final ExecutorService transportExecutor;
+    private SmtpMetrics metrics;
+
+    /**
+     * Creates a sender whose connections are managed according to
+     * {@code settings}. Connection parameters (host, port, credentials,
+     * JavaMail properties) are taken from this sender's setters.
+     *
+     * @param name     pool name used in logs and thread names
+     * @param settings pool settings
+     */
+    public PooledJavaMailSender(String name, MailProperties.Pool settings) {
+        this(name, settings, false);
+    }
+
+    /**
+     * Creates a sender whose connections are managed according to
+     * {@code settings}, optionally isolating transport I/O on platform
+     * threads.
+     *
+     * @param name               pool name used in logs and thread names
+     * @param settings           pool settings
+     * @param isolateTransportIo run sends on {@code max-size} dedicated
+     *                           platform threads instead of the caller's
+     *                           thread
+     */
+    public PooledJavaMailSender(String name, MailProperties.Pool settings, boolean isolateTransportIo) {
+        this.name = name;
+        this.pool = new SmtpTransportPool(name, this::connectTransport, settings);
+        if (isolateTransportIo) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(name + "-io-");
+            threadFactory.setDaemon(true);
+            this.transportExecutor = Executors.newFixedThreadPool(settings.getMaxSize(), threadFactory);
+        } else {
+            this.transportExecutor = null;
+        }
+    }
+
+    /**
+     * Returns the underlying connection pool.
+     *
+     * @return the pool
+     */
+    public SmtpTransportPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Enables SMTP phase timing and pool gauges.
+     *
+     * @param metrics the meters to record into
+     */
+    public void setMetrics(SmtpMetrics metrics) {
+        this.metrics = metrics;
+        metrics.bindPool(pool);
+    }
+
+    @Override
+    protected Transport getTransport(Session session) throws NoSuchProviderException {
+        if (metrics == null) {
+            return super.getTransport(session);
+        }
+        return metrics.transport(session, getProtocol(), name);
+    }
+
+    /**
+     * Sends messages over a connection borrowed in the lane of a priority.
+     * {@link #send(MimeMessage...)} sends in the transactional lane.
+     *
+     * @param priority     the lane to borrow the connection in
+     * @param mimeMessages the messages to send
+     * @throws MailException if the connection or any message fails
+     */
+    public void send(Priority priority, MimeMessage... mimeMessages) throws MailException {
+        doSend(priority == Priority.BULK, mimeMessages, null);
+    }
+
+    @Override
+    protected void doSend(MimeMessage[] mimeMessages, @Nullable Object[] originalMessages) throws MailException {
+        doSend(false, mimeMessages, originalMessages);
+    }
+
+    private void doSend(boolean bulk, MimeMessage[] mimeMessages, @Nullable Object[] originalMessages) {
+        if (transportExecutor == null) {
+            sendPooled(bulk, mimeMessages, originalMessages);
+            return;
+        }
+        Future<?> result = transportExecutor.submit(() -> sendPooled(bulk, mimeMessages, originalMessages));
+        try {
+            result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new MailSendException("SMTP send failed", e.getCause());
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new MailSendException("Interrupted while sending", e);
+        }
+    }
+
+    private void sendPooled(boolean bulk, MimeMessage[] mimeMessages, @Nullable Object[] originalMessages) {
+        Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+        PooledTransport pooled = null;
+
+        try {
+            for (int i = 0; i < mimeMessages.length; i++) {
+                if (pooled == null) {
+                    try {
+                        pooled = pool.borrow(bulk);
+                    } catch (AuthenticationFailedException ex) {
+                        throw new MailAuthenticationException(ex);
+                    } catch (Exception ex) {
+                        // Effectively, all remaining messages failed...
+                        for (int j = i; j < mimeMessages.length; j++) {
+                            Object original = (originalMessages != null ? originalMessages[j] : mimeMessages[j]);
+                            failedMessages.put(original, ex);
+                        }
+                        throw new MailSendException("Mail server connection failed", ex, failedMessages);
+                    }
+                }
+
+                MimeMessage mimeMessage = mimeMessages[i];
+                try {
+                    if (mimeMessage.getSentDate() == null) {
+                        mimeMessage.setSentDate(new Date());
+                    }
+                    String messageId = mimeMessage.getMessageID();
+                    mimeMessage.saveChanges();
+                    if (messageId != null) {
+                        // Preserve explicitly specified message id...
+                        mimeMessage.setHeader(HEADER_MESSAGE_ID, messageId);
+                    }
+                    Address[] addresses = mimeMessage.getAllRecipients();
+                    pooled.transport().sendMessage(mimeMessage, (addresses != null ? addresses : new Address[0]));
+                    pooled.messageSent();
+                } catch (SendFailedException ex) {
+                    Object original = (originalMessages != null ? originalMessages[i] : mimeMessage);
+                    failedMessages.put(original, ex);
+                    // A rejection the server replied with leaves the connection usable
+                    if (!isReply(ex)) {
+                        pool.release(pooled, false);
+                        pooled = null;
+                    }
+                } catch (Exception ex) {
+                    Object original = (originalMessages != null ? originalMessages[i] : mimeMessage);
+                    failedMessages.put(original, ex);
+                    pool.release(pooled, false);
+                    pooled = null;
+                }
+            }
+        } finally {
+            if (pooled != null) {
+                pool.release(pooled, true);
+            }
+        }
+
+        if (!failedMessages.isEmpty()) {
+            throw new MailSendException(failedMessages);
+        }
+    }
+
+    /**
+     * Returns whether a send failure was answered by the server. Angus Mail
+     * reports a connection closed mid-command as an
+     * {@link SMTPSendFailedException} without a reply code.
+     */
+    private static boolean isReply(SendFailedException ex) {
+        return !(ex instanceof SMTPSendFailedException smtp) || smtp.getReturnCode() > 0;
+    }
+
+    @Override
+    public void destroy() {
+        if (transportExecutor != null) {
+            transportExecutor.shutdown();
+        }
+        pool.close();
+    }
+
+}
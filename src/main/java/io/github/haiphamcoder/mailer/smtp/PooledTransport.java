@@ -0,0 +1,63 @@
+package io.github.haiphamcoder.mailer.smtp;
+
+import jakarta.mail.Transport;
+
+/**
+ * A connected {@link Transport} owned by a {@link SmtpTransportPool}, together
+ * with the bookkeeping needed for idle eviction and recycling.
+ * <p>
+ * Instances are confined to a single thread between borrow and release.
+ */
+public final class PooledTransport {
+
+    private final Transport transport;
+    private final long createdAt;
+    private long lastReleasedAt;
+    private int messageCount;
+    private boolean bulk;
+
+    PooledTransport(Transport transport, long now) {
+        this.transport = transport;
+        this.createdAt = now;
+        this.lastReleasedAt = now;
+    }
+
+    /**
+     * Returns the underlying connected transport.
+     *
+     * @return the transport
+     */
+    public Transport transport() {
+        return transport;
+    }
+
+    /** Records that one message was sent over this connection. */
+    public void messageSent() {
+        messageCount++;
+    }
+
+    int messageCount() {
+        return messageCount;
+    }
+
+    long createdAt() {
+        return createdAt;
+    }
+
+    void borrowed(boolean bulk) {
+        this.bulk = bulk;
+    }
+
+    boolean bulk() {
+        return bulk;
+    }
+
+    long lastReleasedAt() {
+        return lastReleasedAt;
+    }
+
+    void released(long now) {
+        this.lastReleasedAt = now;
+    }
+
+}
@@ -0,0 +1,260 @@
+package io.github.haiphamcoder.mailer.smtp;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import io.github.haiphamcoder.mailer.config.PriorityProperties;
+import io.github.haiphamcoder.mailer.dto.Priority;
+import io.github.haiphamcoder.mailer.exception.MailSendExceptionMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.mail.NoSuchProviderException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.URLName;
+
+/**
+ * Micrometer meters for SMTP delivery:
+ * <ul>
+ * <li>{@code mailer.smtp.phase} (timer; tags {@code pool}, {@code phase},
+ * {@code outcome}): latency of each SMTP protocol phase, recorded by the
+ * transports created through {@link #transport}</li>
+ * <li>{@code mailer.send} (timer; tags {@code priority}, {@code result}):
+ * end-to-end latency of one email, from building the message to its final
+ * outcome including failover; {@code result} is {@code success} or the
+ * {@link MailSendExceptionMapper} code</li>
+ * <li>{@code mailer.delivery} (timer; tag {@code priority}): latency from
+ * accepting an email to delivering it, including time spent in the outbox,
+ * with a histogram bucket at the priority's objective
+ * ({@code mailer.priority.slo}); {@code mailer.delivery.slo.missed}
+ * (counter; tag {@code priority}) counts deliveries over it</li>
+ * <li>{@code mailer.send.failures} (counter; tag {@code code}): failed
+ * emails by {@link MailSendExceptionMapper} code</li>
+ * <li>{@code mailer.send.recipients} (distribution summary): recipients per
+ * message handed to SMTP</li>
+ * <li>{@code mailer.smtp.pool.connections} (gauge; tags {@code pool},
+ * {@code state}) and {@code mailer.smtp.pool.waiting} (gauge; tags
+ * {@code pool}, {@code priority}): connection pool occupancy, see
+ * {@link #bindPool}</li>
+ * </ul>
+ * Timers publish percentile histograms, so per-phase quantiles can be
+ * aggregated across instances in Prometheus.
+ */
+@Component
+public class SmtpMetrics {
+
+    /**
+     * SMTP protocol phases timed by {@code mailer.smtp.phase}.
+     */
+    public enum Phase {
+        /** TCP connect and server greeting. */
+        CONNECT,
+        /** EHLO, or HELO when EHLO is refused. */
+        EHLO,
+        STARTTLS,
+        AUTH,
+        /** NOOP issued to validate a pooled connection. */
+        NOOP,
+        MAIL,
+        RCPT,
+        /** DATA command through the reply to the final dot. */
+        DATA,
+        QUIT;
+
+        private final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    private static final String SUCCESS = "success";
+
+    private final MeterRegistry registry;
+    private final MailSendExceptionMapper exceptionMapper;
+    private final DistributionSummary recipients;
+    private final Map<String, Phases> phases = new ConcurrentHashMap<>();
+    private final Map<Priority, Map<String, Timer>> sendTimers = new EnumMap<>(Priority.class);
+    private final Map<String, Counter> failures = new ConcurrentHashMap<>();
+    private final Map<Priority, Delivery> deliveries = new EnumMap<>(Priority.class);
+
+    public SmtpMetrics(MeterRegistry registry, MailSendExceptionMapper exceptionMapper,
+            PriorityProperties priorityProperties) {
+        this.registry = registry;
+        this.exceptionMapper = exceptionMapper;
+        this.recipients = DistributionSummary.builder("mailer.send.recipients")
+                .description("Recipients per message sent over SMTP")
+                .publishPercentileHistogram()
+                .register(registry);
+        for (Priority priority : Priority.values()) {
+            sendTimers.put(priority, new ConcurrentHashMap<>());
+            deliveries.put(priority, new Delivery(priority, priorityProperties.slo(priority)));
+        }
+    }
+
+    /**
+     * Creates the transport for {@code session} the way
+     * {@code JavaMailSenderImpl#getTransport} does, instrumenting SMTP
+     * transports.
+     *
+     * @param session  the mail session
+     * @param protocol the sender's protocol, or null for the session default
+     * @param pool     value of the {@code pool} tag
+     * @return a new, unconnected transport
+     * @throws NoSuchProviderException if the protocol is unknown
+     */
+    public Transport transport(Session session, @Nullable String protocol, String pool)
+            throws NoSuchProviderException {
+        if (protocol == null) {
+            protocol = session.getProperty("mail.transport.protocol");
+            if (protocol == null) {
+                protocol = "smtp";
+            }
+        }
+        if (!protocol.equals("smtp") && !protocol.equals("smtps")) {
+            return session.getTransport(protocol);
+        }
+        URLName url = new URLName(protocol, null, -1, null, null, null);
+        return new InstrumentedSmtpTransport(session, url, protocol, phases(pool));
+    }
+
+    /**
+     * Registers occupancy gauges for a connection pool.
+     *
+     * @param pool the pool
+     */
+    public void bindPool(SmtpTransportPool pool) {
+        Gauge.builder("mailer.smtp.pool.connections", pool, SmtpTransportPool::getActiveCount)
+                .description("Pooled SMTP connections")
+                .tag("pool", pool.getName())
+                .tag("state", "active")
+                .register(registry);
+        Gauge.builder("mailer.smtp.pool.connections", pool, SmtpTransportPool::getIdleCount)
+                .description("Pooled SMTP connections")
+                .tag("pool", pool.getName())
+                .tag("state", "idle")
+                .register(registry);
+        for (Priority priority : Priority.values()) {
+            boolean bulk = priority == Priority.BULK;
+            Gauge.builder("mailer.smtp.pool.waiting", pool, p -> p.getWaitingCount(bulk))
+                    .description("Senders waiting for a pooled SMTP connection")
+                    .tag("pool", pool.getName())
+                    .tag("priority", priority.tag())
+                    .register(registry);
+        }
+    }
+
+    /**
+     * Records the outcome of one email.
+     *
+     * @param priority   the email's priority
+     * @param startNanos {@link System#nanoTime()} when the send started
+     * @param failure    the final failure, or null if the email was sent
+     */
+    public void recordSend(Priority priority, long startNanos, @Nullable Throwable failure) {
+        long elapsed = System.nanoTime() - startNanos;
+        String result = SUCCESS;
+        if (failure != null) {
+            result = exceptionMapper.map(failure);
+            failures.computeIfAbsent(result, code -> Counter.builder("mailer.send.failures")
+                    .description("Emails that failed, by error code")
+                    .tag("code", code)
+                    .register(registry))
+                    .increment();
+        }
+        sendTimers.get(priority).computeIfAbsent(result, r -> Timer.builder("mailer.send")
+                .description("End-to-end latency of one email")
+                .tag("priority", priority.tag())
+                .tag("result", r)
+                .publishPercentileHistogram()
+                .register(registry))
+                .record(elapsed, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records that an email was delivered.
+     *
+     * @param priority   the email's priority
+     * @param acceptedAt when the email was accepted
+     */
+    public void recordDelivery(Priority priority, Instant acceptedAt) {
+        deliveries.get(priority).record(Duration.between(acceptedAt, Instant.now()));
+    }
+
+    /** Delivery latency meters of one priority. */
+    private final class Delivery {
+
+        private final Timer latency;
+        private final Counter missed;
+        private final Duration slo;
+
+        private Delivery(Priority priority, @Nullable Duration slo) {
+            Timer.Builder latency = Timer.builder("mailer.delivery")
+                    .description("Latency from accepting an email to delivering it")
+                    .tag("priority", priority.tag())
+                    .publishPercentileHistogram();
+            if (slo != null) {
+                latency.serviceLevelObjectives(slo);
+            }
+            this.latency = latency.register(registry);
+            this.missed = Counter.builder("mailer.delivery.slo.missed")
+                    .description("Emails delivered later than their priority's objective")
+                    .tag("priority", priority.tag())
+                    .register(registry);
+            this.slo = slo;
+        }
+
+        void record(Duration elapsed) {
+            latency.record(elapsed);
+            if (slo != null && elapsed.compareTo(slo) > 0) {
+                missed.increment();
+            }
+        }
+    }
+
+    private Phases phases(String pool) {
+        return phases.computeIfAbsent(pool, Phases::new);
+    }
+
+    /**
+     * Phase timers of one pool, pre-registered so that recording is an
+     * array lookup.
+     */
+    final class Phases {
+
+        private final Timer[] timers = new Timer[Phase.values().length * 2];
+
+        private Phases(String pool) {
+            for (Phase phase : Phase.values()) {
+                timers[phase.ordinal() * 2] = timer(pool, phase, SUCCESS);
+                timers[phase.ordinal() * 2 + 1] = timer(pool, phase, "failure");
+            }
+        }
+
+        void record(Phase phase, long nanos, boolean success) {
+            timers[phase.ordinal() * 2 + (success ? 0 : 1)].record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        void recipients(int count) {
+            recipients.record(count);
+        }
+
+        private Timer timer(String pool, Phase phase, String outcome) {
+            return Timer.builder("mailer.smtp.phase")
+                    .description("Latency of one SMTP protocol phase")
+                    .tag("pool", pool)
+                    .tag("phase", phase.tag)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+    }
+
+}
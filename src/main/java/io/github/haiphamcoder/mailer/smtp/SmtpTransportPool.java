@@ -0,0 +1,382 @@
+package io.github.haiphamcoder.mailer.smtp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.github.haiphamcoder.mailer.config.MailProperties;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded pool of connected and authenticated SMTP {@link Transport}s.
+ * <p>
+ * Pool behaviour:
+ * <ul>
+ * <li>At most {@code maxSize} connections exist at any time; callers wait up
+ * to {@code borrowTimeout} for a free one</li>
+ * <li>Idle connections are reused most-recently-released first, so surplus
+ * connections age out through idle eviction</li>
+ * <li>Connections are optionally validated (SMTP NOOP) on borrow</li>
+ * <li>A connection is closed once it has carried
+ * {@code maxMessagesPerConnection} messages</li>
+ * <li>A background task closes connections idle longer than
+ * {@code idleTimeout}</li>
+ * </ul>
+ * <p>
+ * Borrowers are in one of two lanes. Transactional borrowers may use any
+ * connection and are served first whenever one is released. Bulk borrowers
+ * may hold at most {@code maxSize - transactionalReserved} connections, so
+ * the reserved ones stay free for transactional mail; with
+ * {@code bulkBorrowing} they may also take reserved connections while no
+ * transactional borrower is waiting. A connection is never taken away from
+ * a borrower, so a transactional borrower that finds every connection
+ * borrowed waits for the next release.
+ */
+@Slf4j
+public class SmtpTransportPool implements AutoCloseable {
+
+    /**
+     * Opens a new connected and authenticated transport.
+     */
+    @FunctionalInterface
+    public interface TransportFactory {
+        Transport connect() throws MessagingException;
+    }
+
+    private final String name;
+    private final TransportFactory factory;
+    private final MailProperties.Pool settings;
+    private final int bulkShare;
+    /** Guards the counts below and orders waiting borrowers by lane. */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition transactionalTurn = lock.newCondition();
+    private final Condition bulkTurn = lock.newCondition();
+    private int borrowed;
+    private int bulkBorrowed;
+    private int transactionalWaiting;
+    private int bulkWaiting;
+    private final LinkedBlockingDeque<PooledTransport> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger open = new AtomicInteger();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool and starts its idle evictor.
+     *
+     * @param name     name used in logs and for the evictor thread
+     * @param factory  opens new connections
+     * @param settings pool sizing and lifecycle settings
+     */
+    public SmtpTransportPool(String name, TransportFactory factory, MailProperties.Pool settings) {
+        this.name = name;
+        this.factory = factory;
+        this.settings = settings;
+        this.bulkShare = Math.max(0, settings.getMaxSize() - settings.getTransactionalReserved());
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, name + "-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = settings.getEvictionInterval().toMillis();
+        this.evictor.scheduleWithFixedDelay(this::evictIdle, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connected transport in the transactional lane.
+     *
+     * @return a connected transport
+     * @throws MessagingException if no connection becomes available within the
+     *                            borrow timeout or a new connection fails
+     * @see #borrow(boolean)
+     */
+    public PooledTransport borrow() throws MessagingException {
+        return borrow(false);
+    }
+
+    /**
+     * Borrows a connected transport, opening a new connection when no valid
+     * idle one is available. Every successful borrow must be paired with
+     * {@link #release(PooledTransport, boolean)}.
+     *
+     * @param bulk true to borrow in the bulk lane, false for the
+     *             transactional lane
+     * @return a connected transport
+     * @throws MessagingException if no connection becomes available within the
+     *                            borrow timeout or a new connection fails
+     */
+    public PooledTransport borrow(boolean bulk) throws MessagingException {
+        if (closed) {
+            throw new MessagingException("SMTP connection pool '" + name + "' is closed");
+        }
+        try {
+            if (!acquire(bulk, settings.getBorrowTimeout().toNanos())) {
+                throw new MessagingException("Timed out waiting for a pooled SMTP connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while waiting for a pooled SMTP connection", e);
+        }
+
+        try {
+            PooledTransport pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                if (isUsable(pooled, System.currentTimeMillis())) {
+                    pooled.borrowed(bulk);
+                    return pooled;
+                }
+                destroy(pooled);
+            }
+            Transport transport = factory.connect();
+            open.incrementAndGet();
+            PooledTransport created = new PooledTransport(transport, System.currentTimeMillis());
+            created.borrowed(bulk);
+            return created;
+        } catch (MessagingException | RuntimeException e) {
+            releaseSlot(bulk);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a borrowed transport to the pool.
+     *
+     * @param pooled   the borrowed transport
+     * @param reusable false if the connection is in an unknown state (e.g. an
+     *                 I/O error occurred) and must be closed
+     */
+    public void release(PooledTransport pooled, boolean reusable) {
+        try {
+            if (!closed && reusable && pooled.messageCount() < settings.getMaxMessagesPerConnection()) {
+                pooled.released(System.currentTimeMillis());
+                idle.offerFirst(pooled);
+            } else {
+                destroy(pooled);
+            }
+        } finally {
+            releaseSlot(pooled.bulk());
+        }
+    }
+
+    /**
+     * Waits until the lane may take a connection and counts it as borrowed.
+     *
+     * @return false if the timeout elapsed first
+     */
+    private boolean acquire(boolean bulk, long timeoutNanos) throws InterruptedException {
+        long nanos = timeoutNanos;
+        lock.lockInterruptibly();
+        try {
+            if (bulk) {
+                bulkWaiting++;
+            } else {
+                transactionalWaiting++;
+            }
+            try {
+                while (!admits(bulk)) {
+                    if (nanos <= 0) {
+                        return false;
+                    }
+                    nanos = (bulk ? bulkTurn : transactionalTurn).awaitNanos(nanos);
+                }
+            } finally {
+                if (bulk) {
+                    bulkWaiting--;
+                } else {
+                    transactionalWaiting--;
+                }
+            }
+            borrowed++;
+            if (bulk) {
+                bulkBorrowed++;
+            }
+            return true;
+        } finally {
+            // A waiter that timed out or was admitted may have been handed a signal meant for another
+            signalWaiters();
+            lock.unlock();
+        }
+    }
+
+    /** Whether a borrower of the lane may take a connection now; called with {@code lock} held. */
+    private boolean admits(boolean bulk) {
+        if (borrowed >= settings.getMaxSize()) {
+            return false;
+        }
+        if (!bulk) {
+            return true;
+        }
+        if (transactionalWaiting > 0) {
+            return false;
+        }
+        return bulkBorrowed < bulkShare || settings.isBulkBorrowing();
+    }
+
+    private void releaseSlot(boolean bulk) {
+        lock.lock();
+        try {
+            borrowed--;
+            if (bulk) {
+                bulkBorrowed--;
+            }
+            signalWaiters();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Wakes the borrower next in line for a free connection; called with {@code lock} held. */
+    private void signalWaiters() {
+        if (borrowed >= settings.getMaxSize()) {
+            return;
+        }
+        if (transactionalWaiting > 0) {
+            transactionalTurn.signal();
+        } else if (bulkWaiting > 0) {
+            bulkTurn.signal();
+        }
+    }
+
+    /**
+     * Closes idle connections that exceeded the idle timeout.
+     */
+    void evictIdle() {
+        long now = System.currentTimeMillis();
+        long idleTimeout = settings.getIdleTimeout().toMillis();
+        List<PooledTransport> expired = new ArrayList<>();
+        idle.removeIf(pooled -> {
+            if (now - pooled.lastReleasedAt() > idleTimeout) {
+                expired.add(pooled);
+                return true;
+            }
+            return false;
+        });
+        expired.forEach(this::destroy);
+        if (!expired.isEmpty()) {
+            log.debug("Evicted {} idle SMTP connection(s) from pool '{}'", expired.size(), name);
+        }
+    }
+
+    /**
+     * Returns the pool name.
+     *
+     * @return the name given at construction
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of currently open connections (idle and borrowed).
+     *
+     * @return open connection count
+     */
+    public int getOpenCount() {
+        return open.get();
+    }
+
+    /**
+     * Returns the number of idle connections.
+     *
+     * @return idle connection count
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Returns the number of connections currently borrowed.
+     *
+     * @return borrowed connection count
+     */
+    public int getActiveCount() {
+        lock.lock();
+        try {
+            return borrowed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of connections currently borrowed in the bulk lane.
+     *
+     * @return bulk borrowed connection count
+     */
+    public int getBulkActiveCount() {
+        lock.lock();
+        try {
+            return bulkBorrowed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of callers waiting to borrow.
+     *
+     * @return waiting caller count
+     */
+    public int getWaitingCount() {
+        lock.lock();
+        try {
+            return transactionalWaiting + bulkWaiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of callers waiting to borrow in one lane.
+     *
+     * @param bulk true for the bulk lane, false for the transactional lane
+     * @return waiting caller count
+     */
+    public int getWaitingCount(boolean bulk) {
+        lock.lock();
+        try {
+            return bulk ? bulkWaiting : transactionalWaiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the evictor and closes all idle connections. Borrowed connections
+     * are closed when they are released.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledTransport pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    private boolean isUsable(PooledTransport pooled, long now) {
+        if (now - pooled.lastReleasedAt() > settings.getIdleTimeout().toMillis()) {
+            return false;
+        }
+        // Transport#isConnected issues an SMTP NOOP on an open connection
+        return !settings.isValidateOnBorrow() || pooled.transport().isConnected();
+    }
+
+    private void destroy(PooledTransport pooled) {
+        open.decrementAndGet();
+        try {
+            pooled.transport().close();
+        } catch (Exception e) {
+            log.debug("Error closing pooled SMTP connection: {}", e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,277 @@
+package io.github.haiphamcoder.mailer.template;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.github.haiphamcoder.mailer.exception.ApiException;
+import jakarta.activation.DataHandler;
+
+/**
+ * A template compiled into a render plan: the literal text between
+ * placeholders, encoded to UTF-8 once, alternating with the placeholders'
+ * variable names.
+ * <p>
+ * Placeholders are {@code {{name}}}, whose value is HTML-escaped in HTML
+ * templates, and {@code {{{name}}}}, whose value is inserted as is. Names may
+ * contain letters, digits, {@code _}, {@code .} and {@code -}, and may be
+ * surrounded by spaces.
+ * <p>
+ * {@link #render} writes the literal bytes and the encoded values straight to
+ * the output stream, without building the rendered body as a String.
+ * Instances are immutable and safe to render from several threads.
+ */
+public final class CompiledTemplate {
+
+    private static final int BUFFER_SIZE = 512;
+
+    private final String id;
+    private final boolean html;
+    /** Literal before each placeholder, then the trailing literal. */
+    private final byte[][] literals;
+    private final String[] names;
+    private final boolean[] escaped;
+    private final Set<String> variables;
+    private final int literalSize;
+
+    private CompiledTemplate(String id, boolean html, byte[][] literals, String[] names, boolean[] escaped) {
+        this.id = id;
+        this.html = html;
+        this.literals = literals;
+        this.names = names;
+        this.escaped = escaped;
+        this.variables = Set.copyOf(new LinkedHashSet<>(List.of(names)));
+        int size = 0;
+        for (byte[] literal : literals) {
+            size += literal.length;
+        }
+        this.literalSize = size;
+    }
+
+    /**
+     * Compiles a template.
+     *
+     * @param id     the template id, for error messages
+     * @param source the template text
+     * @param html   whether the template is HTML
+     * @return the compiled template
+     * @throws ApiException with code {@code TEMPLATE_INVALID} if a placeholder
+     *                      is not closed or has an invalid name
+     */
+    public static CompiledTemplate compile(String id, String source, boolean html) {
+        List<byte[]> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<Boolean> escaped = new ArrayList<>();
+        int position = 0;
+        int open;
+        while ((open = source.indexOf("{{", position)) >= 0) {
+            boolean raw = source.startsWith("{{{", open);
+            String close = raw ? "}}}" : "}}";
+            int start = open + (raw ? 3 : 2);
+            int end = source.indexOf(close, start);
+            if (end < 0) {
+                throw invalid(id, "unclosed placeholder at offset " + open);
+            }
+            String name = source.substring(start, end).strip();
+            if (name.isEmpty() || !name.chars().allMatch(CompiledTemplate::isNameChar)) {
+                throw invalid(id, "invalid placeholder '" + source.substring(open, end + close.length()) + "'");
+            }
+            literals.add(source.substring(position, open).getBytes(StandardCharsets.UTF_8));
+            names.add(name);
+            escaped.add(html && !raw);
+            position = end + close.length();
+        }
+        literals.add(source.substring(position).getBytes(StandardCharsets.UTF_8));
+
+        boolean[] escapedArray = new boolean[escaped.size()];
+        for (int i = 0; i < escapedArray.length; i++) {
+            escapedArray[i] = escaped.get(i);
+        }
+        return new CompiledTemplate(id, html, literals.toArray(new byte[0][]), names.toArray(new String[0]),
+                escapedArray);
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public boolean html() {
+        return html;
+    }
+
+    /**
+     * Returns the variable names used by the template.
+     *
+     * @return the variable names
+     */
+    public Set<String> variables() {
+        return variables;
+    }
+
+    /**
+     * Returns the MIME type of the rendered body.
+     *
+     * @return the content type, with the UTF-8 charset
+     */
+    public String contentType() {
+        return html ? "text/html; charset=UTF-8" : "text/plain; charset=UTF-8";
+    }
+
+    /**
+     * Returns a lower bound of the rendered size, for sizing buffers.
+     *
+     * @return the size of the literal text in bytes
+     */
+    public int literalSize() {
+        return literalSize;
+    }
+
+    /**
+     * Checks that every variable of the template has a value.
+     *
+     * @param values the variable values, may be null
+     * @throws ApiException with code {@code TEMPLATE_VARIABLE_MISSING} if a
+     *                      variable has no value
+     */
+    public void checkVariables(Map<String, String> values) {
+        for (String name : variables) {
+            if (values == null || values.get(name) == null) {
+                throw new ApiException("TEMPLATE_VARIABLE_MISSING",
+                        "Template '" + id + "' requires variable '" + name + "'");
+            }
+        }
+    }
+
+    /**
+     * Renders the template as UTF-8.
+     *
+     * @param values the variable values; must contain every variable, see
+     *               {@link #checkVariables}
+     * @param out    the stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    public void render(Map<String, String> values, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (int i = 0; i < names.length; i++) {
+            out.write(literals[i]);
+            String value = values.get(names[i]);
+            if (value == null) {
+                throw new IOException("Template '" + id + "' requires variable '" + names[i] + "'");
+            }
+            writeUtf8(value, escaped[i], buffer, out);
+        }
+        out.write(literals[names.length]);
+    }
+
+    /**
+     * Returns a {@link DataHandler} that renders the template whenever the
+     * message body is written, for use with
+     * {@code MimePart#setDataHandler}.
+     *
+     * @param values the variable values
+     * @return the body data handler
+     */
+    public DataHandler dataHandler(Map<String, String> values) {
+        return new Body(values);
+    }
+
+    /**
+     * Encodes a value to UTF-8, escaping HTML special characters if asked,
+     * through a fixed buffer.
+     */
+    private static void writeUtf8(String value, boolean escape, byte[] buffer, OutputStream out)
+            throws IOException {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (length > buffer.length - 8) {
+                out.write(buffer, 0, length);
+                length = 0;
+            }
+            char c = value.charAt(i);
+            if (escape && (c == '&' || c == '<' || c == '>' || c == '"' || c == '\'')) {
+                String entity = switch (c) {
+                    case '&' -> "&amp;";
+                    case '<' -> "&lt;";
+                    case '>' -> "&gt;";
+                    case '"' -> "&quot;";
+                    default -> "&#39;";
+                };
+                for (int j = 0; j < entity.length(); j++) {
+                    buffer[length++] = (byte) entity.charAt(j);
+                }
+            } else if (c < 0x80) {
+                buffer[length++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[length++] = (byte) (0xc0 | c >> 6);
+                buffer[length++] = (byte) (0x80 | c & 0x3f);
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[length++] = (byte) (0xf0 | codePoint >> 18);
+                buffer[length++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                buffer[length++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                buffer[length++] = (byte) (0x80 | codePoint & 0x3f);
+            } else if (Character.isSurrogate(c)) {
+                buffer[length++] = '?';
+            } else {
+                buffer[length++] = (byte) (0xe0 | c >> 12);
+                buffer[length++] = (byte) (0x80 | c >> 6 & 0x3f);
+                buffer[length++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+        out.write(buffer, 0, length);
+    }
+
+    private static boolean isNameChar(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '.'
+                || c == '-';
+    }
+
+    private static ApiException invalid(String id, String reason) {
+        return new ApiException("TEMPLATE_INVALID", "Template '" + id + "' is invalid: " + reason);
+    }
+
+    /**
+     * Body of a message that renders the template when written. The MIME
+     * encoder wraps the SMTP stream and calls {@link #writeTo}, so the body is
+     * never held in full; {@link #getInputStream} renders to memory for
+     * callers that read it instead.
+     */
+    private final class Body extends DataHandler {
+
+        private final Map<String, String> values;
+
+        private Body(Map<String, String> values) {
+            super(CompiledTemplate.this, contentType());
+            this.values = values;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            render(values, out);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            ByteArrayOutputStream rendered = new ByteArrayOutputStream(literalSize + 256);
+            render(values, rendered);
+            return new ByteArrayInputStream(rendered.toByteArray());
+        }
+
+        @Override
+        public Object getContent() throws IOException {
+            ByteArrayOutputStream rendered = new ByteArrayOutputStream(literalSize + 256);
+            render(values, rendered);
+            return rendered.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+}
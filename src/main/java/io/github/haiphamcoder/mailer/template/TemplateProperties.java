@@ -0,0 +1,51 @@
+package io.github.haiphamcoder.mailer.template;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration properties for registered email templates.
+ * <p>
+ * Example configuration:
+ * <pre>
+ * mailer.template.directory=data/templates
+ * mailer.template.cache-size=256
+ * mailer.template.max-templates=1000
+ * mailer.template.max-size=512KB
+ * </pre>
+ */
+@Getter
+@Setter
+@Validated
+@ConfigurationProperties(prefix = "mailer.template")
+public class TemplateProperties {
+
+    /**
+     * Directory holding the template sources, one file per template. Templates
+     * queued emails refer to must survive a restart, so they are stored next to
+     * the outbox journal. When blank, templates are held in memory only.
+     */
+    private String directory = "data/templates";
+
+    /**
+     * Maximum number of compiled templates kept in memory. The least recently
+     * used are dropped first and compiled again from their source when next
+     * used.
+     */
+    @Min(1)
+    private int cacheSize = 256;
+
+    /** Maximum number of registered templates. */
+    @Min(1)
+    private int maxTemplates = 1000;
+
+    /** Maximum size of a template source. */
+    @NotNull
+    private DataSize maxSize = DataSize.ofKilobytes(512);
+}
@@ -0,0 +1,272 @@
+package io.github.haiphamcoder.mailer.template;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.haiphamcoder.mailer.dto.EmailRequest;
+import io.github.haiphamcoder.mailer.dto.TemplateInfo;
+import io.github.haiphamcoder.mailer.dto.TemplateRequest;
+import io.github.haiphamcoder.mailer.exception.ApiException;
+import io.github.haiphamcoder.mailer.exception.TemplateNotFoundException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Registered email templates and an LRU cache of their compiled form.
+ * <p>
+ * Template sources are stored as one JSON file per id in
+ * {@code mailer.template.directory}, so emails waiting in the outbox can
+ * still be rendered after a restart, or in memory when no directory is set.
+ * Up to {@code mailer.template.cache-size} {@link CompiledTemplate}s are kept;
+ * the least recently used are dropped and compiled again from their source on
+ * the next use. Registering a template compiles it right away, so syntax
+ * errors are reported to the caller, and replaces the cached plan.
+ * <p>
+ * Cache lookups take a short {@link ReentrantLock}; sources are read and
+ * compiled outside of it. Cache hits and misses are counted in
+ * {@code mailer.template.cache} (tag {@code result}).
+ */
+@Component
+@Slf4j
+public class TemplateRegistry {
+
+    /** Pattern of template ids, which are also used as file names. */
+    public static final String ID_PATTERN = "[A-Za-z0-9][A-Za-z0-9._-]{0,127}";
+
+    private static final Pattern ID = Pattern.compile(ID_PATTERN);
+    private static final String EXTENSION = ".json";
+
+    private final TemplateProperties properties;
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final Map<String, TemplateRequest> sources = new ConcurrentHashMap<>();
+    private final Set<String> ids = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, CompiledTemplate> cache;
+    private final Counter hits;
+    private final Counter misses;
+    /** Bumped on every change so that a stale compilation is not cached; guarded by {@code lock}. */
+    private long generation;
+
+    public TemplateRegistry(TemplateProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry)
+            throws IOException {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        int cacheSize = properties.getCacheSize();
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledTemplate> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.hits = Counter.builder("mailer.template.cache").description("Compiled template cache lookups")
+                .tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("mailer.template.cache").description("Compiled template cache lookups")
+                .tag("result", "miss").register(meterRegistry);
+
+        String configured = properties.getDirectory();
+        if (configured == null || configured.isBlank()) {
+            this.directory = null;
+            return;
+        }
+        this.directory = Path.of(configured);
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(EXTENSION))
+                    .map(name -> name.substring(0, name.length() - EXTENSION.length()))
+                    .filter(id -> ID.matcher(id).matches())
+                    .forEach(ids::add);
+        }
+        log.info("Loaded {} template(s) from {}", ids.size(), directory.toAbsolutePath());
+    }
+
+    /**
+     * Registers or replaces a template.
+     *
+     * @param id       the template id, matching {@link #ID_PATTERN}
+     * @param template the template source
+     * @return the registered template
+     * @throws ApiException if the id or template is invalid, the template is
+     *                      larger than {@code mailer.template.max-size}, or
+     *                      {@code mailer.template.max-templates} are registered
+     */
+    public TemplateInfo register(String id, TemplateRequest template) {
+        checkId(id);
+        long size = template.body().getBytes(StandardCharsets.UTF_8).length;
+        if (size > properties.getMaxSize().toBytes()) {
+            throw new ApiException("TEMPLATE_TOO_LARGE", "Template is " + size + " bytes, maximum is "
+                    + properties.getMaxSize().toBytes());
+        }
+        CompiledTemplate compiled = CompiledTemplate.compile(id, template.body(), template.html());
+
+        lock.lock();
+        try {
+            if (!ids.contains(id) && ids.size() >= properties.getMaxTemplates()) {
+                throw new ApiException("TEMPLATE_LIMIT_REACHED",
+                        "At most " + properties.getMaxTemplates() + " templates can be registered");
+            }
+            store(id, template);
+            ids.add(id);
+            generation++;
+            cache.put(id, compiled);
+        } finally {
+            lock.unlock();
+        }
+        log.info("Registered template {} with {} variable(s)", id, compiled.variables().size());
+        return info(compiled);
+    }
+
+    /**
+     * Removes a template. Emails still referring to it fail when sent.
+     *
+     * @param id the template id
+     * @throws TemplateNotFoundException if the template is not registered
+     */
+    public void remove(String id) {
+        lock.lock();
+        try {
+            if (!ids.remove(id)) {
+                throw new TemplateNotFoundException(id);
+            }
+            generation++;
+            cache.remove(id);
+            if (directory == null) {
+                sources.remove(id);
+            } else {
+                Files.deleteIfExists(file(id));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete template " + id, e);
+        } finally {
+            lock.unlock();
+        }
+        log.info("Removed template {}", id);
+    }
+
+    /**
+     * Returns the compiled template, compiling it if it is not cached.
+     *
+     * @param id the template id
+     * @return the compiled template
+     * @throws TemplateNotFoundException if the template is not registered
+     */
+    public CompiledTemplate get(String id) {
+        long seen;
+        lock.lock();
+        try {
+            CompiledTemplate cached = cache.get(id);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+            seen = generation;
+        } finally {
+            lock.unlock();
+        }
+        misses.increment();
+        TemplateRequest source = load(id);
+        CompiledTemplate compiled = CompiledTemplate.compile(id, source.body(), source.html());
+        lock.lock();
+        try {
+            if (generation == seen) {
+                cache.put(id, compiled);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return compiled;
+    }
+
+    /**
+     * Describes a registered template.
+     *
+     * @param id the template id
+     * @return the template id, type and variables
+     * @throws TemplateNotFoundException if the template is not registered
+     */
+    public TemplateInfo info(String id) {
+        return info(get(id));
+    }
+
+    /**
+     * Checks that the template an email refers to exists and that the email
+     * provides all of its variables. Emails with an inline body pass.
+     *
+     * @param request the email
+     * @throws TemplateNotFoundException if the template is not registered
+     * @throws ApiException              if a variable is missing
+     */
+    public void validate(EmailRequest request) {
+        if (request.templateId() != null) {
+            get(request.templateId()).checkVariables(request.variables());
+        }
+    }
+
+    private TemplateRequest load(String id) {
+        if (!ids.contains(id)) {
+            throw new TemplateNotFoundException(id);
+        }
+        if (directory == null) {
+            TemplateRequest source = sources.get(id);
+            if (source == null) {
+                throw new TemplateNotFoundException(id);
+            }
+            return source;
+        }
+        try {
+            return objectMapper.readValue(file(id).toFile(), TemplateRequest.class);
+        } catch (NoSuchFileException e) {
+            throw new TemplateNotFoundException(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read template " + id, e);
+        }
+    }
+
+    private void store(String id, TemplateRequest template) {
+        if (directory == null) {
+            sources.put(id, template);
+            return;
+        }
+        Path temp = directory.resolve(id + EXTENSION + ".tmp");
+        try {
+            Files.write(temp, objectMapper.writeValueAsBytes(template));
+            Files.move(temp, file(id), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot store template " + id, e);
+        }
+    }
+
+    private Path file(String id) {
+        return directory.resolve(id + EXTENSION);
+    }
+
+    private static void checkId(String id) {
+        if (id == null || !ID.matcher(id).matches()) {
+            throw new ApiException("TEMPLATE_INVALID",
+                    "Template id must be 1-128 letters, digits, '.', '_' or '-', starting with a letter or digit");
+        }
+    }
+
+    private static TemplateInfo info(CompiledTemplate template) {
+        return new TemplateInfo(template.id(), template.html(), template.variables().stream().sorted().toList());
+    }
+
+}
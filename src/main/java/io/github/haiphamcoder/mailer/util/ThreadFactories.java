@@ -0,0 +1,45 @@
+package io.github.haiphamcoder.mailer.util;
+
+import java.util.concurrent.ThreadFactory;
+
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Thread factories for the sender executors, following Spring Boot's
+ * {@code spring.threads.virtual.enabled} switch.
+ */
+@UtilityClass
+public class ThreadFactories {
+
+    /**
+     * Returns whether virtual threads are enabled: the property is set and the
+     * application runs on Java 21 or later.
+     *
+     * @param environment the application environment
+     * @return true in virtual-thread mode
+     */
+    public static boolean virtualThreadsEnabled(Environment environment) {
+        return Threading.VIRTUAL.isActive(environment);
+    }
+
+    /**
+     * Creates a factory for threads that spend most of their time in blocking
+     * I/O: virtual threads in virtual-thread mode, platform threads otherwise.
+     *
+     * @param environment the application environment
+     * @param prefix      thread name prefix
+     * @return the thread factory
+     */
+    public static ThreadFactory blockingIo(Environment environment, String prefix) {
+        if (virtualThreadsEnabled(environment)) {
+            return new VirtualThreadTaskExecutor(prefix).getVirtualThreadFactory();
+        }
+        return new CustomizableThreadFactory(prefix);
+    }
+
+}
@@ -0,0 +1,93 @@
+package io.github.haiphamcoder.mailer.account;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.javamail.JavaMailSender;
+
+import io.github.haiphamcoder.mailer.config.MailProperties;
+import io.github.haiphamcoder.mailer.dto.EmailRequest;
+import io.github.haiphamcoder.mailer.exception.MailSendExceptionMapper;
+import io.github.haiphamcoder.mailer.exception.QuotaExhaustedException;
+import io.github.haiphamcoder.mailer.quota.QuotaManager;
+import io.github.haiphamcoder.mailer.quota.QuotaProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SenderAccountRouterTest {
+
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+    private final SenderAccount first = account("first@example.com");
+    private final SenderAccount second = account("second@example.com");
+
+    @Test
+    void leastLoadPrefersIdleAccount() {
+        SenderAccountRouter router = router(RoutingStrategy.LEAST_LOAD);
+
+        SenderAccount busy = router.acquire(request("a@example.com"));
+        SenderAccount next = router.acquire(request("a@example.com"));
+
+        assertNotSame(busy, next);
+        router.release(busy, null);
+        router.release(next, null);
+        assertEquals(0, first.inFlight() + second.inFlight());
+    }
+
+    @Test
+    void fromHashKeepsSenderOnOneAccount() {
+        SenderAccountRouter router = router(RoutingStrategy.FROM_HASH);
+
+        SenderAccount chosen = router.acquire(request("team@example.com"));
+        router.release(chosen, null);
+        for (int i = 0; i < 10; i++) {
+            SenderAccount again = router.acquire(request("team@example.com"));
+            router.release(again, null);
+            assertSame(chosen, again);
+        }
+    }
+
+    @Test
+    void rejectedCredentialsFailOverUntilCooldownEnds() {
+        SenderAccountRouter router = router(RoutingStrategy.FROM_HASH);
+        SenderAccount chosen = router.acquire(request("team@example.com"));
+
+        assertTrue(router.release(chosen, new MailAuthenticationException("535 rejected")));
+        SenderAccount fallback = router.acquire(request("team@example.com"));
+        router.release(fallback, null);
+        assertNotSame(chosen, fallback);
+
+        assertFalse(router.release(router.acquire(request("team@example.com")),
+                new MailAuthenticationException("535 rejected")));
+        assertThrows(QuotaExhaustedException.class, () -> router.acquire(request("team@example.com")));
+
+        now.addAndGet(new MailProperties.Routing().getAuthFailureCooldown().toMillis());
+        assertSame(chosen, router.acquire(request("team@example.com")));
+    }
+
+    private SenderAccountRouter router(RoutingStrategy strategy) {
+        MailProperties.Routing routing = new MailProperties.Routing();
+        routing.setStrategy(strategy);
+        QuotaProperties quota = new QuotaProperties();
+        quota.setEnabled(false);
+        return new SenderAccountRouter(List.of(first, second), routing,
+                new QuotaManager(quota, new SimpleMeterRegistry()), new MailSendExceptionMapper(), now::get);
+    }
+
+    private static SenderAccount account(String username) {
+        return new SenderAccount(username, 1, mock(JavaMailSender.class));
+    }
+
+    private static EmailRequest request(String from) {
+        return new EmailRequest(List.of("to@example.com"), "Subject", "Body", false, null, null, from, null);
+    }
+
+}
@@ -0,0 +1,125 @@
+package io.github.haiphamcoder.mailer.attachment;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import io.github.haiphamcoder.mailer.dto.AttachmentInfo;
+import io.github.haiphamcoder.mailer.exception.AttachmentNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.activation.DataSource;
+
+class AttachmentStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private AttachmentStore store;
+
+    @AfterEach
+    void tearDown() {
+        if (store != null) {
+            store.destroy();
+        }
+    }
+
+    @Test
+    void storesIdenticalContentOnce() throws Exception {
+        store = store(Duration.ofDays(1));
+        byte[] content = random(10_000);
+
+        AttachmentInfo first = store.store(new MockMultipartFile("file", "a.pdf", "application/pdf", content));
+        AttachmentInfo second = store.store(new MockMultipartFile("file", "b.pdf", "application/pdf", content));
+
+        assertEquals(first, second);
+        assertEquals(content.length, first.size());
+        assertArrayEquals(content, Files.readAllBytes(directory.resolve(first.sha256())));
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+        assertEquals(1, meterRegistry.get("mailer.attachment.uploads").tag("result", "deduplicated").counter()
+                .count());
+    }
+
+    @Test
+    void evictsOnlyUnreferencedAttachmentsPastTheirTtl() throws Exception {
+        store = store(Duration.ZERO);
+        String sha256 = store.store(new MockMultipartFile("file", random(100))).sha256();
+
+        store.acquire(sha256, 2);
+        assertEquals(0, store.evictExpired());
+        store.release(sha256, 1);
+        assertEquals(0, store.evictExpired());
+        store.release(sha256, 1);
+        assertEquals(1, store.evictExpired());
+
+        assertThrows(AttachmentNotFoundException.class, () -> store.info(sha256));
+        assertThrows(AttachmentNotFoundException.class, () -> store.acquire(sha256, 1));
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void sharesMemoryMappedMimeEncoding() throws Exception {
+        store = store(Duration.ofDays(1));
+        byte[] content = random(5_000);
+        String sha256 = store.store(new MockMultipartFile("file", content)).sha256();
+        store.acquire(sha256, 1);
+
+        DataSource first = store.encodedDataSource(sha256, "application/pdf", "a.pdf");
+        DataSource second = store.encodedDataSource(sha256, "application/pdf", "a.pdf");
+
+        byte[] expected = Base64.getMimeEncoder().encode(content);
+        try (InputStream a = first.getInputStream(); InputStream b = second.getInputStream()) {
+            assertArrayEquals(expected, a.readAllBytes());
+            assertArrayEquals(expected, b.readAllBytes());
+        }
+        assertEquals(1, meterRegistry.get("mailer.attachment.encoded.cache").tag("result", "hit").counter()
+                .count());
+        assertArrayEquals(expected, Files.readAllBytes(directory.resolve(sha256 + ".b64")));
+    }
+
+    @Test
+    void reindexesStoredAttachmentsOnRestart() throws Exception {
+        store = store(Duration.ofDays(1));
+        String sha256 = store.store(new MockMultipartFile("file", random(100))).sha256();
+        store.destroy();
+        Files.writeString(directory.resolve("upload-1.tmp"), "partial");
+
+        store = store(Duration.ofDays(1));
+
+        assertEquals(100, store.info(sha256).size());
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    private AttachmentStore store(Duration ttl) throws Exception {
+        AttachmentProperties properties = new AttachmentProperties();
+        properties.getStore().setDirectory(directory.toString());
+        properties.getStore().setTtl(ttl);
+        properties.getStore().setEvictionInterval(Duration.ZERO);
+        return new AttachmentStore(properties, meterRegistry);
+    }
+
+    private static byte[] random(int size) {
+        byte[] bytes = new byte[size];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        return bytes;
+    }
+
+}
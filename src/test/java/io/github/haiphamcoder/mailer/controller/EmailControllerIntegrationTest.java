@@ -0,0 +1,531 @@
+package io.github.haiphamcoder.mailer.controller;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import com.jayway.jsonpath.JsonPath;
+
+import io.github.haiphamcoder.mailer.attachment.AttachmentSpool;
+import io.github.haiphamcoder.mailer.security.HmacSignatureService;
+import io.github.haiphamcoder.mailer.support.FakeSmtpServer;
+import io.github.haiphamcoder.mailer.support.FakeSmtpServer.ReceivedMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.mail.Part;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+
+/**
+ * End-to-end tests of the email endpoints against {@link FakeSmtpServer}:
+ * signed request, pooled SMTP delivery, asynchronous submission, retry of
+ * transient failures, splitting of large envelopes, templates, attachments,
+ * per-item batch and fan-out results and send metrics.
+ */
+@SpringBootTest(properties = { "mailer.retry.initial-delay=50ms", "gmail.mail.max-recipients-per-transaction=2",
+        "mailer.quota.enabled=false" })
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class EmailControllerIntegrationTest {
+
+    private static final String SECRET = "test-secret-key";
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private static final AtomicLong LAST_TIMESTAMP = new AtomicLong();
+
+    private static final FakeSmtpServer smtp = startSmtp();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private HmacSignatureService signatureService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private AttachmentSpool attachmentSpool;
+
+    @DynamicPropertySource
+    static void smtpProperties(DynamicPropertyRegistry registry) {
+        registry.add("gmail.mail.port", smtp::getPort);
+    }
+
+    @AfterAll
+    static void stopSmtp() throws IOException {
+        smtp.close();
+    }
+
+    @BeforeEach
+    void resetSmtp() {
+        smtp.reset();
+    }
+
+    @Test
+    void sendsOverPooledConnection() throws Exception {
+        String firstId = null;
+        for (int i = 0; i < 3; i++) {
+            String response = mockMvc.perform(signed(post("/api/v1/emails")).content(email("user@example.com")))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.success").value(true))
+                    .andReturn().getResponse().getContentAsString();
+            if (firstId == null) {
+                firstId = JsonPath.read(response, "$.data");
+            }
+        }
+
+        ReceivedMessage message = smtp.awaitMessage(TIMEOUT);
+        assertNotNull(message);
+        assertEquals("user@example.com", message.recipients().get(0));
+        assertTrue(message.data().contains("Subject: Hello"));
+        // The returned id is the local part of the delivered Message-ID
+        assertTrue(message.data().contains("Message-ID: <" + firstId + "@"), message.data());
+        assertEquals(3, smtp.getMessagesAccepted());
+        // Earlier tests may have left an idle pooled connection open
+        assertTrue(smtp.getConnectionsOpened() <= 1, "Expected one pooled connection to be reused");
+    }
+
+    @Test
+    void transientFailureIsRetried() throws Exception {
+        smtp.withTransientFailureRate(1.0);
+
+        mockMvc.perform(signed(post("/api/v1/emails")).content(email("user@example.com")))
+                .andExpect(status().isAccepted());
+
+        smtp.withTransientFailureRate(0);
+        assertNotNull(smtp.awaitMessage(TIMEOUT));
+    }
+
+    @Test
+    void asyncSendIsAcceptedAndDeliveredUnderReturnedId() throws Exception {
+        String messageId = accepted(email("user@example.com"));
+
+        ReceivedMessage message = smtp.awaitMessage(TIMEOUT);
+        assertNotNull(message);
+        assertTrue(message.data().contains("Message-ID: <" + messageId + "@"), message.data());
+    }
+
+    @Test
+    void asyncTransientFailureIsRetriedUntilSent() throws Exception {
+        smtp.withTransientFailures(1);
+
+        String messageId = accepted(email("user@example.com"));
+
+        ReceivedMessage message = smtp.awaitMessage(TIMEOUT);
+        assertNotNull(message);
+        assertTrue(message.data().contains("Message-ID: <" + messageId + "@"), message.data());
+        assertEquals(1, smtp.getMessagesRejected());
+    }
+
+    @Test
+    void asyncTransientFailureIsGivenUpAfterMaxAttempts() throws Exception {
+        smtp.withTransientFailureRate(1.0);
+
+        accepted(email("user@example.com"));
+        await(() -> smtp.getMessagesRejected() >= 3);
+
+        // Backoff after the third attempt would be at most 300ms with the test delays
+        Thread.sleep(1000);
+        assertEquals(3, smtp.getMessagesRejected());
+        assertEquals(0, smtp.getMessagesAccepted());
+        assertEquals(0, meterRegistry.get("mailer.retry.pending").gauge().value());
+    }
+
+    @Test
+    void permanentFailureIsReported() throws Exception {
+        smtp.withPermanentFailureRate(1.0);
+
+        mockMvc.perform(signed(post("/api/v1/emails")).content(email("user@example.com")))
+                .andExpect(status().isBadGateway())
+                .andExpect(jsonPath("$.code").value("SMTP_SEND_FAILED"));
+    }
+
+    @Test
+    void largeEnvelopeIsSplitAndFailedRecipientsAreReported() throws Exception {
+        String request = """
+                {"to":["a@example.com","b@example.com","c@example.com","reject@example.com","d@example.com"],\
+                "subject":"Hello","body":"Split test","html":false}""";
+
+        mockMvc.perform(signed(post("/api/v1/emails")).content(request))
+                .andExpect(status().isBadGateway())
+                .andExpect(jsonPath("$.code").value("PARTIAL_DELIVERY"))
+                .andExpect(jsonPath("$.data.length()").value(2))
+                .andExpect(jsonPath("$.data[?(@.address == 'reject@example.com')].rejected").value(true))
+                .andExpect(jsonPath("$.data[?(@.address == 'reject@example.com')].code").value("SMTP_SEND_FAILED"))
+                .andExpect(jsonPath("$.data[?(@.address == 'c@example.com')].rejected").value(false));
+
+        Set<String> recipients = new HashSet<>();
+        Set<String> messageIds = new HashSet<>();
+        for (int i = 0; i < 2; i++) {
+            ReceivedMessage message = smtp.awaitMessage(TIMEOUT);
+            assertNotNull(message);
+            assertTrue(message.recipients().size() <= 2);
+            recipients.addAll(message.recipients());
+            assertTrue(message.data().contains("d@example.com"), message.data());
+            messageIds.add(message.data().lines().filter(line -> line.startsWith("Message-ID:")).findFirst()
+                    .orElseThrow());
+        }
+        assertEquals(Set.of("a@example.com", "b@example.com", "d@example.com"), recipients);
+        assertEquals(1, messageIds.size());
+    }
+
+    @Test
+    void partialTransientFailureIsRetriedForUndeliveredRecipientsOnly() throws Exception {
+        smtp.withTransientFailures(1);
+        String request = """
+                {"to":["a@example.com","b@example.com","c@example.com","d@example.com","e@example.com"],\
+                "subject":"Hello","body":"Partial retry test","html":false}""";
+
+        mockMvc.perform(signed(post("/api/v1/emails")).content(request))
+                .andExpect(status().isAccepted());
+
+        List<String> recipients = new ArrayList<>();
+        Set<String> messageIds = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            ReceivedMessage message = smtp.awaitMessage(TIMEOUT);
+            assertNotNull(message);
+            recipients.addAll(message.recipients());
+            messageIds.add(message.data().lines().filter(line -> line.startsWith("Message-ID:")).findFirst()
+                    .orElseThrow());
+        }
+        assertEquals(List.of("a@example.com", "b@example.com", "c@example.com", "d@example.com", "e@example.com"),
+                recipients.stream().sorted().toList());
+        assertEquals(1, messageIds.size());
+        assertNull(smtp.awaitMessage(Duration.ofMillis(500)));
+        assertEquals(1, smtp.getMessagesRejected());
+    }
+
+    @Test
+    void sendsEmailRenderedFromRegisteredTemplate() throws Exception {
+        mockMvc.perform(signed(put("/api/v1/templates/order-shipped")).content("""
+                {"body":"<p>Hello {{name}}, order {{{order}}} has shipped.</p>","html":true}"""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.variables[0]").value("name"));
+
+        mockMvc.perform(signed(post("/api/v1/emails")).content("""
+                {"to":["user@example.com"],"subject":"Shipped","templateId":"order-shipped",\
+                "variables":{"name":"Ann & Bob","order":"<b>42</b>"}}"""))
+                .andExpect(status().isOk());
+        ReceivedMessage message = smtp.awaitMessage(TIMEOUT);
+        assertNotNull(message);
+        assertTrue(message.data().contains("Content-Type: text/html; charset=UTF-8"), message.data());
+        assertTrue(message.data().contains("<p>Hello Ann &amp; Bob, order <b>42</b> has shipped.</p>"),
+                message.data());
+
+        mockMvc.perform(signed(post("/api/v1/emails")).content("""
+                {"to":["user@example.com"],"subject":"Shipped","templateId":"order-shipped",\
+                "variables":{"name":"Ann"}}"""))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code").value("TEMPLATE_VARIABLE_MISSING"));
+        mockMvc.perform(signed(post("/api/v1/emails")).content("""
+                {"to":["user@example.com"],"subject":"Shipped","templateId":"unknown"}"""))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void sendsSpooledAttachmentsAndCleansUpSpool() throws Exception {
+        byte[] report = new byte[300_000];
+        ThreadLocalRandom.current().nextBytes(report);
+        MockMultipartFile request = new MockMultipartFile("request", "", MediaType.APPLICATION_JSON_VALUE, """
+                {"to":["a@example.com","b@example.com","c@example.com"],"subject":"Report","body":"See attached",\
+                "html":false}""".getBytes(StandardCharsets.UTF_8));
+
+        mockMvc.perform(signed(multipart("/api/v1/emails").file(request)
+                .file(new MockMultipartFile("attachments", "reports/q3.pdf", "application/pdf", report))
+                .file(new MockMultipartFile("attachments", "notes.txt", "text/plain",
+                        "Zoë".getBytes(StandardCharsets.UTF_8))))
+                .contentType(MediaType.MULTIPART_FORM_DATA))
+                .andExpect(status().isOk());
+
+        // Three recipients are split into two transactions sharing one encoding
+        for (int i = 0; i < 2; i++) {
+            ReceivedMessage received = smtp.awaitMessage(TIMEOUT);
+            assertNotNull(received);
+            MimeMessage message = new MimeMessage(null,
+                    new ByteArrayInputStream(received.data().getBytes(StandardCharsets.ISO_8859_1)));
+            MimeMultipart mixed = (MimeMultipart) message.getContent();
+            assertEquals(3, mixed.getCount());
+            assertEquals("See attached", mixed.getBodyPart(0).getContent());
+            Part pdf = mixed.getBodyPart(1);
+            assertEquals(Part.ATTACHMENT, pdf.getDisposition());
+            assertEquals("q3.pdf", pdf.getFileName());
+            assertTrue(pdf.isMimeType("application/pdf"));
+            try (InputStream content = pdf.getInputStream()) {
+                assertArrayEquals(report, content.readAllBytes());
+            }
+            assertEquals("notes.txt", mixed.getBodyPart(2).getFileName());
+        }
+        try (Stream<Path> files = Files.list(attachmentSpool.directory())) {
+            assertEquals(0, files.count());
+        }
+
+        mockMvc.perform(signed(post("/api/v1/emails")).content("""
+                {"to":["user@example.com"],"subject":"Report","body":"See attached","html":false,\
+                "attachments":[{"filename":"q3.pdf","contentType":"application/pdf","size":1}]}"""))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code").value("ATTACHMENT_INVALID"));
+    }
+
+    @Test
+    void fansOutStoredAttachmentUploadedOnce() throws Exception {
+        byte[] terms = new byte[100_000];
+        ThreadLocalRandom.current().nextBytes(terms);
+        double deduplicated = meterRegistry.get("mailer.attachment.uploads").tag("result", "deduplicated")
+                .counter().count();
+        String sha256 = null;
+        for (int i = 0; i < 2; i++) {
+            String response = mockMvc.perform(signed(multipart("/api/v1/attachments")
+                    .file(new MockMultipartFile("file", "terms.pdf", "application/pdf", terms)))
+                    .contentType(MediaType.MULTIPART_FORM_DATA))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data.size").value(terms.length))
+                    .andReturn().getResponse().getContentAsString();
+            String digest = JsonPath.read(response, "$.data.sha256");
+            assertTrue(sha256 == null || sha256.equals(digest));
+            sha256 = digest;
+        }
+        assertEquals(deduplicated + 1, meterRegistry.get("mailer.attachment.uploads").tag("result", "deduplicated")
+                .counter().count());
+
+        mockMvc.perform(signed(post("/api/v1/emails/fan-out")).content("""
+                {"to":["a@example.com","b@example.com"],"subject":"Terms","body":"See attached","html":false,\
+                "attachments":[{"filename":"terms.pdf","contentType":"application/pdf","sha256":"%s"}]}"""
+                .formatted(sha256)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[1].success").value(true));
+        for (int i = 0; i < 2; i++) {
+            ReceivedMessage received = smtp.awaitMessage(TIMEOUT);
+            assertNotNull(received);
+            MimeMessage message = new MimeMessage(null,
+                    new ByteArrayInputStream(received.data().getBytes(StandardCharsets.ISO_8859_1)));
+            Part attachment = ((MimeMultipart) message.getContent()).getBodyPart(1);
+            assertEquals("terms.pdf", attachment.getFileName());
+            try (InputStream content = attachment.getInputStream()) {
+                assertArrayEquals(terms, content.readAllBytes());
+            }
+        }
+        try (Stream<Path> files = Files.list(attachmentSpool.directory())) {
+            assertEquals(0, files.count());
+        }
+
+        mockMvc.perform(signed(post("/api/v1/emails")).content("""
+                {"to":["user@example.com"],"subject":"Terms","body":"See attached","html":false,\
+                "attachments":[{"filename":"terms.pdf","contentType":"application/pdf","sha256":"%s"}]}"""
+                .formatted("0".repeat(64))))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.code").value("ATTACHMENT_NOT_FOUND"));
+    }
+
+    @Test
+    void idempotencyKeyPreventsDuplicateSend() throws Exception {
+        String first = mockMvc.perform(signed(post("/api/v1/emails")).header("Idempotency-Key", "order-42")
+                .content(email("user@example.com")))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        mockMvc.perform(signed(post("/api/v1/emails")).header("Idempotency-Key", "order-42")
+                .content(email("user@example.com")))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.data").value(JsonPath.read(first, "$.data").toString()));
+        mockMvc.perform(signed(post("/api/v1/emails")).header("Idempotency-Key", "order-42")
+                .content(email("other@example.com")))
+                .andExpect(status().isUnprocessableEntity());
+
+        assertEquals(1, smtp.getMessagesAccepted());
+    }
+
+    @Test
+    void batchReportsPerItemResults() throws Exception {
+        String batch = "[" + email("first@example.com") + "," + email("reject@example.com") + ","
+                + email("not-an-email") + "]";
+
+        mockMvc.perform(signed(post("/api/v1/emails/batch")).content(batch))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].success").value(true))
+                .andExpect(jsonPath("$.data[1].code").value("SMTP_SEND_FAILED"))
+                .andExpect(jsonPath("$.data[2].code").value("VALIDATION_ERROR"));
+
+        assertNotNull(smtp.awaitMessage(TIMEOUT));
+    }
+
+    @Test
+    void fanOutSendsPrivateCopyPerRecipient() throws Exception {
+        String request = """
+                {"to":["a@example.com","reject@example.com","b@example.com"],"subject":"Hello",\
+                "body":"Fan-out test","html":false}""";
+
+        mockMvc.perform(signed(post("/api/v1/emails/fan-out")).content(request))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].success").value(true))
+                .andExpect(jsonPath("$.data[1].code").value("SMTP_SEND_FAILED"))
+                .andExpect(jsonPath("$.data[2].success").value(true));
+
+        Set<String> messageIds = new HashSet<>();
+        for (int i = 0; i < 2; i++) {
+            ReceivedMessage message = smtp.awaitMessage(TIMEOUT);
+            assertNotNull(message);
+            assertEquals(1, message.recipients().size());
+            String recipient = message.recipients().get(0);
+            assertTrue(message.data().contains("To: " + recipient + "\r\n"), message.data());
+            assertTrue(message.data().contains("Subject: Hello"));
+            assertTrue(message.data().contains("Fan-out test"));
+            messageIds.add(message.data().lines().filter(line -> line.startsWith("Message-ID:")).findFirst()
+                    .orElseThrow());
+        }
+        assertEquals(2, messageIds.size());
+    }
+
+    @Test
+    void recordsSmtpPhaseAndSendMetrics() throws Exception {
+        double rejected = failures("SMTP_SEND_FAILED");
+
+        mockMvc.perform(signed(post("/api/v1/emails")).content(email("user@example.com")))
+                .andExpect(status().isOk());
+        mockMvc.perform(signed(post("/api/v1/emails")).content(email("reject@example.com")))
+                .andExpect(status().isBadGateway());
+
+        for (String phase : new String[] { "connect", "ehlo", "auth", "mail", "rcpt", "data" }) {
+            assertTrue(meterRegistry.get("mailer.smtp.phase").tag("phase", phase).tag("outcome", "success")
+                    .timer().count() > 0, "No " + phase + " timing recorded");
+        }
+        assertTrue(meterRegistry.get("mailer.send").tag("priority", "transactional").tag("result", "success")
+                .timer().count() > 0);
+        assertEquals(rejected + 1, failures("SMTP_SEND_FAILED"));
+        assertTrue(meterRegistry.get("mailer.send.recipients").summary().count() > 0);
+        assertNotNull(meterRegistry.find("mailer.smtp.pool.connections").tag("state", "idle").gauge());
+    }
+
+    @Test
+    void batchItemsAreTransactionalUnlessMarkedBulk() throws Exception {
+        String bulk = """
+                {"to":["bulk@example.com"],"subject":"Hello","body":"Integration test","html":false,\
+                "priority":"bulk"}""";
+        double transactionalSends = sends("transactional");
+        double bulkSends = sends("bulk");
+
+        mockMvc.perform(signed(post("/api/v1/emails/batch")).content("[" + email("user@example.com") + "," + bulk
+                + "]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].success").value(true))
+                .andExpect(jsonPath("$.data[1].success").value(true));
+
+        for (int i = 0; i < 2; i++) {
+            ReceivedMessage message = smtp.awaitMessage(TIMEOUT);
+            assertNotNull(message);
+            // The lane is chosen by the sender, not announced to recipients
+            assertFalse(message.data().contains("Precedence:"), message.data());
+        }
+        assertEquals(transactionalSends + 1, sends("transactional"));
+        assertEquals(bulkSends + 1, sends("bulk"));
+        for (String priority : new String[] { "transactional", "bulk" }) {
+            assertTrue(meterRegistry.get("mailer.delivery").tag("priority", priority).timer().count() > 0,
+                    "No " + priority + " delivery recorded");
+        }
+    }
+
+    @Test
+    void rejectsReplayedSignature() throws Exception {
+        long timestamp = LAST_TIMESTAMP.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis()));
+
+        mockMvc.perform(signed(post("/api/v1/emails"), timestamp).content(email("user@example.com")))
+                .andExpect(status().isOk());
+        mockMvc.perform(signed(post("/api/v1/emails"), timestamp).content(email("user@example.com")))
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.code").value("REPLAYED_REQUEST"));
+        assertEquals(1, smtp.getMessagesAccepted());
+    }
+
+    /** Submits an email with {@code async=true} and returns the message id of the 202 response. */
+    private String accepted(String email) throws Exception {
+        String response = mockMvc.perform(signed(post("/api/v1/emails").param("async", "true")).content(email))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.success").value(true))
+                .andReturn().getResponse().getContentAsString();
+        return JsonPath.read(response, "$.data");
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean(), "Condition not met within " + TIMEOUT);
+    }
+
+    private double sends(String priority) {
+        Timer timer = meterRegistry.find("mailer.send").tag("priority", priority).tag("result", "success").timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    private double failures(String code) {
+        Counter counter = meterRegistry.find("mailer.send.failures").tag("code", code).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private MockHttpServletRequestBuilder signed(MockHttpServletRequestBuilder builder) {
+        // Every signature is accepted once, so no two requests share a timestamp
+        return signed(builder, LAST_TIMESTAMP.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis())));
+    }
+
+    private MockHttpServletRequestBuilder signed(MockHttpServletRequestBuilder builder, long timestamp) {
+        return builder.contentType(MediaType.APPLICATION_JSON)
+                .header("X-Access-Key", "test")
+                .header("X-Timestamp", timestamp)
+                .header("X-Access-Sign", signatureService.generateSignature(timestamp, SECRET));
+    }
+
+    private static String email(String to) {
+        return """
+                {"to":["%s"],"subject":"Hello","body":"Integration test","html":false}""".formatted(to);
+    }
+
+    private static FakeSmtpServer startSmtp() {
+        try {
+            return FakeSmtpServer.start();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot start fake SMTP server", e);
+        }
+    }
+
+}
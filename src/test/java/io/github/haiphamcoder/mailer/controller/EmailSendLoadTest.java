@@ -0,0 +1,101 @@
+package io.github.haiphamcoder.mailer.controller;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import io.github.haiphamcoder.mailer.support.FakeSmtpServer;
+import io.github.haiphamcoder.mailer.support.LoadGenerator;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sustained-load test of {@code POST /api/v1/emails} against
+ * {@link FakeSmtpServer}. Excluded from the default build; run with
+ * {@code mvn -Pload-test test}.
+ * <p>
+ * Tunable through system properties:
+ * <ul>
+ * <li>{@code load.rate}: offered requests per second (default 200)</li>
+ * <li>{@code load.duration}: seconds of load (default 30)</li>
+ * <li>{@code load.async}: use {@code ?async=true} (default false)</li>
+ * <li>{@code load.smtp-latency}: per-reply SMTP latency in ms (default 5)</li>
+ * <li>{@code load.transient-failure-rate}, {@code load.permanent-failure-rate},
+ * {@code load.drop-rate}: injected SMTP faults (default 0)</li>
+ * </ul>
+ * Application properties such as {@code gmail.mail.pool.max-size} can be
+ * overridden with {@code -D} as usual. Sending quotas and the per-client
+ * rate limit are disabled so the test measures the service rather than the
+ * configured pacing.
+ */
+@Tag("load")
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "mailer.quota.enabled=false", "mailer.rate-limit.enabled=false" })
+@ActiveProfiles("test")
+class EmailSendLoadTest {
+
+    private static final FakeSmtpServer smtp = startSmtp();
+
+    @LocalServerPort
+    private int port;
+
+    @DynamicPropertySource
+    static void smtpProperties(DynamicPropertyRegistry registry) {
+        registry.add("gmail.mail.port", smtp::getPort);
+    }
+
+    @AfterAll
+    static void stopSmtp() throws IOException {
+        smtp.close();
+    }
+
+    @Test
+    void sustainedSend() {
+        int rate = Integer.getInteger("load.rate", 200);
+        Duration duration = Duration.ofSeconds(Integer.getInteger("load.duration", 30));
+        boolean async = Boolean.getBoolean("load.async");
+        smtp.withRecordMessages(false)
+                .withReplyLatency(Duration.ofMillis(Integer.getInteger("load.smtp-latency", 5)))
+                .withTransientFailureRate(doubleProperty("load.transient-failure-rate"))
+                .withPermanentFailureRate(doubleProperty("load.permanent-failure-rate"))
+                .withDropRate(doubleProperty("load.drop-rate"));
+
+        URI uri = URI.create("http://localhost:" + port + "/api/v1/emails" + (async ? "?async=true" : ""));
+        LoadGenerator generator = new LoadGenerator(uri, "test-secret-key");
+        String body = """
+                {"to":["load@example.com"],"subject":"Load","body":"Load test message","html":false}""";
+
+        // Warm up the JIT and the SMTP pool before measuring
+        generator.run(body, Math.min(rate, 100), Duration.ofSeconds(2));
+        LoadGenerator.Report report = generator.run(body, rate, duration);
+
+        log.info("Load test (rate={}/s, async={}): {}", rate, async, report);
+        log.info("SMTP server: connections={}, accepted={}, rejected={}", smtp.getConnectionsOpened(),
+                smtp.getMessagesAccepted(), smtp.getMessagesRejected());
+        assertTrue(report.successes() > 0, "No request succeeded: " + report);
+    }
+
+    private static double doubleProperty(String name) {
+        return Double.parseDouble(System.getProperty(name, "0"));
+    }
+
+    private static FakeSmtpServer startSmtp() {
+        try {
+            return FakeSmtpServer.start();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot start fake SMTP server", e);
+        }
+    }
+
+}
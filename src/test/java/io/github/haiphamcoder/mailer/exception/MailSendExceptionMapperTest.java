@@ -0,0 +1,107 @@
+package io.github.haiphamcoder.mailer.exception;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.SocketTimeoutException;
+import java.util.Map;
+
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailSendException;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.InternetAddress;
+
+class MailSendExceptionMapperTest {
+
+    private final MailSendExceptionMapper mapper = new MailSendExceptionMapper();
+
+    @Test
+    void transientReplyIsRetryable() {
+        SMTPSendFailedException deferred = new SMTPSendFailedException("MAIL", 451, "451 4.3.0 try later",
+                null, null, null, null);
+
+        MailFailure failure = mapper.classify(new MailSendException(Map.of(new Object(), deferred)));
+
+        assertEquals("SMTP_SEND_DEFERRED", failure.code());
+        assertTrue(failure.retryable());
+        assertEquals(451, failure.smtpReturnCode());
+    }
+
+    @Test
+    void permanentReplyWinsOverTransientInTheSameChain() throws Exception {
+        SendFailedException invalid = new SendFailedException("Invalid Addresses");
+        SMTPAddressFailedException rejected = new SMTPAddressFailedException(
+                new InternetAddress("nobody@example.com"), "RCPT", 550, "550 5.1.1 no such user");
+        rejected.setNextException(new SMTPAddressFailedException(
+                new InternetAddress("busy@example.com"), "RCPT", 452, "452 4.2.2 mailbox full"));
+        invalid.setNextException(rejected);
+
+        MailFailure failure = mapper.classify(new RuntimeException(invalid));
+
+        assertEquals("SMTP_SEND_FAILED", failure.code());
+        assertFalse(failure.retryable());
+        assertEquals(550, failure.smtpReturnCode());
+    }
+
+    @Test
+    void sendingLimitIsThrottled() {
+        SMTPSendFailedException limit = new SMTPSendFailedException("DATA", 550,
+                "550 5.4.5 Daily user sending limit exceeded", null, null, null, null);
+
+        MailFailure failure = mapper.classify(new MailSendException(Map.of(new Object(), limit)));
+
+        assertEquals("SMTP_THROTTLED", failure.code());
+        assertTrue(failure.retryable());
+        assertEquals(550, failure.smtpReturnCode());
+    }
+
+    @Test
+    void permanentReplyWinsOverThrottlingInTheSameChain() throws Exception {
+        SMTPAddressFailedException rejected = new SMTPAddressFailedException(
+                new InternetAddress("nobody@example.com"), "RCPT", 550, "550 5.1.1 no such user");
+        SMTPSendFailedException closing = new SMTPSendFailedException("DATA", 421,
+                "421 4.7.0 Try again later, closing connection", null, null, null, null);
+
+        MailFailure failure = mapper.classify(new MailSendException(Map.of("first", rejected, "second", closing)));
+
+        assertEquals("SMTP_SEND_FAILED", failure.code());
+        assertFalse(failure.retryable());
+        assertEquals(550, failure.smtpReturnCode());
+    }
+
+    @Test
+    void sendingLimitStatusMustBeTheEnhancedStatusCode() throws Exception {
+        SMTPAddressFailedException rejected = new SMTPAddressFailedException(
+                new InternetAddress("team5.4.5@example.com"), "RCPT", 550,
+                "550 5.1.1 <team5.4.5@example.com> no such user");
+
+        MailFailure failure = mapper.classify(new MailSendException(Map.of(new Object(), rejected)));
+
+        assertEquals("SMTP_SEND_FAILED", failure.code());
+        assertFalse(failure.retryable());
+    }
+
+    @Test
+    void authenticationFailureIsPermanent() {
+        MailFailure failure = mapper.classify(new MailAuthenticationException("535 bad credentials"));
+
+        assertEquals("SMTP_AUTH_FAILED", failure.code());
+        assertFalse(failure.retryable());
+    }
+
+    @Test
+    void connectionProblemIsRetryable() {
+        MailFailure failure = mapper.classify(
+                new MessagingException("Exception reading response", new SocketTimeoutException("Read timed out")));
+
+        assertEquals("SMTP_SEND_ERROR", failure.code());
+        assertTrue(failure.retryable());
+    }
+
+}
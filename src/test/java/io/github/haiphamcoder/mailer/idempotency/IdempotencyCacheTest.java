@@ -0,0 +1,107 @@
+package io.github.haiphamcoder.mailer.idempotency;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.haiphamcoder.mailer.exception.IdempotencyKeyMismatchException;
+
+class IdempotencyCacheTest {
+
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+
+    @Test
+    void concurrentDuplicatesRunActionOnce() throws Exception {
+        IdempotencyCache cache = cache(100);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<IdempotencyCache.Outcome<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(pool.submit(() -> cache.execute("key", "body", () -> {
+                    runs.incrementAndGet();
+                    await(release);
+                    return "message-1";
+                })));
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            int replayed = 0;
+            for (Future<IdempotencyCache.Outcome<String>> future : futures) {
+                IdempotencyCache.Outcome<String> outcome = future.get(5, TimeUnit.SECONDS);
+                assertEquals("message-1", outcome.value());
+                replayed += outcome.replayed() ? 1 : 0;
+            }
+            assertEquals(1, runs.get());
+            assertEquals(7, replayed);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void failuresAreNotRemembered() {
+        IdempotencyCache cache = cache(100);
+
+        assertThrows(IllegalStateException.class, () -> cache.execute("key", "body", () -> {
+            throw new IllegalStateException("smtp down");
+        }));
+        IdempotencyCache.Outcome<String> retry = cache.execute("key", "body", () -> "message-2");
+
+        assertEquals("message-2", retry.value());
+        assertFalse(retry.replayed());
+    }
+
+    @Test
+    void reusedKeyWithDifferentBodyIsRejected() {
+        IdempotencyCache cache = cache(100);
+        cache.execute("key", "body", () -> "message-1");
+
+        assertThrows(IdempotencyKeyMismatchException.class, () -> cache.execute("key", "other", () -> "message-2"));
+    }
+
+    @Test
+    void entriesExpireAndAreBounded() {
+        IdempotencyCache cache = cache(3);
+        for (int i = 0; i < 10; i++) {
+            cache.execute("key-" + i, "body", () -> "message");
+        }
+        assertTrue(cache.size() <= 4, "size was " + cache.size());
+
+        now.addAndGet(Duration.ofHours(25).toMillis());
+        IdempotencyCache.Outcome<String> outcome = cache.execute("key-9", "body", () -> "fresh");
+        assertEquals("fresh", outcome.value());
+        assertEquals(1, cache.size());
+    }
+
+    private IdempotencyCache cache(int maxEntries) {
+        IdempotencyProperties properties = new IdempotencyProperties();
+        properties.setMaxEntries(maxEntries);
+        return new IdempotencyCache(properties, now::get);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+package io.github.haiphamcoder.mailer.limit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.haiphamcoder.mailer.security.AccessKey;
+import io.github.haiphamcoder.mailer.security.HmacKey;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class AccessKeyRateLimiterTest {
+
+    private static final HmacKey SECRET = new HmacKey("secret");
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void allowsBurstThenPacesAtRate() {
+        AccessKeyRateLimiter limiter = limiter(10, 3, true);
+        AccessKey key = key("shop", null);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire(key));
+        }
+        long wait = limiter.tryAcquire(key);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), wait);
+        assertEquals(1, AccessKeyRateLimiter.retryAfterSeconds(wait));
+        assertEquals(1, registry.get("mailer.rate-limit.rejected").tag("access_key", "shop").counter().count());
+
+        now.addAndGet(wait);
+        assertEquals(0, limiter.tryAcquire(key));
+        assertTrue(limiter.tryAcquire(key) > 0);
+    }
+
+    @Test
+    void keysHaveSeparateBucketsAndOwnLimits() {
+        AccessKeyRateLimiter limiter = limiter(10, 1, true);
+        AccessKey noisy = key("noisy", null);
+        AccessKey generous = key("generous", new AccessKey.RateLimit(10, 5));
+
+        assertEquals(0, limiter.tryAcquire(noisy));
+        assertTrue(limiter.tryAcquire(noisy) > 0);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire(generous));
+        }
+        assertTrue(limiter.tryAcquire(generous) > 0);
+
+        // A reloaded key with a higher limit gets a fresh bucket
+        assertEquals(0, limiter.tryAcquire(key("noisy", new AccessKey.RateLimit(10, 2))));
+    }
+
+    @Test
+    void retainDropsBucketsOfRemovedKeys() {
+        AccessKeyRateLimiter limiter = limiter(10, 1, true);
+        AccessKey kept = key("kept", null);
+        AccessKey revoked = key("revoked", null);
+        limiter.tryAcquire(kept);
+        limiter.tryAcquire(revoked);
+        assertTrue(limiter.tryAcquire(kept) > 0);
+        assertTrue(limiter.tryAcquire(revoked) > 0);
+
+        limiter.retain(Set.of("kept"));
+
+        assertTrue(limiter.tryAcquire(kept) > 0);
+        assertNull(registry.find("mailer.rate-limit.rejected").tag("access_key", "revoked").counter());
+        // A key that is configured again starts with a full bucket
+        assertEquals(0, limiter.tryAcquire(revoked));
+    }
+
+    @Test
+    void disabledAllowsEverything() {
+        AccessKeyRateLimiter limiter = limiter(1, 1, false);
+        AccessKey key = key("shop", null);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, limiter.tryAcquire(key));
+        }
+    }
+
+    @Test
+    void concurrentRequestsTakeExactlyTheBurst() throws Exception {
+        AccessKeyRateLimiter limiter = limiter(1, 50, true);
+        AccessKey key = key("shop", null);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(pool.submit(() -> {
+                    int allowed = 0;
+                    for (int i = 0; i < 100; i++) {
+                        if (limiter.tryAcquire(key) == 0) {
+                            allowed++;
+                        }
+                    }
+                    return allowed;
+                }));
+            }
+            int allowed = 0;
+            for (Future<Integer> future : futures) {
+                allowed += future.get();
+            }
+            assertEquals(50, allowed);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private AccessKeyRateLimiter limiter(int requestsPerSecond, int burst, boolean enabled) {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setEnabled(enabled);
+        properties.setRequestsPerSecond(requestsPerSecond);
+        properties.setBurst(burst);
+        return new AccessKeyRateLimiter(properties, registry, now::get);
+    }
+
+    private static AccessKey key(String id, AccessKey.RateLimit rateLimit) {
+        return new AccessKey(id, SECRET, Set.of(), rateLimit);
+    }
+
+}
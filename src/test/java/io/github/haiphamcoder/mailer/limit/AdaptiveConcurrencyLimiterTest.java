@@ -0,0 +1,84 @@
+package io.github.haiphamcoder.mailer.limit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+
+import io.github.haiphamcoder.mailer.exception.ConcurrencyLimitExceededException;
+import io.github.haiphamcoder.mailer.exception.MailSendExceptionMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(properties(),
+            new MailSendExceptionMapper(), registry, now::get);
+
+    @Test
+    void rejectsOverLimitWithRetryAfter() {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = acquireAll();
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1500));
+        permits.forEach(permit -> permit.release(null));
+        acquireAll();
+
+        ConcurrencyLimitExceededException e = assertThrows(ConcurrencyLimitExceededException.class,
+                limiter::acquire);
+        assertEquals(2, e.retryAfterSeconds());
+        assertEquals(1, registry.get("mailer.limiter.rejected").counter().count());
+    }
+
+    @Test
+    void growsWhileLatencyIsSteadyAndShrinksWhenItRises() {
+        for (int i = 0; i < 20; i++) {
+            round(10);
+        }
+        int grown = limiter.limit();
+        assertTrue(grown > 10, "limit was " + grown);
+
+        round(100);
+        round(100);
+        assertTrue(limiter.limit() < grown, "limit was " + limiter.limit());
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    void transientFailuresBackOff() {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = acquireAll();
+        permits.forEach(permit -> permit.release(new MailSendException("421 try again later")));
+
+        assertEquals(4, limiter.limit());
+    }
+
+    /** Fills the limit, lets the given time pass and releases every permit successfully. */
+    private void round(long latencyMillis) {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = acquireAll();
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+        permits.forEach(permit -> permit.release(null));
+    }
+
+    private List<AdaptiveConcurrencyLimiter.Permit> acquireAll() {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        while (limiter.inFlight() < limiter.limit()) {
+            permits.add(limiter.acquire());
+        }
+        return permits;
+    }
+
+    private static LimiterProperties properties() {
+        LimiterProperties properties = new LimiterProperties();
+        properties.setInitialLimit(10);
+        properties.setMinLimit(4);
+        properties.setMaxLimit(100);
+        return properties;
+    }
+
+}
@@ -0,0 +1,106 @@
+package io.github.haiphamcoder.mailer.outbox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.haiphamcoder.mailer.dto.EmailRequest;
+import io.github.haiphamcoder.mailer.dto.Priority;
+
+class FairQueueTest {
+
+    private static final EmailRequest REQUEST = new EmailRequest(List.of("to@example.com"), "Subject", "Body",
+            false, null, null, null, null);
+
+    @Test
+    void burstFromOneTenantDoesNotHoldBackOthers() throws InterruptedException {
+        FairQueue queue = new FairQueue(1000, tenant -> 1);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(queue.offer(email("bulk", i)));
+        }
+        queue.offer(email("shop", 0));
+        queue.offer(email("crm", 0));
+
+        assertEquals(List.of("bulk", "shop", "crm", "bulk", "bulk"), tenants(queue, 5));
+        assertEquals(1, queue.tenants());
+    }
+
+    @Test
+    void sharesTurnsByWeight() throws InterruptedException {
+        Map<String, Integer> weights = Map.of("crm", 3);
+        FairQueue queue = new FairQueue(1000, tenant -> weights.getOrDefault(tenant, 1));
+        for (int i = 0; i < 10; i++) {
+            queue.offer(email("crm", i));
+            queue.offer(email("bulk", i));
+        }
+
+        assertEquals(List.of("crm", "crm", "crm", "bulk", "crm", "crm", "crm", "bulk"), tenants(queue, 8));
+    }
+
+    @Test
+    void servesTransactionalLaneBeforeBulkBacklog() throws InterruptedException {
+        FairQueue queue = new FairQueue(1000, tenant -> 1);
+        EmailRequest bulk = REQUEST.withDefaultPriority(Priority.BULK);
+        for (int i = 0; i < 100; i++) {
+            queue.offer(OutboundEmail.accepted("bulk-" + i, "crm", bulk));
+        }
+        queue.offer(email("crm", 0));
+        queue.offer(email("shop", 0));
+
+        assertEquals(100, queue.size(Priority.BULK));
+        assertEquals(List.of("crm-0", "shop-0", "bulk-0"), messageIds(queue, 3));
+        assertEquals(0, queue.size(Priority.TRANSACTIONAL));
+    }
+
+    @Test
+    void keepsOrderWithinTenant() throws InterruptedException {
+        FairQueue queue = new FairQueue(1000, tenant -> 2);
+        for (int i = 0; i < 3; i++) {
+            queue.offer(email("a", i));
+            queue.offer(email("b", i));
+        }
+
+        assertEquals(List.of("a-0", "a-1", "b-0", "b-1", "a-2", "b-2"), messageIds(queue, 6));
+        assertEquals(0, queue.tenants());
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void boundsOffersButNotRecoveredEmails() {
+        FairQueue queue = new FairQueue(2, tenant -> 1);
+        queue.addAll(List.of(email("a", 0), email("a", 1), email(null, 2)));
+
+        assertEquals(3, queue.size());
+        assertEquals(0, queue.remainingCapacity());
+        assertFalse(queue.offer(email("b", 0)));
+    }
+
+    private static List<String> tenants(FairQueue queue, int count) throws InterruptedException {
+        List<String> tenants = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            tenants.add(queue.poll(0, TimeUnit.MILLISECONDS).tenant());
+        }
+        return tenants;
+    }
+
+    private static List<String> messageIds(FairQueue queue, int count) throws InterruptedException {
+        List<String> messageIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            messageIds.add(queue.poll(0, TimeUnit.MILLISECONDS).messageId());
+        }
+        return messageIds;
+    }
+
+    private static OutboundEmail email(String tenant, int sequence) {
+        return OutboundEmail.accepted(tenant + "-" + sequence, tenant, REQUEST);
+    }
+
+}
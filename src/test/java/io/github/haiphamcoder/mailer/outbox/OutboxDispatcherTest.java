@@ -0,0 +1,88 @@
+package io.github.haiphamcoder.mailer.outbox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import io.github.haiphamcoder.mailer.dto.EmailRequest;
+import io.github.haiphamcoder.mailer.service.EmailSubmissionService;
+import io.github.haiphamcoder.mailer.support.FakeSmtpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Tests that {@link OutboxDispatcher} paces queued emails to the sender
+ * account's quota by deferring them instead of holding a worker.
+ */
+@SpringBootTest(properties = { "mailer.quota.enabled=true", "mailer.quota.burst=1",
+        "mailer.quota.messages-per-minute=600", "mailer.outbox.workers=1" })
+@ActiveProfiles("test")
+class OutboxDispatcherTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private static final FakeSmtpServer smtp = startSmtp();
+
+    @Autowired
+    private EmailSubmissionService submissionService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @DynamicPropertySource
+    static void smtpProperties(DynamicPropertyRegistry registry) {
+        registry.add("gmail.mail.port", smtp::getPort);
+    }
+
+    @AfterAll
+    static void stopSmtp() throws IOException {
+        smtp.close();
+    }
+
+    @Test
+    void emailsWithoutQuotaAreDeferredAndDeliveredOnceQuotaReturns() throws InterruptedException {
+        int count = 4;
+        for (int i = 0; i < count; i++) {
+            submissionService.enqueue(null, new EmailRequest(List.of("user" + i + "@example.com"), "Hello",
+                    "Quota test", false, null, null, null, null));
+        }
+
+        assertTrue(awaitDeferred(), "no email was deferred while the quota was exhausted");
+        for (int i = 0; i < count; i++) {
+            assertNotNull(smtp.awaitMessage(TIMEOUT));
+        }
+        assertEquals(count, smtp.getMessagesAccepted());
+        assertEquals(0, smtp.getMessagesRejected());
+    }
+
+    private boolean awaitDeferred() throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (meterRegistry.get("mailer.retry.pending").gauge().value() > 0) {
+                return true;
+            }
+            Thread.sleep(5);
+        }
+        return false;
+    }
+
+    private static FakeSmtpServer startSmtp() {
+        try {
+            return FakeSmtpServer.start();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot start fake SMTP server", e);
+        }
+    }
+
+}
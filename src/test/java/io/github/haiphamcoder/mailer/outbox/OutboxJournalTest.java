@@ -0,0 +1,114 @@
+package io.github.haiphamcoder.mailer.outbox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.haiphamcoder.mailer.dto.EmailRequest;
+
+class OutboxJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void replaysEmailsWithoutDoneRecord() throws IOException {
+        try (OutboxJournal journal = open(1 << 20)) {
+            journal.append(email("a"), FsyncPolicy.ALWAYS);
+            journal.append(email("b"), FsyncPolicy.INTERVAL);
+            journal.append(email("c"), FsyncPolicy.NEVER);
+            journal.complete("b");
+        }
+
+        try (OutboxJournal journal = open(1 << 20)) {
+            List<OutboundEmail> recovered = journal.recovered();
+            assertEquals(List.of("a", "c"), recovered.stream().map(OutboundEmail::messageId).toList());
+            assertEquals(email("a").request(), recovered.get(0).request());
+            assertEquals(1, recovered.get(0).attempt());
+        }
+    }
+
+    @Test
+    void replaysTenants() throws IOException {
+        try (OutboxJournal journal = open(1 << 20)) {
+            journal.append(email("a", "crm"), FsyncPolicy.ALWAYS);
+            journal.append(email("b"), FsyncPolicy.ALWAYS);
+        }
+
+        try (OutboxJournal journal = open(1 << 20)) {
+            List<OutboundEmail> recovered = journal.recovered();
+            assertEquals("crm", recovered.get(0).tenant());
+            assertEquals(email("a").request(), recovered.get(0).request());
+            assertNull(recovered.get(1).tenant());
+        }
+    }
+
+    @Test
+    void ignoresTornTail() throws IOException {
+        try (OutboxJournal journal = open(1 << 20)) {
+            journal.append(email("a"), FsyncPolicy.ALWAYS);
+        }
+        Path segment = segments().get(0);
+        Files.write(segment, new byte[] { 0, 0, 1, 0, 42 }, StandardOpenOption.APPEND);
+
+        try (OutboxJournal journal = open(1 << 20)) {
+            assertEquals(1, journal.recovered().size());
+            journal.append(email("b"), FsyncPolicy.ALWAYS);
+        }
+        try (OutboxJournal journal = open(1 << 20)) {
+            assertEquals(List.of("a", "b"), journal.recovered().stream().map(OutboundEmail::messageId).toList());
+        }
+    }
+
+    @Test
+    void reclaimsSegmentsOnceEmailsAreDone() throws IOException {
+        try (OutboxJournal journal = open(512)) {
+            journal.append(email("pinned"), FsyncPolicy.NEVER);
+            for (int i = 0; i < 50; i++) {
+                journal.append(email("m" + i), FsyncPolicy.NEVER);
+                journal.complete("m" + i);
+            }
+            assertEquals(1, journal.pendingCount());
+            assertEquals(1, journal.segmentCount());
+            assertEquals(1, segments().size());
+        }
+
+        try (OutboxJournal journal = open(512)) {
+            assertEquals(List.of("pinned"), journal.recovered().stream().map(OutboundEmail::messageId).toList());
+        }
+    }
+
+    private OutboxJournal open(long segmentSize) throws IOException {
+        return new OutboxJournal(directory, segmentSize, Duration.ofMillis(10), objectMapper);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".wal")).sorted().toList();
+        }
+    }
+
+    private static OutboundEmail email(String messageId) {
+        return email(messageId, null);
+    }
+
+    private static OutboundEmail email(String messageId, String tenant) {
+        return OutboundEmail.accepted(messageId, tenant, new EmailRequest(List.of("to@example.com"),
+                "Subject " + messageId, "Body", false, List.of("cc@example.com"), null, null, null));
+    }
+
+}
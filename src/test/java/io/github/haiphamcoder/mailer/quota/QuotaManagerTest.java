@@ -0,0 +1,88 @@
+package io.github.haiphamcoder.mailer.quota;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class QuotaManagerTest {
+
+    private static final String ACCOUNT = "sender@example.com";
+
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void pacesAfterBurst() {
+        QuotaManager manager = manager(1000, 1000, 60, 3);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, manager.tryAcquire(ACCOUNT, 1));
+        }
+        long wait = manager.tryAcquire(ACCOUNT, 1);
+        assertTrue(wait > 0 && wait <= 1000, "wait was " + wait);
+
+        now.addAndGet(wait);
+        assertEquals(0, manager.tryAcquire(ACCOUNT, 1));
+    }
+
+    @Test
+    void enforcesDailyLimitsOverRollingWindow() {
+        QuotaManager manager = manager(2, 5, 6000, 100);
+
+        assertEquals(0, manager.tryAcquire(ACCOUNT, 3));
+        assertTrue(manager.tryAcquire(ACCOUNT, 3) > 0, "recipient limit should apply");
+        assertEquals(0, manager.tryAcquire(ACCOUNT, 2));
+        long wait = manager.tryAcquire(ACCOUNT, 1);
+        assertTrue(wait > TimeUnit.HOURS.toMillis(23), "wait was " + wait);
+        assertEquals(0, manager.remainingMessages(ACCOUNT));
+        assertEquals(0, registry.get("mailer.quota.remaining").tag("type", "messages").gauge().value());
+
+        now.addAndGet(TimeUnit.DAYS.toMillis(1));
+        assertEquals(2, manager.remainingMessages(ACCOUNT));
+        assertEquals(0, manager.tryAcquire(ACCOUNT, 1));
+    }
+
+    @Test
+    void refundedPermitCanBeTakenAgain() {
+        QuotaManager manager = manager(2, 5, 60, 1);
+
+        assertEquals(0, manager.tryAcquire(ACCOUNT, 4));
+        assertTrue(manager.tryAcquire(ACCOUNT, 1) > 0, "pacing should apply");
+
+        manager.refund(ACCOUNT, 4);
+        assertEquals(2, manager.remainingMessages(ACCOUNT));
+        assertEquals(5, manager.remainingRecipients(ACCOUNT));
+        assertEquals(0, manager.tryAcquire(ACCOUNT, 5));
+    }
+
+    @Test
+    void disabledQuotaAlwaysGrants() {
+        QuotaProperties properties = properties(1, 1, 1, 1);
+        properties.setEnabled(false);
+        QuotaManager manager = new QuotaManager(properties, registry, now::get);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, manager.tryAcquire(ACCOUNT, 5));
+        }
+    }
+
+    private QuotaManager manager(int dailyMessages, int dailyRecipients, int perMinute, int burst) {
+        return new QuotaManager(properties(dailyMessages, dailyRecipients, perMinute, burst), registry, now::get);
+    }
+
+    private static QuotaProperties properties(int dailyMessages, int dailyRecipients, int perMinute, int burst) {
+        QuotaProperties properties = new QuotaProperties();
+        properties.setDailyMessages(dailyMessages);
+        properties.setDailyRecipients(dailyRecipients);
+        properties.setMessagesPerMinute(perMinute);
+        properties.setBurst(burst);
+        return properties;
+    }
+
+}
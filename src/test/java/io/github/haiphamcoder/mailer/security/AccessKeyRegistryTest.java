@@ -0,0 +1,151 @@
+package io.github.haiphamcoder.mailer.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class AccessKeyRegistryTest {
+
+    @TempDir
+    Path directory;
+
+    private final HmacSignatureService hmacService = new HmacSignatureService();
+
+    @Test
+    void sharedSecretWithoutFile() throws IOException {
+        SecurityProperties properties = new SecurityProperties();
+        properties.setSecretKey("shared-secret");
+        AccessKeyRegistry registry = new AccessKeyRegistry(properties, new ObjectMapper());
+
+        AccessKey key = registry.lookup("anyone");
+        assertEquals(AccessKeyRegistry.SHARED_ID, key.id());
+        assertSame(key, registry.lookup("someone-else"));
+        assertTrue(key.allows(Scope.TEMPLATES));
+        assertTrue(hmacService.verifySignature(42, key.hmacKey(), hmacService.generateSignature(42, "shared-secret")));
+    }
+
+    @Test
+    void loadsKeysWithSecretsAndScopes() throws IOException {
+        Path file = write("""
+                {"shop": {"secret": "shop-secret", "scopes": ["send"],
+                          "rate-limit": {"requests-per-second": 5, "burst": 20}},
+                 "crm": {"secret": "crm-secret"}}""");
+        AccessKeyRegistry registry = registry(file, false);
+
+        AccessKey shop = registry.lookup("shop");
+        assertEquals(new AccessKey.RateLimit(5, 20), shop.rateLimit());
+        assertNull(registry.lookup("crm").rateLimit());
+        assertTrue(shop.allows(Scope.SEND));
+        assertFalse(shop.allows(Scope.TEMPLATES));
+        assertTrue(registry.lookup("crm").allows(Scope.ATTACHMENTS));
+        assertNull(registry.lookup("unknown"));
+        assertTrue(hmacService.verifySignature(42, shop.hmacKey(), hmacService.generateSignature(42, "shop-secret")));
+        assertFalse(hmacService.verifySignature(42, shop.hmacKey(), hmacService.generateSignature(42, "crm-secret")));
+    }
+
+    @Test
+    void reloadSwapsKeysAndKeepsUnchangedKeyMaterial() throws IOException {
+        Path file = write("""
+                {"shop": {"secret": "shop-secret"}, "crm": {"secret": "crm-secret"}}""");
+        AccessKeyRegistry registry = registry(file, false);
+        HmacKey shop = registry.lookup("shop").hmacKey();
+        HmacKey crm = registry.lookup("crm").hmacKey();
+
+        assertFalse(registry.reload());
+        write("""
+                {"shop": {"secret": "shop-secret", "scopes": ["send"]}, "crm": {"secret": "rotated"},
+                 "billing": {"secret": "billing-secret"}}""");
+        assertTrue(registry.reload());
+
+        assertSame(shop, registry.lookup("shop").hmacKey());
+        assertFalse(registry.lookup("shop").allows(Scope.TEMPLATES));
+        assertNotSame(crm, registry.lookup("crm").hmacKey());
+        assertNotNull(registry.lookup("billing"));
+    }
+
+    @Test
+    void reloadNotifiesListenersWithCurrentIds() throws IOException {
+        Path file = write("""
+                {"shop": {"secret": "shop-secret"}, "crm": {"secret": "crm-secret"}}""");
+        AccessKeyRegistry registry = registry(file, false);
+        List<Set<String>> notified = new ArrayList<>();
+        registry.addReloadListener(notified::add);
+
+        assertFalse(registry.reload());
+        write("""
+                {"shop": {"secret": "shop-secret"}}""");
+        assertTrue(registry.reload());
+        write("{\"shop\": ");
+        assertThrows(IOException.class, registry::reload);
+
+        assertEquals(List.of(Set.of("shop")), notified);
+    }
+
+    @Test
+    void invalidFileKeepsPreviousKeys() throws IOException {
+        Path file = write("""
+                {"shop": {"secret": "shop-secret"}}""");
+        AccessKeyRegistry registry = registry(file, false);
+
+        write("""
+                {"shop": {"secret": "shop-secret", "scopes": ["everything"]}}""");
+        assertThrows(IllegalArgumentException.class, registry::reload);
+        write("{\"shop\": ");
+        assertThrows(IOException.class, registry::reload);
+
+        assertTrue(registry.lookup("shop").allows(Scope.TEMPLATES));
+    }
+
+    @Test
+    void watchPicksUpReplacedFile() throws Exception {
+        Path file = write("""
+                {"shop": {"secret": "shop-secret"}}""");
+        AccessKeyRegistry registry = registry(file, true);
+        try {
+            // Replace the file the way deployment tools do: write elsewhere, then rename
+            Path staged = directory.resolve("access-keys.json.tmp");
+            Files.writeString(staged, """
+                    {"shop": {"secret": "shop-secret"}, "crm": {"secret": "crm-secret"}}""");
+            Files.move(staged, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (registry.lookup("crm") == null && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertNotNull(registry.lookup("crm"));
+        } finally {
+            registry.destroy();
+        }
+    }
+
+    private AccessKeyRegistry registry(Path file, boolean watch) throws IOException {
+        SecurityProperties properties = new SecurityProperties();
+        properties.setSecretKey("unused");
+        properties.getAccessKeys().setFile(file.toString());
+        properties.getAccessKeys().setWatch(watch);
+        return new AccessKeyRegistry(properties, new ObjectMapper());
+    }
+
+    private Path write(String json) throws IOException {
+        return Files.writeString(directory.resolve("access-keys.json"), json);
+    }
+
+}
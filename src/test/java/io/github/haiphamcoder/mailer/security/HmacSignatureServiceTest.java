@@ -0,0 +1,80 @@
+package io.github.haiphamcoder.mailer.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+
+class HmacSignatureServiceTest {
+
+    private static final long TIMESTAMP = 1_700_000_000_000L;
+    private static final String SECRET = "test-secret";
+
+    private final HmacSignatureService service = new HmacSignatureService();
+
+    @Test
+    void signatureMatchesPlainHmacSha512() throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA512");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA512"));
+        String expected = HexFormat.of().formatHex(mac.doFinal(Long.toString(TIMESTAMP)
+                .getBytes(StandardCharsets.US_ASCII)));
+
+        assertEquals(expected, service.generateSignature(TIMESTAMP, SECRET));
+        assertEquals(expected, service.generateSignature(TIMESTAMP, new HmacKey(SECRET)));
+    }
+
+    @Test
+    void pooledKeyVerifiesCorrectSignatures() {
+        HmacKey key = new HmacKey(SECRET);
+
+        for (long timestamp = TIMESTAMP; timestamp < TIMESTAMP + 100; timestamp++) {
+            String signature = service.generateSignature(timestamp, SECRET);
+            assertTrue(service.verifySignature(timestamp, key, signature));
+            assertTrue(service.verifySignature(timestamp, key, signature.toUpperCase()));
+            assertTrue(service.verifySignature(timestamp, SECRET, signature));
+        }
+    }
+
+    @Test
+    void rejectsWrongBadAndOddLengthSignatures() {
+        HmacKey key = new HmacKey(SECRET);
+        String signature = service.generateSignature(TIMESTAMP, SECRET);
+
+        assertFalse(service.verifySignature(TIMESTAMP + 1, key, signature));
+        assertFalse(service.verifySignature(TIMESTAMP, new HmacKey("other-secret"), signature));
+        assertFalse(service.verifySignature(TIMESTAMP, key, "g" + signature.substring(1)));
+        assertFalse(service.verifySignature(TIMESTAMP, key, signature.substring(1)));
+        assertFalse(service.verifySignature(TIMESTAMP, key, signature + "0"));
+        assertFalse(service.verifySignature(TIMESTAMP, key, ""));
+        assertFalse(service.verifySignature(TIMESTAMP, key, null));
+        assertFalse(service.verifySignature(TIMESTAMP, SECRET, "  "));
+        assertFalse(service.verifySignature(TIMESTAMP, "", signature));
+        // A rejection leaves the pooled Mac usable
+        assertTrue(service.verifySignature(TIMESTAMP, key, signature));
+    }
+
+    @Test
+    void macsAreReturnedToThePool() {
+        HmacKey key = new HmacKey(SECRET);
+        Mac pooled = key.acquire();
+        key.release(pooled);
+        String signature = service.generateSignature(TIMESTAMP, key);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(service.verifySignature(TIMESTAMP, key, signature));
+            assertFalse(service.verifySignature(TIMESTAMP + 1, key, signature));
+        }
+
+        // Single-threaded, so the one pooled Mac is reused by every call and handed back
+        assertSame(pooled, key.acquire());
+    }
+
+}
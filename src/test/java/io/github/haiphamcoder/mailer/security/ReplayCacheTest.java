@@ -0,0 +1,90 @@
+package io.github.haiphamcoder.mailer.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.haiphamcoder.mailer.security.ReplayCache.Outcome;
+
+class ReplayCacheTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final String SIGNATURE = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    @Test
+    void acceptsEachSignatureOnce() {
+        ReplayCache cache = new ReplayCache(300_000, 1000);
+
+        assertEquals(Outcome.FIRST_USE, cache.firstUse(NOW, SIGNATURE));
+        assertEquals(Outcome.REPLAYED, cache.firstUse(NOW, SIGNATURE));
+        assertEquals(Outcome.REPLAYED, cache.firstUse(NOW, SIGNATURE.toUpperCase()));
+        assertEquals(Outcome.FIRST_USE, cache.firstUse(NOW + 1, SIGNATURE));
+        assertEquals(Outcome.FIRST_USE, cache.firstUse(NOW, "0" + SIGNATURE.substring(1)));
+    }
+
+    @Test
+    void forgetsSignaturesOnceTheirBucketIsReused() {
+        ReplayCache cache = new ReplayCache(300_000, 1000);
+        assertEquals(Outcome.FIRST_USE, cache.firstUse(NOW, SIGNATURE));
+
+        // With a 5 minute tolerance a bucket covers 20s; a full ring later the slot is reused
+        long later = NOW + ReplayCache.BUCKETS * 20_000L;
+        assertEquals(Outcome.FIRST_USE, cache.firstUse(later, SIGNATURE));
+        // The old timestamp is now older than every live bucket and cannot be accepted
+        assertEquals(Outcome.REPLAYED, cache.firstUse(NOW, "0" + SIGNATURE.substring(1)));
+    }
+
+    @Test
+    void keepsSignaturesForTheWholeTolerance() {
+        ReplayCache cache = new ReplayCache(300_000, 1000);
+        assertEquals(Outcome.FIRST_USE, cache.firstUse(NOW - 300_000, SIGNATURE));
+
+        for (long t = NOW - 300_000; t <= NOW + 300_000; t += 1000) {
+            cache.firstUse(t, t | 1);
+        }
+        assertEquals(Outcome.REPLAYED, cache.firstUse(NOW - 300_000, SIGNATURE));
+    }
+
+    @Test
+    void reportsFullBucket() {
+        // One signature per bucket, held in a table of 4 slots
+        ReplayCache cache = new ReplayCache(1000, 30);
+
+        for (long fingerprint = 1; fingerprint <= 4; fingerprint++) {
+            assertEquals(Outcome.FIRST_USE, cache.firstUse(NOW, fingerprint));
+        }
+        assertEquals(Outcome.FULL, cache.firstUse(NOW, 5));
+        assertEquals(Outcome.REPLAYED, cache.firstUse(NOW, 2));
+    }
+
+    @Test
+    void concurrentUsesOfOneSignatureAcceptOnlyOne() throws Exception {
+        ReplayCache cache = new ReplayCache(300_000, 100_000);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            for (int round = 0; round < 100; round++) {
+                long timestamp = NOW + round;
+                List<Future<Outcome>> futures = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    futures.add(pool.submit(() -> cache.firstUse(timestamp, SIGNATURE)));
+                }
+                int accepted = 0;
+                for (Future<Outcome> future : futures) {
+                    if (future.get() == Outcome.FIRST_USE) {
+                        accepted++;
+                    }
+                }
+                assertEquals(1, accepted);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+}
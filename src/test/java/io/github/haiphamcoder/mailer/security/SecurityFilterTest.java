@@ -0,0 +1,107 @@
+package io.github.haiphamcoder.mailer.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.haiphamcoder.mailer.limit.AccessKeyRateLimiter;
+import io.github.haiphamcoder.mailer.limit.RateLimitProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletException;
+
+class SecurityFilterTest {
+
+    private final AtomicLong timestamp = new AtomicLong(System.currentTimeMillis());
+    private final HmacSignatureService hmacService = new HmacSignatureService();
+
+    @TempDir
+    Path directory;
+
+    private SecurityFilter filter;
+
+    @BeforeEach
+    void createFilter() throws IOException {
+        Path file = Files.writeString(directory.resolve("access-keys.json"), """
+                {"templates-only": {"secret": "templates-secret", "scopes": ["templates"]},
+                 "sender": {"secret": "sender-secret", "scopes": ["send"]}}""");
+        SecurityProperties properties = new SecurityProperties();
+        properties.setSecretKey("unused");
+        properties.getAccessKeys().setFile(file.toString());
+        properties.getAccessKeys().setWatch(false);
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        RateLimitProperties rateLimit = new RateLimitProperties();
+        rateLimit.setEnabled(false);
+        AccessKeyRegistry accessKeys = new AccessKeyRegistry(properties, objectMapper);
+        filter = new SecurityFilter(hmacService, properties, objectMapper, new ReplayCache(properties), accessKeys,
+                new AccessKeyRateLimiter(rateLimit, new SimpleMeterRegistry(), accessKeys));
+    }
+
+    @Test
+    void grantedScopeIsAllowed() throws Exception {
+        MockHttpServletResponse response = filter("/api/v1/emails", "sender", "sender-secret");
+
+        assertEquals(200, response.getStatus());
+    }
+
+    @Test
+    void pathParametersAndEncodingDoNotBypassScopes() throws Exception {
+        for (String uri : new String[] { "/api/v1/emails", "/api/v1/emails;x", "/api/v1/%65mails",
+                "/api/v1/emails;jsessionid=1/batch" }) {
+            MockHttpServletResponse response = filter(uri, "templates-only", "templates-secret");
+
+            assertEquals(403, response.getStatus(), uri);
+            assertTrue(response.getContentAsString().contains("ACCESS_DENIED"), uri);
+        }
+    }
+
+    @Test
+    void apiPathOutsideEveryScopeIsDenied() throws Exception {
+        MockHttpServletResponse response = filter("/api/v1/unknown", "sender", "sender-secret");
+
+        assertEquals(403, response.getStatus());
+    }
+
+    @Test
+    void publicPathNeedsNoSignature() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/public/health");
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+    }
+
+    private MockHttpServletResponse filter(String uri, String accessKey, String secret)
+            throws ServletException, IOException {
+        long now = timestamp.incrementAndGet();
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", uri);
+        request.addHeader("X-Access-Key", accessKey);
+        request.addHeader("X-Timestamp", Long.toString(now));
+        request.addHeader("X-Access-Sign", hmacService.generateSignature(now, secret));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        if (response.getStatus() != 200) {
+            assertNull(chain.getRequest(), "Rejected request reached the endpoint");
+        }
+        return response;
+    }
+
+}
@@ -0,0 +1,164 @@
+package io.github.haiphamcoder.mailer.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import io.github.haiphamcoder.mailer.dto.EmailBatchItemResult;
+import io.github.haiphamcoder.mailer.dto.EmailRequest;
+import io.github.haiphamcoder.mailer.exception.ApiException;
+import io.github.haiphamcoder.mailer.support.FakeSmtpServer;
+import io.github.haiphamcoder.mailer.support.FakeSmtpServer.ReceivedMessage;
+
+/**
+ * Tests {@link BatchEmailService} against {@link FakeSmtpServer}: batch size
+ * limits, per-item results in request order, partial failure and retry of
+ * transiently failed items.
+ */
+@SpringBootTest(properties = { "mailer.quota.enabled=false", "mailer.batch.max-size=5",
+        "gmail.mail.max-recipients-per-transaction=2", "mailer.retry.initial-delay=50ms" })
+@ActiveProfiles("test")
+class BatchEmailServiceTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private static final FakeSmtpServer smtp = startSmtp();
+
+    @Autowired
+    private BatchEmailService service;
+
+    @DynamicPropertySource
+    static void smtpProperties(DynamicPropertyRegistry registry) {
+        registry.add("gmail.mail.port", smtp::getPort);
+    }
+
+    @AfterAll
+    static void stopSmtp() throws IOException {
+        smtp.close();
+    }
+
+    @BeforeEach
+    void resetSmtp() {
+        smtp.reset();
+    }
+
+    @Test
+    void emptyBatchIsRejected() {
+        assertEquals("BATCH_EMPTY", assertThrows(ApiException.class,
+                () -> service.sendAll(null, List.of())).code());
+        assertEquals("BATCH_EMPTY", assertThrows(ApiException.class,
+                () -> service.sendAll(null, null)).code());
+    }
+
+    @Test
+    void batchOverMaxSizeIsRejectedBeforeSending() {
+        List<EmailRequest> batch = Collections.nCopies(6, email("user@example.com"));
+
+        ApiException e = assertThrows(ApiException.class, () -> service.sendAll(null, batch));
+
+        assertEquals("BATCH_TOO_LARGE", e.code());
+        assertEquals(0, smtp.getMessagesAccepted() + smtp.getMessagesRejected());
+    }
+
+    @Test
+    void batchOfMaxSizeIsSent() {
+        List<EmailBatchItemResult> results = service.sendAll(null,
+                Collections.nCopies(5, email("user@example.com")));
+
+        assertEquals(5, results.size());
+        assertTrue(results.stream().allMatch(result -> "OK".equals(result.code())), results.toString());
+        assertEquals(5, smtp.getMessagesAccepted());
+    }
+
+    @Test
+    void partialFailureIsReportedPerItemInRequestOrder() throws InterruptedException {
+        List<EmailRequest> batch = List.of(
+                email("first@example.com"),
+                email("not-an-email"),
+                new EmailRequest(List.of("a@example.com", "b@example.com", "c@example.com"), "Hello", "Batch test",
+                        false, null, null, null, null),
+                email("reject@example.com"),
+                email("last@example.com"));
+
+        List<EmailBatchItemResult> results = service.sendAll("tenant", batch);
+
+        assertEquals(5, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i, results.get(i).index());
+        }
+        assertSent(results.get(0));
+        assertFailed(results.get(1), "VALIDATION_ERROR");
+        assertFailed(results.get(2), "TOO_MANY_RECIPIENTS");
+        assertFailed(results.get(3), "SMTP_SEND_FAILED");
+        assertSent(results.get(4));
+        assertNotEquals(results.get(0).messageId(), results.get(4).messageId());
+
+        List<String> recipients = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            ReceivedMessage message = smtp.awaitMessage(TIMEOUT);
+            assertNotNull(message);
+            recipients.addAll(message.recipients());
+        }
+        assertEquals(List.of("first@example.com", "last@example.com"), recipients.stream().sorted().toList());
+        assertEquals(2, smtp.getMessagesAccepted());
+    }
+
+    @Test
+    void transientFailureIsReportedAsRetryScheduledAndRetried() throws InterruptedException {
+        smtp.withTransientFailureRate(1.0);
+
+        EmailBatchItemResult result = service.sendAll(null, List.of(email("user@example.com"))).get(0);
+
+        assertTrue(result.success());
+        assertEquals("RETRY_SCHEDULED", result.code());
+        smtp.withTransientFailureRate(0);
+        ReceivedMessage message = smtp.awaitMessage(TIMEOUT);
+        assertNotNull(message);
+        assertTrue(message.data().contains("Message-ID: <" + result.messageId() + "@"), message.data());
+    }
+
+    private static void assertSent(EmailBatchItemResult result) {
+        assertTrue(result.success(), result.toString());
+        assertEquals("OK", result.code());
+        assertNotNull(result.messageId());
+    }
+
+    private static void assertFailed(EmailBatchItemResult result, String code) {
+        assertFalse(result.success(), result.toString());
+        assertEquals(code, result.code());
+        assertNull(result.messageId());
+        assertNotNull(result.message());
+    }
+
+    private static EmailRequest email(String to) {
+        return new EmailRequest(List.of(to), "Hello", "Batch test", false, null, null, null, null);
+    }
+
+    private static FakeSmtpServer startSmtp() {
+        try {
+            return FakeSmtpServer.start();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot start fake SMTP server", e);
+        }
+    }
+
+}
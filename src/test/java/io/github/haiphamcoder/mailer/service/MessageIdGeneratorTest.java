@@ -0,0 +1,43 @@
+package io.github.haiphamcoder.mailer.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.haiphamcoder.mailer.config.MailProperties;
+
+class MessageIdGeneratorTest {
+
+    @Test
+    void idsAreUniqueAndOrderedByTime() throws Exception {
+        MessageIdGenerator generator = new MessageIdGenerator("example.com", 7);
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            String id = generator.next();
+            assertTrue(id.matches("[0-9A-HJKMNP-TV-Z]{26}"), id);
+            ids.add(id);
+        }
+        assertEquals(10_000, ids.size());
+
+        String earlier = generator.next();
+        Thread.sleep(2);
+        String later = generator.next();
+        // The first 10 characters encode the millisecond timestamp
+        assertTrue(earlier.substring(0, 10).compareTo(later.substring(0, 10)) < 0, earlier + " " + later);
+    }
+
+    @Test
+    void headerUsesConfiguredOrDefaultFromDomain() {
+        MailProperties properties = new MailProperties();
+        assertEquals("<ID@localhost>", new MessageIdGenerator(properties).header("ID"));
+        properties.setDefaultFrom("Shop <noreply@shop.example>");
+        assertEquals("<ID@shop.example>", new MessageIdGenerator(properties).header("ID"));
+        properties.setMessageIdDomain("mail.example");
+        assertEquals("<ID@mail.example>", new MessageIdGenerator(properties).header("ID"));
+    }
+
+}
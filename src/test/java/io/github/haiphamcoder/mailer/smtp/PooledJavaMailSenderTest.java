@@ -0,0 +1,177 @@
+package io.github.haiphamcoder.mailer.smtp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+import io.github.haiphamcoder.mailer.config.MailProperties;
+import io.github.haiphamcoder.mailer.support.FakeSmtpServer;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+
+/**
+ * Tests the connection pool behind {@link PooledJavaMailSender} against
+ * {@link FakeSmtpServer}: reuse, recycling, idle eviction and replacement of
+ * broken connections.
+ */
+class PooledJavaMailSenderTest {
+
+    private static FakeSmtpServer smtp;
+
+    private final MailProperties.Pool settings = new MailProperties.Pool();
+    private PooledJavaMailSender sender;
+
+    @BeforeAll
+    static void startSmtp() throws IOException {
+        smtp = FakeSmtpServer.start();
+    }
+
+    @AfterAll
+    static void stopSmtp() throws IOException {
+        smtp.close();
+    }
+
+    @BeforeEach
+    void resetSmtp() {
+        smtp.reset();
+    }
+
+    @AfterEach
+    void destroySender() {
+        sender.destroy();
+    }
+
+    @Test
+    void reusesReleasedConnection() {
+        sender = sender();
+
+        for (int i = 0; i < 3; i++) {
+            sender.send(message("to@example.com"));
+        }
+
+        assertEquals(3, smtp.getMessagesAccepted());
+        assertEquals(1, smtp.getConnectionsOpened());
+        assertEquals(1, sender.getPool().getIdleCount());
+        assertEquals(0, sender.getPool().getActiveCount());
+    }
+
+    @Test
+    void sendsMessagesOfOneCallOverOneConnection() {
+        sender = sender();
+
+        sender.send(message("a@example.com"), message("b@example.com"), message("c@example.com"));
+
+        assertEquals(3, smtp.getMessagesAccepted());
+        assertEquals(1, smtp.getConnectionsOpened());
+    }
+
+    @Test
+    void rotatesConnectionAfterMaxMessages() {
+        settings.setMaxMessagesPerConnection(2);
+        sender = sender();
+
+        for (int i = 0; i < 5; i++) {
+            sender.send(message("to@example.com"));
+        }
+
+        assertEquals(5, smtp.getMessagesAccepted());
+        assertEquals(3, smtp.getConnectionsOpened());
+        assertEquals(1, sender.getPool().getOpenCount());
+    }
+
+    @Test
+    void evictsIdleConnections() throws InterruptedException {
+        settings.setIdleTimeout(Duration.ofMillis(50));
+        sender = sender();
+        sender.send(message("to@example.com"));
+        assertEquals(1, sender.getPool().getIdleCount());
+
+        Thread.sleep(100);
+        sender.getPool().evictIdle();
+
+        assertEquals(0, sender.getPool().getIdleCount());
+        assertEquals(0, sender.getPool().getOpenCount());
+        sender.send(message("to@example.com"));
+        assertEquals(2, smtp.getConnectionsOpened());
+    }
+
+    @Test
+    void rejectedRecipientKeepsConnection() {
+        sender = sender();
+
+        assertThrows(MailSendException.class, () -> sender.send(message("reject@example.com")));
+        sender.send(message("to@example.com"));
+
+        assertEquals(1, smtp.getConnectionsOpened());
+        assertEquals(1, sender.getPool().getIdleCount());
+    }
+
+    @Test
+    void brokenConnectionIsDiscarded() {
+        sender = sender();
+        sender.send(message("to@example.com"));
+        smtp.withDropRate(1.0);
+
+        assertThrows(MailSendException.class, () -> sender.send(message("to@example.com")));
+
+        assertEquals(0, sender.getPool().getOpenCount());
+        assertEquals(0, sender.getPool().getActiveCount());
+        smtp.withDropRate(0);
+        sender.send(message("to@example.com"));
+        assertEquals(2, smtp.getConnectionsOpened());
+        assertEquals(2, smtp.getMessagesAccepted());
+    }
+
+    @Test
+    void failedConnectFreesItsSlot() throws IOException {
+        settings.setMaxSize(1);
+        sender = sender();
+        sender.setPort(closedPort());
+
+        for (int i = 0; i < 2; i++) {
+            assertThrows(MailSendException.class, () -> sender.send(message("to@example.com")));
+        }
+
+        assertEquals(0, sender.getPool().getActiveCount());
+        assertEquals(0, sender.getPool().getOpenCount());
+    }
+
+    private PooledJavaMailSender sender() {
+        PooledJavaMailSender created = new PooledJavaMailSender("test-pool", settings);
+        created.setHost("localhost");
+        created.setPort(smtp.getPort());
+        return created;
+    }
+
+    private MimeMessage message(String to) {
+        try {
+            MimeMessage message = sender.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(message);
+            helper.setFrom("sender@example.com");
+            helper.setTo(to);
+            helper.setSubject("Pool");
+            helper.setText("Body");
+            return message;
+        } catch (MessagingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int closedPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+package io.github.haiphamcoder.mailer.smtp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.haiphamcoder.mailer.config.MailProperties;
+import jakarta.mail.Address;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+
+class SmtpTransportPoolTest {
+
+    private final ExecutorService borrowers = Executors.newCachedThreadPool();
+    private SmtpTransportPool pool;
+
+    @AfterEach
+    void close() {
+        borrowers.shutdownNow();
+        pool.close();
+    }
+
+    @Test
+    void borrowWaitsAtMostBorrowTimeoutForAFreeConnection() throws Exception {
+        pool = pool(false, Duration.ofMillis(100));
+
+        PooledTransport first = pool.borrow(false);
+        PooledTransport second = pool.borrow(false);
+        assertThrows(MessagingException.class, () -> pool.borrow(false));
+        assertEquals(2, pool.getActiveCount());
+
+        pool.release(first, true);
+        assertSame(first, pool.borrow(false));
+        pool.release(second, true);
+    }
+
+    @Test
+    void unusableConnectionIsClosedOnRelease() throws Exception {
+        pool = pool(false, Duration.ofMillis(100));
+
+        PooledTransport broken = pool.borrow(false);
+        pool.release(broken, false);
+
+        assertEquals(0, pool.getOpenCount());
+        assertEquals(0, pool.getActiveCount());
+        assertNotSame(broken, pool.borrow(false));
+    }
+
+    @Test
+    void bulkLeavesReservedConnectionsFree() throws Exception {
+        pool = pool(false, Duration.ofMillis(100));
+
+        PooledTransport bulk = pool.borrow(true);
+        assertThrows(MessagingException.class, () -> pool.borrow(true));
+        PooledTransport transactional = pool.borrow(false);
+        assertEquals(2, pool.getActiveCount());
+        assertEquals(1, pool.getBulkActiveCount());
+
+        pool.release(bulk, true);
+        pool.release(transactional, true);
+        assertNotNull(pool.borrow(true));
+    }
+
+    @Test
+    void bulkBorrowsIdleReservedConnectionsButTransactionalGoesFirst() throws Exception {
+        pool = pool(true, Duration.ofSeconds(10));
+        PooledTransport first = pool.borrow(true);
+        PooledTransport second = pool.borrow(true);
+
+        Future<PooledTransport> bulk = borrowers.submit(() -> pool.borrow(true));
+        await(() -> pool.getWaitingCount(true));
+        Future<PooledTransport> transactional = borrowers.submit(() -> pool.borrow(false));
+        await(() -> pool.getWaitingCount(false));
+
+        pool.release(first, true);
+        PooledTransport granted = transactional.get(5, TimeUnit.SECONDS);
+        assertFalse(bulk.isDone());
+
+        pool.release(granted, true);
+        assertNotNull(bulk.get(5, TimeUnit.SECONDS));
+        pool.release(second, true);
+    }
+
+    private static void await(IntSupplier waiting) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (waiting.getAsInt() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, waiting.getAsInt());
+    }
+
+    private static SmtpTransportPool pool(boolean bulkBorrowing, Duration borrowTimeout) {
+        MailProperties.Pool settings = new MailProperties.Pool();
+        settings.setMaxSize(2);
+        settings.setTransactionalReserved(1);
+        settings.setBulkBorrowing(bulkBorrowing);
+        settings.setBorrowTimeout(borrowTimeout);
+        settings.setValidateOnBorrow(false);
+        Session session = Session.getInstance(new Properties());
+        return new SmtpTransportPool("test-pool", () -> new Transport(session, null) {
+            @Override
+            public void sendMessage(Message message, Address[] addresses) {
+            }
+        }, settings);
+    }
+
+}
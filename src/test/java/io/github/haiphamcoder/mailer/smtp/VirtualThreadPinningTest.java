@@ -0,0 +1,128 @@
+package io.github.haiphamcoder.mailer.smtp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+import io.github.haiphamcoder.mailer.config.MailProperties;
+import io.github.haiphamcoder.mailer.exception.MailSendExceptionMapper;
+import io.github.haiphamcoder.mailer.limit.AdaptiveConcurrencyLimiter;
+import io.github.haiphamcoder.mailer.limit.LimiterProperties;
+import io.github.haiphamcoder.mailer.quota.QuotaManager;
+import io.github.haiphamcoder.mailer.quota.QuotaProperties;
+import io.github.haiphamcoder.mailer.support.FakeSmtpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Runs the synchronous send path on virtual threads under JFR and checks for
+ * {@code jdk.VirtualThreadPinned} events. Only runs on Java 21 or later.
+ */
+@EnabledForJreRange(min = JRE.JAVA_21)
+class VirtualThreadPinningTest {
+
+    private static final String PINNED = "jdk.VirtualThreadPinned";
+    private static final int SENDS = 32;
+
+    private static FakeSmtpServer smtp;
+
+    @BeforeAll
+    static void startSmtp() throws IOException {
+        smtp = FakeSmtpServer.start().withRecordMessages(false).withReplyLatency(Duration.ofMillis(2));
+    }
+
+    @AfterAll
+    static void stopSmtp() throws IOException {
+        smtp.close();
+    }
+
+    @Test
+    void isolatedTransportDoesNotPinVirtualThreads() throws Exception {
+        List<RecordedEvent> pinned = sendOnVirtualThreads(true);
+
+        assertEquals(0, pinned.size(), () -> "Pinned virtual thread:\n" + pinned.get(0).getStackTrace());
+    }
+
+    @Test
+    void directTransportPinsVirtualThreads() throws Exception {
+        // Guards the check itself: Angus Mail pins when called from a virtual thread
+        assertTrue(sendOnVirtualThreads(false).size() > 0);
+    }
+
+    private List<RecordedEvent> sendOnVirtualThreads(boolean isolateTransportIo) throws Exception {
+        MailProperties.Pool pool = new MailProperties.Pool();
+        PooledJavaMailSender sender = new PooledJavaMailSender("pinning-test", pool, isolateTransportIo);
+        sender.setHost("localhost");
+        sender.setPort(smtp.getPort());
+        QuotaProperties quota = new QuotaProperties();
+        quota.setBurst(1000);
+        quota.setMessagesPerMinute(60_000);
+        QuotaManager quotaManager = new QuotaManager(quota, new SimpleMeterRegistry());
+        LimiterProperties limits = new LimiterProperties();
+        limits.setInitialLimit(SENDS);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(limits, new MailSendExceptionMapper(),
+                new SimpleMeterRegistry());
+
+        Path file = Files.createTempFile("pinning", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(PINNED).withThreshold(Duration.ZERO).withStackTrace();
+            recording.start();
+            VirtualThreadTaskExecutor executor = new VirtualThreadTaskExecutor("pinning-test-");
+            List<CompletableFuture<Void>> sends = new ArrayList<>();
+            for (int i = 0; i < SENDS; i++) {
+                sends.add(CompletableFuture.runAsync(() -> {
+                    AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire();
+                    quotaManager.tryAcquire("sender@example.com", 1);
+                    sender.send(message(sender));
+                    permit.release(null);
+                }, executor));
+            }
+            CompletableFuture.allOf(sends.toArray(new CompletableFuture[0])).join();
+            recording.stop();
+            recording.dump(file);
+        } finally {
+            sender.destroy();
+        }
+        try {
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(event -> event.getEventType().getName().equals(PINNED))
+                    .toList();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static MimeMessage message(PooledJavaMailSender sender) {
+        try {
+            MimeMessage message = sender.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(message);
+            helper.setFrom("sender@example.com");
+            helper.setTo("to@example.com");
+            helper.setSubject("Pinning");
+            helper.setText("Body");
+            return message;
+        } catch (MessagingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,350 @@
+package io.github.haiphamcoder.mailer.support;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal in-process SMTP server for tests.
+ * <p>
+ * Speaks enough ESMTP for JavaMail without TLS: EHLO/HELO, AUTH PLAIN/LOGIN
+ * (any credentials), MAIL, RCPT, DATA, RSET, NOOP and QUIT. Faults can be
+ * injected to exercise pooling, retries and load behaviour:
+ * <ul>
+ * <li>{@link #withReplyLatency(Duration)}: delay before every reply</li>
+ * <li>{@link #withDataLatency(Duration)}: extra delay before accepting a
+ * message</li>
+ * <li>{@link #withTransientFailureRate(double)}: fraction of messages answered
+ * with {@code 451} after DATA</li>
+ * <li>{@link #withPermanentFailureRate(double)}: fraction of messages answered
+ * with {@code 554} after DATA</li>
+ * <li>{@link #withDropRate(double)}: fraction of messages whose connection is
+ * closed without a reply</li>
+ * <li>{@link #withAuthFailure(boolean)}: reject AUTH with {@code 535}</li>
+ * </ul>
+ * Recipients whose local part starts with {@code reject} get {@code 550} and
+ * those starting with {@code defer} get {@code 450} at RCPT.
+ */
+public final class FakeSmtpServer implements AutoCloseable {
+
+    /** A message accepted by the server. */
+    public record ReceivedMessage(String from, List<String> recipients, String data) {
+    }
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService sessions;
+    private final Thread acceptor;
+    private final BlockingQueue<ReceivedMessage> received = new LinkedBlockingQueue<>();
+    private final AtomicInteger connectionsOpened = new AtomicInteger();
+    private final AtomicInteger messagesAccepted = new AtomicInteger();
+    private final AtomicInteger messagesRejected = new AtomicInteger();
+    private final AtomicInteger transientFailures = new AtomicInteger();
+
+    private volatile Duration replyLatency = Duration.ZERO;
+    private volatile Duration dataLatency = Duration.ZERO;
+    private volatile double transientFailureRate;
+    private volatile double permanentFailureRate;
+    private volatile double dropRate;
+    private volatile boolean authFailure;
+    private volatile boolean recordMessages = true;
+
+    private FakeSmtpServer(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, 512, InetAddress.getLoopbackAddress());
+        this.sessions = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "fake-smtp-session");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.acceptor = new Thread(this::acceptLoop, "fake-smtp-acceptor");
+        this.acceptor.setDaemon(true);
+        this.acceptor.start();
+    }
+
+    /**
+     * Starts a server on an ephemeral loopback port.
+     *
+     * @return the running server
+     * @throws IOException if the socket cannot be bound
+     */
+    public static FakeSmtpServer start() throws IOException {
+        return new FakeSmtpServer(0);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public FakeSmtpServer withReplyLatency(Duration latency) {
+        this.replyLatency = latency;
+        return this;
+    }
+
+    public FakeSmtpServer withDataLatency(Duration latency) {
+        this.dataLatency = latency;
+        return this;
+    }
+
+    public FakeSmtpServer withTransientFailureRate(double rate) {
+        this.transientFailureRate = rate;
+        return this;
+    }
+
+    /**
+     * Rejects the next {@code count} messages with a transient reply, then
+     * falls back to the configured failure rates.
+     */
+    public FakeSmtpServer withTransientFailures(int count) {
+        this.transientFailures.set(count);
+        return this;
+    }
+
+    public FakeSmtpServer withPermanentFailureRate(double rate) {
+        this.permanentFailureRate = rate;
+        return this;
+    }
+
+    public FakeSmtpServer withDropRate(double rate) {
+        this.dropRate = rate;
+        return this;
+    }
+
+    public FakeSmtpServer withAuthFailure(boolean fail) {
+        this.authFailure = fail;
+        return this;
+    }
+
+    /**
+     * Whether accepted messages are kept for {@link #awaitMessage(Duration)}.
+     * Disable for load tests to keep memory flat.
+     */
+    public FakeSmtpServer withRecordMessages(boolean record) {
+        this.recordMessages = record;
+        return this;
+    }
+
+    /** Clears fault injection, counters and recorded messages. */
+    public void reset() {
+        replyLatency = Duration.ZERO;
+        dataLatency = Duration.ZERO;
+        transientFailureRate = 0;
+        transientFailures.set(0);
+        permanentFailureRate = 0;
+        dropRate = 0;
+        authFailure = false;
+        recordMessages = true;
+        received.clear();
+        connectionsOpened.set(0);
+        messagesAccepted.set(0);
+        messagesRejected.set(0);
+    }
+
+    /**
+     * Waits for the next accepted message.
+     *
+     * @param timeout how long to wait
+     * @return the message, or null on timeout
+     */
+    public ReceivedMessage awaitMessage(Duration timeout) throws InterruptedException {
+        return received.poll(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public int getConnectionsOpened() {
+        return connectionsOpened.get();
+    }
+
+    public int getMessagesAccepted() {
+        return messagesAccepted.get();
+    }
+
+    public int getMessagesRejected() {
+        return messagesRejected.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        sessions.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connectionsOpened.incrementAndGet();
+                sessions.execute(() -> serve(socket));
+            } catch (IOException e) {
+                // Socket closed
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+                OutputStream out = socket.getOutputStream()) {
+            Session session = new Session(in, out);
+            session.reply("220 localhost Fake ESMTP ready");
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!session.handle(line)) {
+                    return;
+                }
+            }
+        } catch (SocketException e) {
+            // Client went away or connection dropped on purpose
+        } catch (IOException | InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** State of one SMTP conversation. */
+    private final class Session {
+
+        private final BufferedReader in;
+        private final OutputStream out;
+        private String from;
+        private final List<String> recipients = new ArrayList<>();
+
+        Session(BufferedReader in, OutputStream out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        /** Handles one command line; returns false when the connection must close. */
+        boolean handle(String line) throws IOException, InterruptedException {
+            String upper = line.toUpperCase();
+            if (upper.startsWith("EHLO")) {
+                reply("250-localhost\r\n250-AUTH PLAIN LOGIN\r\n250-8BITMIME\r\n250 SIZE 35882577");
+            } else if (upper.startsWith("HELO")) {
+                reply("250 localhost");
+            } else if (upper.startsWith("AUTH")) {
+                return authenticate(line);
+            } else if (upper.startsWith("MAIL FROM:")) {
+                from = address(line);
+                recipients.clear();
+                reply("250 2.1.0 OK");
+            } else if (upper.startsWith("RCPT TO:")) {
+                String recipient = address(line);
+                if (recipient.startsWith("reject")) {
+                    reply("550 5.1.1 <" + recipient + "> No such user");
+                } else if (recipient.startsWith("defer")) {
+                    reply("450 4.2.1 <" + recipient + "> Mailbox temporarily unavailable");
+                } else {
+                    recipients.add(recipient);
+                    reply("250 2.1.5 OK");
+                }
+            } else if (upper.equals("DATA")) {
+                reply("354 End data with <CR><LF>.<CR><LF>");
+                return receiveData();
+            } else if (upper.equals("RSET")) {
+                from = null;
+                recipients.clear();
+                reply("250 2.0.0 OK");
+            } else if (upper.equals("NOOP")) {
+                reply("250 2.0.0 OK");
+            } else if (upper.equals("QUIT")) {
+                reply("221 2.0.0 Bye");
+                return false;
+            } else {
+                reply("502 5.5.2 Command not recognized");
+            }
+            return true;
+        }
+
+        private boolean authenticate(String line) throws IOException, InterruptedException {
+            String[] parts = line.split(" ");
+            String mechanism = parts.length > 1 ? parts[1].toUpperCase() : "";
+            if ("PLAIN".equals(mechanism) && parts.length < 3) {
+                reply("334 ");
+                in.readLine();
+            } else if ("LOGIN".equals(mechanism)) {
+                if (parts.length < 3) {
+                    reply("334 VXNlcm5hbWU6");
+                    in.readLine();
+                }
+                reply("334 UGFzc3dvcmQ6");
+                in.readLine();
+            }
+            if (authFailure) {
+                reply("535 5.7.8 Username and Password not accepted");
+            } else {
+                reply("235 2.7.0 Accepted");
+            }
+            return true;
+        }
+
+        private boolean receiveData() throws IOException, InterruptedException {
+            StringBuilder data = recordMessages ? new StringBuilder() : null;
+            String line;
+            while ((line = in.readLine()) != null && !line.equals(".")) {
+                if (data != null) {
+                    data.append(line.startsWith("..") ? line.substring(1) : line).append("\r\n");
+                }
+            }
+            if (line == null) {
+                return false;
+            }
+            sleep(dataLatency);
+
+            double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < dropRate) {
+                messagesRejected.incrementAndGet();
+                return false;
+            }
+            if (transientFailures.getAndUpdate(n -> Math.max(n - 1, 0)) > 0
+                    || roll < dropRate + transientFailureRate) {
+                messagesRejected.incrementAndGet();
+                reply("451 4.3.0 Temporary failure, try again later");
+            } else if (roll < dropRate + transientFailureRate + permanentFailureRate) {
+                messagesRejected.incrementAndGet();
+                reply("554 5.7.1 Message rejected");
+            } else {
+                messagesAccepted.incrementAndGet();
+                if (data != null) {
+                    received.add(new ReceivedMessage(from, List.copyOf(recipients), data.toString()));
+                }
+                reply("250 2.0.0 OK queued");
+            }
+            from = null;
+            recipients.clear();
+            return true;
+        }
+
+        void reply(String response) throws IOException, InterruptedException {
+            sleep(replyLatency);
+            out.write((response + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+        }
+
+        private String address(String line) {
+            int start = line.indexOf('<');
+            int end = line.indexOf('>', start + 1);
+            return start >= 0 && end > start ? line.substring(start + 1, end) : line.substring(line.indexOf(':') + 1)
+                    .trim();
+        }
+
+        private void sleep(Duration duration) throws InterruptedException {
+            if (!duration.isZero()) {
+                Thread.sleep(duration.toMillis());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+package io.github.haiphamcoder.mailer.support;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import io.github.haiphamcoder.mailer.security.HmacKey;
+import io.github.haiphamcoder.mailer.security.HmacSignatureService;
+
+/**
+ * Open-loop HTTP load generator for the email API.
+ * <p>
+ * Requests are issued on a fixed schedule ({@code rate} per second) whatever
+ * the response times, and each latency is measured from the request's
+ * <em>intended</em> start time, so a stalled server shows up in the tail
+ * instead of silently lowering the offered load (coordinated omission).
+ * Every request is signed with a fresh, strictly increasing timestamp.
+ */
+public final class LoadGenerator {
+
+    private final HttpClient client;
+    private final URI uri;
+    private final HmacSignatureService signatureService;
+    private final HmacKey key;
+
+    public LoadGenerator(URI uri, String secretKey) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.uri = uri;
+        this.signatureService = new HmacSignatureService();
+        this.key = new HmacKey(secretKey);
+    }
+
+    /**
+     * Offers {@code ratePerSecond} requests for {@code duration} and waits for
+     * all responses.
+     *
+     * @param body          JSON body sent with every request
+     * @param ratePerSecond target request rate
+     * @param duration      how long to offer load
+     * @return the latency and throughput report
+     */
+    public Report run(String body, int ratePerSecond, Duration duration) {
+        int total = (int) Math.max(1, ratePerSecond * duration.toMillis() / 1000);
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long[] latencies = new long[total];
+        AtomicInteger recorded = new AtomicInteger();
+        Map<Integer, AtomicInteger> statuses = new ConcurrentHashMap<>();
+        AtomicLong lastTimestamp = new AtomicLong();
+        List<CompletableFuture<Void>> inFlight = new ArrayList<>(total);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            long intended = start + i * intervalNanos;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long timestamp = lastTimestamp.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis()));
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .timeout(Duration.ofSeconds(60))
+                    .header("Content-Type", "application/json")
+                    .header("X-Access-Key", "load-test")
+                    .header("X-Timestamp", Long.toString(timestamp))
+                    .header("X-Access-Sign", signatureService.generateSignature(timestamp, key))
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            inFlight.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .handle((response, failure) -> {
+                        latencies[recorded.getAndIncrement()] = System.nanoTime() - intended;
+                        int status = failure != null ? -1 : response.statusCode();
+                        statuses.computeIfAbsent(status, s -> new AtomicInteger()).incrementAndGet();
+                        return null;
+                    }));
+        }
+        CompletableFuture.allOf(inFlight.toArray(new CompletableFuture[0])).join();
+        long elapsed = System.nanoTime() - start;
+
+        long[] sorted = Arrays.copyOf(latencies, recorded.get());
+        Arrays.sort(sorted);
+        Map<Integer, Integer> statusCounts = new ConcurrentHashMap<>();
+        statuses.forEach((status, count) -> statusCounts.put(status, count.get()));
+        return new Report(total, statusCounts, elapsed, sorted);
+    }
+
+    /**
+     * Result of one load run.
+     *
+     * @param requests     requests offered
+     * @param statusCounts responses per HTTP status ({@code -1} for I/O errors)
+     * @param elapsedNanos time from the first request to the last response
+     * @param latencies    sorted latencies in nanoseconds
+     */
+    public record Report(int requests, Map<Integer, Integer> statusCounts, long elapsedNanos, long[] latencies) {
+
+        /** Responses with a 2xx status. */
+        public int successes() {
+            return statusCounts.entrySet().stream()
+                    .filter(entry -> entry.getKey() >= 200 && entry.getKey() < 300)
+                    .mapToInt(Map.Entry::getValue)
+                    .sum();
+        }
+
+        /** Successful requests per second over the whole run. */
+        public double throughput() {
+            return successes() / (elapsedNanos / 1e9);
+        }
+
+        /** Latency at the given percentile (0-100), in milliseconds. */
+        public double percentileMillis(double percentile) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+            return latencies[Math.max(0, Math.min(index, latencies.length - 1))] / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "requests=%d statuses=%s elapsed=%.1fs throughput=%.1f msg/s p50=%.1fms p99=%.1fms p999=%.1fms max=%.1fms",
+                    requests, statusCounts, elapsedNanos / 1e9, throughput(), percentileMillis(50),
+                    percentileMillis(99), percentileMillis(99.9), percentileMillis(100));
+        }
+    }
+
+}
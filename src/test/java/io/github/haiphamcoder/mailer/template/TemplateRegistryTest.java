@@ -0,0 +1,104 @@
+package io.github.haiphamcoder.mailer.template;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.haiphamcoder.mailer.dto.TemplateRequest;
+import io.github.haiphamcoder.mailer.exception.ApiException;
+import io.github.haiphamcoder.mailer.exception.TemplateNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+
+class TemplateRegistryTest {
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void rendersEscapedAndRawValuesAsUtf8() throws Exception {
+        CompiledTemplate template = CompiledTemplate.compile("t", "<p>{{ name }}</p>{{{raw}}} – {{name}}", true);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.render(Map.of("name", "<Zoë & 'Al' 🚀>", "raw", "<b>x</b>"), out);
+
+        assertEquals("<p>&lt;Zoë &amp; &#39;Al&#39; 🚀&gt;</p><b>x</b> – &lt;Zoë &amp; &#39;Al&#39; 🚀&gt;",
+                out.toString(StandardCharsets.UTF_8));
+        assertEquals(2, template.variables().size());
+        ApiException missing = assertThrows(ApiException.class, () -> template.checkVariables(Map.of("raw", "")));
+        assertEquals("TEMPLATE_VARIABLE_MISSING", missing.code());
+        ApiException invalid = assertThrows(ApiException.class,
+                () -> CompiledTemplate.compile("t", "Hello {{name", false));
+        assertEquals("TEMPLATE_INVALID", invalid.code());
+    }
+
+    @Test
+    void messageBodyIsRenderedOnceWhenWritten() throws Exception {
+        CompiledTemplate template = CompiledTemplate.compile("t", "Hello {{name}}, order {{order}}", false);
+        AtomicInteger lookups = new AtomicInteger();
+        Map<String, String> values = new HashMap<>(Map.of("name", "Zoë", "order", "42")) {
+            @Override
+            public String get(Object key) {
+                lookups.incrementAndGet();
+                return super.get(key);
+            }
+        };
+        MimeMessage message = new MimeMessage(Session.getInstance(new Properties()));
+        message.setDataHandler(template.dataHandler(values));
+        message.setHeader("Content-Type", template.contentType());
+        message.setHeader("Content-Transfer-Encoding", "quoted-printable");
+        message.saveChanges();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        message.writeTo(out);
+
+        assertEquals(2, lookups.get());
+        String written = out.toString(StandardCharsets.US_ASCII);
+        assertTrue(written.contains("Content-Transfer-Encoding: quoted-printable"), written);
+        assertTrue(written.endsWith("Hello Zo=C3=AB, order 42"), written);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedAndReloadsFromDisk() throws Exception {
+        TemplateRegistry registry = registry(1);
+        registry.register("welcome", new TemplateRequest("Hi {{name}}", false));
+        registry.register("receipt", new TemplateRequest("<p>{{total}}</p>", true));
+
+        CompiledTemplate receipt = registry.get("receipt");
+        assertSame(receipt, registry.get("receipt"));
+        assertEquals(List.of("name"), registry.info("welcome").variables());
+        assertEquals(1.0, meterRegistry.get("mailer.template.cache").tag("result", "miss").counter().count());
+
+        TemplateRegistry restarted = registry(1);
+        assertTrue(restarted.get("receipt").html());
+        restarted.remove("welcome");
+        assertThrows(TemplateNotFoundException.class, () -> restarted.get("welcome"));
+        assertThrows(TemplateNotFoundException.class, () -> registry(1).get("welcome"));
+    }
+
+    private TemplateRegistry registry(int cacheSize) throws Exception {
+        TemplateProperties properties = new TemplateProperties();
+        properties.setDirectory(directory.toString());
+        properties.setCacheSize(cacheSize);
+        return new TemplateRegistry(properties, new ObjectMapper(), meterRegistry);
+    }
+
+}